@@ -0,0 +1,118 @@
+package com.sofka.megawarez.config;
+
+import com.sofka.megawarez.utility.Response;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.ServletInvocableHandlerMethod;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Adaptador de Spring MVC que ejecuta los controladores fuera de los hilos de Tomcat
+ *
+ * Los argumentos del controlador se resuelven en el hilo de Tomcat y el cuerpo del método se
+ * entrega como un Callable al pool del modo de ejecución, de modo que el hilo de Tomcat queda libre
+ * mientras se espera la base de datos. Solo se desvían los métodos que responden ResponseEntity;
+ * las respuestas StreamingResponseBody ya se escriben fuera de los hilos de Tomcat
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+public class OffloadingHandlerAdapter extends RequestMappingHandlerAdapter {
+
+    /**
+     * Modo de ejecución de las peticiones
+     */
+    private final RequestExecution requestExecution;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param requestExecution Modo de ejecución de las peticiones
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public OffloadingHandlerAdapter(RequestExecution requestExecution) {
+        this.requestExecution = requestExecution;
+    }
+
+    /**
+     * Crea el invocador de un controlador, desviando al pool los que responden ResponseEntity
+     *
+     * @param handlerMethod Método del controlador
+     * @return Invocador del método
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    protected ServletInvocableHandlerMethod createInvocableHandlerMethod(HandlerMethod handlerMethod) {
+        MethodParameter returnType = handlerMethod.getReturnType();
+        if (!ResponseEntity.class.isAssignableFrom(returnType.getParameterType())
+                || StreamingResponseBody.class.equals(ResolvableType.forMethodParameter(returnType).getGeneric(0).resolve())) {
+            return super.createInvocableHandlerMethod(handlerMethod);
+        }
+        return new OffloadedHandlerMethod(handlerMethod, requestExecution);
+    }
+
+    /**
+     * Invocador que entrega el cuerpo del controlador como un Callable
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    private static class OffloadedHandlerMethod extends ServletInvocableHandlerMethod {
+
+        /**
+         * Modo de ejecución de las peticiones
+         */
+        private final RequestExecution requestExecution;
+
+        /**
+         * Constructor de la clase
+         *
+         * @param handlerMethod Método del controlador
+         * @param requestExecution Modo de ejecución de las peticiones
+         *
+         * @author Ricardo Ortega <tattortega.28@gmail.com>
+         * @since 1.0.0
+         */
+        OffloadedHandlerMethod(HandlerMethod handlerMethod, RequestExecution requestExecution) {
+            super(handlerMethod);
+            this.requestExecution = requestExecution;
+        }
+
+        /**
+         * Devuelve un Callable con la invocación del controlador o un 503 si el sistema está saturado
+         *
+         * @param args Argumentos ya resueltos del controlador
+         * @return Callable con la invocación o respuesta de rechazo
+         *
+         * @author Ricardo Ortega <tattortega.28@gmail.com>
+         * @since 1.0.0
+         */
+        @Override
+        protected Object doInvoke(Object... args) throws Exception {
+            if (!requestExecution.tryAcquire()) {
+                return new ResponseEntity<>(
+                        Response.error("El servidor está ocupado, intente más tarde", null),
+                        HttpStatus.SERVICE_UNAVAILABLE);
+            }
+            Callable<Object> invocation = () -> {
+                try {
+                    return super.doInvoke(args);
+                } finally {
+                    requestExecution.release();
+                }
+            };
+            return invocation;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.sofka.megawarez.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Modo de ejecución de los controladores y el pool donde se ejecutan
+ *
+ * En modo blocking los controladores se ejecutan en los hilos de Tomcat. En modo async se ejecutan
+ * en un pool dedicado a la base de datos y el hilo de Tomcat queda libre mientras esperan. En modo
+ * virtual cada petición usa un hilo virtual; si la JVM no los tiene se usa el modo async. En los
+ * dos últimos modos el número de peticiones en curso está acotado y las que exceden el límite se
+ * rechazan de inmediato
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@Slf4j
+public class RequestExecution {
+
+    /**
+     * Ejecución en los hilos de Tomcat
+     */
+    public static final String BLOCKING = "blocking";
+
+    /**
+     * Ejecución en el pool dedicado a la base de datos
+     */
+    public static final String ASYNC = "async";
+
+    /**
+     * Ejecución en hilos virtuales
+     */
+    public static final String VIRTUAL = "virtual";
+
+    /**
+     * Modo de ejecución en uso
+     */
+    private final String mode;
+
+    /**
+     * Pool donde se ejecutan los controladores, nulo en modo blocking
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Permisos para las peticiones en curso
+     */
+    private final Semaphore inFlight;
+
+    /**
+     * Número máximo de peticiones en curso
+     */
+    private final int maxInFlight;
+
+    /**
+     * Tiempo máximo de espera por una petición
+     */
+    private final Duration timeout;
+
+    /**
+     * Contador de peticiones rechazadas por saturación
+     */
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Constructor de la clase
+     *
+     * @param mode Modo de ejecución solicitado: blocking, async o virtual
+     * @param threads Número de hilos del pool en modo async
+     * @param maxInFlight Número máximo de peticiones en curso
+     * @param timeout Tiempo máximo de espera por una petición
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public RequestExecution(String mode, int threads, int maxInFlight, Duration timeout) {
+        String requested = mode.toLowerCase(Locale.ROOT);
+        ExecutorService pool = null;
+        if (VIRTUAL.equals(requested)) {
+            pool = virtualThreadExecutor();
+            if (pool == null) {
+                log.warn("La JVM no tiene hilos virtuales, se usa el modo async");
+                requested = ASYNC;
+            }
+        }
+        if (ASYNC.equals(requested)) {
+            AtomicInteger sequence = new AtomicInteger();
+            pool = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "request-db-" + sequence.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        this.mode = pool == null ? BLOCKING : requested;
+        this.executor = pool;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.timeout = timeout;
+        log.info("Modo de ejecución de las peticiones: {}", this.mode);
+    }
+
+    /**
+     * Registra las métricas del modo de ejecución
+     *
+     * @param meterRegistry Registro de métricas
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public void bindTo(MeterRegistry meterRegistry) {
+        Gauge.builder("megawarez.execution.in-flight", this, execution -> execution.maxInFlight
+                        - execution.inFlight.availablePermits())
+                .tag("mode", mode)
+                .register(meterRegistry);
+        FunctionCounter.builder("megawarez.execution.rejected", rejected, LongAdder::sum)
+                .tag("mode", mode)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Indica si los controladores se ejecutan fuera de los hilos de Tomcat
+     *
+     * @return Verdadero en modo async o virtual
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public boolean isOffloading() {
+        return executor != null;
+    }
+
+    /**
+     * Devuelve el modo de ejecución en uso
+     *
+     * @return blocking, async o virtual
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public String getMode() {
+        return mode;
+    }
+
+    /**
+     * Devuelve el tiempo máximo de espera por una petición
+     *
+     * @return Tiempo máximo de espera
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Devuelve el pool de ejecución adaptado para Spring MVC
+     *
+     * @return Pool de ejecución
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public AsyncTaskExecutor taskExecutor() {
+        return new TaskExecutorAdapter(executor);
+    }
+
+    /**
+     * Reserva un lugar para una petición
+     *
+     * @return Verdadero si la petición puede continuar, falso si el sistema está saturado
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public boolean tryAcquire() {
+        if (inFlight.tryAcquire()) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * Libera el lugar de una petición terminada
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public void release() {
+        inFlight.release();
+    }
+
+    /**
+     * Detiene el pool de ejecución
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Crea un pool de hilos virtuales si la JVM los tiene
+     *
+     * @return Pool de hilos virtuales o nulo si no están disponibles
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException exception) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.sofka.megawarez.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcRegistrations;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+
+/**
+ * Configuración del modo de ejecución de los controladores
+ *
+ * La propiedad megawarez.execution.mode acepta blocking, async o virtual. En blocking se conserva
+ * el adaptador de Spring MVC por defecto
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@Configuration
+public class RequestExecutionConfig implements WebMvcConfigurer, WebMvcRegistrations {
+
+    /**
+     * Modo de ejecución de las peticiones
+     */
+    private final RequestExecution requestExecution;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param mode Modo de ejecución: blocking, async o virtual
+     * @param threads Número de hilos del pool en modo async
+     * @param maxInFlight Número máximo de peticiones en curso en modo async o virtual
+     * @param timeout Tiempo máximo de espera por una petición en modo async o virtual
+     * @param meterRegistry Registro de métricas, si existe
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public RequestExecutionConfig(
+            @Value("${megawarez.execution.mode:blocking}") String mode,
+            @Value("${megawarez.execution.threads:64}") int threads,
+            @Value("${megawarez.execution.max-in-flight:1000}") int maxInFlight,
+            @Value("${megawarez.execution.timeout:PT30S}") Duration timeout,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        this.requestExecution = new RequestExecution(mode, threads, maxInFlight, timeout);
+        meterRegistry.ifAvailable(requestExecution::bindTo);
+    }
+
+    /**
+     * Asigna el pool y el tiempo de espera de las peticiones asíncronas
+     *
+     * @param configurer Configuración asíncrona de Spring MVC
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        if (requestExecution.isOffloading()) {
+            configurer.setTaskExecutor(requestExecution.taskExecutor());
+            configurer.setDefaultTimeout(requestExecution.getTimeout().toMillis());
+        }
+    }
+
+    /**
+     * Reemplaza el adaptador de Spring MVC cuando los controladores se ejecutan fuera de Tomcat
+     *
+     * @return Adaptador que desvía los controladores, o nulo para usar el de por defecto
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    public RequestMappingHandlerAdapter getRequestMappingHandlerAdapter() {
+        return requestExecution.isOffloading() ? new OffloadingHandlerAdapter(requestExecution) : null;
+    }
+
+    /**
+     * Detiene el pool de ejecución
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @PreDestroy
+    public void shutdown() {
+        requestExecution.shutdown();
+    }
+}
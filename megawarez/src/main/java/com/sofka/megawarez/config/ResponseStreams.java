@@ -0,0 +1,139 @@
+package com.sofka.megawarez.config;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sofka.megawarez.utility.Response;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Límites de los listados completos que se escriben fila por fila
+ *
+ * Cada listado mantiene abiertas una conexión del pool y una transacción de solo lectura mientras
+ * el cliente lee, así que el número de listados en curso se acota para que los clientes lentos no
+ * agoten el pool de conexiones; por encima del límite se responde 503 de inmediato. Cada listado
+ * tiene además su propio tiempo máximo, en lugar del de las peticiones asíncronas. Si ese tiempo se
+ * cumple a mitad del listado, el estado 200 y el inicio del JSON con "error":false ya se enviaron,
+ * así que la respuesta termina cortada con un JSON incompleto: el cliente debe tratar como fallido
+ * un cuerpo que no se puede leer completo
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@Component
+public class ResponseStreams implements CallableProcessingInterceptor {
+
+    /**
+     * Atributo de la petición que indica que tiene un permiso de listado
+     */
+    private static final String PERMIT = ResponseStreams.class.getName() + ".PERMIT";
+
+    /**
+     * Permisos para los listados en curso
+     */
+    private final Semaphore permits;
+
+    /**
+     * Tiempo máximo de un listado
+     */
+    private final Duration timeout;
+
+    /**
+     * Cuerpo de la respuesta de rechazo
+     */
+    private final byte[] busy;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param maxConcurrent Número máximo de listados en curso
+     * @param timeout Tiempo máximo de un listado
+     * @param objectMapper Conversor a JSON de la respuesta de rechazo
+     * @param meterRegistry Registro de métricas, si existe
+     * @throws JsonProcessingException si no se puede convertir la respuesta de rechazo
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public ResponseStreams(
+            @Value("${megawarez.stream.max-concurrent:4}") int maxConcurrent,
+            @Value("${megawarez.stream.timeout:PT10M}") Duration timeout,
+            ObjectMapper objectMapper,
+            ObjectProvider<MeterRegistry> meterRegistry) throws JsonProcessingException {
+        this.permits = new Semaphore(Math.max(1, maxConcurrent));
+        this.timeout = timeout;
+        this.busy = objectMapper.writeValueAsBytes(
+                Response.error("Hay demasiados listados en curso, intente más tarde", null));
+        meterRegistry.ifAvailable(registry ->
+                registry.gauge("megawarez.stream.available", permits, Semaphore::availablePermits));
+    }
+
+    /**
+     * Abre un listado si hay un permiso libre
+     *
+     * @param body Escritura del listado
+     * @return Respuesta 200 con el listado, o 503 si ya hay demasiados listados en curso
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public ResponseEntity<StreamingResponseBody> open(StreamingResponseBody body) {
+        if (!permits.tryAcquire()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(output -> output.write(busy));
+        }
+        RequestContextHolder.currentRequestAttributes().setAttribute(PERMIT, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Asigna el tiempo máximo del listado antes de iniciar la escritura asíncrona
+     *
+     * @param request Petición asíncrona
+     * @param task Escritura del listado
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+        if (request.getAttribute(PERMIT, RequestAttributes.SCOPE_REQUEST) != null && request instanceof AsyncWebRequest async) {
+            async.setTimeout(timeout.toMillis());
+        }
+    }
+
+    /**
+     * Libera el permiso del listado al terminar la petición, haya terminado bien, por error, por
+     * tiempo o por desconexión del cliente
+     *
+     * @param request Petición asíncrona
+     * @param task Escritura del listado
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+        if (request.getAttribute(PERMIT, RequestAttributes.SCOPE_REQUEST) != null) {
+            request.removeAttribute(PERMIT, RequestAttributes.SCOPE_REQUEST);
+            permits.release();
+        }
+    }
+}
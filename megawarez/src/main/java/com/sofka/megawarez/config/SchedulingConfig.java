@@ -0,0 +1,20 @@
+package com.sofka.megawarez.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Habilita las tareas programadas del sistema
+ *
+ * Todas las tareas comparten el planificador de Spring Boot, cuyo número de hilos se fija con
+ * spring.task.scheduling.pool.size. Las tareas largas, como la reconstrucción de recomendaciones y
+ * el borrado de sesiones vencidas, ocupan un hilo cada una mientras las cortas siguen en los demás
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,57 @@
+package com.sofka.megawarez.config;
+
+import com.sofka.megawarez.security.TokenInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Configuración de Spring MVC para las API
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    /**
+     * Interceptor para la validación del token de sesión
+     */
+    @Autowired
+    private TokenInterceptor tokenInterceptor;
+
+    /**
+     * Límites de los listados completos
+     */
+    @Autowired
+    private ResponseStreams responseStreams;
+
+    /**
+     * Registra el interceptor de token para las rutas de la API
+     *
+     * @param registry Registro de interceptores
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(tokenInterceptor).addPathPatterns("/api/**");
+    }
+
+    /**
+     * Registra los límites de los listados completos en las peticiones asíncronas
+     *
+     * @param configurer Configuración asíncrona de Spring MVC
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(responseStreams);
+    }
+}
@@ -1,11 +1,19 @@
 package com.sofka.megawarez.controller;
 
+import com.sofka.megawarez.config.ResponseStreams;
 import com.sofka.megawarez.domain.Category;
 import com.sofka.megawarez.domain.Product;
-import com.sofka.megawarez.domain.Session;
 import com.sofka.megawarez.domain.Subcategory;
+import com.sofka.megawarez.security.TokenInterceptor;
+import com.sofka.megawarez.security.TokenRequired;
+import com.sofka.megawarez.service.DownloadedProducts;
+import com.sofka.megawarez.service.ProductAutocomplete;
+import com.sofka.megawarez.service.ProductFacets;
+import com.sofka.megawarez.service.ProductRecommendations;
 import com.sofka.megawarez.service.ProductService;
-import com.sofka.megawarez.service.UserService;
+import com.sofka.megawarez.service.TrendingProducts;
+import com.sofka.megawarez.service.UniqueDownloaders;
+import com.sofka.megawarez.utility.KeysetPage;
 import com.sofka.megawarez.utility.Response;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,13 +22,9 @@ import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import javax.servlet.http.HttpServletResponse;
-import java.io.IOException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import java.sql.SQLException;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
-import java.util.Set;
 
 /**
  * Controlador para el Producto
@@ -34,92 +38,277 @@ import java.util.Set;
 public class ProductController {
 
     /**
-     * Servicio para el manejo del Usuario
+     * Servicio para el manejo de Producto
      */
     @Autowired
-    private UserService userService;
+    private ProductService productService;
 
     /**
-     * Servicio para el manejo de Producto
+     * Límites de los listados completos
      */
     @Autowired
-    private ProductService productService;
+    private ResponseStreams responseStreams;
 
     /**
-     * Variable para el manejo de las respuestas de las API
+     * Productos más descargados en ventanas de tiempo recientes
      */
-    private Response response = new Response();
+    @Autowired
+    private TrendingProducts trendingProducts;
 
     /**
-     * Manejo del código HTTP que se responde en las API
+     * Usuarios distintos que descargaron cada producto
      */
-    private HttpStatus httpStatus = HttpStatus.OK;
+    @Autowired
+    private UniqueDownloaders uniqueDownloaders;
 
+    /**
+     * Productos descargados por los mismos usuarios que cada producto
+     */
+    @Autowired
+    private ProductRecommendations productRecommendations;
 
     /**
-     * Index de productos, responde con el listado de productos
+     * Productos descargados por cada usuario, para marcar los listados
+     */
+    @Autowired
+    private DownloadedProducts downloadedProducts;
+
+    /**
+     * Terminaciones de nombres de productos para autocompletar
+     */
+    @Autowired
+    private ProductAutocomplete productAutocomplete;
+
+    /**
+     * Conteos de productos por categoría y subcategoría de los resultados de búsqueda
+     */
+    @Autowired
+    private ProductFacets productFacets;
+
+
+    /**
+     * Index de productos, responde con el listado de productos. Con un token válido cada producto
+     * indica si el usuario ya lo descargó
      *
+     * @param authenticatedUser Identificador del usuario autenticado, nulo sin token
+     * @param cursor Cursor opaco de la página anterior, se omite para la primera página
+     * @param size Número de elementos por página
      * @return Objeto Response en formato JSON
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
+    @TokenRequired(optional = true)
     @GetMapping(path = "/api/v1/products")
-    public ResponseEntity<Response> index() {
-        response.restart();
+    public ResponseEntity<Response> index(
+            @RequestAttribute(value = TokenInterceptor.AUTHENTICATED_USER, required = false) Integer authenticatedUser,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size) {
         try {
-            response.data = productService.getListProducts();
-            httpStatus = HttpStatus.OK;
+            KeysetPage<Product> products = productService.getListProducts(cursor, size);
+            downloadedProducts.mark(authenticatedUser, products.items());
+            return new ResponseEntity<>(Response.ok("", products), HttpStatus.OK);
+        } catch (IllegalArgumentException exception) {
+            return getErrorMessageBadRequest(exception);
         } catch (Exception exception) {
-            getErrorMessageInternal(exception);
+            return getErrorMessageInternal(exception);
+        }
+    }
+
+    /**
+     * Listado completo de productos, escrito fila por fila a medida que se lee de la base de datos.
+     * Responde 503 si ya hay demasiados listados en curso; si se cumple el tiempo máximo del listado
+     * la respuesta termina con un JSON incompleto, ver {@link ResponseStreams}
+     *
+     * @return Respuesta con el listado en formato JSON
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @GetMapping(path = "/api/v1/products/stream")
+    public ResponseEntity<StreamingResponseBody> streamProducts() {
+        return responseStreams.open(productService::streamProducts);
+    }
+
+    /**
+     * Productos más descargados, ordenados por su conteo de descargas de forma descendente. Con un
+     * token válido cada producto indica si el usuario ya lo descargó
+     *
+     * @param authenticatedUser Identificador del usuario autenticado, nulo sin token
+     * @param cursor Cursor opaco de la página anterior, se omite para la primera página
+     * @param size Número de elementos por página
+     * @return Objeto Response en formato JSON
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @TokenRequired(optional = true)
+    @GetMapping(path = "/api/v1/products/most-downloaded")
+    public ResponseEntity<Response> mostDownloaded(
+            @RequestAttribute(value = TokenInterceptor.AUTHENTICATED_USER, required = false) Integer authenticatedUser,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size) {
+        try {
+            KeysetPage<Product> products = productService.getMostDownloaded(cursor, size);
+            downloadedProducts.mark(authenticatedUser, products.items());
+            return new ResponseEntity<>(Response.ok("Productos más descargados", products), HttpStatus.OK);
+        } catch (IllegalArgumentException exception) {
+            return getErrorMessageBadRequest(exception);
+        } catch (Exception exception) {
+            return getErrorMessageInternal(exception);
+        }
+    }
+
+    /**
+     * Productos más descargados en una ventana de tiempo reciente, por ejemplo la última hora o el
+     * último día
+     *
+     * @param window Duración de la ventana en formato ISO-8601 (PT1H, P1D), se omite para la ventana por defecto
+     * @param limit Número de productos
+     * @return Objeto Response en formato JSON
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @GetMapping(path = "/api/v1/products/trending")
+    public ResponseEntity<Response> trending(
+            @RequestParam(value = "window", required = false) String window,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        try {
+            return new ResponseEntity<>(
+                    Response.ok("Productos en tendencia", trendingProducts.trending(window, limit)),
+                    HttpStatus.OK);
+        } catch (IllegalArgumentException exception) {
+            return getErrorMessageBadRequest(exception);
+        } catch (Exception exception) {
+            return getErrorMessageInternal(exception);
+        }
+    }
+
+    /**
+     * Número estimado de usuarios distintos que descargaron un producto
+     *
+     * @param id Identificador del producto
+     * @return Objeto Response en formato JSON
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @GetMapping(path = "/api/v1/product/{id}/downloaders")
+    public ResponseEntity<Response> uniqueDownloaders(@PathVariable(value="id") Integer id) {
+        try {
+            return new ResponseEntity<>(
+                    Response.ok("Usuarios distintos que descargaron el producto", uniqueDownloaders.count(id)),
+                    HttpStatus.OK);
+        } catch (Exception exception) {
+            return getErrorMessageInternal(exception);
+        }
+    }
+
+    /**
+     * Productos que también descargaron los usuarios que descargaron un producto
+     *
+     * @param id Identificador del producto
+     * @param limit Número de recomendaciones
+     * @return Objeto Response en formato JSON
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @GetMapping(path = "/api/v1/product/{id}/recommendations")
+    public ResponseEntity<Response> recommendations(
+            @PathVariable(value="id") Integer id,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        try {
+            return new ResponseEntity<>(
+                    Response.ok("Productos descargados por los mismos usuarios", productRecommendations.recommendations(id, limit)),
+                    HttpStatus.OK);
+        } catch (Exception exception) {
+            return getErrorMessageInternal(exception);
+        }
+    }
+
+    /**
+     * Productos más descargados con alguna palabra del nombre que empieza con el texto escrito, para
+     * sugerirlos en cada tecla
+     *
+     * @param prefix Texto escrito
+     * @param limit Número de sugerencias
+     * @return Objeto Response en formato JSON
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @GetMapping(path = "/api/v1/products/autocomplete")
+    public ResponseEntity<Response> autocomplete(
+            @RequestParam(value = "prefix", defaultValue = "") String prefix,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        try {
+            return new ResponseEntity<>(
+                    Response.ok("Sugerencias de productos", productAutocomplete.complete(prefix, limit)),
+                    HttpStatus.OK);
+        } catch (Exception exception) {
+            return getErrorMessageInternal(exception);
         }
-        return new ResponseEntity(response, httpStatus);
     }
 
     /**
      * Administrador para las excepciones del sistema
      *
      * @param exception Objeto Exception
+     * @return Objeto Response en formato JSON
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    private ResponseEntity<Response> getErrorMessageInternal(Exception exception) {
+        return new ResponseEntity<>(
+                Response.error(exception.getMessage(), exception.getCause()),
+                HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    /**
+     * Administrador para las peticiones con parámetros no válidos
+     *
+     * @param exception Objeto IllegalArgumentException
+     * @return Objeto Response en formato JSON
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
-    private void getErrorMessageInternal(Exception exception) {
-        response.error = true;
-        response.message = exception.getMessage();
-        response.data = exception.getCause();
-        httpStatus = HttpStatus.INTERNAL_SERVER_ERROR;
+    private ResponseEntity<Response> getErrorMessageBadRequest(IllegalArgumentException exception) {
+        return new ResponseEntity<>(Response.error(exception.getMessage(), null), HttpStatus.BAD_REQUEST);
     }
 
     /**
      * Administrador para las excepciones a nivel de SQL con respecto al manejo del acceso a los datos
      *
      * @param exception Objeto DataAccessException
+     * @return Objeto Response en formato JSON
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
-    private void getErrorMessageForResponse(DataAccessException exception) {
-        response.error = true;
+    private ResponseEntity<Response> getErrorMessageForResponse(DataAccessException exception) {
         if(exception.getRootCause() instanceof SQLException) {
             SQLException sqlEx = (SQLException) exception.getRootCause();
             var sqlErrorCode = sqlEx.getErrorCode();
+            Response response;
             switch (sqlErrorCode) {
                 case 1062:
-                    response.message = "El dato ya está registrado";
+                    response = Response.error("El dato ya está registrado", null);
                     break;
                 case 1452:
-                    response.message = "El dato indicado no existe";
+                    response = Response.error("El dato indicado no existe", null);
                     break;
                 default:
-                    response.message = exception.getMessage();
-                    response.data = exception.getCause();
+                    response = Response.error(exception.getMessage(), exception.getCause());
             }
-            httpStatus = HttpStatus.BAD_REQUEST;
+            return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
         } else {
-            response.message = exception.getMessage();
-            response.data = exception.getCause();
-            httpStatus = HttpStatus.INTERNAL_SERVER_ERROR;
+            return new ResponseEntity<>(
+                    Response.error(exception.getMessage(), exception.getCause()),
+                    HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
 
@@ -132,34 +321,19 @@ public class ProductController {
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
+    @TokenRequired
     @PostMapping(path = "/api/v1/product")
-    public ResponseEntity<Response> createProduct(
-            @RequestHeader("Authorization") String authorization,
-            @RequestBody Product product) {
-        response.restart();
+    public ResponseEntity<Response> createProduct(@RequestBody Product product) {
         try {
-            List<Session> tokens = userService.getListSession();
-            boolean match = false;
-            for (Session token: tokens) {
-                if (Objects.equals(token.getToken(), authorization)) {
-                    log.info("Producto a crear: {}", product);
-                    response.data = productService.createProduct(product);
-                    httpStatus = HttpStatus.CREATED;
-                    response.message= "Producto creado";
-                    match = true;
-                }
-            }
-            if (!match) {
-                response.error = true;
-                response.message = "No existe token activo";
-                httpStatus = HttpStatus.UNAUTHORIZED;
-            }
+            log.info("Producto a crear: {}", product);
+            return new ResponseEntity<>(
+                    Response.ok("Producto creado", productService.createProduct(product)),
+                    HttpStatus.CREATED);
         } catch (DataAccessException exception) {
-            getErrorMessageForResponse(exception);
+            return getErrorMessageForResponse(exception);
         } catch (Exception exception) {
-            getErrorMessageInternal(exception);
+            return getErrorMessageInternal(exception);
         }
-        return new ResponseEntity(response, httpStatus);
     }
 
     /**
@@ -172,36 +346,22 @@ public class ProductController {
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
+    @TokenRequired
     @PatchMapping(path = "/api/v1/product/{id}/product")
     public ResponseEntity<Response> updateProduct(
-            @RequestHeader("Authorization") String authorization,
             @RequestBody Product product,
             @PathVariable(value="id") Integer id
     ) {
-        response.restart();
         try {
-            List<Session> tokens = userService.getListSession();
-            boolean match = false;
-            for (Session token: tokens) {
-                if (Objects.equals(token.getToken(), authorization)) {
-                    log.info("Producto a actualizar: {}", product);
-                    response.data = productService.updateProduct(id, product);
-                    httpStatus = HttpStatus.OK;
-                    response.message= "Producto actualizado";
-                    match = true;
-                }
-            }
-            if (!match) {
-                response.error = true;
-                response.message = "No existe token activo";
-                httpStatus = HttpStatus.UNAUTHORIZED;
-            }
+            log.info("Producto a actualizar: {}", product);
+            return new ResponseEntity<>(
+                    Response.ok("Producto actualizado", productService.updateProduct(id, product)),
+                    HttpStatus.OK);
         } catch (DataAccessException exception) {
-            getErrorMessageForResponse(exception);
+            return getErrorMessageForResponse(exception);
         } catch (Exception exception) {
-            getErrorMessageInternal(exception);
+            return getErrorMessageInternal(exception);
         }
-        return new ResponseEntity(response, httpStatus);
     }
 
     /**
@@ -214,36 +374,22 @@ public class ProductController {
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
+    @TokenRequired
     @PatchMapping(path = "/api/v1/product/{id}/subcategory")
     public ResponseEntity<Response> updateProductSubcategory(
-            @RequestHeader("Authorization") String authorization,
             @RequestBody Product product,
             @PathVariable(value="id") Integer id
     ) {
-        response.restart();
         try {
-            List<Session> tokens = userService.getListSession();
-            boolean match = false;
-            for (Session token: tokens) {
-                if (Objects.equals(token.getToken(), authorization)) {
-                    log.info("Subcategoria de producto a actualizar: {}", product);
-                    response.data = productService.updateProduct(id, product);
-                    httpStatus = HttpStatus.OK;
-                    response.message= "Subcategoria de producto actualizado";
-                    match = true;
-                }
-            }
-            if (!match) {
-                response.error = true;
-                response.message = "No existe token activo";
-                httpStatus = HttpStatus.UNAUTHORIZED;
-            }
+            log.info("Subcategoria de producto a actualizar: {}", product);
+            return new ResponseEntity<>(
+                    Response.ok("Subcategoria de producto actualizado", productService.updateProduct(id, product)),
+                    HttpStatus.OK);
         } catch (DataAccessException exception) {
-            getErrorMessageForResponse(exception);
+            return getErrorMessageForResponse(exception);
         } catch (Exception exception) {
-            getErrorMessageInternal(exception);
+            return getErrorMessageInternal(exception);
         }
-        return new ResponseEntity(response, httpStatus);
     }
 
 
@@ -256,122 +402,91 @@ public class ProductController {
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
+    @TokenRequired
     @DeleteMapping(path = "/api/v1/product/{id}")
-    public ResponseEntity<Response> deleteProduct(
-            @RequestHeader("Authorization") String authorization,
-            @PathVariable(value="id") Integer id) {
-        response.restart();
+    public ResponseEntity<Response> deleteProduct(@PathVariable(value="id") Integer id) {
         try {
-            List<Session> tokens = userService.getListSession();
-            boolean match = false;
-            for (Session token: tokens) {
-                if (Objects.equals(token.getToken(), authorization)) {
-                    response.data = productService.deleteProduct(id);
-                    httpStatus = HttpStatus.OK;
-                    response.message= "Producto eliminado";
-                    match = true;
-                }
-            }
-            if (!match) {
-                response.error = true;
-                response.message = "No existe token activo";
-                httpStatus = HttpStatus.UNAUTHORIZED;
-            }
-            if (response.data == null) {
-                response.message = "El producto no existe";
-                httpStatus = HttpStatus.NOT_FOUND;
+            Product product = productService.deleteProduct(id);
+            if (product == null) {
+                return new ResponseEntity<>(Response.ok("El producto no existe", null), HttpStatus.NOT_FOUND);
             }
+            return new ResponseEntity<>(Response.ok("Producto eliminado", product), HttpStatus.OK);
         } catch (DataAccessException exception) {
-            getErrorMessageForResponse(exception);
+            return getErrorMessageForResponse(exception);
         } catch (Exception exception) {
-            getErrorMessageInternal(exception);
+            return getErrorMessageInternal(exception);
         }
-        return new ResponseEntity(response, httpStatus);
     }
 
 
     /**
      * Devuelve todos las subcategorias con sus productos ordenados por nombre o fecha de forma ascendente o descendente
      *
+     * @param authenticatedUser Identificador del usuario autenticado
      * @param orderBy Nombre del campo por donde se desea ordenar la información
      * @param order Tipo de orden que debe tener la información ASC o DESC
+     * @param cursor Cursor opaco de la página anterior, se omite para la primera página
+     * @param size Número de elementos por página
      * @return Objeto Response en formato JSON
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
+    @TokenRequired
     @GetMapping(path = "/api/v1/products/orderby/{orderBy}/{order}")
     public ResponseEntity<Response> indexOrderBy(
-            @RequestHeader("Authorization") String authorization,
+            @RequestAttribute(TokenInterceptor.AUTHENTICATED_USER) Integer authenticatedUser,
             @PathVariable(value="orderBy") String orderBy,
-            @PathVariable(value="order") Sort.Direction order
+            @PathVariable(value="order") Sort.Direction order,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size
     ) {
-        response.restart();
         try {
-            List<Session> tokens = userService.getListSession();
-            boolean match = false;
-            for (Session token: tokens) {
-                if (Objects.equals(token.getToken(), authorization)) {
-                    response.data = productService.getProductOrdered(orderBy, order);
-                    httpStatus = HttpStatus.OK;
-                    response.message= "Productos ordenados";
-                    match = true;
-                }
-            }
-            if (!match) {
-                response.error = true;
-                response.message = "No existe token activo";
-                httpStatus = HttpStatus.UNAUTHORIZED;
-            }
-            if (response.data == null) {
-                response.message = "No existen productos";
-                httpStatus = HttpStatus.NOT_FOUND;
-            }
+            KeysetPage<Product> products = productService.getProductOrdered(orderBy, order, cursor, size);
+            downloadedProducts.mark(authenticatedUser, products.items());
+            return new ResponseEntity<>(Response.ok("Productos ordenados", products), HttpStatus.OK);
+        } catch (IllegalArgumentException exception) {
+            return getErrorMessageBadRequest(exception);
         } catch (Exception exception) {
-            getErrorMessageInternal(exception);
+            return getErrorMessageInternal(exception);
         }
-        return new ResponseEntity(response, httpStatus);
     }
 
     /**
      * Devuelve el listado de productos basados en un dato a buscar por nombre
      *
+     * @param authenticatedUser Identificador del usuario autenticado
      * @param dataToSearch Información a buscar
+     * @param fuzzy Verdadero para tolerar errores de escritura en cada palabra
+     * @param facets Verdadero para devolver junto a los productos sus conteos por categoría y subcategoría
      * @return Objeto Response en formato JSON
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
+    @TokenRequired
     @GetMapping(path = "/api/v1/search/product/{dataToSearch}")
     public ResponseEntity<Response> searchProduct(
-            @RequestHeader("Authorization") String authorization,
-            @PathVariable(value="dataToSearch") String dataToSearch
+            @RequestAttribute(TokenInterceptor.AUTHENTICATED_USER) Integer authenticatedUser,
+            @PathVariable(value="dataToSearch") String dataToSearch,
+            @RequestParam(value = "fuzzy", defaultValue = "false") boolean fuzzy,
+            @RequestParam(value = "facets", defaultValue = "false") boolean facets
     ) {
-        response.restart();
         try {
-            List<Session> tokens = userService.getListSession();
-            boolean match = false;
-            for (Session token: tokens) {
-                if (Objects.equals(token.getToken(), authorization)) {
-                    response.data = productService.searchProduct(dataToSearch);
-                    httpStatus = HttpStatus.OK;
-                    response.message= "Productos encontrados";
-                    match = true;
-                }
-            }
-            if (!match) {
-                response.error = true;
-                response.message = "No existe token activo";
-                httpStatus = HttpStatus.UNAUTHORIZED;
+            List<Product> products = productService.searchProduct(dataToSearch, fuzzy);
+            if (products == null) {
+                return new ResponseEntity<>(Response.ok("No existen productos", null), HttpStatus.NOT_FOUND);
             }
-            if (response.data == null) {
-                response.message = "No existen productos";
-                httpStatus = HttpStatus.NOT_FOUND;
+            downloadedProducts.mark(authenticatedUser, products);
+            if (facets) {
+                return new ResponseEntity<>(
+                        Response.ok("Productos encontrados", new ProductFacets.FacetedProducts(products, productFacets.count(products))),
+                        HttpStatus.OK);
             }
+            return new ResponseEntity<>(Response.ok("Productos encontrados", products), HttpStatus.OK);
         } catch (Exception exception) {
-            getErrorMessageInternal(exception);
+            return getErrorMessageInternal(exception);
         }
-        return new ResponseEntity(response, httpStatus);
     }
 
 
@@ -379,21 +494,24 @@ public class ProductController {
     /**
      * Index de categorias, responde con el listado de categorias
      *
+     * @param cursor Cursor opaco de la página anterior, se omite para la primera página
+     * @param size Número de elementos por página
      * @return Objeto Response en formato JSON
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
     @GetMapping(path = "/api/v1/category")
-    public ResponseEntity<Response> category() {
-        response.restart();
+    public ResponseEntity<Response> category(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size) {
         try {
-            response.data = productService.getListCategory();
-            httpStatus = HttpStatus.OK;
+            return new ResponseEntity<>(Response.ok("", productService.getListCategory(cursor, size)), HttpStatus.OK);
+        } catch (IllegalArgumentException exception) {
+            return getErrorMessageBadRequest(exception);
         } catch (Exception exception) {
-            getErrorMessageInternal(exception);
+            return getErrorMessageInternal(exception);
         }
-        return new ResponseEntity(response, httpStatus);
     }
 
     /**
@@ -407,17 +525,14 @@ public class ProductController {
      */
     @PostMapping(path = "/api/v1/category")
     public ResponseEntity<Response> createCategory(@RequestBody Category category) {
-        response.restart();
         try {
             log.info("Categoria a crear: {}", category);
-            response.data = productService.createCategory(category);
-            httpStatus = HttpStatus.CREATED;
+            return new ResponseEntity<>(Response.ok("", productService.createCategory(category)), HttpStatus.CREATED);
         } catch (DataAccessException exception) {
-            getErrorMessageForResponse(exception);
+            return getErrorMessageForResponse(exception);
         } catch (Exception exception) {
-            getErrorMessageInternal(exception);
+            return getErrorMessageInternal(exception);
         }
-        return new ResponseEntity(response, httpStatus);
     }
 
 
@@ -432,22 +547,17 @@ public class ProductController {
      */
     @DeleteMapping(path = "/api/v1/category/{id}")
     public ResponseEntity<Response> deleteCategory(@PathVariable(value="id") Integer id) {
-        response.restart();
         try {
-            response.data = productService.deleteCategory(id);
-            if (response.data == null) {
-                response.message = "La categoria no existe";
-                httpStatus = HttpStatus.NOT_FOUND;
-            } else {
-                response.message = "La categoria fue removido exitosamente";
-                httpStatus = HttpStatus.OK;
+            Category category = productService.deleteCategory(id);
+            if (category == null) {
+                return new ResponseEntity<>(Response.ok("La categoria no existe", null), HttpStatus.NOT_FOUND);
             }
+            return new ResponseEntity<>(Response.ok("La categoria fue removido exitosamente", category), HttpStatus.OK);
         } catch (DataAccessException exception) {
-            getErrorMessageForResponse(exception);
+            return getErrorMessageForResponse(exception);
         } catch (Exception exception) {
-            getErrorMessageInternal(exception);
+            return getErrorMessageInternal(exception);
         }
-        return new ResponseEntity(response, httpStatus);
     }
 
 
@@ -455,21 +565,24 @@ public class ProductController {
     /**
      * Index de subcategorias, responde con el listado de subcategorias
      *
+     * @param cursor Cursor opaco de la página anterior, se omite para la primera página
+     * @param size Número de elementos por página
      * @return Objeto Response en formato JSON
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
     @GetMapping(path = "/api/v1/subcategory")
-    public ResponseEntity<Response> subcategory() {
-        response.restart();
+    public ResponseEntity<Response> subcategory(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size) {
         try {
-            response.data = productService.getListSubcategory();
-            httpStatus = HttpStatus.OK;
+            return new ResponseEntity<>(Response.ok("", productService.getListSubcategory(cursor, size)), HttpStatus.OK);
+        } catch (IllegalArgumentException exception) {
+            return getErrorMessageBadRequest(exception);
         } catch (Exception exception) {
-            getErrorMessageInternal(exception);
+            return getErrorMessageInternal(exception);
         }
-        return new ResponseEntity(response, httpStatus);
     }
 
     /**
@@ -483,17 +596,16 @@ public class ProductController {
      */
     @PostMapping(path = "/api/v1/subcategory")
     public ResponseEntity<Response> createSubcategory(@RequestBody Subcategory subcategory) {
-        response.restart();
         try {
             log.info("Subcategoria a crear: {}", subcategory);
-            response.data = productService.createSubcategory(subcategory);
-            httpStatus = HttpStatus.CREATED;
+            return new ResponseEntity<>(
+                    Response.ok("", productService.createSubcategory(subcategory)),
+                    HttpStatus.CREATED);
         } catch (DataAccessException exception) {
-            getErrorMessageForResponse(exception);
+            return getErrorMessageForResponse(exception);
         } catch (Exception exception) {
-            getErrorMessageInternal(exception);
+            return getErrorMessageInternal(exception);
         }
-        return new ResponseEntity(response, httpStatus);
     }
 
     /**
@@ -507,21 +619,18 @@ public class ProductController {
      */
     @DeleteMapping(path = "/api/v1/subcategory/{id}")
     public ResponseEntity<Response> deleteSubcategory(@PathVariable(value="id") Integer id) {
-        response.restart();
         try {
-            response.data = productService.deleteSubcategory(id);
-            if (response.data == null) {
-                response.message = "La subcategoria no existe";
-                httpStatus = HttpStatus.NOT_FOUND;
-            } else {
-                response.message = "La subcategoria fue removido exitosamente";
-                httpStatus = HttpStatus.OK;
+            Subcategory subcategory = productService.deleteSubcategory(id);
+            if (subcategory == null) {
+                return new ResponseEntity<>(Response.ok("La subcategoria no existe", null), HttpStatus.NOT_FOUND);
             }
+            return new ResponseEntity<>(
+                    Response.ok("La subcategoria fue removido exitosamente", subcategory),
+                    HttpStatus.OK);
         } catch (DataAccessException exception) {
-            getErrorMessageForResponse(exception);
+            return getErrorMessageForResponse(exception);
         } catch (Exception exception) {
-            getErrorMessageInternal(exception);
+            return getErrorMessageInternal(exception);
         }
-        return new ResponseEntity(response, httpStatus);
     }
 }
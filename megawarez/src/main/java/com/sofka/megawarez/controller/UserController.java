@@ -1,9 +1,16 @@
 package com.sofka.megawarez.controller;
 
+import com.sofka.megawarez.config.ResponseStreams;
 import com.sofka.megawarez.domain.Download;
 import com.sofka.megawarez.domain.Session;
 import com.sofka.megawarez.domain.User;
+import com.sofka.megawarez.repository.UserCredentials;
+import com.sofka.megawarez.security.TokenInterceptor;
+import com.sofka.megawarez.security.TokenRequired;
+import com.sofka.megawarez.service.DownloadRecorder;
+import com.sofka.megawarez.service.DuplicateDownloads;
 import com.sofka.megawarez.service.UserService;
+import com.sofka.megawarez.utility.KeysetPage;
 import com.sofka.megawarez.utility.LoginData;
 import com.sofka.megawarez.utility.Response;
 import lombok.extern.slf4j.Slf4j;
@@ -16,13 +23,17 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Controlador para el Usuario
@@ -42,15 +53,22 @@ public class UserController {
     private UserService userService;
 
     /**
-     * Variable para el manejo de las respuestas de las API
+     * Límites de los listados completos
      */
-    private Response response = new Response();
+    @Autowired
+    private ResponseStreams responseStreams;
 
     /**
-     * Manejo del código HTTP que se responde en las API
+     * Registro diferido de descargas
      */
-    private HttpStatus httpStatus = HttpStatus.OK;
+    @Autowired
+    private DownloadRecorder downloadRecorder;
 
+    /**
+     * Detección de descargas repetidas por reintentos del cliente
+     */
+    @Autowired
+    private DuplicateDownloads duplicateDownloads;
 
     /**
      * Atención a la dirección raíz del sistema, este redirige a /api/v1/index
@@ -97,22 +115,26 @@ public class UserController {
     /**
      * Index del sistema, responde con el listado de usuarios
      *
+     * @param cursor Cursor opaco de la página anterior, se omite para la primera página
+     * @param size Número de elementos por página
      * @return Objeto Response en formato JSON
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
     @GetMapping(path = "/api/v1/users")
-    public ResponseEntity<Response> users() {
-        response.restart();
+    public ResponseEntity<Response> users(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size) {
         try {
-            response.data = userService.getListUser();
-            response.message = "Lista de usuarios";
-            httpStatus = HttpStatus.OK;
+            return new ResponseEntity<>(
+                    Response.ok("Lista de usuarios", userService.getListUser(cursor, size)),
+                    HttpStatus.OK);
+        } catch (IllegalArgumentException exception) {
+            return getErrorMessageBadRequest(exception);
         } catch (Exception exception) {
-            getErrorMessageInternal(exception);
+            return getErrorMessageInternal(exception);
         }
-        return new ResponseEntity(response, httpStatus);
     }
 
     /**
@@ -125,14 +147,11 @@ public class UserController {
      */
     @GetMapping(path = "/api/v1/user/{id}")
     public ResponseEntity<Response> findUser(@PathVariable(value="id") User id) {
-        response.restart();
         try {
-            response.data = userService.findUser(id);
-            httpStatus = HttpStatus.OK;
+            return new ResponseEntity<>(Response.ok("", userService.findUser(id)), HttpStatus.OK);
         } catch (Exception exception) {
-            getErrorMessageInternal(exception);
+            return getErrorMessageInternal(exception);
         }
-        return new ResponseEntity(response, httpStatus);
     }
 
     /**
@@ -145,62 +164,98 @@ public class UserController {
      * @since 1.0.0
      */
     private ResponseEntity<Response> getResponseHome(HttpServletResponse httpResponse) {
-        response.restart();
         try {
             httpResponse.sendRedirect("/api/v1/users");
+            return new ResponseEntity<>(Response.ok("", null), HttpStatus.OK);
         } catch (IOException exception) {
-            response.error = true;
-            response.data = exception.getCause();
-            response.message = exception.getMessage();
-            httpStatus = HttpStatus.INTERNAL_SERVER_ERROR;
+            return getErrorMessageInternal(exception);
         }
-        return new ResponseEntity(response, httpStatus);
     }
 
     /**
      * Administrador para las excepciones del sistema
      *
      * @param exception Objeto Exception
+     * @return Objeto Response en formato JSON
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
-    private void getErrorMessageInternal(Exception exception) {
-        response.error = true;
-        response.message = exception.getMessage();
-        response.data = exception.getCause();
-        httpStatus = HttpStatus.INTERNAL_SERVER_ERROR;
+    private ResponseEntity<Response> getErrorMessageInternal(Exception exception) {
+        return new ResponseEntity<>(
+                Response.error(exception.getMessage(), exception.getCause()),
+                HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    /**
+     * Administrador para las peticiones rechazadas por saturación del sistema
+     *
+     * @param exception Objeto RejectedExecutionException
+     * @return Objeto Response en formato JSON
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    private ResponseEntity<Response> getErrorMessageUnavailable(RejectedExecutionException exception) {
+        return new ResponseEntity<>(
+                Response.error("El servidor está ocupado, intente más tarde", null),
+                HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    /**
+     * Administrador para las peticiones sin un token válido para el recurso
+     *
+     * @return Objeto Response en formato JSON
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    private ResponseEntity<Response> getErrorMessageUnauthorized() {
+        return new ResponseEntity<>(Response.error("No existe token activo", null), HttpStatus.UNAUTHORIZED);
+    }
+
+    /**
+     * Administrador para las peticiones con parámetros no válidos
+     *
+     * @param exception Objeto IllegalArgumentException
+     * @return Objeto Response en formato JSON
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    private ResponseEntity<Response> getErrorMessageBadRequest(IllegalArgumentException exception) {
+        return new ResponseEntity<>(Response.error(exception.getMessage(), null), HttpStatus.BAD_REQUEST);
     }
 
     /**
      * Administrador para las excepciones a nivel de SQL con respecto al manejo del acceso a los datos
      *
      * @param exception Objeto DataAccessException
+     * @return Objeto Response en formato JSON
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
-    private void getErrorMessageForResponse(DataAccessException exception) {
-        response.error = true;
+    private ResponseEntity<Response> getErrorMessageForResponse(DataAccessException exception) {
         if(exception.getRootCause() instanceof SQLException) {
             SQLException sqlEx = (SQLException) exception.getRootCause();
             var sqlErrorCode = sqlEx.getErrorCode();
+            Response response;
             switch (sqlErrorCode) {
                 case 1062:
-                    response.message = "El usuario ya está registrado";
+                    response = Response.error("El usuario ya está registrado", null);
                     break;
                 case 1452:
-                    response.message = "El usuario indicado no existe";
+                    response = Response.error("El usuario indicado no existe", null);
                     break;
                 default:
-                    response.message = exception.getMessage();
-                    response.data = exception.getCause();
+                    response = Response.error(exception.getMessage(), exception.getCause());
             }
-            httpStatus = HttpStatus.BAD_REQUEST;
+            return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
         } else {
-            response.message = exception.getMessage();
-            response.data = exception.getCause();
-            httpStatus = HttpStatus.INTERNAL_SERVER_ERROR;
+            return new ResponseEntity<>(
+                    Response.error(exception.getMessage(), exception.getCause()),
+                    HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
 
@@ -215,45 +270,49 @@ public class UserController {
      */
     @PostMapping(path = "/api/v1/user")
     public ResponseEntity<Response> createUser(@RequestBody User user) {
-        response.restart();
         try {
             log.info("Usuario a crear: {}", user);
-            User u = this.userService.findByUsername(user.getUsername());
-            if (u.getId() == null) {
-                response.data = userService.createUser(user);
-                response.message = "El usuario se ha registrado correctamente";
-                httpStatus = HttpStatus.CREATED;
-            } else {
-                response.message = "El usuario ya se encuentra registrado";
+            if (userService.existsUsername(user.getUsername())) {
+                return new ResponseEntity<>(
+                        Response.error("El usuario ya se encuentra registrado", null),
+                        HttpStatus.BAD_REQUEST);
             }
+            return new ResponseEntity<>(
+                    Response.ok("El usuario se ha registrado correctamente", userService.createUser(user)),
+                    HttpStatus.CREATED);
+        } catch (RejectedExecutionException exception) {
+            return getErrorMessageUnavailable(exception);
         } catch (DataAccessException exception) {
-            getErrorMessageForResponse(exception);
+            return getErrorMessageForResponse(exception);
         } catch (Exception exception) {
-            getErrorMessageInternal(exception);
+            return getErrorMessageInternal(exception);
         }
-        return new ResponseEntity(response, httpStatus);
     }
 
 
     /**
      * Index de session, responde con el listado de sessions
      *
+     * @param cursor Cursor opaco de la página anterior, se omite para la primera página
+     * @param size Número de elementos por página
      * @return Objeto Response en formato JSON
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
     @GetMapping(path = "/api/v1/sessions")
-    public ResponseEntity<Response> sessions() {
-        response.restart();
+    public ResponseEntity<Response> sessions(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size) {
         try {
-            response.data = userService.getListSession();
-            response.message = "Sesiones activas";
-            httpStatus = HttpStatus.OK;
+            return new ResponseEntity<>(
+                    Response.ok("Sesiones activas", userService.getListSession(cursor, size)),
+                    HttpStatus.OK);
+        } catch (IllegalArgumentException exception) {
+            return getErrorMessageBadRequest(exception);
         } catch (Exception exception) {
-            getErrorMessageInternal(exception);
+            return getErrorMessageInternal(exception);
         }
-        return new ResponseEntity(response, httpStatus);
     }
 
     /**
@@ -267,15 +326,11 @@ public class UserController {
      */
     @GetMapping(path = "/api/v1/session/{id}")
     public ResponseEntity<Response> findUserSession(@PathVariable(value="id") User id) {
-        response.restart();
         try {
-            response.data = userService.findUserSession(id);
-            response.message = "Usuario";
-            httpStatus = HttpStatus.OK;
+            return new ResponseEntity<>(Response.ok("Usuario", userService.findUserSession(id)), HttpStatus.OK);
         } catch (Exception exception) {
-            getErrorMessageInternal(exception);
+            return getErrorMessageInternal(exception);
         }
-        return new ResponseEntity(response, httpStatus);
     }
 
     /**
@@ -287,38 +342,27 @@ public class UserController {
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
+    @TokenRequired
     @DeleteMapping(path = "/api/v1/session/{id}")
     public ResponseEntity<Response> deleteUserSession(
             @RequestHeader("Authorization") String authorization,
+            @RequestAttribute(TokenInterceptor.AUTHENTICATED_USER) Integer authenticatedUser,
             @PathVariable(value="id") User id) {
-        response.restart();
         try {
-            Set<Session> tokens = userService.findUserSession(id);
-            List<Session> userToken = new ArrayList<>(tokens);
-            boolean match = false;
-            for (Session token: userToken) {
-                if (Objects.equals(token.getToken(), authorization)) {
-                    response.data = userService.deleteSession(token.getId());
-                    response.message = "La session fue removida exitosamente";
-                    httpStatus = HttpStatus.OK;
-                    match = true;
-                }
+            Optional<Session> session = userService.findSessionByToken(authorization);
+            if (session.isEmpty() || !Objects.equals(authenticatedUser, id.getId())) {
+                return getErrorMessageUnauthorized();
             }
-            if (!match) {
-                response.error = false;
-                response.message = "No existe token activo";
-                httpStatus = HttpStatus.UNAUTHORIZED;
-            } else if (response.data == null) {
-                response.error = true;
-                response.message = "La session no existe";
-                httpStatus = HttpStatus.NOT_FOUND;
+            Session deleted = userService.deleteSession(session.get().getId());
+            if (deleted == null) {
+                return new ResponseEntity<>(Response.error("La session no existe", null), HttpStatus.NOT_FOUND);
             }
+            return new ResponseEntity<>(Response.ok("La session fue removida exitosamente", deleted), HttpStatus.OK);
         } catch (DataAccessException exception) {
-            getErrorMessageForResponse(exception);
+            return getErrorMessageForResponse(exception);
         } catch (Exception exception) {
-            getErrorMessageInternal(exception);
+            return getErrorMessageInternal(exception);
         }
-        return new ResponseEntity(response, httpStatus);
     }
 
     /**
@@ -332,23 +376,28 @@ public class UserController {
      */
     @PostMapping(path = "/api/v1/login")
     public ResponseEntity<Response> login(@RequestBody LoginData loginData, Session session) {
-        response.restart();
         try {
-            User user = this.userService.findByUsername(loginData.getUsername());
-            if (user.getUsername() != null) {
-                response.message = "Session iniciada";
-                response.data = loginData;
-                httpStatus = HttpStatus.OK;
-                userService.createSession(loginData, user, session);
-            } else {
-                response.message = "El usuario no se encuentra registrado";
+            Optional<UserCredentials> credentials = userService.findCredentials(loginData.getUsername());
+            if (credentials.isEmpty()) {
+                return new ResponseEntity<>(
+                        Response.error("El usuario no se encuentra registrado", null),
+                        HttpStatus.NOT_FOUND);
             }
+            if (!userService.checkPassword(loginData, credentials.get())) {
+                return new ResponseEntity<>(Response.error("Credenciales inválidas", null), HttpStatus.UNAUTHORIZED);
+            }
+            Session created = userService.createSession(loginData, credentials.get().getId(), session);
+            Map<String, String> data = new LinkedHashMap<>();
+            data.put("username", credentials.get().getUsername());
+            data.put("token", created.getToken());
+            return new ResponseEntity<>(Response.ok("Session iniciada", data), HttpStatus.OK);
+        } catch (RejectedExecutionException exception) {
+            return getErrorMessageUnavailable(exception);
         } catch (DataAccessException exception) {
-            getErrorMessageForResponse(exception);
+            return getErrorMessageForResponse(exception);
         } catch (Exception exception) {
-            getErrorMessageInternal(exception);
+            return getErrorMessageInternal(exception);
         }
-        return new ResponseEntity(response, httpStatus);
     }
 
     /**
@@ -360,20 +409,12 @@ public class UserController {
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
+    @TokenRequired
     @GetMapping(path = "/api/v1/token")
     public ResponseEntity<Response> getToken(@RequestHeader("Authorization") String authorization) {
-        response.restart();
-        try {
-            response.message = "Todo OK - TOKEN";
-            response.data = authorization.replace("Bearer ", "");
-            userService.getListSession();
-            httpStatus = HttpStatus.OK;
-        } catch (DataAccessException exception) {
-            getErrorMessageForResponse(exception);
-        } catch (Exception exception) {
-            getErrorMessageInternal(exception);
-        }
-        return new ResponseEntity(response, httpStatus);
+        return new ResponseEntity<>(
+                Response.ok("Todo OK - TOKEN", authorization.replace("Bearer ", "")),
+                HttpStatus.OK);
     }
 
     /**
@@ -386,40 +427,27 @@ public class UserController {
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
+    @TokenRequired
     @PatchMapping(path = "/api/v1/user/{id}/username")
     public ResponseEntity<Response> updateUsername(
-            @RequestHeader ("Authorization") String authorization,
+            @RequestAttribute(TokenInterceptor.AUTHENTICATED_USER) Integer authenticatedUser,
             @RequestBody User user,
             @PathVariable(value="id") User id
     ) {
-        response.restart();
         try {
-            Set<Session> tokens = userService.findUserSession(id);
-            List<Session> userToken = new ArrayList<>(tokens);
-            boolean match = false;
-            for (Session token: userToken) {
-                if (Objects.equals(token.getToken(), authorization)) {
-                    response.data = userService.updateUsername(userToken.get(0).getSesUser().getId(), user);
-                    response.message = "Nombre de usuario actualizado";
-                    httpStatus = HttpStatus.OK;
-                    match = true;
-                }
+            if (!Objects.equals(authenticatedUser, id.getId())) {
+                return getErrorMessageUnauthorized();
             }
-            if (!match) {
-                response.error = true;
-                response.message = "No existe token activo";
-                httpStatus = HttpStatus.UNAUTHORIZED;
-            } else if (response.data == null) {
-                response.error = true;
-                response.message = "La session no existe";
-                httpStatus = HttpStatus.NOT_FOUND;
+            User updated = userService.updateUsername(id.getId(), user);
+            if (updated == null) {
+                return new ResponseEntity<>(Response.error("La session no existe", null), HttpStatus.NOT_FOUND);
             }
+            return new ResponseEntity<>(Response.ok("Nombre de usuario actualizado", updated), HttpStatus.OK);
         } catch (DataAccessException exception) {
-            getErrorMessageForResponse(exception);
+            return getErrorMessageForResponse(exception);
         } catch (Exception exception) {
-            getErrorMessageInternal(exception);
+            return getErrorMessageInternal(exception);
         }
-        return new ResponseEntity(response, httpStatus);
     }
 
     /**
@@ -432,40 +460,29 @@ public class UserController {
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
+    @TokenRequired
     @PatchMapping(path = "/api/v1/user/{id}/password")
     public ResponseEntity<Response> updatePassword(
-            @RequestHeader("Authorization") String authorization,
+            @RequestAttribute(TokenInterceptor.AUTHENTICATED_USER) Integer authenticatedUser,
             @RequestBody User user,
             @PathVariable(value="id") User id
     ) {
-        response.restart();
         try {
-            Set<Session> tokens = userService.findUserSession(id);
-            List<Session> userToken = new ArrayList<>(tokens);
-            boolean match = false;
-            for (Session token: userToken) {
-                if (Objects.equals(token.getToken(), authorization)) {
-                    response.data = userService.updatePassword(userToken.get(0).getId(), user);
-                    response.message = "Contraseña de usuario actualizado";
-                    httpStatus = HttpStatus.OK;
-                    match = true;
-                }
+            if (!Objects.equals(authenticatedUser, id.getId())) {
+                return getErrorMessageUnauthorized();
             }
-            if (!match) {
-                response.error = true;
-                response.message = "No existe token activo";
-                httpStatus = HttpStatus.UNAUTHORIZED;
-            } else if (response.data == null) {
-                response.error = true;
-                response.message = "La session no existe";
-                httpStatus = HttpStatus.NOT_FOUND;
+            User updated = userService.updatePassword(id.getId(), user);
+            if (updated == null) {
+                return new ResponseEntity<>(Response.error("La session no existe", null), HttpStatus.NOT_FOUND);
             }
+            return new ResponseEntity<>(Response.ok("Contraseña de usuario actualizado", updated), HttpStatus.OK);
+        } catch (RejectedExecutionException exception) {
+            return getErrorMessageUnavailable(exception);
         } catch (DataAccessException exception) {
-            getErrorMessageForResponse(exception);
+            return getErrorMessageForResponse(exception);
         } catch (Exception exception) {
-            getErrorMessageInternal(exception);
+            return getErrorMessageInternal(exception);
         }
-        return new ResponseEntity(response, httpStatus);
     }
 
 
@@ -478,45 +495,29 @@ public class UserController {
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
+    @TokenRequired
     @DeleteMapping(path = "/api/v1/user/{id}")
     public ResponseEntity<Response> deleteUser(
-            @RequestHeader("Authorization") String authorization,
+            @RequestAttribute(TokenInterceptor.AUTHENTICATED_USER) Integer authenticatedUser,
             @PathVariable(value="id") User id) {
-        response.restart();
         try {
             Optional<User> us = userService.findUser(id);
-            if (us.isEmpty()){
-                response.error = true;
-                response.message = "El usuario no existe";
-                httpStatus = HttpStatus.NOT_FOUND;
-            } else {
-                Set<Session> tokens = userService.findUserSession(id);
-                List<Session> userToken = new ArrayList<>(tokens);
-                boolean match = false;
-                for (Session token: userToken) {
-                    if (Objects.equals(token.getToken(), authorization)) {
-                        response.data = userService.deleteUser(userToken.get(0).getSesUser().getId());
-                        response.message = "El usuario fue removido exitosamente";
-                        httpStatus = HttpStatus.OK;
-                        match = true;
-                    }
-                }
-                if (!match) {
-                    response.error = true;
-                    response.message = "No existe token activo";
-                    httpStatus = HttpStatus.UNAUTHORIZED;
-                } else if (response.data == null) {
-                    response.error = true;
-                    response.message = "El usuario no existe";
-                    httpStatus = HttpStatus.NOT_FOUND;
-                }
+            if (us.isEmpty()) {
+                return new ResponseEntity<>(Response.error("El usuario no existe", null), HttpStatus.NOT_FOUND);
+            }
+            if (!Objects.equals(authenticatedUser, id.getId())) {
+                return getErrorMessageUnauthorized();
             }
+            User deleted = userService.deleteUser(id.getId());
+            if (deleted == null) {
+                return new ResponseEntity<>(Response.error("El usuario no existe", null), HttpStatus.NOT_FOUND);
+            }
+            return new ResponseEntity<>(Response.ok("El usuario fue removido exitosamente", deleted), HttpStatus.OK);
         } catch (DataAccessException exception) {
-            getErrorMessageForResponse(exception);
+            return getErrorMessageForResponse(exception);
         } catch (Exception exception) {
-            getErrorMessageInternal(exception);
+            return getErrorMessageInternal(exception);
         }
-        return new ResponseEntity(response, httpStatus);
     }
 
 
@@ -524,52 +525,42 @@ public class UserController {
     /**
      * Index de descargas, responde con el listado de descargas
      *
+     * @param cursor Cursor opaco de la página anterior, se omite para la primera página
+     * @param size Número de elementos por página
      * @return Objeto Response en formato JSON
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
+    @TokenRequired
     @GetMapping(path = "/api/v1/downloads")
-    public ResponseEntity<Response> download(@RequestHeader("Authorization") String authorization) {
-        response.restart();
+    public ResponseEntity<Response> download(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size) {
         try {
-            List<Session> tokens = userService.getListSession();
-            boolean match = false;
-            for (Session token: tokens) {
-                if (Objects.equals(token.getToken(), authorization)) {
-                    List<Download> downloads = userService.getListDownload();
-                    List<Map<String, String>> downloads1 = new ArrayList<>();
-                    for (Download x: downloads) {
-                        Integer idDownload = x.getId();
-                        String productDownload = x.getDwnProduct().getProduct();
-                        String userDownload = x.getDwnUser().getUsername();
-                        String createdDownload = x.getCreatedAt().toString();
-                        Map<String, String> map = new LinkedHashMap<>();
-                        map.put("id", String.valueOf(idDownload));
-                        map.put("product", productDownload);
-                        map.put("user", userDownload);
-                        map.put("createdAt", createdDownload);
-                        downloads1.add(map);
-                    }
-                    response.data = downloads1;
-                    response.message= "Lista de descargas";
-                    httpStatus = HttpStatus.OK;
-                    match = true;
-                }
-            }
-            if (!match) {
-                response.error = true;
-                response.message = "No existe token activo";
-                httpStatus = HttpStatus.UNAUTHORIZED;
-            } else if (response.data == null) {
-                response.error = true;
-                response.message = "El usuario no existe";
-                httpStatus = HttpStatus.NOT_FOUND;
-            }
+            KeysetPage<Map<String, String>> downloads = userService.getListDownload(cursor, size).map(this::toDownloadMap);
+            return new ResponseEntity<>(Response.ok("Lista de descargas", downloads), HttpStatus.OK);
+        } catch (IllegalArgumentException exception) {
+            return getErrorMessageBadRequest(exception);
         } catch (Exception exception) {
-            getErrorMessageInternal(exception);
+            return getErrorMessageInternal(exception);
         }
-        return new ResponseEntity(response, httpStatus);
+    }
+
+    /**
+     * Listado completo de descargas, escrito fila por fila a medida que se lee de la base de datos.
+     * Responde 503 si ya hay demasiados listados en curso; si se cumple el tiempo máximo del listado
+     * la respuesta termina con un JSON incompleto, ver {@link ResponseStreams}
+     *
+     * @return Respuesta con el listado en formato JSON
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @TokenRequired
+    @GetMapping(path = "/api/v1/downloads/stream")
+    public ResponseEntity<StreamingResponseBody> streamDownloads() {
+        return responseStreams.open(userService::streamDownloads);
     }
 
     /**
@@ -581,45 +572,41 @@ public class UserController {
      * @since 1.0.0
      * @param id
      */
+    @TokenRequired
     @GetMapping(path = "/api/v1/download/{id}")
-    public ResponseEntity<Response> findDownload(
-            @RequestHeader("Authorization") String authorization,
-            @PathVariable(value="id") Download id) {
-        response.restart();
+    public ResponseEntity<Response> findDownload(@PathVariable(value="id") Download id) {
         try {
-            List<Session> tokens = userService.getListSession();
-            boolean match = false;
-            for (Session token: tokens) {
-                if (Objects.equals(token.getToken(), authorization)) {
-                    List<Download> downloads = userService.findDownload(id).stream().toList();
-                    Map<String, String> downloads1 = new LinkedHashMap<>();
-                    Integer idDownload = downloads.get(0).getId();
-                    String productDownload = downloads.get(0).getDwnProduct().getProduct();
-                    String userDownload = downloads.get(0).getDwnUser().getUsername();
-                    String createdDownload = downloads.get(0).getCreatedAt().toString();
-                    downloads1.put("id", String.valueOf(idDownload));
-                    downloads1.put("product", productDownload);
-                    downloads1.put("user", userDownload);
-                    downloads1.put("createdAt", createdDownload);
-                    response.data = downloads1;
-                    response.message = "Lista de descargas";
-                    httpStatus = HttpStatus.OK;
-                    match = true;
-                }
-            }
-            if (!match) {
-                response.error = true;
-                response.message = "No existe token activo";
-                httpStatus = HttpStatus.UNAUTHORIZED;
-            }
+            List<Download> downloads = userService.findDownload(id).stream().toList();
+            return new ResponseEntity<>(Response.ok("Lista de descargas", toDownloadMap(downloads.get(0))), HttpStatus.OK);
         } catch (Exception exception) {
-            getErrorMessageInternal(exception);
+            return getErrorMessageInternal(exception);
         }
-        return new ResponseEntity(response, httpStatus);
     }
 
     /**
-     * Crea una nueva descarga en el sistema
+     * Convierte una descarga en el mapa que responde el API
+     *
+     * @param download Objeto descarga
+     * @return Mapa con el identificador, el producto, el usuario y la fecha de la descarga
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    private Map<String, String> toDownloadMap(Download download) {
+        Map<String, String> map = new LinkedHashMap<>();
+        map.put("id", String.valueOf(download.getId()));
+        map.put("product", download.getDwnProduct().getProduct());
+        map.put("user", download.getDwnUser().getUsername());
+        map.put("createdAt", download.getCreatedAt().toString());
+        return map;
+    }
+
+    /**
+     * Crea una nueva descarga en el sistema. En modo write-behind la descarga queda en la cola de
+     * escritura y se responde 202 sin identificador, igual que cuando la base de datos no responde y
+     * la descarga queda en el diario local. Si el mismo usuario ya descargó el producto dentro de la
+     * ventana de repetidos no se escribe otra vez y se responde 200 con la descarga existente, sin
+     * identificador si todavía no se escribe en la tabla
      *
      * @param download Objeto descarga a crear
      * @return Objeto Response en formato JSON
@@ -627,35 +614,44 @@ public class UserController {
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
+    @TokenRequired
     @PostMapping(path = "/api/v1/download")
     public ResponseEntity<Response> createDownload(
-            @RequestHeader("Authorization") String authorization,
+            @RequestAttribute(TokenInterceptor.AUTHENTICATED_USER) Integer authenticatedUser,
             @RequestBody Download download) {
-        response.restart();
         try {
-            Set<Session> tokens = userService.findUserSession(download.getDwnUser());
-            List<Session> userToken = new ArrayList<>(tokens);
-            boolean match = false;
-            for (Session token: userToken) {
-                if (Objects.equals(token.getToken(), authorization)) {
-                    log.info("Descarga a crear: {}", download);
-                    response.data = userService.createDownload(download);
-                    response.message= "Descarga realizada";
-                    httpStatus = HttpStatus.CREATED;
-                    match = true;
-                }
-            }
+            boolean match = download.getDwnUser() != null
+                    && Objects.equals(authenticatedUser, download.getDwnUser().getId());
             if (!match) {
-                response.error = true;
-                response.message = "No existe token activo";
-                httpStatus = HttpStatus.UNAUTHORIZED;
+                return getErrorMessageUnauthorized();
+            }
+            log.info("Descarga a crear: {}", download);
+            Optional<Download> recent = duplicateDownloads.findRecent(download);
+            if (recent.isPresent()) {
+                download.setId(recent.get().getId());
+                download.setCreatedAt(recent.get().getCreatedAt());
+                return new ResponseEntity<>(Response.ok("Descarga ya registrada", download), HttpStatus.OK);
+            }
+            if (downloadRecorder.isWriteBehind()) {
+                Download recorded = downloadRecorder.record(download);
+                duplicateDownloads.onDownloadAccepted(recorded);
+                return new ResponseEntity<>(Response.ok("Descarga registrada", recorded), HttpStatus.ACCEPTED);
+            }
+            Download created = userService.createDownload(download);
+            if (created.getId() == null) {
+                duplicateDownloads.onDownloadAccepted(created);
+                return new ResponseEntity<>(Response.ok("Descarga registrada", created), HttpStatus.ACCEPTED);
             }
+            return new ResponseEntity<>(Response.ok("Descarga realizada", created), HttpStatus.CREATED);
+        } catch (IllegalArgumentException exception) {
+            return getErrorMessageBadRequest(exception);
+        } catch (RejectedExecutionException exception) {
+            return getErrorMessageUnavailable(exception);
         } catch (DataAccessException exception) {
-            getErrorMessageForResponse(exception);
+            return getErrorMessageForResponse(exception);
         } catch (Exception exception) {
-            getErrorMessageInternal(exception);
+            return getErrorMessageInternal(exception);
         }
-        return new ResponseEntity(response, httpStatus);
     }
 
 
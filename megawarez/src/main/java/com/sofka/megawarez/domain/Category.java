@@ -1,9 +1,10 @@
 package com.sofka.megawarez.domain;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
-import com.fasterxml.jackson.annotation.JsonManagedReference;
+import com.sofka.megawarez.repository.PooledSequenceGenerator;
 import lombok.*;
 import org.hibernate.Hibernate;
+import org.hibernate.annotations.GenericGenerator;
 
 import javax.persistence.*;
 import java.io.Serializable;
@@ -15,6 +16,10 @@ import java.util.Objects;
 /**
  * Entidad de la categoria
  *
+ * El hash usa el identificador y, mientras no hay identificador, la identidad del objeto, así
+ * que cambia cuando persist() asigna el identificador: una categoría nueva no debe estar en un HashSet
+ * ni ser llave de un HashMap mientras se guarda
+ *
  * @version 1.0.0 2022-03-31
  * @author Ricardo Ortega <tattortega.28@gmail.com>
  * @since 1.0.0
@@ -24,7 +29,10 @@ import java.util.Objects;
 @ToString
 @RequiredArgsConstructor
 @Entity
-@Table(name = "category")
+@Table(name = "category", indexes = {
+        @Index(name = "cat_name_INDEX", columnList = "cat_name"),
+        @Index(name = "cat_created_at_INDEX", columnList = "cat_created_at")
+})
 public class Category implements Serializable {
 
     /**
@@ -36,7 +44,8 @@ public class Category implements Serializable {
      * Identificador de la tupla
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "category_seq")
+    @GenericGenerator(name = "category_seq", strategy = PooledSequenceGenerator.STRATEGY)
     @Column(name = "cat_id", nullable = false)
     private Integer id;
 
@@ -55,12 +64,12 @@ public class Category implements Serializable {
     /**
      * Punto de enlace entre la entidad de Categoria y Subcategoria (una categoria puede tener muchas subcategorias)
      */
-    @OneToMany(fetch = FetchType.EAGER,
+    @OneToMany(fetch = FetchType.LAZY,
             targetEntity = Subcategory.class,
             cascade = CascadeType.REMOVE,
             mappedBy = "scatCategory")
-    @JsonManagedReference
     @JsonIgnore
+    @ToString.Exclude
     private List<Subcategory> subcategories = new ArrayList<>();
 
     @Override
@@ -68,11 +77,11 @@ public class Category implements Serializable {
         if (this == o) return true;
         if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) return false;
         Category category = (Category) o;
-        return id != null && Objects.equals(id, category.id);
+        return id != null && Objects.equals(id, category.getId());
     }
 
     @Override
     public int hashCode() {
-        return getClass().hashCode();
+        return id != null ? id.hashCode() : System.identityHashCode(this);
     }
 }
\ No newline at end of file
@@ -4,8 +4,10 @@ import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
+import com.sofka.megawarez.repository.PooledSequenceGenerator;
 import lombok.*;
 import org.hibernate.Hibernate;
+import org.hibernate.annotations.GenericGenerator;
 
 import javax.persistence.*;
 import java.io.Serializable;
@@ -15,6 +17,10 @@ import java.util.Objects;
 /**
  * Entidad de la descarga
  *
+ * El hash usa el identificador y, mientras no hay identificador, la identidad del objeto, así
+ * que cambia cuando persist() asigna el identificador: una descarga nueva no debe estar en un HashSet
+ * ni ser llave de un HashMap mientras se guarda
+ *
  * @version 1.0.0 2022-03-31
  * @author Ricardo Ortega <tattortega.28@gmail.com>
  * @since 1.0.0
@@ -24,7 +30,15 @@ import java.util.Objects;
 @ToString
 @RequiredArgsConstructor
 @Entity
-@Table(name = "download")
+@NamedEntityGraph(name = "Download.productAndUser", attributeNodes = {
+        @NamedAttributeNode("dwnProduct"),
+        @NamedAttributeNode("dwnUser")
+})
+@Table(name = "download", indexes = {
+        @Index(name = "dwn_created_at_INDEX", columnList = "dwn_created_at"),
+        @Index(name = "dwn_user_product_INDEX", columnList = "dwn_user_id, dwn_product_id, dwn_created_at"),
+        @Index(name = "dwn_journal_UNIQUE", columnList = "dwn_journal_node, dwn_journal_seq", unique = true)
+})
 public class Download implements Serializable {
 
 
@@ -37,7 +51,8 @@ public class Download implements Serializable {
      * Identificador de la tupla
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "download_seq")
+    @GenericGenerator(name = "download_seq", strategy = PooledSequenceGenerator.STRATEGY)
     @Column(name = "dwn_id", nullable = false)
     private Integer id;
 
@@ -65,16 +80,30 @@ public class Download implements Serializable {
     @Column(name = "dwn_created_at", nullable = false)
     private Instant createdAt;
 
+    /**
+     * Época del diario local si la descarga se registró mientras la base de datos no respondía
+     */
+    @Column(name = "dwn_journal_node", length = 36)
+    @JsonIgnore
+    private String journalNode;
+
+    /**
+     * Secuencia dentro de la época del diario local
+     */
+    @Column(name = "dwn_journal_seq")
+    @JsonIgnore
+    private Long journalSeq;
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) return false;
         Download download = (Download) o;
-        return id != null && Objects.equals(id, download.id);
+        return id != null && Objects.equals(id, download.getId());
     }
 
     @Override
     public int hashCode() {
-        return getClass().hashCode();
+        return id != null ? id.hashCode() : System.identityHashCode(this);
     }
 }
\ No newline at end of file
@@ -2,9 +2,12 @@ package com.sofka.megawarez.domain;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.fasterxml.jackson.annotation.JsonIgnore;
-import com.fasterxml.jackson.annotation.JsonManagedReference;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.sofka.megawarez.repository.PooledSequenceGenerator;
 import lombok.*;
 import org.hibernate.Hibernate;
+import org.hibernate.annotations.GenericGenerator;
 
 import javax.persistence.*;
 import java.io.Serializable;
@@ -17,6 +20,10 @@ import java.util.Objects;
 /**
  * Entidad del producto
  *
+ * El hash usa el identificador y, mientras no hay identificador, la identidad del objeto, así
+ * que cambia cuando persist() asigna el identificador: un producto nuevo no debe estar en un HashSet
+ * ni ser llave de un HashMap mientras se guarda
+ *
  * @version 1.0.0 2022-03-31
  * @author Ricardo Ortega <tattortega.28@gmail.com>
  * @since 1.0.0
@@ -26,7 +33,11 @@ import java.util.Objects;
 @ToString
 @RequiredArgsConstructor
 @Entity
-@Table(name = "product")
+@Table(name = "product", indexes = {
+        @Index(name = "prd_name_INDEX", columnList = "prd_name"),
+        @Index(name = "prd_created_at_INDEX", columnList = "prd_created_at"),
+        @Index(name = "prd_download_count_INDEX", columnList = "prd_download_count, prd_id")
+})
 public class Product implements Serializable {
 
     /**
@@ -38,7 +49,8 @@ public class Product implements Serializable {
      * Identificador de la tupla
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_seq")
+    @GenericGenerator(name = "product_seq", strategy = PooledSequenceGenerator.STRATEGY)
     @Column(name = "prd_id", nullable = false)
     private Integer id;
 
@@ -72,16 +84,33 @@ public class Product implements Serializable {
     @Column(name = "prd_updated_at")
     private Instant updatedAt;
 
+    /**
+     * Número de descargas del producto. Solo lo modifica {@code DownloadCounter} con sumas sobre el
+     * valor de la tabla, por eso no se incluye en las actualizaciones de la entidad
+     */
+    @Column(name = "prd_download_count", nullable = false, updatable = false)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long downloadCount = 0L;
+
+    /**
+     * Verdadero si el usuario autenticado ya descargó el producto. No se guarda; lo marca
+     * {@code DownloadedProducts} en los listados y se omite cuando la petición no trae token
+     */
+    @Transient
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Boolean downloaded;
+
     /**
      * Punto de enlace entre la entidad del Producto y Descarga (un producto puede tener muchas descargas)
      */
     @OneToMany(
-            fetch = FetchType.EAGER,
+            fetch = FetchType.LAZY,
             targetEntity = Download.class,
             cascade = CascadeType.REMOVE,
             mappedBy = "dwnProduct")
-    @JsonManagedReference(value = "second")
     @JsonIgnore
+    @ToString.Exclude
     private List<Download> downloads = new ArrayList<>();
 
     @Override
@@ -89,11 +118,11 @@ public class Product implements Serializable {
         if (this == o) return true;
         if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) return false;
         Product product = (Product) o;
-        return id != null && Objects.equals(id, product.id);
+        return id != null && Objects.equals(id, product.getId());
     }
 
     @Override
     public int hashCode() {
-        return getClass().hashCode();
+        return id != null ? id.hashCode() : System.identityHashCode(this);
     }
 }
\ No newline at end of file
@@ -0,0 +1,72 @@
+package com.sofka.megawarez.domain;
+
+import lombok.*;
+import org.hibernate.Hibernate;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Entidad con el estimador de usuarios distintos que descargaron un producto
+ *
+ * Se guarda aparte de la tabla product para no leer el estimador en cada consulta de productos, y
+ * sin llave foránea para que borrar un producto no dependa de esta tabla
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@Getter
+@Setter
+@ToString
+@RequiredArgsConstructor
+@Entity
+@Table(name = "product_downloaders")
+public class ProductDownloaders implements Serializable {
+
+    /**
+     * Variable usada para manejar el tema del identificador de la tupla (consecutivo)
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Identificador del producto
+     */
+    @Id
+    @Column(name = "pdl_product_id", nullable = false)
+    private Integer productId;
+
+    /**
+     * Estimador HyperLogLog en forma binaria
+     */
+    @Column(name = "pdl_sketch", nullable = false, length = 4096)
+    @ToString.Exclude
+    private byte[] sketch;
+
+    /**
+     * Usuarios distintos estimados al guardar el estimador
+     */
+    @Column(name = "pdl_estimate", nullable = false)
+    private Long estimate;
+
+    /**
+     * Fecha y hora en que la tupla ha sido actualizada
+     */
+    @Column(name = "pdl_updated_at", nullable = false)
+    private Instant updatedAt;
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) return false;
+        ProductDownloaders downloaders = (ProductDownloaders) o;
+        return productId != null && Objects.equals(productId, downloaders.getProductId());
+    }
+
+    @Override
+    public int hashCode() {
+        return productId != null ? productId.hashCode() : System.identityHashCode(this);
+    }
+}
@@ -0,0 +1,68 @@
+package com.sofka.megawarez.domain;
+
+import lombok.*;
+import org.hibernate.Hibernate;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Entidad de un token firmado revocado antes de su vencimiento
+ *
+ * Se identifica por el valor aleatorio del token y se guarda solo hasta el vencimiento del token,
+ * para que todos los nodos, y un nodo que se reinicia, rechacen los tokens de las sesiones cerradas
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@Getter
+@Setter
+@ToString
+@RequiredArgsConstructor
+@Entity
+@Table(name = "revoked_token", indexes = {
+        @Index(name = "rvk_expires_at_INDEX", columnList = "rvk_expires_at"),
+        @Index(name = "rvk_revoked_at_INDEX", columnList = "rvk_revoked_at")
+})
+public class RevokedToken implements Serializable {
+
+    /**
+     * Variable usada para manejar el tema del identificador de la tupla (consecutivo)
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Valor aleatorio del token revocado
+     */
+    @Id
+    @Column(name = "rvk_nonce", nullable = false, length = 16)
+    private String nonce;
+
+    /**
+     * Fecha y hora de vencimiento del token
+     */
+    @Column(name = "rvk_expires_at", nullable = false)
+    private Instant expiresAt;
+
+    /**
+     * Fecha y hora en que se revocó el token
+     */
+    @Column(name = "rvk_revoked_at", nullable = false)
+    private Instant revokedAt;
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) return false;
+        RevokedToken revokedToken = (RevokedToken) o;
+        return nonce != null && Objects.equals(nonce, revokedToken.getNonce());
+    }
+
+    @Override
+    public int hashCode() {
+        return nonce != null ? nonce.hashCode() : System.identityHashCode(this);
+    }
+}
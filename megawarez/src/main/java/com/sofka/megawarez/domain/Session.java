@@ -1,8 +1,10 @@
 package com.sofka.megawarez.domain;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.sofka.megawarez.repository.PooledSequenceGenerator;
 import lombok.*;
 import org.hibernate.Hibernate;
+import org.hibernate.annotations.GenericGenerator;
 
 import javax.persistence.*;
 import java.io.Serializable;
@@ -12,6 +14,9 @@ import java.util.Objects;
 /**
  * Entidad de la Session
  *
+ * El hash se calcula con el token, que se asigna antes de guardar la sesión y no cambia, así que
+ * una sesión nueva puede estar en un conjunto antes y después de persist()
+ *
  * @version 1.0.0 2022-03-31
  * @author Ricardo Ortega <tattortega.28@gmail.com>
  * @since 1.0.0
@@ -21,7 +26,10 @@ import java.util.Objects;
 @ToString
 @RequiredArgsConstructor
 @Entity
-@Table(name = "session")
+@Table(name = "session", indexes = {
+        @Index(name = "ses_token_UNIQUE", columnList = "ses_token", unique = true),
+        @Index(name = "ses_created_at_INDEX", columnList = "ses_created_at")
+})
 public class Session implements Serializable {
 
     /**
@@ -33,7 +41,8 @@ public class Session implements Serializable {
      * Identificador de la tupla
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "session_seq")
+    @GenericGenerator(name = "session_seq", strategy = PooledSequenceGenerator.STRATEGY)
     @Column(name = "ses_id", nullable = false)
     private Integer id;
 
@@ -49,7 +58,7 @@ public class Session implements Serializable {
     /**
      * Token del usuario
      */
-    @Column(name = "ses_token", nullable = false, length = 32)
+    @Column(name = "ses_token", nullable = false, length = 128)
     private String token;
 
     /**
@@ -63,11 +72,11 @@ public class Session implements Serializable {
         if (this == o) return true;
         if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) return false;
         Session session = (Session) o;
-        return id != null && Objects.equals(id, session.id);
+        return id != null && Objects.equals(id, session.getId());
     }
 
     @Override
     public int hashCode() {
-        return getClass().hashCode();
+        return Objects.hashCode(getToken());
     }
 }
\ No newline at end of file
@@ -2,9 +2,10 @@ package com.sofka.megawarez.domain;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.fasterxml.jackson.annotation.JsonIgnore;
-import com.fasterxml.jackson.annotation.JsonManagedReference;
+import com.sofka.megawarez.repository.PooledSequenceGenerator;
 import lombok.*;
 import org.hibernate.Hibernate;
+import org.hibernate.annotations.GenericGenerator;
 
 import javax.persistence.*;
 import java.io.Serializable;
@@ -16,6 +17,10 @@ import java.util.Objects;
 /**
  * Entidad de la subcategoria
  *
+ * El hash usa el identificador y, mientras no hay identificador, la identidad del objeto, así
+ * que cambia cuando persist() asigna el identificador: una subcategoría nueva no debe estar en un HashSet
+ * ni ser llave de un HashMap mientras se guarda
+ *
  * @version 1.0.0 2022-03-31
  * @author Ricardo Ortega <tattortega.28@gmail.com>
  * @since 1.0.0
@@ -25,7 +30,10 @@ import java.util.Objects;
 @ToString
 @RequiredArgsConstructor
 @Entity
-@Table(name = "subcategory")
+@Table(name = "subcategory", indexes = {
+        @Index(name = "scat_name_INDEX", columnList = "scat_name"),
+        @Index(name = "scat_created_at_INDEX", columnList = "scat_created_at")
+})
 public class Subcategory implements Serializable {
 
     /**
@@ -37,7 +45,8 @@ public class Subcategory implements Serializable {
      * Identificador de la tupla
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "subcategory_seq")
+    @GenericGenerator(name = "subcategory_seq", strategy = PooledSequenceGenerator.STRATEGY)
     @Column(name = "scat_id", nullable = false)
     private Integer id;
 
@@ -65,12 +74,12 @@ public class Subcategory implements Serializable {
     /**
      * Punto de enlace entre la entidad de Subcategoria y Producto (una subcategoria puede tener muchos productos)
      */
-    @OneToMany(fetch = FetchType.EAGER,
+    @OneToMany(fetch = FetchType.LAZY,
             targetEntity = Product.class,
             cascade = CascadeType.REMOVE,
             mappedBy = "prdSubcategory")
-    @JsonManagedReference
     @JsonIgnore
+    @ToString.Exclude
     private List<Product> products = new ArrayList<>();
 
     @Override
@@ -78,11 +87,11 @@ public class Subcategory implements Serializable {
         if (this == o) return true;
         if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) return false;
         Subcategory that = (Subcategory) o;
-        return id != null && Objects.equals(id, that.id);
+        return id != null && Objects.equals(id, that.getId());
     }
 
     @Override
     public int hashCode() {
-        return getClass().hashCode();
+        return id != null ? id.hashCode() : System.identityHashCode(this);
     }
 }
\ No newline at end of file
@@ -2,9 +2,10 @@ package com.sofka.megawarez.domain;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.fasterxml.jackson.annotation.JsonIgnore;
-import com.fasterxml.jackson.annotation.JsonManagedReference;
+import com.sofka.megawarez.repository.PooledSequenceGenerator;
 import lombok.*;
 import org.hibernate.Hibernate;
+import org.hibernate.annotations.GenericGenerator;
 
 import javax.persistence.*;
 import java.io.Serializable;
@@ -14,6 +15,10 @@ import java.util.*;
 /**
  * Entidad del Usuario
  *
+ * El hash se calcula con el nombre de usuario, que es único y se asigna antes de guardar, así que
+ * un usuario nuevo puede estar en un conjunto antes y después de persist(). El nombre no se debe
+ * cambiar mientras el usuario está en un conjunto
+ *
  * @version 1.0.0 2022-03-31
  * @author Ricardo Ortega <tattortega.28@gmail.com>
  * @since 1.0.0
@@ -23,7 +28,11 @@ import java.util.*;
 @ToString
 @RequiredArgsConstructor
 @Entity
-@Table(name = "user")
+@NamedEntityGraph(name = "User.sessions", attributeNodes = @NamedAttributeNode("sessions"))
+@Table(name = "user", indexes = {
+        @Index(name = "use_username_UNIQUE", columnList = "use_username", unique = true),
+        @Index(name = "use_created_at_INDEX", columnList = "use_created_at")
+})
 public class User implements Serializable {
 
     /**
@@ -35,7 +44,8 @@ public class User implements Serializable {
      * Identificador de la tupla
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_seq")
+    @GenericGenerator(name = "user_seq", strategy = PooledSequenceGenerator.STRATEGY)
     @Column(name = "use_id", nullable = false)
     private Integer id;
 
@@ -67,24 +77,25 @@ public class User implements Serializable {
      * Punto de enlace entre la entidad del Usuario y Descarga (un usuario puede tener muchas descargas)
      */
     @OneToMany(
-            fetch = FetchType.EAGER,
+            fetch = FetchType.LAZY,
             targetEntity = Download.class,
             cascade = CascadeType.REMOVE,
             mappedBy = "dwnUser")
-    @JsonManagedReference
     @JsonIgnore
+    @ToString.Exclude
     private List<Download> downloads = new ArrayList<>();
 
     /**
-     * Punto de enlace entre la entidad del Usuario y Sesion (un usuario puede tener muchas sesiones abiertas)
+     * Punto de enlace entre la entidad del Usuario y Sesion (un usuario puede tener muchas sesiones abiertas).
+     * Las sesiones calculan su hash con el token, así que una sesión nueva se puede agregar antes de guardarla
      */
     @OneToMany(
-            fetch = FetchType.EAGER,
+            fetch = FetchType.LAZY,
             targetEntity = Session.class,
             cascade = CascadeType.REMOVE,
             mappedBy = "sesUser")
-    @JsonManagedReference
     @JsonIgnore
+    @ToString.Exclude
     private Set<Session> sessions = new LinkedHashSet<>();
 
     @Override
@@ -92,11 +103,11 @@ public class User implements Serializable {
         if (this == o) return true;
         if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) return false;
         User user = (User) o;
-        return id != null && Objects.equals(id, user.id);
+        return id != null && Objects.equals(id, user.getId());
     }
 
     @Override
     public int hashCode() {
-        return getClass().hashCode();
+        return Objects.hashCode(getUsername());
     }
 }
\ No newline at end of file
@@ -1,8 +1,85 @@
 package com.sofka.megawarez.repository;
 
 import com.sofka.megawarez.domain.Download;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.QueryHint;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 public interface DownloadRepository extends JpaRepository<Download, Integer> {
-}
\ No newline at end of file
+
+    /**
+     * Busca una descarga junto con su producto y su usuario en una sola consulta
+     *
+     * @param id Identificador de la descarga
+     * @return Optional con la descarga
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @EntityGraph(value = "Download.productAndUser")
+    public Optional<Download> findWithProductAndUserById(Integer id);
+
+    /**
+     * Recorre todas las descargas fila por fila. MySQL solo transmite las filas sin cargarlas
+     * todas en memoria cuando el fetch size es Integer.MIN_VALUE, y el Stream debe consumirse y
+     * cerrarse dentro de una transacción
+     *
+     * @return Stream de descargas ordenadas por identificador
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @QueryHints(value = {
+            @QueryHint(name = HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query(value = "SELECT new com.sofka.megawarez.repository.DownloadRow(dwn.id, prd.product, usr.username, dwn.createdAt) " +
+            "FROM Download dwn " +
+            "JOIN dwn.dwnProduct prd " +
+            "JOIN dwn.dwnUser usr " +
+            "ORDER BY dwn.id ASC")
+    public Stream<DownloadRow> streamAll();
+
+    /**
+     * Busca cuáles secuencias de una época del diario local ya fueron escritas en la tabla
+     *
+     * @param journalNode Época del diario
+     * @param journalSeqs Secuencias del diario
+     * @return Secuencias ya existentes
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @Query(value = "SELECT dwn.journalSeq FROM Download dwn " +
+            "WHERE dwn.journalNode = :journalNode AND dwn.journalSeq IN :journalSeqs")
+    public List<Long> findJournalSeqIn(
+            @Param("journalNode") String journalNode,
+            @Param("journalSeqs") Collection<Long> journalSeqs);
+
+    /**
+     * Busca la descarga más reciente de un usuario y un producto posterior a una fecha, usando el
+     * índice por usuario, producto y fecha
+     *
+     * @param userId Identificador del usuario
+     * @param productId Identificador del producto
+     * @param since Fecha a partir de la cual se busca
+     * @return Optional con la descarga
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public Optional<Download> findFirstByDwnUserIdAndDwnProductIdAndCreatedAtAfterOrderByCreatedAtDesc(
+            Integer userId, Integer productId, Instant since);
+}
@@ -0,0 +1,18 @@
+package com.sofka.megawarez.repository;
+
+import java.time.Instant;
+
+/**
+ * Fila de descarga para los listados completos, con el nombre del producto y del usuario
+ *
+ * @param id Identificador de la descarga
+ * @param product Nombre del producto descargado
+ * @param user Nombre del usuario que descargó
+ * @param createdAt Fecha y hora de la descarga
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+public record DownloadRow(Integer id, String product, String user, Instant createdAt) {
+}
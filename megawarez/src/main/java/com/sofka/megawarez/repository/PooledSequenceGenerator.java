@@ -0,0 +1,63 @@
+package com.sofka.megawarez.repository;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.config.spi.StandardConverters;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+/**
+ * Generador de identificadores por bloques respaldado en una tabla de secuencia por entidad
+ *
+ * Reserva un bloque de identificadores con una sola consulta a la tabla de secuencia y los entrega
+ * desde memoria (optimizador pooled-lo), de modo que Hibernate conoce el identificador antes del
+ * INSERT y puede agrupar varias inserciones en un mismo lote JDBC. El tamaño del bloque se toma de
+ * la propiedad {@value #ALLOCATION_SIZE}
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+public class PooledSequenceGenerator extends SequenceStyleGenerator {
+
+    /**
+     * Nombre de la estrategia para usar en @GenericGenerator
+     */
+    public static final String STRATEGY = "com.sofka.megawarez.repository.PooledSequenceGenerator";
+
+    /**
+     * Propiedad de Hibernate con el número de identificadores reservados por consulta
+     */
+    public static final String ALLOCATION_SIZE = "megawarez.id.allocation-size";
+
+    /**
+     * Número de identificadores reservados por consulta cuando no se configura
+     */
+    private static final int DEFAULT_ALLOCATION_SIZE = 50;
+
+    /**
+     * Configura el generador con una tabla de secuencia por entidad y el tamaño de bloque configurado
+     *
+     * @param type Tipo del identificador
+     * @param params Parámetros del generador
+     * @param serviceRegistry Registro de servicios de Hibernate
+     * @throws MappingException si la configuración no es válida
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        String allocationSize = serviceRegistry.getService(ConfigurationService.class)
+                .getSetting(ALLOCATION_SIZE, StandardConverters.STRING, String.valueOf(DEFAULT_ALLOCATION_SIZE));
+        params.setProperty(INCREMENT_PARAM, String.valueOf(Math.max(1, Integer.parseInt(allocationSize.trim()))));
+        params.setProperty(OPT_PARAM, StandardOptimizerDescriptor.POOLED_LO.getExternalName());
+        params.setProperty(CONFIG_PREFER_SEQUENCE_PER_ENTITY, "true");
+        params.setProperty(FORCE_TBL_PARAM, "true");
+        super.configure(type, params, serviceRegistry);
+    }
+}
@@ -0,0 +1,34 @@
+package com.sofka.megawarez.repository;
+
+import com.sofka.megawarez.domain.ProductDownloaders;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.LockModeType;
+import java.util.Optional;
+
+/**
+ * Repositorio para la entidad ProductDownloaders
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+public interface ProductDownloadersRepository extends JpaRepository<ProductDownloaders, Integer> {
+
+    /**
+     * Busca el estimador de un producto bloqueando su fila hasta el final de la transacción, para
+     * que dos nodos no pierdan la unión del otro
+     *
+     * @param productId Identificador del producto
+     * @return Optional con el estimador
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(value = "SELECT pdl FROM ProductDownloaders pdl WHERE pdl.productId = :productId")
+    public Optional<ProductDownloaders> findForUpdate(@Param("productId") Integer productId);
+}
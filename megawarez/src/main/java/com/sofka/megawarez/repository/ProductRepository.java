@@ -4,67 +4,72 @@ import com.sofka.megawarez.domain.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+
+import javax.persistence.QueryHint;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 public interface ProductRepository extends JpaRepository<Product, Integer> {
 
     /**
-     * Busca los productos que empiezan por X dato tanto por nombre
+     * Actualiza el nombre de un item basado en su identificador
      *
-     * @param data Dato a buscar
-     * @return Listado de productos encontrados
+     * @param id Identificador del producto
+     * @param product Nuevo nombre del producto
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
-    @Query(value = "SELECT prd " +
-            "FROM Product prd " +
-            "WHERE (prd.product LIKE :data%) " +
-            "ORDER BY prd.product ASC")
-    public List<Product> findByNombreStartingWith(@Param("data") String data);
+    @Modifying
+    @Query(value = "update Product prd set prd.product = :product, prd.updatedAt = CURRENT_TIMESTAMP where prd.id = :id")
+    public void updateProduct(@Param(value = "id") Integer id, @Param(value = "product") String product);
 
     /**
-     * Busca los productos que contienen X dato  por nombre
+     * Recorre todos los productos fila por fila. MySQL solo transmite las filas sin cargarlas
+     * todas en memoria cuando el fetch size es Integer.MIN_VALUE, y el Stream debe consumirse y
+     * cerrarse dentro de una transacción
      *
-     * @param data Dato a buscar
-     * @return Listado de productos encontrados
+     * @return Stream de productos ordenados por identificador
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
-    @Query(value = "SELECT prd " +
+    @QueryHints(value = {
+            @QueryHint(name = HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query(value = "SELECT new com.sofka.megawarez.repository.ProductRow(prd.id, prd.product, prd.createdAt, prd.updatedAt) " +
             "FROM Product prd " +
-            "WHERE prd.product LIKE %:data% " +
-            "ORDER BY prd.product ASC")
-    public List<Product> findByNombreContains(@Param("data") String data);
+            "ORDER BY prd.id ASC")
+    public Stream<ProductRow> streamAll();
 
     /**
-     * Busca los productos que finalizan por X dato por nombre
+     * Busca los identificadores de los productos de una subcategoría
      *
-     * @param data Dato a buscar
-     * @return Listado de productos encontrados
+     * @param subcategoryId Identificador de la subcategoría
+     * @return Identificadores de los productos
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
-    @Query(value = "SELECT prd " +
-            "FROM Product prd " +
-            "WHERE prd.product LIKE %:data " +
-            "ORDER BY prd.product ASC")
-    public List<Product> findByNombreEndingWith(@Param("data") String data);
+    @Query(value = "SELECT prd.id FROM Product prd WHERE prd.prdSubcategory.id = :subcategoryId")
+    public List<Integer> findIdsBySubcategoryId(@Param(value = "subcategoryId") Integer subcategoryId);
 
     /**
-     * Actualiza el nombre de un item basado en su identificador
+     * Busca los identificadores de los productos de todas las subcategorías de una categoría
      *
-     * @param id Identificador del producto
-     * @param product Nuevo nombre del producto
+     * @param categoryId Identificador de la categoría
+     * @return Identificadores de los productos
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
-    @Modifying
-    @Query(value = "update Product prd set prd.product = :product, prd.updatedAt = CURRENT_TIMESTAMP where prd.id = :id")
-    public void updateProduct(@Param(value = "id") Integer id, @Param(value = "product") String product);
+    @Query(value = "SELECT prd.id FROM Product prd WHERE prd.prdSubcategory.scatCategory.id = :categoryId")
+    public List<Integer> findIdsByCategoryId(@Param(value = "categoryId") Integer categoryId);
 
 }
@@ -0,0 +1,18 @@
+package com.sofka.megawarez.repository;
+
+import java.time.Instant;
+
+/**
+ * Fila de producto para los listados completos, sin subcategoria ni descargas
+ *
+ * @param id Identificador del producto
+ * @param product Nombre del producto
+ * @param createdAt Fecha y hora de creación
+ * @param updatedAt Fecha y hora de la última actualización
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+public record ProductRow(Integer id, String product, Instant createdAt, Instant updatedAt) {
+}
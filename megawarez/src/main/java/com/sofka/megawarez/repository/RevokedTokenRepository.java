@@ -0,0 +1,50 @@
+package com.sofka.megawarez.repository;
+
+import com.sofka.megawarez.domain.RevokedToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Repositorio para la entidad RevokedToken
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, String> {
+
+    /**
+     * Busca los tokens vigentes revocados a partir de una fecha usando el índice de rvk_revoked_at
+     *
+     * @param since Fecha desde la cual buscar revocaciones
+     * @param now Fecha y hora actual, los tokens vencidos se omiten
+     * @return Tokens revocados
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @Query(value = "SELECT rvk FROM RevokedToken rvk " +
+            "WHERE rvk.revokedAt >= :since AND rvk.expiresAt > :now")
+    public List<RevokedToken> findRevokedSince(@Param(value = "since") Instant since, @Param(value = "now") Instant now);
+
+    /**
+     * Borra los tokens revocados que ya vencieron usando el índice de rvk_expires_at
+     *
+     * @param now Fecha y hora actual
+     * @return Número de tokens borrados
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM RevokedToken rvk WHERE rvk.expiresAt <= :now")
+    public int deleteExpired(@Param(value = "now") Instant now);
+
+}
@@ -0,0 +1,79 @@
+package com.sofka.megawarez.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Ajusta las tablas de secuencia a los identificadores ya existentes
+ *
+ * Las tablas de datos creadas con identificadores autoincrementales ya tienen filas cuando se crea
+ * su tabla de secuencia, así que al iniciar se adelanta cada secuencia hasta el mayor identificador
+ * de su tabla. Se ejecuta antes de que la aplicación atienda peticiones
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+public class SequenceAlignment {
+
+    /**
+     * Fábrica de sesiones de Hibernate
+     */
+    private final SessionFactoryImplementor sessionFactory;
+
+    /**
+     * Acceso JDBC a la base de datos
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param entityManagerFactory Fábrica de manejadores de entidades
+     * @param jdbcTemplate Acceso JDBC a la base de datos
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public SequenceAlignment(EntityManagerFactory entityManagerFactory, JdbcTemplate jdbcTemplate) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Adelanta la secuencia de cada entidad hasta el mayor identificador de su tabla
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @PostConstruct
+    public void align() {
+        for (EntityPersister persister : sessionFactory.getMetamodel().entityPersisters().values()) {
+            IdentifierGenerator generator = persister.getIdentifierGenerator();
+            if (!(generator instanceof SequenceStyleGenerator) || !(persister instanceof AbstractEntityPersister)) {
+                continue;
+            }
+            String sequence = ((SequenceStyleGenerator) generator).getDatabaseStructure().getPhysicalName().render();
+            String table = ((AbstractEntityPersister) persister).getTableName();
+            String id = ((AbstractEntityPersister) persister).getIdentifierColumnNames()[0];
+            String max = "(SELECT COALESCE(MAX(" + id + "), 0) FROM " + table + ")";
+            int updated = jdbcTemplate.update(
+                    "UPDATE " + sequence + " SET " + SequenceStyleGenerator.DEF_VALUE_COLUMN + " = " + max + " + 1"
+                            + " WHERE " + SequenceStyleGenerator.DEF_VALUE_COLUMN + " <= " + max);
+            if (updated > 0) {
+                log.info("Secuencia {} ajustada al mayor identificador de {}", sequence, table);
+            }
+        }
+    }
+}
@@ -1,9 +1,63 @@
 package com.sofka.megawarez.repository;
 
 import com.sofka.megawarez.domain.Session;
+import com.sofka.megawarez.security.TokenOwner;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Repositorio para la entidad Session
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
 public interface SessionRepository extends JpaRepository<Session, Integer> {
 
-}
\ No newline at end of file
+    /**
+     * Busca una session por su token usando el índice único de ses_token
+     *
+     * @param token Token de la session
+     * @return Optional con la session encontrada
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public Optional<Session> findByToken(String token);
+
+    /**
+     * Busca el dueño de un token y la fecha de creación de la session sin cargar la entidad Usuario
+     *
+     * @param token Token de la session
+     * @return Optional con el dueño del token
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @Query(value = "SELECT new com.sofka.megawarez.security.TokenOwner(ses.sesUser.id, ses.createdAt) " +
+            "FROM Session ses " +
+            "WHERE ses.token = :token")
+    public Optional<TokenOwner> findOwnerByToken(@Param(value = "token") String token);
+
+    /**
+     * Borra un bloque de sesiones creadas antes de una fecha
+     *
+     * @param limit Fecha a partir de la cual una session se considera vigente
+     * @param chunk Número máximo de sesiones a borrar
+     * @return Número de sesiones borradas
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM session WHERE ses_created_at < :limit LIMIT :chunk", nativeQuery = true)
+    public int deleteCreatedBefore(@Param(value = "limit") Instant limit, @Param(value = "chunk") int chunk);
+
+}
@@ -0,0 +1,32 @@
+package com.sofka.megawarez.repository;
+
+/**
+ * Proyección con los datos de acceso de un usuario, sin sus descargas ni sesiones
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+public interface UserCredentials {
+
+    /**
+     * Identificador del usuario
+     *
+     * @return Identificador del usuario
+     */
+    Integer getId();
+
+    /**
+     * Nombre del usuario
+     *
+     * @return Nombre del usuario
+     */
+    String getUsername();
+
+    /**
+     * Hash de la contraseña del usuario
+     *
+     * @return Hash de la contraseña
+     */
+    String getPassword();
+}
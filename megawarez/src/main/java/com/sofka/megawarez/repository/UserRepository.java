@@ -1,11 +1,13 @@
 package com.sofka.megawarez.repository;
 
 import com.sofka.megawarez.domain.User;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
@@ -41,17 +43,41 @@ public interface UserRepository extends JpaRepository<User, Integer> {
      * @since 1.0.0
      */
     @Modifying
+    @Transactional
     @Query(value = "update User use set use.password = :password, use.updatedAt = CURRENT_TIMESTAMP where use.id = :id")
     public void updatePassword(@Param(value = "id") Integer id, @Param(value = "password") String password);
 
     /**
-     * Busca un usuario por el nombre
+     * Busca los datos de acceso de un usuario por el nombre, sin cargar sus descargas ni sesiones
+     *
+     * @param username Nombre del usuario
+     * @return Optional con los datos de acceso
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public Optional<UserCredentials> findCredentialsByUsername(String username);
+
+    /**
+     * Indica si existe un usuario con el nombre dado
+     *
      * @param username Nombre del usuario
-     * @return Optional
+     * @return Verdadero si el nombre ya está registrado
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
-    public Optional<User> findByUsername(String username);
+    public boolean existsByUsername(String username);
 
-}
\ No newline at end of file
+    /**
+     * Busca un usuario junto con sus sesiones en una sola consulta
+     *
+     * @param id Identificador del usuario
+     * @return Optional con el usuario y sus sesiones
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @EntityGraph(value = "User.sessions")
+    public Optional<User> findWithSessionsById(Integer id);
+}
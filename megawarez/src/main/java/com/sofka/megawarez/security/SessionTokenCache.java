@@ -0,0 +1,154 @@
+package com.sofka.megawarez.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Caché en memoria de tokens de session con tamaño acotado y expiración por tiempo
+ *
+ * Guarda el dueño de cada token para que los clientes frecuentes se autentiquen sin consultar la
+ * base de datos. Un token sale de memoria al cumplirse el tiempo configurado o al vencer la session,
+ * lo que ocurra primero. La expulsión usa W-TinyLFU y las métricas de aciertos, fallos y
+ * expulsiones se publican como "cache.*" con el nombre session.tokens
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@Component
+public class SessionTokenCache {
+
+    /**
+     * Caché de token a dueño del token
+     */
+    private final Cache<String, TokenOwner> cache;
+
+    /**
+     * Tiempo de vida de una session desde su creación
+     */
+    private final Duration lifetime;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param maximumSize Número máximo de tokens en memoria
+     * @param expireAfterWrite Tiempo de vida de un token en memoria desde que se guardó
+     * @param lifetime Tiempo de vida de una session desde su creación
+     * @param meterRegistry Registro de métricas
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public SessionTokenCache(
+            @Value("${megawarez.session.cache.maximum-size:100000}") long maximumSize,
+            @Value("${megawarez.session.cache.expire-after-write:PT15M}") Duration expireAfterWrite,
+            @Value("${megawarez.session.lifetime:PT24H}") Duration lifetime,
+            MeterRegistry meterRegistry) {
+        this.lifetime = lifetime;
+        cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<String, TokenOwner>() {
+                    @Override
+                    public long expireAfterCreate(String token, TokenOwner owner, long currentTime) {
+                        Duration remaining = Duration.between(Instant.now(), expiresAt(owner));
+                        return Math.max(0, Math.min(expireAfterWrite.toNanos(), remaining.toNanos()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String token, TokenOwner owner, long currentTime, long currentDuration) {
+                        return expireAfterCreate(token, owner, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String token, TokenOwner owner, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "session.tokens");
+    }
+
+    /**
+     * Devuelve el usuario dueño de un token vigente, consultando el cargador solo si no está en memoria
+     *
+     * @param token Token de la session
+     * @param loader Consulta a usar cuando el token no está en memoria
+     * @return Optional con el identificador del usuario
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public Optional<Integer> get(String token, Function<String, Optional<TokenOwner>> loader) {
+        return Optional.ofNullable(cache.get(token, key -> loader.apply(key).orElse(null)))
+                .filter(owner -> expiresAt(owner).isAfter(Instant.now()))
+                .map(TokenOwner::userId);
+    }
+
+    /**
+     * Guarda un token recién creado
+     *
+     * @param token Token de la session
+     * @param owner Dueño del token
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public void put(String token, TokenOwner owner) {
+        cache.put(token, owner);
+    }
+
+    /**
+     * Elimina tokens de la memoria cuando se confirma la transacción en curso
+     *
+     * Si se eliminaran antes, una petición concurrente podría volver a cargar la session que todavía
+     * se ve en la base de datos y dejarla en memoria hasta que expire. Sin transacción en curso se
+     * eliminan de inmediato
+     *
+     * @param tokens Tokens de las sessions borradas
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public void invalidateAfterCommit(Collection<String> tokens) {
+        if (tokens.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache.invalidateAll(tokens);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cache.invalidateAll(tokens);
+            }
+        });
+    }
+
+    /**
+     * Calcula el momento en que vence la session de un token
+     *
+     * @param owner Dueño del token
+     * @return Fecha y hora de vencimiento
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    private Instant expiresAt(TokenOwner owner) {
+        return owner.createdAt().plus(lifetime);
+    }
+}
@@ -0,0 +1,298 @@
+package com.sofka.megawarez.security;
+
+import com.sofka.megawarez.domain.RevokedToken;
+import com.sofka.megawarez.repository.RevokedTokenRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Emisión y verificación de tokens de session firmados con HMAC-SHA256
+ *
+ * El token lleva el identificador del usuario, la fecha de emisión y la fecha de vencimiento, de
+ * modo que cualquier nodo con la misma llave lo verifica sin consultar la base de datos. Los
+ * tokens cerrados antes de vencer se guardan en la tabla revoked_token hasta su vencimiento, y cada
+ * nodo mantiene en memoria una copia que carga completa al iniciar y actualiza cada
+ * megawarez.session.revocation.refresh-interval con las revocaciones recientes. La verificación no
+ * consulta la base de datos a cambio de que un cierre de session hecho en otro nodo se aplique con
+ * ese retraso; en el nodo que cierra la session se aplica de inmediato
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+public class SignedTokenService {
+
+    /**
+     * Algoritmo de firma
+     */
+    private static final String ALGORITHM = "HmacSHA256";
+
+    /**
+     * Modo de token que activa los tokens firmados
+     */
+    private static final String SIGNED_MODE = "signed";
+
+    /**
+     * Codificador Base64 para URL sin relleno
+     */
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    /**
+     * Decodificador Base64 para URL
+     */
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    /**
+     * Margen con que se vuelven a leer las revocaciones anteriores a la última lectura, para cubrir
+     * las transacciones confirmadas tarde y la diferencia de reloj entre nodos
+     */
+    private static final Duration REFRESH_OVERLAP = Duration.ofMinutes(1);
+
+    /**
+     * Generador de valores aleatorios para que cada token sea único
+     */
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * Copia local de los tokens revocados: valor aleatorio del token y su fecha de vencimiento
+     */
+    private final Map<String, Instant> revoked = new ConcurrentHashMap<>();
+
+    /**
+     * Repositorio de tokens revocados compartido por todos los nodos
+     */
+    private final RevokedTokenRepository revokedTokenRepository;
+
+    /**
+     * Fecha de la última lectura de revocaciones, nula hasta la primera
+     */
+    private Instant refreshedAt;
+
+    /**
+     * Indica si se emiten tokens firmados
+     */
+    private final boolean enabled;
+
+    /**
+     * Llave de firma
+     */
+    private final SecretKeySpec key;
+
+    /**
+     * Tiempo de vida de una session desde su creación
+     */
+    private final Duration lifetime;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param tokenMode Modo de token, opaque o signed
+     * @param signingKey Llave compartida por todos los nodos para firmar los tokens
+     * @param lifetime Tiempo de vida de una session desde su creación
+     * @param revokedTokenRepository Repositorio de tokens revocados
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public SignedTokenService(
+            @Value("${megawarez.session.token-mode:opaque}") String tokenMode,
+            @Value("${megawarez.session.signing-key:}") String signingKey,
+            @Value("${megawarez.session.lifetime:PT24H}") Duration lifetime,
+            RevokedTokenRepository revokedTokenRepository) {
+        this.enabled = SIGNED_MODE.equalsIgnoreCase(tokenMode);
+        this.lifetime = lifetime;
+        this.revokedTokenRepository = revokedTokenRepository;
+        if (enabled && signingKey.length() < 32) {
+            throw new IllegalStateException("megawarez.session.signing-key debe tener al menos 32 caracteres");
+        }
+        this.key = enabled ? new SecretKeySpec(signingKey.getBytes(StandardCharsets.UTF_8), ALGORITHM) : null;
+    }
+
+    /**
+     * Indica si el sistema emite tokens firmados
+     *
+     * @return Verdadero si el modo de token es signed
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Indica si un token tiene el formato de un token firmado
+     *
+     * @param token Token a revisar
+     * @return Verdadero si el token es firmado
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public boolean isSignedToken(String token) {
+        return enabled && token.indexOf('.') > 0;
+    }
+
+    /**
+     * Emite un token firmado para un usuario
+     *
+     * @param userId Identificador del usuario
+     * @param issuedAt Fecha y hora de emisión
+     * @return Token firmado
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public String issue(Integer userId, Instant issuedAt) throws GeneralSecurityException {
+        byte[] nonce = new byte[8];
+        random.nextBytes(nonce);
+        String payload = userId + ":" + issuedAt.getEpochSecond() + ":"
+                + issuedAt.plus(lifetime).getEpochSecond() + ":" + ENCODER.encodeToString(nonce);
+        String encodedPayload = ENCODER.encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+        return encodedPayload + "." + ENCODER.encodeToString(sign(encodedPayload));
+    }
+
+    /**
+     * Verifica la firma, el vencimiento y la revocación de un token
+     *
+     * @param token Token a verificar
+     * @return Optional con el identificador del usuario si el token es válido
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public Optional<Integer> verify(String token) {
+        try {
+            int separator = token.indexOf('.');
+            String encodedPayload = token.substring(0, separator);
+            byte[] signature = DECODER.decode(token.substring(separator + 1));
+            if (!MessageDigest.isEqual(signature, sign(encodedPayload))) {
+                return Optional.empty();
+            }
+            String[] claims = new String(DECODER.decode(encodedPayload), StandardCharsets.UTF_8).split(":");
+            if (revoked.containsKey(claims[3])) {
+                return Optional.empty();
+            }
+            Instant expiresAt = Instant.ofEpochSecond(Long.parseLong(claims[2]));
+            if (!expiresAt.isAfter(Instant.now())) {
+                return Optional.empty();
+            }
+            return Optional.of(Integer.valueOf(claims[0]));
+        } catch (GeneralSecurityException | RuntimeException exception) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Revoca un token firmado hasta su vencimiento, en este nodo de inmediato y en los demás al
+     * confirmarse la transacción en curso y leerse la revocación. Un token mal formado se ignora,
+     * nunca pasa la verificación y no hace falta revocarlo
+     *
+     * @param token Token a revocar
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public void revoke(String token) {
+        if (!isSignedToken(token)) {
+            return;
+        }
+        try {
+            String encodedPayload = token.substring(0, token.indexOf('.'));
+            String[] claims = new String(DECODER.decode(encodedPayload), StandardCharsets.UTF_8).split(":");
+            RevokedToken revokedToken = new RevokedToken();
+            revokedToken.setNonce(claims[3]);
+            revokedToken.setExpiresAt(Instant.ofEpochSecond(Long.parseLong(claims[2])));
+            revokedToken.setRevokedAt(Instant.now());
+            revoked.put(revokedToken.getNonce(), revokedToken.getExpiresAt());
+            revokedTokenRepository.save(revokedToken);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException exception) {
+            return;
+        }
+    }
+
+    /**
+     * Carga al iniciar todas las revocaciones vigentes
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @PostConstruct
+    public void loadRevoked() {
+        refreshRevoked();
+    }
+
+    /**
+     * Agrega a la copia local las revocaciones hechas desde la última lectura en cualquier nodo
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @Scheduled(
+            initialDelayString = "${megawarez.session.revocation.refresh-interval:PT5S}",
+            fixedDelayString = "${megawarez.session.revocation.refresh-interval:PT5S}")
+    public void refreshRevoked() {
+        if (!enabled) {
+            return;
+        }
+        Instant now = Instant.now();
+        Instant since = refreshedAt == null ? Instant.EPOCH : refreshedAt.minus(REFRESH_OVERLAP);
+        try {
+            revokedTokenRepository.findRevokedSince(since, now)
+                    .forEach(revokedToken -> revoked.put(revokedToken.getNonce(), revokedToken.getExpiresAt()));
+            refreshedAt = now;
+        } catch (DataAccessException exception) {
+            log.warn("No se pudieron leer los tokens revocados, se reintenta en la siguiente ejecución: {}",
+                    exception.getMessage());
+        }
+    }
+
+    /**
+     * Elimina de la copia local y de la tabla revoked_token los tokens que ya vencieron
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @Scheduled(fixedDelayString = "${megawarez.session.reaper.interval:PT10M}")
+    public void pruneRevoked() {
+        Instant now = Instant.now();
+        revoked.values().removeIf(expiresAt -> !expiresAt.isAfter(now));
+        if (enabled) {
+            revokedTokenRepository.deleteExpired(now);
+        }
+    }
+
+    /**
+     * Firma un contenido con la llave del sistema
+     *
+     * @param encodedPayload Contenido codificado del token
+     * @return Firma HMAC
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    private byte[] sign(String encodedPayload) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance(ALGORITHM);
+        mac.init(key);
+        return mac.doFinal(encodedPayload.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,89 @@
+package com.sofka.megawarez.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sofka.megawarez.service.UserService;
+import com.sofka.megawarez.utility.Response;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Optional;
+
+/**
+ * Interceptor que valida el token de sesión de los endpoints marcados con {@link TokenRequired}
+ *
+ * El token se resuelve con una búsqueda indexada por ses_token y el identificador del usuario
+ * autenticado queda disponible para los controladores en el atributo {@link #AUTHENTICATED_USER}.
+ * En el redespacho de una petición asíncrona el token ya fue validado y no se vuelve a consultar.
+ * Los endpoints con token opcional continúan sin el atributo cuando no hay un token válido
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@Component
+public class TokenInterceptor implements HandlerInterceptor {
+
+    /**
+     * Nombre del atributo de la petición con el identificador del usuario autenticado
+     */
+    public static final String AUTHENTICATED_USER = "authenticatedUser";
+
+    /**
+     * Servicio para el manejo del Usuario
+     */
+    @Autowired
+    private UserService userService;
+
+    /**
+     * Serializador de las respuestas de las API
+     */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Valida el token de la cabecera Authorization antes de atender la petición
+     *
+     * @param request Petición HTTP
+     * @param response Respuesta HTTP
+     * @param handler Controlador que atiende la petición
+     * @return Verdadero si la petición puede continuar
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (request.getDispatcherType() == DispatcherType.ASYNC || !(handler instanceof HandlerMethod)) {
+            return true;
+        }
+        TokenRequired tokenRequired = ((HandlerMethod) handler).getMethodAnnotation(TokenRequired.class);
+        if (tokenRequired == null) {
+            return true;
+        }
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        Optional<Integer> userId = authorization == null
+                ? Optional.empty()
+                : userService.findUserIdByToken(authorization);
+        if (userId.isPresent()) {
+            request.setAttribute(AUTHENTICATED_USER, userId.get());
+            return true;
+        }
+        if (tokenRequired.optional()) {
+            return true;
+        }
+        Response unauthorized = Response.error("No existe token activo", null);
+        response.setStatus(HttpStatus.UNAUTHORIZED.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        objectMapper.writeValue(response.getWriter(), unauthorized);
+        return false;
+    }
+}
@@ -0,0 +1,16 @@
+package com.sofka.megawarez.security;
+
+import java.time.Instant;
+
+/**
+ * Dueño de un token de session y momento en que el token fue creado
+ *
+ * @param userId Identificador del usuario dueño del token
+ * @param createdAt Fecha y hora en que la session fue creada
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+public record TokenOwner(Integer userId, Instant createdAt) {
+}
@@ -0,0 +1,27 @@
+package com.sofka.megawarez.security;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marca los endpoints que requieren un token de sesión válido en la cabecera Authorization. Con
+ * {@link #optional()} la petición continúa sin token, y si lo trae y es válido el usuario queda
+ * autenticado igual
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface TokenRequired {
+
+    /**
+     * Verdadero si la petición puede continuar sin un token válido
+     *
+     * @return Token opcional
+     */
+    boolean optional() default false;
+}
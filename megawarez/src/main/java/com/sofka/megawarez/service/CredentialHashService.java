@@ -0,0 +1,157 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.utility.LoginData;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Servicio para el cálculo de los hash de las contraseñas
+ *
+ * Los hash se calculan en un pool de hilos propio y acotado, con una cola de tamaño fijo, que
+ * limita cuántos hash consumen CPU a la vez. Cuando el pool está saturado la petición se rechaza de
+ * inmediato en lugar de encolarse sin límite. El hilo que pide el hash sí espera el resultado, hasta
+ * el tiempo máximo configurado: en el modo de ejecución blocking es un hilo de Tomcat, y solo en los
+ * modos async y virtual de {@link com.sofka.megawarez.config.RequestExecution} el hilo de Tomcat
+ * queda libre durante la espera
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@Service
+public class CredentialHashService {
+
+    /**
+     * Pool de hilos para el cálculo de los hash
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Tiempo máximo de espera por un hash
+     */
+    private final Duration timeout;
+
+    /**
+     * Latencia de cada hash, incluyendo la espera en la cola
+     */
+    private final Timer latency;
+
+    /**
+     * Contador de hash rechazados por saturación del pool
+     */
+    private final Counter rejected;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param threads Número de hilos del pool
+     * @param queueCapacity Número máximo de hash en espera
+     * @param timeout Tiempo máximo de espera por un hash
+     * @param meterRegistry Registro de métricas
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public CredentialHashService(
+            @Value("${megawarez.hashing.threads:2}") int threads,
+            @Value("${megawarez.hashing.queue-capacity:64}") int queueCapacity,
+            @Value("${megawarez.hashing.timeout:PT5S}") Duration timeout,
+            MeterRegistry meterRegistry) {
+        AtomicInteger sequence = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "credential-hash-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.timeout = timeout;
+        this.latency = meterRegistry.timer("megawarez.hashing.latency");
+        this.rejected = meterRegistry.counter("megawarez.hashing.rejected");
+        meterRegistry.gauge("megawarez.hashing.queue.depth", executor, pool -> pool.getQueue().size());
+        meterRegistry.gauge("megawarez.hashing.active", executor, ThreadPoolExecutor::getActiveCount);
+    }
+
+    /**
+     * Calcula el hash de una contraseña en el pool de hash y espera el resultado
+     *
+     * @param password Contraseña en texto plano
+     * @return Hash de la contraseña
+     * @throws RejectedExecutionException si el pool está saturado o el hash no termina a tiempo
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public String hash(String password) throws Exception {
+        long start = System.nanoTime();
+        Future<String> future;
+        try {
+            future = executor.submit(() -> LoginData.createMD5(password));
+        } catch (RejectedExecutionException exception) {
+            rejected.increment();
+            throw exception;
+        }
+        try {
+            return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException exception) {
+            future.cancel(true);
+            rejected.increment();
+            throw new RejectedExecutionException("Tiempo de espera agotado para el cálculo del hash");
+        } catch (ExecutionException exception) {
+            if (exception.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw (Exception) exception.getCause();
+        } finally {
+            latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Verifica una contraseña contra el hash guardado
+     *
+     * @param password Contraseña en texto plano
+     * @param hash Hash guardado de la contraseña
+     * @return Verdadero si la contraseña corresponde al hash
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public boolean matches(String password, String hash) throws Exception {
+        if (password == null || hash == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(
+                hash(password).getBytes(StandardCharsets.UTF_8),
+                hash.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Detiene el pool de hash
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
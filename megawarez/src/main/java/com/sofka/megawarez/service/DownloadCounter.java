@@ -0,0 +1,212 @@
+package com.sofka.megawarez.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contadores en memoria de descargas por producto
+ *
+ * Cada descarga escrita suma uno al contador de su producto, un LongAdder que reparte las sumas
+ * concurrentes en celdas separadas para que los hilos no compitan por la misma variable. Una tarea
+ * programada escribe en prd_download_count lo acumulado desde la escritura anterior, con un UPDATE
+ * por producto que suma sobre el valor de la tabla, todos en un solo lote y una sola transacción. Si
+ * la escritura falla, lo acumulado se vuelve a intentar en la siguiente ejecución. El conteo de la
+ * tabla puede ir atrasado hasta un intervalo de escritura
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+public class DownloadCounter {
+
+    /**
+     * Suma el acumulado de un producto a su conteo de descargas
+     */
+    private static final String INCREMENT =
+            "UPDATE product SET prd_download_count = prd_download_count + ? WHERE prd_id = ?";
+
+    /**
+     * Contadores por identificador de producto
+     */
+    private final Map<Integer, Tally> tallies = new ConcurrentHashMap<>();
+
+    /**
+     * Acceso JDBC a la base de datos
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Transacción de cada escritura
+     */
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Duración de cada escritura
+     */
+    private final Timer flushes;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param jdbcTemplate Acceso JDBC a la base de datos
+     * @param transactionManager Manejador de transacciones
+     * @param meterRegistry Registro de métricas
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public DownloadCounter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.flushes = meterRegistry.timer("megawarez.products.download-count.flush");
+        meterRegistry.gauge("megawarez.products.download-count.pending", this, DownloadCounter::pending);
+    }
+
+    /**
+     * Calcula el conteo de los productos con descargas anteriores a la columna prd_download_count.
+     * Solo recorre los productos con conteo cero, así que tras la primera ejecución es una consulta
+     * por índice para cada producto sin descargas
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @PostConstruct
+    public void backfill() {
+        int updated = jdbcTemplate.update("UPDATE product SET prd_download_count = "
+                + "(SELECT COUNT(*) FROM download WHERE dwn_product_id = prd_id) "
+                + "WHERE prd_download_count = 0 "
+                + "AND EXISTS (SELECT 1 FROM download WHERE dwn_product_id = prd_id)");
+        if (updated > 0) {
+            log.info("Conteo de descargas calculado para {} productos", updated);
+        }
+    }
+
+    /**
+     * Suma una descarga al contador de un producto
+     *
+     * @param productId Identificador del producto
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public void increment(Integer productId) {
+        tallies.computeIfAbsent(productId, id -> new Tally()).adder.increment();
+    }
+
+    /**
+     * Cuenta cada descarga escrita
+     *
+     * @param event Evento de la descarga
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @EventListener
+    public void onDownloadRecorded(DownloadRecordedEvent event) {
+        increment(event.productId());
+    }
+
+    /**
+     * Escribe en la tabla lo acumulado desde la escritura anterior
+     *
+     * @return Número de productos actualizados
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @Scheduled(fixedDelayString = "${megawarez.product.download-count.flush-interval:PT5S}")
+    @PreDestroy
+    public synchronized int flush() {
+        List<Delta> deltas = new ArrayList<>();
+        tallies.forEach((id, tally) -> {
+            long delta = tally.adder.sum() - tally.flushed;
+            if (delta > 0) {
+                deltas.add(new Delta(id, tally, delta));
+            }
+        });
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        try {
+            int[] updated = transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(INCREMENT, deltas, deltas.size(),
+                    (statement, delta) -> {
+                        statement.setLong(1, delta.amount());
+                        statement.setInt(2, delta.productId());
+                    }))[0];
+            for (int i = 0; i < deltas.size(); i++) {
+                Delta delta = deltas.get(i);
+                delta.tally().flushed += delta.amount();
+                if (updated[i] == 0) {
+                    tallies.remove(delta.productId(), delta.tally());
+                }
+            }
+        } catch (RuntimeException exception) {
+            log.warn("No se pudo escribir el conteo de descargas de {} productos: {}", deltas.size(), exception.getMessage());
+            return 0;
+        } finally {
+            flushes.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        return deltas.size();
+    }
+
+    /**
+     * Descargas contadas en memoria que todavía no están en la tabla
+     *
+     * @return Número de descargas pendientes
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public long pending() {
+        long pending = 0;
+        for (Tally tally : tallies.values()) {
+            pending += tally.adder.sum() - tally.flushed;
+        }
+        return pending;
+    }
+
+    /**
+     * Contador de un producto y la parte ya escrita en la tabla
+     */
+    private static final class Tally {
+
+        /**
+         * Descargas contadas desde el inicio
+         */
+        private final LongAdder adder = new LongAdder();
+
+        /**
+         * Descargas ya escritas en la tabla, solo la modifica la escritura programada
+         */
+        private volatile long flushed;
+    }
+
+    /**
+     * Acumulado de un producto pendiente de escribir
+     *
+     * @param productId Identificador del producto
+     * @param tally Contador del producto
+     * @param amount Descargas a sumar
+     */
+    private record Delta(Integer productId, Tally tally, long amount) {
+    }
+}
@@ -0,0 +1,743 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.domain.Download;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Diario local de descargas para cuando la base de datos está caída o lenta
+ *
+ * Las descargas se agregan al final de archivos de segmento mapeados en memoria, con registros de
+ * tamaño fijo protegidos con CRC y numerados con una secuencia del diario. Cada arranque del diario
+ * empieza una época con un identificador aleatorio que va en el nombre de sus segmentos y numera su
+ * secuencia desde uno; la pareja época y secuencia identifica cada descarga en todos los nodos y
+ * reinicios, aunque el directorio quede vacío entre uno y otro. Cada escritura espera a
+ * que un hilo de sincronización haga el fsync del segmento, que cubre a todas las escrituras
+ * acumuladas mientras tanto, así que una descarga aceptada sobrevive a una caída del proceso. Si el
+ * fsync falla o no termina dentro del tiempo máximo, las escrituras que lo esperaban se rechazan con
+ * {@link RejectedExecutionException} y el hilo sigue vivo para reintentar con la siguiente escritura;
+ * un registro rechazado puede llegar igual al disco y pasar a la base de datos. Al
+ * iniciar los segmentos existentes quedan pendientes con su propia época; un registro incompleto al
+ * final de un segmento se descarta. {@link DownloadJournalReplayer} pasa los segmentos cerrados a
+ * la tabla download cuando la base de datos vuelve a responder
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+public class DownloadJournal {
+
+    /**
+     * Marca de inicio de cada registro
+     */
+    private static final int MAGIC = 0x44574E31;
+
+    /**
+     * Tamaño de un registro: marca, secuencia, usuario, producto, segundos, nanosegundos y CRC
+     */
+    static final int RECORD_SIZE = 36;
+
+    /**
+     * Bytes del registro cubiertos por el CRC
+     */
+    private static final int CHECKED_SIZE = RECORD_SIZE - Integer.BYTES;
+
+    /**
+     * Prefijo de los archivos de segmento
+     */
+    private static final String PREFIX = "downloads-";
+
+    /**
+     * Extensión de los archivos de segmento
+     */
+    private static final String SUFFIX = ".journal";
+
+    /**
+     * Verdadero si el diario está habilitado
+     */
+    private final boolean enabled;
+
+    /**
+     * Directorio de los segmentos
+     */
+    private final Path directory;
+
+    /**
+     * Número de registros por segmento
+     */
+    private final int recordsPerSegment;
+
+    /**
+     * Duración de una escritura en la base de datos por encima de la cual se pasa al diario
+     */
+    private final Duration latencyThreshold;
+
+    /**
+     * Tiempo máximo que una escritura espera su fsync
+     */
+    private final Duration syncTimeout;
+
+    /**
+     * Contador de descargas agregadas al diario
+     */
+    private final Counter appended;
+
+    /**
+     * Protege el segmento activo y las secuencias
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Señal de que hay registros escritos pendientes de fsync
+     */
+    private final Condition unsynced = lock.newCondition();
+
+    /**
+     * Señal de que terminó un fsync
+     */
+    private final Condition synced = lock.newCondition();
+
+    /**
+     * Segmentos cerrados pendientes de pasar a la base de datos
+     */
+    private final List<Path> sealed = new ArrayList<>();
+
+    /**
+     * Identificador de la época de este arranque del diario
+     */
+    private final String epoch = UUID.randomUUID().toString();
+
+    /**
+     * Segmento donde se agregan los registros, nulo hasta la primera escritura
+     */
+    private Segment active;
+
+    /**
+     * Última secuencia asignada en la época
+     */
+    private long lastSequence;
+
+    /**
+     * Última secuencia escrita en el segmento activo
+     */
+    private long written;
+
+    /**
+     * Última secuencia con fsync completo
+     */
+    private long forced;
+
+    /**
+     * Última secuencia cuyo fsync falló, las escrituras hasta ella se rechazan
+     */
+    private long failed;
+
+    /**
+     * Error del último fsync fallido
+     */
+    private RuntimeException failure;
+
+    /**
+     * Verdadero mientras las descargas se escriben en el diario en lugar de la base de datos
+     */
+    private volatile boolean degraded;
+
+    /**
+     * Verdadero hasta que se cierra el diario
+     */
+    private volatile boolean open = true;
+
+    /**
+     * Hilo de sincronización de los segmentos
+     */
+    private final Thread syncer;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param enabled Verdadero si el diario está habilitado
+     * @param directory Directorio de los segmentos
+     * @param segmentSize Tamaño de cada archivo de segmento
+     * @param latencyThreshold Duración de escritura en la base de datos que activa el diario
+     * @param syncTimeout Tiempo máximo que una escritura espera su fsync
+     * @param meterRegistry Registro de métricas
+     * @throws IOException si no se puede leer el directorio de segmentos
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public DownloadJournal(
+            @Value("${megawarez.download.journal.enabled:false}") boolean enabled,
+            @Value("${megawarez.download.journal.directory:journal}") Path directory,
+            @Value("${megawarez.download.journal.segment-size:16MB}") DataSize segmentSize,
+            @Value("${megawarez.download.journal.latency-threshold:PT0.5S}") Duration latencyThreshold,
+            @Value("${megawarez.download.journal.sync-timeout:PT5S}") Duration syncTimeout,
+            MeterRegistry meterRegistry) throws IOException {
+        this.enabled = enabled;
+        this.directory = directory;
+        this.recordsPerSegment = (int) Math.max(1, Math.min(segmentSize.toBytes(), Integer.MAX_VALUE) / RECORD_SIZE);
+        this.latencyThreshold = latencyThreshold;
+        this.syncTimeout = syncTimeout;
+        this.appended = meterRegistry.counter("megawarez.downloads.journal.appended");
+        meterRegistry.gauge("megawarez.downloads.journal.degraded", this, journal -> journal.degraded ? 1 : 0);
+        meterRegistry.gauge("megawarez.downloads.journal.segments", sealed, List::size);
+        if (enabled) {
+            recover();
+            syncer = new Thread(this::syncLoop, "download-journal-sync");
+            syncer.setDaemon(true);
+            syncer.start();
+        } else {
+            syncer = null;
+        }
+    }
+
+    /**
+     * Indica si el diario está habilitado
+     *
+     * @return Verdadero si está habilitado
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Indica si las descargas se deben escribir en el diario
+     *
+     * @return Verdadero si la base de datos se considera caída o lenta
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public boolean isDegraded() {
+        return enabled && degraded;
+    }
+
+    /**
+     * Pasa las escrituras al diario tras un error de la base de datos
+     *
+     * @param cause Error de la base de datos
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public void markDegraded(Exception cause) {
+        if (enabled && !degraded) {
+            log.warn("Base de datos no disponible, las descargas se escriben en el diario: {}", cause.getMessage());
+            degraded = true;
+        }
+    }
+
+    /**
+     * Pasa las escrituras al diario si una escritura en la base de datos superó el umbral
+     *
+     * @param latency Duración de la escritura
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public void observe(Duration latency) {
+        if (enabled && !degraded && latency.compareTo(latencyThreshold) > 0) {
+            log.warn("Escritura de descarga de {} ms, las descargas se escriben en el diario", latency.toMillis());
+            degraded = true;
+        }
+    }
+
+    /**
+     * Indica si una duración está por debajo del umbral de latencia
+     *
+     * @param latency Duración a comparar
+     * @return Verdadero si no supera el umbral
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public boolean isWithinThreshold(Duration latency) {
+        return latency.compareTo(latencyThreshold) <= 0;
+    }
+
+    /**
+     * Vuelve a escribir las descargas en la base de datos si el diario quedó vacío
+     *
+     * @return Verdadero si se salió del modo degradado
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public boolean markHealthyIfDrained() {
+        lock.lock();
+        try {
+            if (hasPending()) {
+                return false;
+            }
+            if (degraded) {
+                log.info("Diario de descargas vacío, las descargas vuelven a la base de datos");
+            }
+            degraded = false;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Indica si hay descargas en el diario pendientes de pasar a la base de datos
+     *
+     * @return Verdadero si hay segmentos cerrados o el segmento activo tiene registros
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public boolean hasPending() {
+        lock.lock();
+        try {
+            return !sealed.isEmpty() || (active != null && active.count > 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Agrega una descarga al diario y espera a que quede en disco
+     *
+     * @param download Descarga con usuario y producto
+     * @return Descarga con su época y secuencia del diario
+     * @throws RejectedExecutionException si el diario no está habilitado, no se puede escribir o el
+     *         fsync falla o no termina a tiempo
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public Download append(Download download) {
+        return appendAll(List.of(download)).get(0);
+    }
+
+    /**
+     * Agrega un lote de descargas al diario y espera una sola vez a que todas queden en disco, en
+     * lugar de un fsync por descarga. Si el fsync falla o no termina a tiempo se rechaza el lote
+     * completo, aunque parte de él ya esté escrita en el segmento
+     *
+     * @param downloads Descargas con usuario y producto
+     * @return Las mismas descargas con su época y secuencia del diario
+     * @throws RejectedExecutionException si el diario no está habilitado, no se puede escribir o el
+     *         fsync falla o no termina a tiempo
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public List<Download> appendAll(List<Download> downloads) {
+        if (!enabled || !open) {
+            throw new RejectedExecutionException("El diario de descargas no está disponible");
+        }
+        if (downloads.isEmpty()) {
+            return downloads;
+        }
+        Instant now = Instant.now();
+        lock.lock();
+        try {
+            long first = lastSequence + 1;
+            for (Download download : downloads) {
+                if (active == null || active.count == recordsPerSegment) {
+                    roll();
+                    active = Segment.create(directory.resolve(name(epoch, lastSequence + 1)), recordsPerSegment);
+                }
+                Instant createdAt = download.getCreatedAt() == null ? now : download.getCreatedAt();
+                long sequence = ++lastSequence;
+                active.write(sequence, download.getDwnUser().getId(), download.getDwnProduct().getId(), createdAt);
+                written = sequence;
+            }
+            long last = lastSequence;
+            unsynced.signal();
+            long remaining = syncTimeout.toNanos();
+            while (forced < last) {
+                if (!open) {
+                    throw new RejectedExecutionException("El diario de descargas se cerró");
+                }
+                if (failed >= last) {
+                    throw new RejectedExecutionException("No se pudo sincronizar el diario de descargas", failure);
+                }
+                if (remaining <= 0) {
+                    throw new RejectedExecutionException("El fsync del diario de descargas no terminó a tiempo");
+                }
+                remaining = synced.awaitNanos(remaining);
+            }
+            appended.increment(downloads.size());
+            long sequence = first;
+            for (Download download : downloads) {
+                if (download.getCreatedAt() == null) {
+                    download.setCreatedAt(now);
+                }
+                download.setJournalNode(epoch);
+                download.setJournalSeq(sequence++);
+            }
+            return downloads;
+        } catch (IOException exception) {
+            throw new RejectedExecutionException("No se pudo escribir en el diario de descargas", exception);
+        } catch (UncheckedIOException exception) {
+            throw new RejectedExecutionException("No se pudo escribir en el diario de descargas", exception.getCause());
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Escritura en el diario interrumpida", exception);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cierra el segmento activo si tiene registros, para que el siguiente registro abra uno nuevo
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public void roll() {
+        lock.lock();
+        try {
+            if (active == null) {
+                return;
+            }
+            active.close();
+            forced = written;
+            synced.signalAll();
+            if (active.count > 0) {
+                sealed.add(active.path);
+            } else {
+                Files.deleteIfExists(active.path);
+            }
+            active = null;
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Segmentos cerrados pendientes de pasar a la base de datos, del más antiguo al más nuevo
+     *
+     * @return Rutas de los segmentos
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public List<Path> sealedSegments() {
+        lock.lock();
+        try {
+            return List.copyOf(sealed);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Borra un segmento cuyos registros ya están en la base de datos
+     *
+     * @param segment Ruta del segmento
+     * @throws IOException si no se puede borrar
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public void delete(Path segment) throws IOException {
+        lock.lock();
+        try {
+            Files.deleteIfExists(segment);
+            sealed.remove(segment);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Lee los registros válidos de un segmento, hasta el primer registro vacío o incompleto
+     *
+     * @param segment Ruta del segmento
+     * @return Registros del segmento
+     * @throws IOException si no se puede leer
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public static List<Entry> read(Path segment) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        String journal = epoch(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            byte[] record = new byte[CHECKED_SIZE];
+            CRC32C crc = new CRC32C();
+            for (int position = 0; position + RECORD_SIZE <= buffer.capacity(); position += RECORD_SIZE) {
+                if (buffer.getInt(position) != MAGIC) {
+                    break;
+                }
+                buffer.get(position, record);
+                crc.reset();
+                crc.update(record);
+                if ((int) crc.getValue() != buffer.getInt(position + CHECKED_SIZE)) {
+                    log.warn("Registro incompleto en {} posición {}, se descarta el resto del segmento", segment, position);
+                    break;
+                }
+                entries.add(new Entry(
+                        journal,
+                        buffer.getLong(position + 4),
+                        buffer.getInt(position + 12),
+                        buffer.getInt(position + 16),
+                        Instant.ofEpochSecond(buffer.getLong(position + 20), buffer.getInt(position + 28))));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Cierra el segmento activo y detiene el hilo de sincronización
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @PreDestroy
+    public void close() {
+        if (!enabled) {
+            return;
+        }
+        roll();
+        lock.lock();
+        try {
+            open = false;
+            unsynced.signalAll();
+            synced.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deja pendientes de pasar a la base de datos los segmentos de arranques anteriores; cada uno
+     * conserva su época, así que la secuencia de este arranque empieza en uno
+     *
+     * @throws IOException si no se puede leer el directorio
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    private void recover() throws IOException {
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path segment : files.filter(DownloadJournal::isSegment).sorted().toList()) {
+                if (read(segment).isEmpty()) {
+                    Files.delete(segment);
+                    continue;
+                }
+                sealed.add(segment);
+            }
+        }
+        if (!sealed.isEmpty()) {
+            log.info("Diario de descargas con {} segmentos pendientes de arranques anteriores", sealed.size());
+        }
+    }
+
+    /**
+     * Ciclo del hilo de sincronización: hace un fsync por cada grupo de escrituras pendientes; si
+     * falla, rechaza las escrituras que lo esperaban y vuelve a esperar nuevas escrituras
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    private void syncLoop() {
+        while (open) {
+            Segment segment;
+            long target;
+            lock.lock();
+            try {
+                while (open && Math.max(forced, failed) >= written) {
+                    unsynced.awaitUninterruptibly();
+                }
+                segment = active;
+                target = written;
+            } finally {
+                lock.unlock();
+            }
+            RuntimeException error = null;
+            if (segment != null) {
+                try {
+                    force(segment.buffer);
+                } catch (RuntimeException exception) {
+                    log.error("No se pudo sincronizar el segmento {} del diario", segment.path, exception);
+                    error = exception;
+                }
+            }
+            lock.lock();
+            try {
+                if (error == null) {
+                    forced = Math.max(forced, target);
+                } else {
+                    failed = Math.max(failed, target);
+                    failure = error;
+                }
+                synced.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Hace el fsync de las páginas modificadas de un segmento
+     *
+     * @param buffer Contenido del segmento mapeado en memoria
+     */
+    void force(MappedByteBuffer buffer) {
+        buffer.force();
+    }
+
+    /**
+     * Nombre del archivo de segmento de una época que empieza en una secuencia
+     *
+     * @param epoch Época del diario
+     * @param firstSequence Primera secuencia del segmento
+     * @return Nombre del archivo
+     */
+    private static String name(String epoch, long firstSequence) {
+        return String.format("%s%s-%020d%s", PREFIX, epoch, firstSequence, SUFFIX);
+    }
+
+    /**
+     * Época del diario a la que pertenece un segmento, tomada del nombre del archivo
+     *
+     * @param segment Ruta del segmento
+     * @return Época del diario
+     */
+    private static String epoch(Path segment) {
+        String file = segment.getFileName().toString();
+        return file.substring(PREFIX.length(), file.lastIndexOf('-'));
+    }
+
+    /**
+     * Indica si un archivo es un segmento del diario
+     *
+     * @param path Ruta del archivo
+     * @return Verdadero si es un segmento
+     */
+    private static boolean isSegment(Path path) {
+        String file = path.getFileName().toString();
+        return file.startsWith(PREFIX) && file.endsWith(SUFFIX);
+    }
+
+    /**
+     * Registro del diario
+     *
+     * @param journal Época del diario que escribió el registro
+     * @param sequence Secuencia dentro de la época
+     * @param userId Identificador del usuario
+     * @param productId Identificador del producto
+     * @param createdAt Fecha y hora de la descarga
+     */
+    public record Entry(String journal, long sequence, int userId, int productId, Instant createdAt) {
+    }
+
+    /**
+     * Archivo de segmento mapeado en memoria
+     */
+    private static final class Segment {
+
+        /**
+         * Ruta del archivo
+         */
+        private final Path path;
+
+        /**
+         * Canal del archivo
+         */
+        private final FileChannel channel;
+
+        /**
+         * Contenido del archivo mapeado en memoria
+         */
+        private final MappedByteBuffer buffer;
+
+        /**
+         * Registro temporal para calcular el CRC
+         */
+        private final byte[] scratch = new byte[CHECKED_SIZE];
+
+        /**
+         * Cálculo del CRC
+         */
+        private final CRC32C crc = new CRC32C();
+
+        /**
+         * Número de registros escritos
+         */
+        private int count;
+
+        private Segment(Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        /**
+         * Crea y mapea un segmento vacío
+         *
+         * @param path Ruta del archivo
+         * @param records Número de registros del segmento
+         * @return Segmento
+         * @throws IOException si no se puede crear
+         */
+        static Segment create(Path path, int records) throws IOException {
+            FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new Segment(path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) records * RECORD_SIZE));
+        }
+
+        /**
+         * Escribe un registro al final del segmento
+         */
+        void write(long sequence, int userId, int productId, Instant createdAt) {
+            int position = count * RECORD_SIZE;
+            buffer.putLong(position + 4, sequence);
+            buffer.putInt(position + 12, userId);
+            buffer.putInt(position + 16, productId);
+            buffer.putLong(position + 20, createdAt.getEpochSecond());
+            buffer.putInt(position + 28, createdAt.getNano());
+            buffer.putInt(position, MAGIC);
+            buffer.get(position, scratch);
+            crc.reset();
+            crc.update(scratch);
+            buffer.putInt(position + CHECKED_SIZE, (int) crc.getValue());
+            count++;
+        }
+
+        /**
+         * Hace el fsync y cierra el canal del segmento
+         */
+        void close() throws IOException {
+            buffer.force();
+            channel.close();
+        }
+    }
+}
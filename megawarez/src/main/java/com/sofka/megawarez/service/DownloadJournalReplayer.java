@@ -0,0 +1,261 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.domain.Download;
+import com.sofka.megawarez.repository.DownloadRepository;
+import com.sofka.megawarez.repository.ProductRepository;
+import com.sofka.megawarez.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tarea programada que pasa el diario local de descargas a la tabla download
+ *
+ * Mientras haya descargas en el diario o la base de datos se considere caída, cada ejecución hace
+ * una consulta de prueba y, si responde dentro del umbral de latencia, cierra el segmento activo y
+ * escribe los segmentos cerrados en lotes, cada lote en su propia transacción. Cada fila guarda la
+ * época y la secuencia del diario en un par de columnas únicas y antes de cada lote se descartan las
+ * que ya están en la tabla, así que volver a pasar un segmento tras una caída no duplica descargas. Un
+ * segmento se borra cuando todos sus registros quedaron escritos
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+public class DownloadJournalReplayer {
+
+    /**
+     * Diario local de descargas
+     */
+    private final DownloadJournal downloadJournal;
+
+    /**
+     * Número máximo de descargas por transacción
+     */
+    private final int batchSize;
+
+    /**
+     * Repositorio de Download
+     */
+    private final DownloadRepository downloadRepository;
+
+    /**
+     * Repositorio de User
+     */
+    private final UserRepository userRepository;
+
+    /**
+     * Repositorio de Product
+     */
+    private final ProductRepository productRepository;
+
+    /**
+     * Publicador de los eventos de descargas escritas
+     */
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Acceso JDBC para la consulta de prueba
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Transacción de cada lote
+     */
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Contador de descargas escritas desde el diario
+     */
+    private final Counter replayed;
+
+    /**
+     * Contador de descargas del diario que la base de datos nunca aceptará
+     */
+    private final Counter dropped;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param downloadJournal Diario local de descargas
+     * @param batchSize Número máximo de descargas por transacción
+     * @param downloadRepository Repositorio de Download
+     * @param userRepository Repositorio de User
+     * @param productRepository Repositorio de Product
+     * @param eventPublisher Publicador de los eventos de descargas escritas
+     * @param jdbcTemplate Acceso JDBC para la consulta de prueba
+     * @param transactionManager Manejador de transacciones
+     * @param meterRegistry Registro de métricas
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public DownloadJournalReplayer(
+            DownloadJournal downloadJournal,
+            @Value("${megawarez.download.journal.replay-batch-size:500}") int batchSize,
+            DownloadRepository downloadRepository,
+            UserRepository userRepository,
+            ProductRepository productRepository,
+            ApplicationEventPublisher eventPublisher,
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry) {
+        this.downloadJournal = downloadJournal;
+        this.batchSize = Math.max(1, batchSize);
+        this.downloadRepository = downloadRepository;
+        this.userRepository = userRepository;
+        this.productRepository = productRepository;
+        this.eventPublisher = eventPublisher;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.replayed = meterRegistry.counter("megawarez.downloads.journal.replayed");
+        this.dropped = meterRegistry.counter("megawarez.downloads.journal.dropped");
+    }
+
+    /**
+     * Pasa los segmentos cerrados del diario a la base de datos si esta responde
+     *
+     * @return Número de descargas escritas
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @Scheduled(fixedDelayString = "${megawarez.download.journal.replay-interval:PT5S}")
+    public synchronized int replay() {
+        if (!downloadJournal.isEnabled() || (!downloadJournal.hasPending() && !downloadJournal.isDegraded())) {
+            return 0;
+        }
+        if (!isDatabaseHealthy()) {
+            return 0;
+        }
+        int total = 0;
+        try {
+            downloadJournal.roll();
+            for (Path segment : downloadJournal.sealedSegments()) {
+                List<DownloadJournal.Entry> entries = DownloadJournal.read(segment);
+                for (int from = 0; from < entries.size(); from += batchSize) {
+                    total += replayBatch(entries.subList(from, Math.min(from + batchSize, entries.size())));
+                }
+                downloadJournal.delete(segment);
+            }
+            downloadJournal.markHealthyIfDrained();
+        } catch (DataAccessException | TransactionException exception) {
+            log.warn("No se pudo pasar el diario de descargas a la base de datos: {}", exception.getMessage());
+        } catch (IOException exception) {
+            log.error("No se pudo leer el diario de descargas", exception);
+        } finally {
+            if (total > 0) {
+                log.info("Descargas escritas desde el diario: {}", total);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Hace una consulta de prueba y compara su duración con el umbral de latencia
+     *
+     * @return Verdadero si la base de datos respondió a tiempo
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    private boolean isDatabaseHealthy() {
+        long start = System.nanoTime();
+        try {
+            jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+        } catch (DataAccessException exception) {
+            return false;
+        }
+        return downloadJournal.isWithinThreshold(Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    /**
+     * Escribe un lote de registros del diario omitiendo las secuencias ya escritas; si el lote viola
+     * una restricción, escribe cada registro por separado y descarta los que nunca se aceptarán
+     *
+     * @param entries Registros del diario
+     * @return Número de descargas escritas
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    private int replayBatch(List<DownloadJournal.Entry> entries) {
+        List<DownloadJournal.Entry> written;
+        try {
+            written = transactionTemplate.execute(status -> write(entries));
+        } catch (DataIntegrityViolationException exception) {
+            written = new ArrayList<>();
+            for (DownloadJournal.Entry entry : entries) {
+                try {
+                    written.addAll(transactionTemplate.execute(status -> write(List.of(entry))));
+                } catch (DataIntegrityViolationException single) {
+                    dropped.increment();
+                    log.error("Se descarta la descarga {} del diario", entry, single);
+                }
+            }
+        }
+        written.forEach(entry ->
+                eventPublisher.publishEvent(new DownloadRecordedEvent(entry.productId(), entry.userId(), entry.createdAt())));
+        replayed.increment(written.size());
+        return written.size();
+    }
+
+    /**
+     * Guarda los registros cuya época y secuencia todavía no están en la tabla
+     *
+     * @param entries Registros de un mismo segmento del diario
+     * @return Registros guardados
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    private List<DownloadJournal.Entry> write(List<DownloadJournal.Entry> entries) {
+        Set<Long> existing = new HashSet<>(downloadRepository.findJournalSeqIn(
+                entries.get(0).journal(),
+                entries.stream().map(DownloadJournal.Entry::sequence).toList()));
+        List<DownloadJournal.Entry> missing = entries.stream()
+                .filter(entry -> !existing.contains(entry.sequence()))
+                .toList();
+        downloadRepository.saveAll(missing.stream().map(this::toDownload).toList());
+        return missing;
+    }
+
+    /**
+     * Crea la descarga de un registro del diario con referencias a su usuario y producto
+     *
+     * @param entry Registro del diario
+     * @return Descarga lista para guardar
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    private Download toDownload(DownloadJournal.Entry entry) {
+        Download download = new Download();
+        download.setJournalNode(entry.journal());
+        download.setJournalSeq(entry.sequence());
+        download.setCreatedAt(entry.createdAt());
+        download.setDwnUser(userRepository.getById(entry.userId()));
+        download.setDwnProduct(productRepository.getById(entry.productId()));
+        return download;
+    }
+}
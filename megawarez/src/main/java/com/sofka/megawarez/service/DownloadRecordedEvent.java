@@ -0,0 +1,18 @@
+package com.sofka.megawarez.service;
+
+import java.time.Instant;
+
+/**
+ * Evento publicado cuando una descarga queda escrita en la tabla download, ya sea directamente, por
+ * lotes en modo write-behind o desde el diario local
+ *
+ * @param productId Identificador del producto descargado
+ * @param userId Identificador del usuario que descargó
+ * @param createdAt Fecha y hora de la descarga
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+public record DownloadRecordedEvent(Integer productId, Integer userId, Instant createdAt) {
+}
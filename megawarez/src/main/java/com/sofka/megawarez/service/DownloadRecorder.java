@@ -0,0 +1,445 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.domain.Download;
+import com.sofka.megawarez.domain.Product;
+import com.sofka.megawarez.domain.User;
+import com.sofka.megawarez.repository.DownloadRepository;
+import com.sofka.megawarez.repository.ProductRepository;
+import com.sofka.megawarez.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Registro de descargas con escritura diferida por lotes
+ *
+ * En modo write-behind las descargas validadas se dejan en una cola acotada en memoria y un hilo
+ * escritor las guarda en lotes, cada lote en una sola transacción, cuando se junta el tamaño de lote
+ * o cuando la descarga más antigua lleva el intervalo de escritura en espera. Si la cola está llena
+ * la petición espera un momento y luego se rechaza, y al detener la aplicación se escribe todo lo
+ * pendiente. La cola guarda una copia inmutable de cada descarga, así que el hilo escritor es el
+ * único que toca las entidades que guarda y la descarga que recibe la petición no cambia después de
+ * responder. Si un lote falla porque la base de datos no responde y el diario local está habilitado,
+ * el lote se agrega a {@link DownloadJournal} en lugar de perderse. En modo sync cada descarga se
+ * guarda en su propia transacción
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+public class DownloadRecorder {
+
+    /**
+     * Modo de registro con escritura diferida por lotes
+     */
+    public static final String WRITE_BEHIND = "write-behind";
+
+    /**
+     * Verdadero si el modo de registro es write-behind
+     */
+    private final boolean writeBehind;
+
+    /**
+     * Descargas pendientes de escribir
+     */
+    private final BlockingQueue<PendingDownload> queue;
+
+    /**
+     * Número máximo de descargas por transacción
+     */
+    private final int batchSize;
+
+    /**
+     * Tiempo máximo que una descarga espera en la cola antes de escribirse
+     */
+    private final Duration flushInterval;
+
+    /**
+     * Tiempo máximo de espera por un lugar en la cola llena
+     */
+    private final Duration offerTimeout;
+
+    /**
+     * Repositorio de Download
+     */
+    private final DownloadRepository downloadRepository;
+
+    /**
+     * Repositorio de User
+     */
+    private final UserRepository userRepository;
+
+    /**
+     * Repositorio de Product
+     */
+    private final ProductRepository productRepository;
+
+    /**
+     * Diario local de descargas para lotes que no se pudieron escribir
+     */
+    private final DownloadJournal downloadJournal;
+
+    /**
+     * Publicador de los eventos de descargas escritas
+     */
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Transacción de cada lote
+     */
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Número de descargas de cada lote escrito
+     */
+    private final DistributionSummary batchSizes;
+
+    /**
+     * Tiempo desde que una descarga entra a la cola hasta que su lote se confirma
+     */
+    private final Timer lag;
+
+    /**
+     * Contador de descargas rechazadas por cola llena
+     */
+    private final Counter rejected;
+
+    /**
+     * Contador de descargas que no se pudieron escribir
+     */
+    private final Counter failed;
+
+    /**
+     * Verdadero mientras la cola acepta descargas
+     */
+    private volatile boolean running;
+
+    /**
+     * Candado que une la revisión de running con la entrada a la cola: las peticiones lo toman para
+     * leer y stop() para escribir, así ninguna descarga entra a la cola después de vaciarla
+     */
+    private final ReadWriteLock accepting = new ReentrantReadWriteLock();
+
+    /**
+     * Hilo escritor de los lotes
+     */
+    private Thread writer;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param mode Modo de registro: sync o write-behind
+     * @param queueCapacity Número máximo de descargas en espera
+     * @param batchSize Número máximo de descargas por transacción
+     * @param flushInterval Tiempo máximo que una descarga espera en la cola
+     * @param offerTimeout Tiempo máximo de espera por un lugar en la cola llena
+     * @param downloadRepository Repositorio de Download
+     * @param userRepository Repositorio de User
+     * @param productRepository Repositorio de Product
+     * @param downloadJournal Diario local de descargas
+     * @param eventPublisher Publicador de los eventos de descargas escritas
+     * @param transactionManager Manejador de transacciones
+     * @param meterRegistry Registro de métricas
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public DownloadRecorder(
+            @Value("${megawarez.download.recording.mode:sync}") String mode,
+            @Value("${megawarez.download.recording.queue-capacity:10000}") int queueCapacity,
+            @Value("${megawarez.download.recording.batch-size:500}") int batchSize,
+            @Value("${megawarez.download.recording.flush-interval:PT0.2S}") Duration flushInterval,
+            @Value("${megawarez.download.recording.offer-timeout:PT0.05S}") Duration offerTimeout,
+            DownloadRepository downloadRepository,
+            UserRepository userRepository,
+            ProductRepository productRepository,
+            DownloadJournal downloadJournal,
+            ApplicationEventPublisher eventPublisher,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry) {
+        this.writeBehind = WRITE_BEHIND.equalsIgnoreCase(mode.trim());
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.flushInterval = flushInterval;
+        this.offerTimeout = offerTimeout;
+        this.downloadRepository = downloadRepository;
+        this.userRepository = userRepository;
+        this.productRepository = productRepository;
+        this.downloadJournal = downloadJournal;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSizes = meterRegistry.summary("megawarez.downloads.batch.size");
+        this.lag = meterRegistry.timer("megawarez.downloads.lag");
+        this.rejected = meterRegistry.counter("megawarez.downloads.rejected");
+        this.failed = meterRegistry.counter("megawarez.downloads.failed");
+        meterRegistry.gauge("megawarez.downloads.queue.depth", queue, BlockingQueue::size);
+    }
+
+    /**
+     * Inicia el hilo escritor en modo write-behind
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @PostConstruct
+    public void start() {
+        if (!writeBehind) {
+            return;
+        }
+        running = true;
+        writer = new Thread(this::writeLoop, "download-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("Registro de descargas write-behind: lotes de {} cada {}", batchSize, flushInterval);
+    }
+
+    /**
+     * Deja de aceptar descargas y escribe todas las pendientes
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        accepting.writeLock().lock();
+        try {
+            if (!running) {
+                return;
+            }
+            running = false;
+        } finally {
+            accepting.writeLock().unlock();
+        }
+        writer.join();
+        List<PendingDownload> remaining = new ArrayList<>();
+        while (queue.drainTo(remaining, batchSize) > 0) {
+            flush(remaining);
+            remaining.clear();
+        }
+    }
+
+    /**
+     * Indica si las descargas se escriben de forma diferida
+     *
+     * @return Verdadero en modo write-behind
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public boolean isWriteBehind() {
+        return writeBehind;
+    }
+
+    /**
+     * Valida una descarga y la deja en la cola de escritura
+     *
+     * @param download Descarga a registrar
+     * @return La misma descarga con su fecha, sin identificador: el lote se escribe desde una copia
+     * @throws IllegalArgumentException si la descarga no tiene usuario o un producto existente
+     * @throws RejectedExecutionException si la cola sigue llena tras la espera o se está deteniendo
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public Download record(Download download) {
+        if (download.getDwnProduct() == null || download.getDwnProduct().getId() == null
+                || !productRepository.existsById(download.getDwnProduct().getId())) {
+            throw new IllegalArgumentException("El producto de la descarga no existe");
+        }
+        if (download.getDwnUser() == null || download.getDwnUser().getId() == null) {
+            throw new IllegalArgumentException("El usuario de la descarga no existe");
+        }
+        PendingDownload pending = new PendingDownload(
+                download.getDwnUser().getId(), download.getDwnProduct().getId(), Instant.now(), System.nanoTime());
+        boolean accepted;
+        accepting.readLock().lock();
+        try {
+            if (!running) {
+                throw new RejectedExecutionException("El registro de descargas no está disponible");
+            }
+            accepted = queue.offer(pending, offerTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            accepted = false;
+        } finally {
+            accepting.readLock().unlock();
+        }
+        if (!accepted) {
+            rejected.increment();
+            throw new RejectedExecutionException("La cola de descargas está llena");
+        }
+        download.setCreatedAt(pending.createdAt());
+        return download;
+    }
+
+    /**
+     * Ciclo del hilo escritor: junta un lote por tamaño o por tiempo y lo escribe
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    private void writeLoop() {
+        List<PendingDownload> batch = new ArrayList<>(batchSize);
+        long interval = flushInterval.toNanos();
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingDownload first = queue.poll(interval, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = first.enqueuedAt() + interval;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long wait = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || wait <= 0 || !running) {
+                        break;
+                    }
+                    PendingDownload next = queue.poll(wait, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                flush(batch);
+                return;
+            } catch (RuntimeException exception) {
+                log.error("Error en el escritor de descargas", exception);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Escribe un lote en una sola transacción; si la base de datos no responde lo pasa al diario
+     * local con un solo fsync para todo el lote, y si falla por otra causa escribe cada descarga por separado para no perder el lote
+     * completo por una sola fila
+     *
+     * @param batch Descargas a escribir
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    private void flush(List<PendingDownload> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    downloadRepository.saveAll(batch.stream().map(this::attach).toList()));
+            batch.forEach(this::published);
+        } catch (RuntimeException exception) {
+            if (downloadJournal.isEnabled() && !(exception instanceof DataIntegrityViolationException)) {
+                downloadJournal.markDegraded(exception);
+                try {
+                    downloadJournal.appendAll(batch.stream().map(PendingDownload::toDownload).toList());
+                } catch (RejectedExecutionException journal) {
+                    failed.increment(batch.size());
+                    log.error("No se pudo escribir el lote de {} descargas en el diario", batch.size(), journal);
+                }
+                batchSizes.record(batch.size());
+                return;
+            }
+            log.warn("No se pudo escribir el lote de {} descargas, se escriben una a una", batch.size(), exception);
+            for (PendingDownload pending : batch) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> downloadRepository.save(attach(pending)));
+                    published(pending);
+                } catch (RuntimeException single) {
+                    failed.increment();
+                    log.error("No se pudo escribir la descarga {}", pending, single);
+                }
+            }
+        }
+        batchSizes.record(batch.size());
+        long now = System.nanoTime();
+        for (PendingDownload pending : batch) {
+            lag.record(now - pending.enqueuedAt(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Publica el evento de una descarga escrita
+     *
+     * @param pending Descarga escrita
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    private void published(PendingDownload pending) {
+        eventPublisher.publishEvent(new DownloadRecordedEvent(pending.productId(), pending.userId(), pending.createdAt()));
+    }
+
+    /**
+     * Crea la entidad de una descarga pendiente con referencias administradas de su usuario y
+     * producto; cada intento de escritura usa una entidad nueva
+     *
+     * @param pending Descarga pendiente
+     * @return Descarga lista para guardar
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    private Download attach(PendingDownload pending) {
+        Download download = new Download();
+        download.setDwnUser(userRepository.getById(pending.userId()));
+        download.setDwnProduct(productRepository.getById(pending.productId()));
+        download.setCreatedAt(pending.createdAt());
+        return download;
+    }
+
+    /**
+     * Copia inmutable de una descarga en espera junto con el instante en que entró a la cola
+     *
+     * @param userId Identificador del usuario
+     * @param productId Identificador del producto
+     * @param createdAt Fecha de la descarga
+     * @param enqueuedAt Instante de entrada a la cola en nanosegundos
+     */
+    private record PendingDownload(Integer userId, Integer productId, Instant createdAt, long enqueuedAt) {
+
+        /**
+         * Crea una descarga que referencia al usuario y al producto solo por identificador
+         *
+         * @return Descarga sin guardar
+         */
+        Download toDownload() {
+            User user = new User();
+            user.setId(userId);
+            Product product = new Product();
+            product.setId(productId);
+            Download download = new Download();
+            download.setDwnUser(user);
+            download.setDwnProduct(product);
+            download.setCreatedAt(createdAt);
+            return download;
+        }
+    }
+}
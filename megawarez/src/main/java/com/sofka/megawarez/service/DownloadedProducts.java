@@ -0,0 +1,141 @@
+package com.sofka.megawarez.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.sofka.megawarez.domain.Product;
+import com.sofka.megawarez.utility.RoaringBitmap;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/**
+ * Productos descargados por cada usuario, en mapas de bits comprimidos en memoria
+ *
+ * El mapa de un usuario se carga desde las descargas la primera vez que se necesita y sale de
+ * memoria al superar el peso máximo de la caché o al pasar un tiempo sin usarse. Mientras está en
+ * memoria se le agrega el producto de cada descarga escrita, así que marcar los productos ya
+ * descargados de un listado cuesta una prueba de pertenencia por producto y no una consulta. La
+ * actualización se hace dentro de la caché para esperar a una carga en curso del mismo usuario y
+ * no perder la descarga. Las métricas se publican como "cache.*" con el nombre downloaded.products
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@Service
+public class DownloadedProducts {
+
+    /**
+     * Mapa de bits de productos descargados por identificador de usuario
+     */
+    private final LoadingCache<Integer, RoaringBitmap> cache;
+
+    /**
+     * Acceso JDBC para cargar los productos de un usuario
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param maximumWeight Bytes aproximados máximos de todos los mapas en memoria
+     * @param expireAfterAccess Tiempo que un mapa permanece en memoria sin usarse
+     * @param jdbcTemplate Acceso JDBC para cargar los productos de un usuario
+     * @param meterRegistry Registro de métricas
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public DownloadedProducts(
+            @Value("${megawarez.downloaded-products.maximum-weight:67108864}") long maximumWeight,
+            @Value("${megawarez.downloaded-products.expire-after-access:PT30M}") Duration expireAfterAccess,
+            JdbcTemplate jdbcTemplate,
+            MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumWeight)
+                .<Integer, RoaringBitmap>weigher((userId, bitmap) -> bitmap.sizeInBytes())
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                .build(this::load);
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "downloaded.products");
+    }
+
+    /**
+     * Agrega el producto de cada descarga escrita al mapa del usuario, si está en memoria
+     *
+     * @param event Evento de la descarga
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @EventListener
+    public void onDownloadRecorded(DownloadRecordedEvent event) {
+        cache.asMap().computeIfPresent(event.userId(), (userId, bitmap) -> {
+            synchronized (bitmap) {
+                bitmap.add(event.productId());
+            }
+            return bitmap;
+        });
+    }
+
+    /**
+     * Indica si un usuario descargó un producto
+     *
+     * @param userId Identificador del usuario
+     * @param productId Identificador del producto
+     * @return Verdadero si lo descargó
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public boolean contains(Integer userId, Integer productId) {
+        RoaringBitmap bitmap = cache.get(userId);
+        synchronized (bitmap) {
+            return bitmap.contains(productId);
+        }
+    }
+
+    /**
+     * Marca en cada producto si el usuario ya lo descargó. Sin usuario autenticado no marca nada
+     *
+     * @param userId Identificador del usuario, nulo si la petición no trae token
+     * @param products Productos a marcar
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public void mark(Integer userId, Iterable<Product> products) {
+        if (userId == null || products == null) {
+            return;
+        }
+        RoaringBitmap bitmap = cache.get(userId);
+        synchronized (bitmap) {
+            for (Product product : products) {
+                product.setDownloaded(product.getId() != null && bitmap.contains(product.getId()));
+            }
+        }
+    }
+
+    /**
+     * Carga los productos descargados por un usuario
+     *
+     * @param userId Identificador del usuario
+     * @return Mapa de bits con los identificadores de los productos
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    private RoaringBitmap load(Integer userId) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        jdbcTemplate.query("SELECT dwn_product_id FROM download WHERE dwn_user_id = ?",
+                row -> { bitmap.add(row.getInt(1)); },
+                userId);
+        return bitmap;
+    }
+}
@@ -0,0 +1,257 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.domain.Download;
+import com.sofka.megawarez.repository.DownloadRepository;
+import com.sofka.megawarez.utility.BloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Detección de descargas repetidas de un mismo usuario y producto dentro de una ventana de tiempo
+ *
+ * Cada descarga escrita se agrega a un filtro de Bloom con la llave (usuario, producto). Hay dos
+ * filtros, el actual y el anterior, y cada vez que pasa la duración de la ventana el actual pasa a
+ * ser el anterior y se empieza uno vacío, así que un par escrito en la ventana siempre está en
+ * alguno de los dos. Si ninguno lo contiene la descarga no es repetida y se escribe sin consultar
+ * la base de datos; solo los posibles positivos se confirman con una consulta indexada por usuario,
+ * producto y fecha. Las descargas aceptadas en modo write-behind o en el diario local entran al
+ * filtro en cuanto se aceptan y se guardan en memoria con su fecha hasta que se escriben en la tabla,
+ * así que un reintento anterior a esa escritura se detecta sin consultar la base de datos. Si una
+ * descarga aceptada no se llega a escribir, sus reintentos se siguen tomando como repetidos hasta que
+ * termina la ventana, igual que la respuesta que ya recibió el cliente
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@Service
+public class DuplicateDownloads {
+
+    /**
+     * Verdadero si se detectan las descargas repetidas
+     */
+    private final boolean enabled;
+
+    /**
+     * Duración de la ventana
+     */
+    private final Duration window;
+
+    /**
+     * Número de descargas esperadas por ventana
+     */
+    private final long expectedInsertions;
+
+    /**
+     * Probabilidad de falso positivo de cada filtro
+     */
+    private final double falsePositiveRate;
+
+    /**
+     * Repositorio de Download
+     */
+    private final DownloadRepository downloadRepository;
+
+    /**
+     * Descargas repetidas detectadas
+     */
+    private final Counter duplicates;
+
+    /**
+     * Posibles positivos que la base de datos no confirmó
+     */
+    private final Counter falsePositives;
+
+    /**
+     * Fecha de las descargas aceptadas que todavía no se escriben en la tabla, por llave
+     */
+    private final Map<Long, Instant> accepted = new ConcurrentHashMap<>();
+
+    /**
+     * Filtro de la ventana actual
+     */
+    private volatile BloomFilter current;
+
+    /**
+     * Filtro de la ventana anterior
+     */
+    private volatile BloomFilter previous;
+
+    /**
+     * Momento en que empezó la ventana actual
+     */
+    private volatile Instant rotatedAt;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param enabled Verdadero si se detectan las descargas repetidas
+     * @param window Duración de la ventana
+     * @param expectedInsertions Número de descargas esperadas por ventana
+     * @param falsePositiveRate Probabilidad de falso positivo de cada filtro
+     * @param downloadRepository Repositorio de Download
+     * @param meterRegistry Registro de métricas
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public DuplicateDownloads(
+            @Value("${megawarez.download.dedup.enabled:true}") boolean enabled,
+            @Value("${megawarez.download.dedup.window:PT30S}") Duration window,
+            @Value("${megawarez.download.dedup.expected-insertions:100000}") long expectedInsertions,
+            @Value("${megawarez.download.dedup.false-positive-rate:0.01}") double falsePositiveRate,
+            DownloadRepository downloadRepository,
+            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.window = window;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.downloadRepository = downloadRepository;
+        this.duplicates = meterRegistry.counter("megawarez.downloads.duplicates");
+        this.falsePositives = meterRegistry.counter("megawarez.downloads.duplicates.false-positives");
+        this.current = new BloomFilter(expectedInsertions, falsePositiveRate);
+        this.previous = new BloomFilter(expectedInsertions, falsePositiveRate);
+        this.rotatedAt = Instant.now();
+    }
+
+    /**
+     * Agrega cada descarga escrita a la ventana actual y la quita de las aceptadas, así los reintentos
+     * se confirman con la base de datos y reciben su identificador
+     *
+     * @param event Evento de la descarga
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @EventListener
+    public void onDownloadRecorded(DownloadRecordedEvent event) {
+        if (enabled) {
+            long key = key(event.userId(), event.productId());
+            rotate(Instant.now()).put(key);
+            accepted.remove(key, event.createdAt());
+        }
+    }
+
+    /**
+     * Agrega a la ventana actual una descarga aceptada en la cola de escritura o en el diario local,
+     * antes de que se escriba en la tabla
+     *
+     * @param download Descarga aceptada, con usuario, producto y fecha
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public void onDownloadAccepted(Download download) {
+        if (enabled && download.getCreatedAt() != null) {
+            long key = key(download.getDwnUser().getId(), download.getDwnProduct().getId());
+            accepted.put(key, download.getCreatedAt());
+            rotate(Instant.now()).put(key);
+        }
+    }
+
+    /**
+     * Busca una descarga del mismo usuario y producto escrita dentro de la ventana
+     *
+     * @param download Descarga a crear
+     * @return Optional con la descarga existente
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public Optional<Download> findRecent(Download download) {
+        return findRecent(download, Instant.now());
+    }
+
+    /**
+     * Busca una descarga del mismo usuario y producto escrita dentro de la ventana que termina en un
+     * momento dado. Si la base de datos no responde no hay duplicado, porque sin confirmación se
+     * prefiere escribir una descarga repetida a rechazar una nueva
+     *
+     * @param download Descarga a crear
+     * @param now Momento actual
+     * @return Optional con la descarga existente
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    Optional<Download> findRecent(Download download, Instant now) {
+        if (!enabled || download.getDwnUser() == null || download.getDwnUser().getId() == null
+                || download.getDwnProduct() == null || download.getDwnProduct().getId() == null) {
+            return Optional.empty();
+        }
+        Integer userId = download.getDwnUser().getId();
+        Integer productId = download.getDwnProduct().getId();
+        long key = key(userId, productId);
+        BloomFilter filter = rotate(now);
+        if (!filter.mightContain(key) && !previous.mightContain(key)) {
+            return Optional.empty();
+        }
+        Instant acceptedAt = accepted.get(key);
+        if (acceptedAt != null && acceptedAt.isAfter(now.minus(window))) {
+            Download pending = new Download();
+            pending.setDwnUser(download.getDwnUser());
+            pending.setDwnProduct(download.getDwnProduct());
+            pending.setCreatedAt(acceptedAt);
+            duplicates.increment();
+            return Optional.of(pending);
+        }
+        Optional<Download> recent;
+        try {
+            recent = downloadRepository.findFirstByDwnUserIdAndDwnProductIdAndCreatedAtAfterOrderByCreatedAtDesc(
+                    userId, productId, now.minus(window));
+        } catch (DataAccessException exception) {
+            return Optional.empty();
+        }
+        (recent.isPresent() ? duplicates : falsePositives).increment();
+        return recent;
+    }
+
+    /**
+     * Empieza una ventana nueva si ya pasó la duración de la actual. Tras más de dos ventanas sin
+     * descargas el filtro actual ya no tiene nada vigente y la ventana anterior empieza vacía
+     *
+     * @param now Momento actual
+     * @return Filtro de la ventana actual
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    private BloomFilter rotate(Instant now) {
+        if (now.isBefore(rotatedAt.plus(window))) {
+            return current;
+        }
+        synchronized (this) {
+            if (!now.isBefore(rotatedAt.plus(window))) {
+                previous = now.isBefore(rotatedAt.plus(window.multipliedBy(2)))
+                        ? current
+                        : new BloomFilter(expectedInsertions, falsePositiveRate);
+                current = new BloomFilter(expectedInsertions, falsePositiveRate);
+                rotatedAt = now;
+                Instant expired = now.minus(window);
+                accepted.values().removeIf(acceptedAt -> !acceptedAt.isAfter(expired));
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Llave de 64 bits de un usuario y un producto
+     *
+     * @param userId Identificador del usuario
+     * @param productId Identificador del producto
+     * @return Llave
+     */
+    private static long key(int userId, int productId) {
+        return ((long) userId << 32) | (productId & 0xFFFFFFFFL);
+    }
+}
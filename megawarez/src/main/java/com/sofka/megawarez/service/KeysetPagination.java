@@ -0,0 +1,264 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.utility.KeysetPage;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Paginación por cursor (keyset) de los listados del sistema
+ *
+ * Cada página se obtiene con una condición sobre el último elemento de la página anterior, el
+ * campo de orden y el identificador como desempate, de modo que la base de datos recorre el índice
+ * desde ese punto y una página profunda cuesta lo mismo que la primera. El cursor es opaco para el
+ * cliente y solo es válido para el mismo campo y sentido de orden
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@Component
+public class KeysetPagination {
+
+    /**
+     * Campo identificador de las entidades, usado como desempate
+     */
+    public static final String ID = "id";
+
+    /**
+     * Sugerencia JPA para cargar un grafo de entidad
+     */
+    private static final String FETCH_GRAPH = "javax.persistence.fetchgraph";
+
+    /**
+     * Separador de los datos del cursor
+     */
+    private static final String SEPARATOR = "|";
+
+    /**
+     * Manejador de entidades
+     */
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Tamaño de página cuando el cliente no lo indica
+     */
+    private final int defaultSize;
+
+    /**
+     * Tamaño máximo de página
+     */
+    private final int maxSize;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param defaultSize Tamaño de página cuando el cliente no lo indica
+     * @param maxSize Tamaño máximo de página
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public KeysetPagination(
+            @Value("${megawarez.pagination.default-size:50}") int defaultSize,
+            @Value("${megawarez.pagination.max-size:200}") int maxSize) {
+        this.defaultSize = defaultSize;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Devuelve una página de una entidad ordenada por un campo
+     *
+     * @param entity Clase de la entidad
+     * @param sortable Campos por los que se permite ordenar
+     * @param field Campo por el cual ordenar
+     * @param direction Sentido del orden ASC o DESC
+     * @param cursor Cursor de la página anterior, nulo para la primera página
+     * @param size Tamaño de página solicitado, nulo para el tamaño por defecto
+     * @return Página de la entidad
+     * @throws IllegalArgumentException si el campo no se permite o el cursor no es válido
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public <T> KeysetPage<T> page(
+            Class<T> entity,
+            Set<String> sortable,
+            String field,
+            Sort.Direction direction,
+            String cursor,
+            Integer size) {
+        return page(entity, sortable, field, direction, cursor, size, null);
+    }
+
+    /**
+     * Devuelve una página de una entidad ordenada por un campo, cargando las asociaciones de un
+     * grafo de entidad en la misma consulta
+     *
+     * @param entity Clase de la entidad
+     * @param sortable Campos por los que se permite ordenar
+     * @param field Campo por el cual ordenar
+     * @param direction Sentido del orden ASC o DESC
+     * @param cursor Cursor de la página anterior, nulo para la primera página
+     * @param size Tamaño de página solicitado, nulo para el tamaño por defecto
+     * @param entityGraph Nombre del grafo de entidad a cargar, nulo para ninguno
+     * @return Página de la entidad
+     * @throws IllegalArgumentException si el campo no se permite o el cursor no es válido
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public <T> KeysetPage<T> page(
+            Class<T> entity,
+            Set<String> sortable,
+            String field,
+            Sort.Direction direction,
+            String cursor,
+            Integer size,
+            String entityGraph) {
+        if (!sortable.contains(field)) {
+            throw new IllegalArgumentException("No se puede ordenar por el campo " + field);
+        }
+        int limit = size == null ? defaultSize : Math.max(1, Math.min(size, maxSize));
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<T> query = builder.createQuery(entity);
+        Root<T> root = query.from(entity);
+        Path<Comparable> sortPath = root.get(field);
+        Path<Comparable> idPath = root.get(ID);
+        if (cursor != null && !cursor.isBlank()) {
+            String[] after = decode(cursor, field, direction);
+            Integer lastId = Integer.valueOf(after[0]);
+            Predicate predicate = after(builder, idPath, lastId, direction);
+            if (!ID.equals(field)) {
+                Comparable lastValue = parse(after[1], sortPath.getJavaType());
+                predicate = builder.or(
+                        after(builder, sortPath, lastValue, direction),
+                        builder.and(builder.equal(sortPath, lastValue), predicate));
+            }
+            query.where(predicate);
+        }
+        List<Order> orders = new ArrayList<>();
+        if (!ID.equals(field)) {
+            orders.add(direction.isAscending() ? builder.asc(sortPath) : builder.desc(sortPath));
+        }
+        orders.add(direction.isAscending() ? builder.asc(idPath) : builder.desc(idPath));
+        query.select(root).orderBy(orders);
+        TypedQuery<T> typedQuery = entityManager.createQuery(query).setMaxResults(limit + 1);
+        if (entityGraph != null) {
+            typedQuery.setHint(FETCH_GRAPH, entityManager.getEntityGraph(entityGraph));
+        }
+        List<T> rows = typedQuery.getResultList();
+        if (rows.size() <= limit) {
+            return new KeysetPage<>(rows, null);
+        }
+        List<T> items = new ArrayList<>(rows.subList(0, limit));
+        BeanWrapper last = new BeanWrapperImpl(items.get(limit - 1));
+        return new KeysetPage<>(items, encode(field, direction, last.getPropertyValue(ID), last.getPropertyValue(field)));
+    }
+
+    /**
+     * Condición de los elementos posteriores a un valor según el sentido del orden
+     *
+     * @param builder Constructor de consultas
+     * @param path Campo a comparar
+     * @param value Último valor de la página anterior
+     * @param direction Sentido del orden
+     * @return Condición
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Predicate after(CriteriaBuilder builder, Path<Comparable> path, Comparable value, Sort.Direction direction) {
+        return direction.isAscending() ? builder.greaterThan(path, value) : builder.lessThan(path, value);
+    }
+
+    /**
+     * Codifica el cursor de la página siguiente
+     *
+     * @param field Campo de orden
+     * @param direction Sentido del orden
+     * @param id Identificador del último elemento
+     * @param value Valor del campo de orden del último elemento
+     * @return Cursor opaco
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    private static String encode(String field, Sort.Direction direction, Object id, Object value) {
+        String raw = field + SEPARATOR + direction.name() + SEPARATOR + id + SEPARATOR + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodifica un cursor y valida que corresponda al orden solicitado
+     *
+     * @param cursor Cursor opaco
+     * @param field Campo de orden solicitado
+     * @param direction Sentido del orden solicitado
+     * @return Identificador y valor del último elemento de la página anterior
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    private static String[] decode(String cursor, String field, Sort.Direction direction) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 4);
+        } catch (IllegalArgumentException exception) {
+            throw new IllegalArgumentException("El cursor no es válido");
+        }
+        if (parts.length != 4 || !parts[0].equals(field) || !parts[1].equals(direction.name())) {
+            throw new IllegalArgumentException("El cursor no corresponde al orden solicitado");
+        }
+        return new String[] {parts[2], parts[3]};
+    }
+
+    /**
+     * Convierte el valor guardado en el cursor al tipo del campo de orden
+     *
+     * @param value Valor en texto
+     * @param type Tipo del campo
+     * @return Valor convertido
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @SuppressWarnings("rawtypes")
+    private static Comparable parse(String value, Class<?> type) {
+        try {
+            if (type == String.class) {
+                return value;
+            } else if (type == Instant.class) {
+                return Instant.parse(value);
+            } else if (type == Integer.class) {
+                return Integer.valueOf(value);
+            } else if (type == Long.class) {
+                return Long.valueOf(value);
+            }
+        } catch (RuntimeException exception) {
+            throw new IllegalArgumentException("El cursor no es válido");
+        }
+        throw new IllegalArgumentException("No se puede ordenar por un campo de tipo " + type.getSimpleName());
+    }
+}
@@ -0,0 +1,220 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.utility.CompletionTrie;
+import com.sofka.megawarez.utility.TextFolding;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Autocompletado de nombres de productos mientras el usuario escribe
+ *
+ * Las terminaciones salen de un {@link CompletionTrie} con una llave por cada palabra del nombre
+ * normalizado, de modo que "azu" completa tanto "Azul marino" como "Mar azul profundo", y cada nodo
+ * guarda los productos más descargados bajo él. El trie es inmutable: las consultas leen la versión
+ * publicada sin bloqueos y una tarea programada construye una nueva con los nombres y conteos de la
+ * tabla product y la reemplaza de una vez. La tarea reconstruye cuando se confirmó algún cambio de
+ * producto desde la construcción anterior, así varias escrituras seguidas cuestan una sola
+ * reconstrucción, y también cada cierto tiempo para seguir la popularidad de las descargas
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+public class ProductAutocomplete {
+
+    /**
+     * Número de terminaciones precalculadas por prefijo
+     */
+    private final int completions;
+
+    /**
+     * Tiempo máximo entre reconstrucciones aunque no cambien los productos
+     */
+    private final Duration refreshInterval;
+
+    /**
+     * Acceso JDBC para leer los productos
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Verdadero si algún producto cambió desde la última construcción
+     */
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    /**
+     * Versión publicada de las terminaciones
+     */
+    private volatile Snapshot snapshot = new Snapshot(
+            new CompletionTrie(new String[0], new int[0], new long[0], 1), new int[0], new String[0], new long[0]);
+
+    /**
+     * Momento de la última construcción
+     */
+    private volatile Instant builtAt = Instant.EPOCH;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param completions Número de terminaciones precalculadas por prefijo
+     * @param refreshInterval Tiempo máximo entre reconstrucciones aunque no cambien los productos
+     * @param jdbcTemplate Acceso JDBC para leer los productos
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public ProductAutocomplete(
+            @Value("${megawarez.autocomplete.completions:10}") int completions,
+            @Value("${megawarez.autocomplete.refresh-interval:PT5M}") Duration refreshInterval,
+            JdbcTemplate jdbcTemplate) {
+        this.completions = Math.max(1, completions);
+        this.refreshInterval = refreshInterval;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Construye las terminaciones con todos los productos
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @PostConstruct
+    public void load() {
+        rebuild();
+    }
+
+    /**
+     * Marca las terminaciones como desactualizadas cuando un producto cambia
+     *
+     * @param event Evento del producto
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        dirty.set(true);
+    }
+
+    /**
+     * Reconstruye las terminaciones si algún producto cambió o ya pasó el intervalo de refresco
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @Scheduled(fixedDelayString = "${megawarez.autocomplete.rebuild-delay:PT2S}")
+    public void refresh() {
+        if (dirty.get() || !Instant.now().isBefore(builtAt.plus(refreshInterval))) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Construye una versión nueva de las terminaciones y la publica. La bandera de cambios se baja
+     * antes de leer, así los cambios confirmados durante la lectura la vuelven a marcar
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public synchronized void rebuild() {
+        dirty.set(false);
+        Instant started = Instant.now();
+        List<Integer> ids = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<Long> downloads = new ArrayList<>();
+        jdbcTemplate.query("SELECT prd_id, prd_name, prd_download_count FROM product", row -> {
+            ids.add(row.getInt(1));
+            names.add(row.getString(2));
+            downloads.add(row.getLong(3));
+        });
+        snapshot = build(ids, names, downloads);
+        builtAt = started;
+        log.debug("Autocompletado construido con {} productos en {} ms",
+                ids.size(), Duration.between(started, Instant.now()).toMillis());
+    }
+
+    /**
+     * Productos más descargados con alguna palabra del nombre que empieza con un prefijo
+     *
+     * @param prefix Texto escrito, sin distinguir mayúsculas ni acentos
+     * @param limit Número de productos, se omite para el máximo precalculado
+     * @return Productos ordenados de mayor a menor número de descargas
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public List<Completion> complete(String prefix, Integer limit) {
+        int size = limit == null ? completions : Math.max(1, Math.min(limit, completions));
+        Snapshot current = snapshot;
+        int[] items = current.trie().complete(TextFolding.fold(prefix).stripLeading());
+        List<Completion> result = new ArrayList<>(Math.min(size, items.length));
+        for (int i = 0; i < items.length && i < size; i++) {
+            int item = items[i];
+            result.add(new Completion(current.ids()[item], current.names()[item], current.downloads()[item]));
+        }
+        return result;
+    }
+
+    /**
+     * Construye el trie con una llave por cada palabra del nombre de cada producto
+     *
+     * @param ids Identificadores de los productos
+     * @param names Nombres de los productos
+     * @param downloads Número de descargas de cada producto
+     * @return Versión de las terminaciones
+     */
+    private Snapshot build(List<Integer> ids, List<String> names, List<Long> downloads) {
+        List<String> keys = new ArrayList<>();
+        List<Integer> items = new ArrayList<>();
+        for (int item = 0; item < names.size(); item++) {
+            String folded = TextFolding.fold(names.get(item));
+            for (int position = 0; position < folded.length(); position++) {
+                boolean wordStart = Character.isLetterOrDigit(folded.charAt(position))
+                        && (position == 0 || !Character.isLetterOrDigit(folded.charAt(position - 1)));
+                if (wordStart) {
+                    keys.add(folded.substring(position));
+                    items.add(item);
+                }
+            }
+        }
+        long[] weights = downloads.stream().mapToLong(Long::longValue).toArray();
+        CompletionTrie trie = new CompletionTrie(keys.toArray(new String[0]),
+                items.stream().mapToInt(Integer::intValue).toArray(), weights, completions);
+        return new Snapshot(trie, ids.stream().mapToInt(Integer::intValue).toArray(),
+                names.toArray(new String[0]), weights);
+    }
+
+    /**
+     * Producto sugerido para un prefijo
+     *
+     * @param productId Identificador del producto
+     * @param product Nombre del producto
+     * @param downloads Número de descargas del producto
+     */
+    public record Completion(Integer productId, String product, long downloads) {
+    }
+
+    /**
+     * Versión publicada de las terminaciones, los elementos del trie son posiciones de los arreglos
+     *
+     * @param trie Trie de las llaves
+     * @param ids Identificador de cada producto
+     * @param names Nombre de cada producto
+     * @param downloads Número de descargas de cada producto
+     */
+    private record Snapshot(CompletionTrie trie, int[] ids, String[] names, long[] downloads) {
+    }
+}
@@ -0,0 +1,25 @@
+package com.sofka.megawarez.service;
+
+/**
+ * Evento publicado cuando un producto se crea, cambia de nombre o se borra. Los índices en memoria
+ * lo reciben al confirmarse la transacción
+ *
+ * @param productId Identificador del producto
+ * @param product Nombre del producto, nulo si el producto se borró
+ * @param subcategoryId Identificador de la subcategoría del producto, nulo si no cambió o si se borró
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+public record ProductChangedEvent(Integer productId, String product, Integer subcategoryId) {
+
+    /**
+     * Indica si el producto se borró
+     *
+     * @return Verdadero si se borró
+     */
+    public boolean deleted() {
+        return product == null;
+    }
+}
@@ -0,0 +1,220 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.domain.Product;
+import com.sofka.megawarez.utility.IntIntHashMap;
+import com.sofka.megawarez.utility.IntObjectHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Conteo de productos por categoría y subcategoría sobre los resultados de una búsqueda
+ *
+ * Guarda en memoria la subcategoría de cada producto y la categoría y el nombre de cada subcategoría,
+ * cargados al iniciar y actualizados al confirmarse cada creación o borrado de un producto. El conteo
+ * recorre solo los productos del resultado y busca la subcategoría de cada uno en un mapa de enteros,
+ * sin consultar la base de datos ni recorrer el catálogo. Los productos borrados junto con su
+ * categoría o subcategoría también publican su borrado y salen del mapa
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+public class ProductFacets {
+
+    /**
+     * Subcategoría de cada producto
+     */
+    private final IntIntHashMap subcategoryOf = new IntIntHashMap();
+
+    /**
+     * Categoría de cada subcategoría
+     */
+    private final IntIntHashMap categoryOf = new IntIntHashMap();
+
+    /**
+     * Nombre de cada subcategoría
+     */
+    private final IntObjectHashMap<String> subcategoryNames = new IntObjectHashMap<>();
+
+    /**
+     * Nombre de cada categoría
+     */
+    private final IntObjectHashMap<String> categoryNames = new IntObjectHashMap<>();
+
+    /**
+     * Bloqueo de lectura para los conteos y de escritura para las actualizaciones
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Acceso JDBC para la carga de productos y subcategorías
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param jdbcTemplate Acceso JDBC para la carga de productos y subcategorías
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public ProductFacets(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Carga las subcategorías y la subcategoría de todos los productos
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @PostConstruct
+    public void load() {
+        lock.writeLock().lock();
+        try {
+            loadSubcategories(null);
+            jdbcTemplate.query("SELECT prd_id, prd_subcategory_id FROM product",
+                    row -> { subcategoryOf.put(row.getInt(1), row.getInt(2)); });
+            log.info("Facetas cargadas con {} productos y {} subcategorías", subcategoryOf.size(), categoryOf.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Actualiza la subcategoría de un producto cuando se crea o se borra. Si la subcategoría se creó
+     * después de la carga, se cargan antes sus datos
+     *
+     * @param event Evento del producto
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (!event.deleted() && event.subcategoryId() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (event.deleted()) {
+                subcategoryOf.remove(event.productId());
+                return;
+            }
+            if (categoryOf.get(event.subcategoryId()) == 0) {
+                loadSubcategories(event.subcategoryId());
+            }
+            subcategoryOf.put(event.productId(), event.subcategoryId());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Cuenta los productos de un resultado por categoría y subcategoría
+     *
+     * @param products Productos del resultado
+     * @return Categorías con productos, de mayor a menor número de productos y luego por nombre, cada
+     *         una con sus subcategorías en el mismo orden
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public List<CategoryFacet> count(Iterable<Product> products) {
+        IntIntHashMap counts = new IntIntHashMap();
+        Map<Integer, List<SubcategoryFacet>> bySubcategory = new HashMap<>();
+        Map<Integer, String> categories = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            for (Product product : products) {
+                int subcategory = product.getId() == null ? 0 : subcategoryOf.get(product.getId());
+                if (subcategory != 0) {
+                    counts.addTo(subcategory, 1);
+                }
+            }
+            counts.forEach((subcategory, count) -> {
+                int category = categoryOf.get(subcategory);
+                categories.put(category, categoryNames.get(category));
+                bySubcategory.computeIfAbsent(category, key -> new ArrayList<>())
+                        .add(new SubcategoryFacet(subcategory, subcategoryNames.get(subcategory), count));
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        Comparator<SubcategoryFacet> subcategoryOrder = Comparator.comparingInt(SubcategoryFacet::count).reversed()
+                .thenComparing(SubcategoryFacet::subcategory, Comparator.nullsLast(Comparator.naturalOrder()));
+        List<CategoryFacet> facets = new ArrayList<>(bySubcategory.size());
+        bySubcategory.forEach((category, subcategories) -> {
+            subcategories.sort(subcategoryOrder);
+            int count = subcategories.stream().mapToInt(SubcategoryFacet::count).sum();
+            facets.add(new CategoryFacet(category, categories.get(category), count, subcategories));
+        });
+        facets.sort(Comparator.comparingInt(CategoryFacet::count).reversed()
+                .thenComparing(CategoryFacet::category, Comparator.nullsLast(Comparator.naturalOrder())));
+        return facets;
+    }
+
+    /**
+     * Carga la categoría y los nombres de las subcategorías, con el bloqueo de escritura tomado
+     *
+     * @param subcategoryId Identificador de una subcategoría, nulo para todas
+     */
+    private void loadSubcategories(Integer subcategoryId) {
+        String sql = "SELECT s.scat_id, s.scat_name, c.cat_id, c.cat_name FROM subcategory s "
+                + "JOIN category c ON c.cat_id = s.scat_category_id";
+        Object[] args = new Object[0];
+        if (subcategoryId != null) {
+            sql += " WHERE s.scat_id = ?";
+            args = new Object[] {subcategoryId};
+        }
+        jdbcTemplate.query(sql, row -> {
+            categoryOf.put(row.getInt(1), row.getInt(3));
+            subcategoryNames.put(row.getInt(1), row.getString(2));
+            categoryNames.put(row.getInt(3), row.getString(4));
+        }, args);
+    }
+
+    /**
+     * Productos de un resultado con sus conteos por categoría
+     *
+     * @param products Productos del resultado
+     * @param facets Conteos por categoría y subcategoría
+     */
+    public record FacetedProducts(List<Product> products, List<CategoryFacet> facets) {
+    }
+
+    /**
+     * Número de productos de un resultado en una categoría
+     *
+     * @param categoryId Identificador de la categoría
+     * @param category Nombre de la categoría
+     * @param count Número de productos
+     * @param subcategories Conteos por subcategoría de la categoría
+     */
+    public record CategoryFacet(Integer categoryId, String category, int count, List<SubcategoryFacet> subcategories) {
+    }
+
+    /**
+     * Número de productos de un resultado en una subcategoría
+     *
+     * @param subcategoryId Identificador de la subcategoría
+     * @param subcategory Nombre de la subcategoría
+     * @param count Número de productos
+     */
+    public record SubcategoryFacet(Integer subcategoryId, String subcategory, int count) {
+    }
+}
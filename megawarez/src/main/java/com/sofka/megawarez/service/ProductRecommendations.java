@@ -0,0 +1,577 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.utility.IntIntHashMap;
+import com.sofka.megawarez.utility.IntObjectHashMap;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recomendaciones de "quienes descargaron este producto también descargaron", calculadas en memoria
+ *
+ * Se guarda una matriz dispersa de co-ocurrencias entre productos: por cada producto, cuántos
+ * usuarios descargaron también cada uno de los otros. Con cada descarga nueva de un usuario se suma
+ * uno entre el producto y cada producto de su historial reciente, que tiene un tamaño máximo. Las
+ * filas y los historiales usan mapas de enteros sin convertir a Integer. Una tarea programada recorta
+ * cada fila a sus vecinos más frecuentes y publica una copia ordenada de solo lectura, así que la
+ * consulta no bloquea ni toca la base de datos
+ *
+ * La reconstrucción completa lee las descargas de la base de datos, arma por producto la lista de
+ * usuarios que lo descargaron y reparte los productos entre tareas fork-join. Cada tarea arma la
+ * fila completa de un producto sumando los historiales de sus usuarios y la recorta de inmediato,
+ * así que en memoria hay a lo sumo una fila sin recortar por hilo y no una matriz de productos por
+ * productos. Las descargas que llegan mientras tanto se vuelven a aplicar sobre la matriz nueva
+ *
+ * Los productos borrados salen de la matriz al confirmarse el borrado y se omiten en las descargas
+ * nuevas, en la publicación y en las consultas hasta que una reconstrucción, que ya no lee sus
+ * descargas, los deja fuera de la matriz
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+public class ProductRecommendations {
+
+    /**
+     * Número de recomendaciones por defecto en la respuesta
+     */
+    private static final int DEFAULT_LIMIT = 10;
+
+    /**
+     * Veces el número de vecinos que se conservan en cada fila al recortarla, para que los vecinos
+     * nuevos tengan tiempo de acumular co-ocurrencias antes de competir con los publicados
+     */
+    private static final int RETAINED_FACTOR = 2;
+
+    /**
+     * Veces el número de vecinos que puede alcanzar una fila antes de recortarla sin esperar a la
+     * tarea programada
+     */
+    private static final int GROWTH_FACTOR = 4;
+
+    /**
+     * Número máximo de productos cuyas filas arma una tarea fork-join sin dividirse
+     */
+    private static final int PRODUCTS_PER_TASK = 256;
+
+    /**
+     * Número de vecinos publicados por producto
+     */
+    private final int neighbors;
+
+    /**
+     * Número máximo de productos en el historial de cada usuario
+     */
+    private final int historySize;
+
+    /**
+     * Número de hilos de la reconstrucción, cero para uno por procesador
+     */
+    private final int parallelism;
+
+    /**
+     * Verdadero si al iniciar se reconstruye la matriz desde las descargas
+     */
+    private final boolean rebuildOnStart;
+
+    /**
+     * Acceso JDBC para la reconstrucción
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Duración de cada reconstrucción
+     */
+    private final Timer rebuilds;
+
+    /**
+     * Protege la matriz, los historiales y las descargas pendientes de la reconstrucción
+     */
+    private final Object lock = new Object();
+
+    /**
+     * Co-ocurrencias por producto
+     */
+    private IntObjectHashMap<IntIntHashMap> matrix = new IntObjectHashMap<>();
+
+    /**
+     * Historial reciente de productos por usuario
+     */
+    private IntObjectHashMap<History> histories = new IntObjectHashMap<>();
+
+    /**
+     * Productos borrados que todavía pueden aparecer en la matriz o en los historiales
+     */
+    private final Set<Integer> deleted = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Descargas recibidas durante una reconstrucción, nulo si no hay una en curso
+     */
+    private List<DownloadRecordedEvent> duringRebuild;
+
+    /**
+     * Vecinos publicados por producto, pares de identificador y co-ocurrencias ordenados de mayor a
+     * menor. Nunca se modifica después de publicarse
+     */
+    private volatile IntObjectHashMap<int[]> published = new IntObjectHashMap<>();
+
+    /**
+     * Constructor de la clase
+     *
+     * @param neighbors Número de vecinos publicados por producto
+     * @param historySize Número máximo de productos en el historial de cada usuario
+     * @param parallelism Número de hilos de la reconstrucción, cero para uno por procesador
+     * @param rebuildOnStart Verdadero si al iniciar se reconstruye la matriz desde las descargas
+     * @param jdbcTemplate Acceso JDBC para la reconstrucción
+     * @param meterRegistry Registro de métricas
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public ProductRecommendations(
+            @Value("${megawarez.recommendations.neighbors:20}") int neighbors,
+            @Value("${megawarez.recommendations.history-size:100}") int historySize,
+            @Value("${megawarez.recommendations.parallelism:0}") int parallelism,
+            @Value("${megawarez.recommendations.rebuild-on-start:true}") boolean rebuildOnStart,
+            JdbcTemplate jdbcTemplate,
+            MeterRegistry meterRegistry) {
+        this.neighbors = Math.max(1, neighbors);
+        this.historySize = Math.max(1, historySize);
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.rebuildOnStart = rebuildOnStart;
+        this.jdbcTemplate = jdbcTemplate;
+        this.rebuilds = meterRegistry.timer("megawarez.recommendations.rebuild");
+        meterRegistry.gauge("megawarez.recommendations.products", this, recommendations -> recommendations.published.size());
+    }
+
+    /**
+     * Reconstruye la matriz al iniciar
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @PostConstruct
+    public void load() {
+        if (rebuildOnStart) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Suma las co-ocurrencias de cada descarga escrita
+     *
+     * @param event Evento de la descarga
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @EventListener
+    public void onDownloadRecorded(DownloadRecordedEvent event) {
+        synchronized (lock) {
+            record(event.userId(), event.productId());
+            if (duringRebuild != null) {
+                duringRebuild.add(event);
+            }
+        }
+    }
+
+    /**
+     * Saca de la matriz un producto cuando se confirma su borrado
+     *
+     * @param event Evento del producto
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (!event.deleted()) {
+            return;
+        }
+        synchronized (lock) {
+            deleted.add(event.productId());
+            matrix.remove(event.productId());
+        }
+    }
+
+    /**
+     * Productos que también descargaron los usuarios que descargaron un producto, desde la última
+     * publicación. Se omiten los vecinos borrados después de esa publicación
+     *
+     * @param productId Identificador del producto
+     * @param limit Número de recomendaciones, nulo para el valor por defecto
+     * @return Recomendaciones de mayor a menor co-ocurrencia
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public List<Recommendation> recommendations(Integer productId, Integer limit) {
+        int[] top = productId == null || productId == 0 || deleted.contains(productId) ? null : published.get(productId);
+        if (top == null) {
+            return List.of();
+        }
+        int size = Math.min(top.length / 2, limit == null ? DEFAULT_LIMIT : Math.max(1, limit));
+        List<Recommendation> recommendations = new ArrayList<>(size);
+        for (int i = 0; i < top.length && recommendations.size() < size; i += 2) {
+            if (!deleted.contains(top[i])) {
+                recommendations.add(new Recommendation(top[i], top[i + 1]));
+            }
+        }
+        return recommendations;
+    }
+
+    /**
+     * Recorta cada fila de la matriz a sus vecinos más frecuentes y publica los vecinos de cada
+     * producto para las consultas. El bloqueo se toma fila por fila, así que una descarga solo espera
+     * el recorte de una fila y no el de toda la matriz
+     *
+     * @return Número de productos publicados
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @Scheduled(fixedDelayString = "${megawarez.recommendations.prune-interval:PT30S}")
+    public synchronized int prune() {
+        int[] productIds;
+        synchronized (lock) {
+            productIds = matrix.keys();
+        }
+        IntObjectHashMap<int[]> snapshot = new IntObjectHashMap<>(productIds.length);
+        for (int productId : productIds) {
+            int[] top;
+            synchronized (lock) {
+                IntIntHashMap row = matrix.get(productId);
+                if (row == null || deleted.contains(productId)) {
+                    continue;
+                }
+                top = row.top(neighbors * RETAINED_FACTOR);
+                if (row.size() > neighbors * RETAINED_FACTOR) {
+                    matrix.put(productId, toRow(top));
+                }
+            }
+            snapshot.put(productId, withoutDeleted(top));
+        }
+        published = snapshot;
+        return snapshot.size();
+    }
+
+    /**
+     * Reconstruye la matriz desde todas las descargas con tareas fork-join y publica el resultado.
+     * Si ya hay una reconstrucción en curso no hace nada. Al terminar olvida los productos borrados
+     * antes de empezar, porque sus descargas se borraron con ellos antes de leer la tabla download
+     *
+     * @return Número de productos con recomendaciones, o -1 si ya había una reconstrucción en curso
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @Scheduled(cron = "${megawarez.recommendations.rebuild-cron:0 0 4 * * *}")
+    public int rebuild() {
+        Set<Integer> deletedBefore;
+        synchronized (lock) {
+            if (duringRebuild != null) {
+                return -1;
+            }
+            duringRebuild = new ArrayList<>();
+            deletedBefore = Set.copyOf(deleted);
+        }
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            IntObjectHashMap<History> loaded = new IntObjectHashMap<>();
+            jdbcTemplate.query("SELECT dwn_user_id, dwn_product_id FROM download ORDER BY dwn_id",
+                    row -> { loaded.computeIfAbsent(row.getInt(1), id -> new History(historySize)).add(row.getInt(2)); });
+            List<History> shared = new ArrayList<>();
+            loaded.forEach((userId, history) -> {
+                if (history.size > 1) {
+                    shared.add(history);
+                }
+            });
+            History[] users = shared.toArray(new History[0]);
+            IntObjectHashMap<int[]> downloaders = downloaders(users);
+            IntObjectHashMap<IntIntHashMap> rebuilt = pool.invoke(new CoOccurrences(
+                    users, downloaders, downloaders.keys(), 0, downloaders.size(), neighbors * RETAINED_FACTOR));
+            synchronized (lock) {
+                matrix = rebuilt;
+                histories = loaded;
+                for (DownloadRecordedEvent event : duringRebuild) {
+                    record(event.userId(), event.productId());
+                }
+                deleted.removeAll(deletedBefore);
+            }
+            int products = prune();
+            log.info("Recomendaciones reconstruidas para {} productos con {} usuarios", products, loaded.size());
+            return products;
+        } finally {
+            pool.shutdown();
+            synchronized (lock) {
+                duringRebuild = null;
+            }
+            rebuilds.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Suma una descarga a la matriz si el producto no estaba en el historial del usuario. Se llama
+     * con el bloqueo tomado
+     *
+     * @param userId Identificador del usuario
+     * @param productId Identificador del producto
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    private void record(int userId, int productId) {
+        if (deleted.contains(productId)) {
+            return;
+        }
+        History history = histories.computeIfAbsent(userId, id -> new History(historySize));
+        if (history.contains(productId)) {
+            return;
+        }
+        for (int i = 0; i < history.size; i++) {
+            if (!deleted.contains(history.products[i])) {
+                increment(productId, history.products[i]);
+                increment(history.products[i], productId);
+            }
+        }
+        history.add(productId);
+    }
+
+    /**
+     * Suma uno a la co-ocurrencia de dos productos, recortando antes la fila si está llena. El
+     * recorte va antes de agregar el vecino nuevo para que no salga con su primera co-ocurrencia
+     *
+     * @param productId Producto de la fila
+     * @param neighborId Producto vecino
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    private void increment(int productId, int neighborId) {
+        IntIntHashMap row = matrix.computeIfAbsent(productId, id -> new IntIntHashMap());
+        if (row.size() >= neighbors * GROWTH_FACTOR && row.get(neighborId) == 0) {
+            row = toRow(row.top(neighbors * RETAINED_FACTOR));
+            matrix.put(productId, row);
+        }
+        row.addTo(neighborId, 1);
+    }
+
+    /**
+     * Vecinos a publicar de una fila recortada, sin los productos borrados
+     *
+     * @param top Pares intercalados de identificador y co-ocurrencias, de mayor a menor
+     * @return Hasta el número de vecinos publicados de pares intercalados
+     */
+    private int[] withoutDeleted(int[] top) {
+        int[] kept = new int[Math.min(top.length, neighbors * 2)];
+        int size = 0;
+        for (int i = 0; i < top.length && size < kept.length; i += 2) {
+            if (!deleted.contains(top[i])) {
+                kept[size++] = top[i];
+                kept[size++] = top[i + 1];
+            }
+        }
+        return size == kept.length ? kept : Arrays.copyOf(kept, size);
+    }
+
+    /**
+     * Usuarios que descargaron cada producto
+     *
+     * @param users Historiales de los usuarios
+     * @return Posiciones en users de los usuarios que descargaron cada producto
+     */
+    private static IntObjectHashMap<int[]> downloaders(History[] users) {
+        IntIntHashMap counts = new IntIntHashMap();
+        for (History history : users) {
+            for (int i = 0; i < history.size; i++) {
+                counts.addTo(history.products[i], 1);
+            }
+        }
+        IntObjectHashMap<int[]> downloaders = new IntObjectHashMap<>(counts.size());
+        counts.forEach((productId, count) -> downloaders.put(productId, new int[count]));
+        IntIntHashMap filled = new IntIntHashMap(counts.size());
+        for (int user = 0; user < users.length; user++) {
+            History history = users[user];
+            for (int i = 0; i < history.size; i++) {
+                downloaders.get(history.products[i])[filled.addTo(history.products[i], 1) - 1] = user;
+            }
+        }
+        return downloaders;
+    }
+
+    /**
+     * Crea una fila a partir de pares de identificador y co-ocurrencias
+     *
+     * @param top Pares intercalados
+     * @return Fila de la matriz
+     */
+    private static IntIntHashMap toRow(int[] top) {
+        IntIntHashMap row = new IntIntHashMap(top.length / 2);
+        for (int i = 0; i < top.length; i += 2) {
+            row.put(top[i], top[i + 1]);
+        }
+        return row;
+    }
+
+    /**
+     * Filas de co-ocurrencias de un rango de productos, dividido entre tareas fork-join
+     */
+    private static final class CoOccurrences extends RecursiveTask<IntObjectHashMap<IntIntHashMap>> {
+
+        /**
+         * Historiales de los usuarios con más de un producto
+         */
+        private final History[] users;
+
+        /**
+         * Posiciones en users de los usuarios que descargaron cada producto
+         */
+        private final IntObjectHashMap<int[]> downloaders;
+
+        /**
+         * Productos con descargas
+         */
+        private final int[] products;
+
+        /**
+         * Primer producto del rango
+         */
+        private final int from;
+
+        /**
+         * Posición siguiente al último producto del rango
+         */
+        private final int to;
+
+        /**
+         * Número de vecinos que se conservan en cada fila
+         */
+        private final int retained;
+
+        CoOccurrences(History[] users, IntObjectHashMap<int[]> downloaders, int[] products, int from, int to, int retained) {
+            this.users = users;
+            this.downloaders = downloaders;
+            this.products = products;
+            this.from = from;
+            this.to = to;
+            this.retained = retained;
+        }
+
+        @Override
+        protected IntObjectHashMap<IntIntHashMap> compute() {
+            if (to - from <= PRODUCTS_PER_TASK) {
+                IntObjectHashMap<IntIntHashMap> rows = new IntObjectHashMap<>(to - from);
+                for (int index = from; index < to; index++) {
+                    int productId = products[index];
+                    IntIntHashMap row = new IntIntHashMap();
+                    for (int user : downloaders.get(productId)) {
+                        History history = users[user];
+                        for (int i = 0; i < history.size; i++) {
+                            if (history.products[i] != productId) {
+                                row.addTo(history.products[i], 1);
+                            }
+                        }
+                    }
+                    rows.put(productId, row.size() > retained ? toRow(row.top(retained)) : row);
+                }
+                return rows;
+            }
+            int middle = (from + to) >>> 1;
+            CoOccurrences left = new CoOccurrences(users, downloaders, products, from, middle, retained);
+            left.fork();
+            IntObjectHashMap<IntIntHashMap> right =
+                    new CoOccurrences(users, downloaders, products, middle, to, retained).compute();
+            return merge(left.join(), right);
+        }
+
+        /**
+         * Une las filas de dos rangos de productos distintos, pasando las del más pequeño al más grande
+         *
+         * @param first Filas de un rango
+         * @param second Filas del otro rango
+         * @return Filas de ambos rangos
+         */
+        private static IntObjectHashMap<IntIntHashMap> merge(
+                IntObjectHashMap<IntIntHashMap> first, IntObjectHashMap<IntIntHashMap> second) {
+            IntObjectHashMap<IntIntHashMap> target = first.size() >= second.size() ? first : second;
+            IntObjectHashMap<IntIntHashMap> source = target == first ? second : first;
+            source.forEach(target::put);
+            return target;
+        }
+    }
+
+    /**
+     * Productos descargados recientemente por un usuario, sin repetidos. Al llenarse se reemplaza el
+     * más antiguo
+     */
+    private static final class History {
+
+        /**
+         * Identificadores de los productos
+         */
+        private final int[] products;
+
+        /**
+         * Número de productos guardados
+         */
+        private int size;
+
+        /**
+         * Posición del próximo reemplazo cuando el historial está lleno
+         */
+        private int next;
+
+        History(int capacity) {
+            this.products = new int[capacity];
+        }
+
+        boolean contains(int productId) {
+            for (int i = 0; i < size; i++) {
+                if (products[i] == productId) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void add(int productId) {
+            if (contains(productId)) {
+                return;
+            }
+            if (size < products.length) {
+                products[size++] = productId;
+            } else {
+                products[next] = productId;
+                next = (next + 1) % products.length;
+            }
+        }
+    }
+
+    /**
+     * Producto recomendado
+     *
+     * @param productId Identificador del producto
+     * @param downloads Número de usuarios que descargaron ambos productos
+     */
+    public record Recommendation(Integer productId, int downloads) {
+    }
+}
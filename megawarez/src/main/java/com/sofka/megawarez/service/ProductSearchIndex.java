@@ -0,0 +1,277 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.utility.BkTree;
+import com.sofka.megawarez.utility.TextFolding;
+import com.sofka.megawarez.utility.TrigramIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Búsqueda de productos por nombre con un índice de trigramas en memoria
+ *
+ * El índice se carga al iniciar con los nombres de todos los productos y se actualiza al confirmarse
+ * cada creación, cambio de nombre o borrado de un producto. Las búsquedas comparten un bloqueo de
+ * lectura y las actualizaciones toman el de escritura. Los resultados se ordenan primero por los
+ * nombres que empiezan con el texto buscado, luego por los que lo contienen y al final por los que
+ * terminan con él, y dentro de cada grupo por nombre
+ *
+ * Para tolerar errores de escritura también se mantiene un {@link BkTree} con las palabras distintas
+ * de los nombres. La búsqueda aproximada busca cada palabra de la consulta en ese árbol a una
+ * distancia de edición que crece con su largo, sin recorrer todos los nombres, y devuelve los
+ * productos que tienen una palabra cercana a cada palabra de la consulta
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+public class ProductSearchIndex {
+
+    /**
+     * Índice de trigramas de los nombres
+     */
+    private final TrigramIndex index = new TrigramIndex();
+
+    /**
+     * Palabras distintas de los nombres con los productos que las usan
+     */
+    private final BkTree words = new BkTree();
+
+    /**
+     * Distancia de edición máxima por palabra en la búsqueda aproximada
+     */
+    private final int maxDistance;
+
+    /**
+     * Bloqueo de lectura para las búsquedas y de escritura para las actualizaciones
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Acceso JDBC para la carga inicial
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param maxDistance Distancia de edición máxima por palabra en la búsqueda aproximada
+     * @param jdbcTemplate Acceso JDBC para la carga inicial
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public ProductSearchIndex(
+            @Value("${megawarez.search.fuzzy.max-distance:2}") int maxDistance,
+            JdbcTemplate jdbcTemplate) {
+        this.maxDistance = maxDistance;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Carga los nombres de todos los productos en orden de identificador
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @PostConstruct
+    public void load() {
+        lock.writeLock().lock();
+        try {
+            jdbcTemplate.query("SELECT prd_id, prd_name FROM product ORDER BY prd_id",
+                    row -> { put(row.getInt(1), row.getString(2)); });
+            log.info("Índice de búsqueda cargado con {} productos y {} palabras", index.size(), words.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Actualiza el índice cuando un producto cambia
+     *
+     * @param event Evento del producto
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.deleted()) {
+            remove(event.productId());
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            put(event.productId(), event.product());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Quita un producto del índice, por ejemplo uno que la búsqueda ya no encontró en la base de datos
+     *
+     * @param productId Identificador del producto
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public void remove(Integer productId) {
+        lock.writeLock().lock();
+        try {
+            removeWords(productId);
+            index.remove(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Busca los productos cuyo nombre contiene un texto, sin distinguir mayúsculas ni acentos
+     *
+     * @param query Texto a buscar
+     * @return Identificadores de los productos: primero los que empiezan con el texto, luego los que
+     *         lo contienen y al final los que terminan con él
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public List<Integer> search(String query) {
+        String folded = TextFolding.fold(query);
+        List<Match> matches = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (int id : index.containing(query)) {
+                String text = index.text(id);
+                int rank = text.startsWith(folded) ? 0 : text.endsWith(folded) ? 2 : 1;
+                matches.add(new Match(id, text, rank));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        matches.sort(Comparator.comparingInt(Match::rank).thenComparing(Match::text).thenComparingInt(Match::id));
+        return matches.stream().map(Match::id).toList();
+    }
+
+    /**
+     * Busca los productos con una palabra parecida a cada palabra de un texto, tolerando errores de
+     * escritura: ninguno en palabras de hasta dos caracteres, uno hasta cinco y dos en las más largas,
+     * sin superar la distancia máxima configurada
+     *
+     * @param query Texto a buscar
+     * @return Identificadores de los productos de menor a mayor suma de distancias, y por nombre
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public List<Integer> fuzzySearch(String query) {
+        List<String> terms = split(TextFolding.fold(query));
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+        List<Match> matches = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Map<Integer, Integer> distances = null;
+            for (String term : terms) {
+                Map<Integer, Integer> closest = new HashMap<>();
+                int allowed = Math.min(maxDistance, term.length() <= 2 ? 0 : term.length() <= 5 ? 1 : 2);
+                words.search(term, allowed, (word, distance, ids) -> {
+                    for (int id : ids) {
+                        closest.merge(id, distance, Math::min);
+                    }
+                });
+                if (distances != null) {
+                    Map<Integer, Integer> previous = distances;
+                    closest.keySet().retainAll(previous.keySet());
+                    closest.replaceAll((id, distance) -> distance + previous.get(id));
+                }
+                distances = closest;
+                if (distances.isEmpty()) {
+                    return List.of();
+                }
+            }
+            distances.forEach((id, distance) -> matches.add(new Match(id, index.text(id), distance)));
+        } finally {
+            lock.readLock().unlock();
+        }
+        matches.sort(Comparator.comparingInt(Match::rank).thenComparing(Match::text).thenComparingInt(Match::id));
+        return matches.stream().map(Match::id).toList();
+    }
+
+    /**
+     * Agrega o reemplaza el nombre de un producto en el índice y en el diccionario de palabras
+     *
+     * @param productId Identificador del producto
+     * @param product Nombre del producto
+     */
+    private void put(int productId, String product) {
+        removeWords(productId);
+        index.put(productId, product);
+        for (String word : split(index.text(productId))) {
+            words.add(word, productId);
+        }
+    }
+
+    /**
+     * Quita del diccionario las palabras del nombre guardado de un producto
+     *
+     * @param productId Identificador del producto
+     */
+    private void removeWords(int productId) {
+        String previous = index.text(productId);
+        if (previous != null) {
+            for (String word : split(previous)) {
+                words.remove(word, productId);
+            }
+        }
+    }
+
+    /**
+     * Palabras distintas de un texto normalizado
+     *
+     * @param folded Texto normalizado
+     * @return Palabras formadas por letras y dígitos
+     */
+    private static List<String> split(String folded) {
+        List<String> terms = new ArrayList<>();
+        int start = -1;
+        for (int position = 0; position <= folded.length(); position++) {
+            boolean letter = position < folded.length() && Character.isLetterOrDigit(folded.charAt(position));
+            if (letter && start < 0) {
+                start = position;
+            } else if (!letter && start >= 0) {
+                String term = folded.substring(start, position);
+                if (!terms.contains(term)) {
+                    terms.add(term);
+                }
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Producto encontrado y su grupo en el orden de los resultados
+     *
+     * @param id Identificador del producto
+     * @param text Nombre normalizado
+     * @param rank 0 si empieza con el texto, 1 si lo contiene y 2 si termina con él; en la búsqueda
+     *             aproximada, la suma de las distancias de edición
+     */
+    private record Match(int id, String text, int rank) {
+    }
+}
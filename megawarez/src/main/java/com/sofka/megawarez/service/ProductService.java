@@ -1,20 +1,30 @@
 package com.sofka.megawarez.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sofka.megawarez.domain.Category;
 import com.sofka.megawarez.domain.Product;
 import com.sofka.megawarez.domain.Subcategory;
 import com.sofka.megawarez.repository.CategoryRepository;
 import com.sofka.megawarez.repository.ProductRepository;
+import com.sofka.megawarez.repository.ProductRow;
 import com.sofka.megawarez.repository.SubcategoryRepository;
 import com.sofka.megawarez.service.interfaces.IProduct;
+import com.sofka.megawarez.utility.IntObjectHashMap;
+import com.sofka.megawarez.utility.JsonStreamWriter;
+import com.sofka.megawarez.utility.KeysetPage;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.Instant;
-import java.util.HashSet;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @Service
 public class ProductService implements IProduct {
@@ -37,20 +47,61 @@ public class ProductService implements IProduct {
     @Autowired
     private SubcategoryRepository subcategoryRepository;
 
+    /**
+     * Serializador JSON para los listados completos
+     */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Paginación por cursor de los listados
+     */
+    @Autowired
+    private KeysetPagination keysetPagination;
+
+    /**
+     * Índice en memoria de los nombres de los productos
+     */
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    /**
+     * Publicador de los cambios de productos para los índices en memoria
+     */
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Campos por los que se permite ordenar los productos
+     */
+    private static final Set<String> PRODUCT_SORT = Set.of(KeysetPagination.ID, "product", "createdAt", "downloadCount");
+
+    /**
+     * Campos por los que se permite ordenar las categorias
+     */
+    private static final Set<String> CATEGORY_SORT = Set.of(KeysetPagination.ID, "category", "createdAt");
+
+    /**
+     * Campos por los que se permite ordenar las subcategorias
+     */
+    private static final Set<String> SUBCATEGORY_SORT = Set.of(KeysetPagination.ID, "subcategory", "createdAt");
+
     /**
      * Devuelve una lista de productos del sistema
      *
-     * @return
+     * @param cursor Cursor de la página anterior, nulo para la primera página
+     * @param size Tamaño de página, nulo para el tamaño por defecto
+     * @return Página ordenada por identificador
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
     @Override
     @Transactional(readOnly = true)
-    public List<Product> getListProducts() {
-        List<Product> products = null;
+    public KeysetPage<Product> getListProducts(String cursor, Integer size) {
+        KeysetPage<Product> products = null;
         try {
-            products = (List<Product>) productRepository.findAll();
+            products = keysetPagination.page(Product.class, PRODUCT_SORT, KeysetPagination.ID, Sort.Direction.ASC, cursor, size);
         } catch (Exception exc) {
             throw exc;
         }
@@ -93,6 +144,8 @@ public class ProductService implements IProduct {
         try {
             product.setCreatedAt(Instant.now());
             products = productRepository.save(product);
+            eventPublisher.publishEvent(new ProductChangedEvent(
+                    products.getId(), products.getProduct(), products.getPrdSubcategory().getId()));
         } catch (Exception exc) {
             throw exc;
         }
@@ -105,22 +158,61 @@ public class ProductService implements IProduct {
      *
      * @param field campo por el cual ordenar
      * @param order método de ordenado ASC o DESC
-     * @return Lista de productos
+     * @param cursor Cursor de la página anterior, nulo para la primera página
+     * @param size Tamaño de página, nulo para el tamaño por defecto
+     * @return Página ordenada
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public KeysetPage<Product> getProductOrdered(String field, Sort.Direction order, String cursor, Integer size) {
+        return keysetPagination.page(Product.class, PRODUCT_SORT, field, order, cursor, size);
+    }
+
+    /**
+     * Devuelve los productos ordenados de más a menos descargados, según el conteo de cada producto
+     * y sin recorrer las descargas
+     *
+     * @param cursor Cursor de la página anterior, nulo para la primera página
+     * @param size Tamaño de página, nulo para el tamaño por defecto
+     * @return Página ordenada por número de descargas
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
     @Override
     @Transactional(readOnly = true)
-    public List<Product> getProductOrdered(String field, Sort.Direction order) {
-        return productRepository.findAll(Sort.by(order, field));
+    public KeysetPage<Product> getMostDownloaded(String cursor, Integer size) {
+        return keysetPagination.page(Product.class, PRODUCT_SORT, "downloadCount", Sort.Direction.DESC, cursor, size);
     }
 
     /**
-     * Busca un dato entre el nombre de un producto
+     * Escribe todos los productos en formato JSON a medida que se leen de la base de datos
+     *
+     * @param output Salida de la respuesta
+     * @throws IOException si falla la escritura
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void streamProducts(OutputStream output) throws IOException {
+        try (Stream<ProductRow> rows = productRepository.streamAll()) {
+            JsonStreamWriter.write(objectMapper, output, "Lista de productos", rows);
+        }
+    }
+
+    /**
+     * Busca un dato entre el nombre de un producto, sin distinguir mayúsculas ni acentos. Los
+     * productos se encuentran en el índice en memoria y se leen por identificador; los que ya no
+     * existen, por ejemplo porque el índice todavía no recibe su borrado, se quitan del índice
      *
      * @param dataToSearch Dato a buscar
-     * @return Lita de productos
+     * @return Lista de productos: primero los que empiezan con el dato, luego los que lo contienen y
+     *         al final los que terminan con él
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
@@ -128,14 +220,43 @@ public class ProductService implements IProduct {
     @Override
     @Transactional(readOnly = true)
     public List<Product> searchProduct(String dataToSearch) {
-        var product1 = productRepository.findByNombreStartingWith(dataToSearch);
-        var product2 = productRepository.findByNombreContains(dataToSearch);
-        var product3 = productRepository.findByNombreEndingWith(dataToSearch);
-        var answer = new HashSet<Product>();
-        answer.addAll(product1);
-        answer.addAll(product2);
-        answer.addAll(product3);
-        return answer.stream().toList();
+        return searchProduct(dataToSearch, false);
+    }
+
+    /**
+     * Busca un dato entre el nombre de un producto, sin distinguir mayúsculas ni acentos y
+     * opcionalmente tolerando errores de escritura en cada palabra. Los productos leídos se ordenan como
+     * los identificadores del índice en un solo recorrido, sin depender del hashCode de las entidades
+     *
+     * @param dataToSearch Dato a buscar
+     * @param fuzzy Verdadero para encontrar también palabras a una distancia de edición corta
+     * @return Lista de productos: en la búsqueda exacta ordenados como en
+     *         {@link #searchProduct(String)}, en la aproximada de menor a mayor distancia
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<Product> searchProduct(String dataToSearch, boolean fuzzy) {
+        List<Integer> ids = fuzzy ? productSearchIndex.fuzzySearch(dataToSearch) : productSearchIndex.search(dataToSearch);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        IntObjectHashMap<Product> found = new IntObjectHashMap<>(ids.size());
+        for (Product product : productRepository.findAllById(ids)) {
+            found.put(product.getId(), product);
+        }
+        List<Product> answer = new ArrayList<>(found.size());
+        for (Integer id : ids) {
+            Product product = found.get(id);
+            if (product == null) {
+                productSearchIndex.remove(id);
+            } else {
+                answer.add(product);
+            }
+        }
+        return answer;
     }
 
     /**
@@ -155,6 +276,7 @@ public class ProductService implements IProduct {
             product.setId(id);
             product.setUpdatedAt(Instant.now());
             productRepository.updateProduct(id, product.getProduct());
+            eventPublisher.publishEvent(new ProductChangedEvent(id, product.getProduct(), null));
         } catch (Exception exc) {
             throw exc;
         }
@@ -176,6 +298,7 @@ public class ProductService implements IProduct {
         var product = productRepository.findById(id);
         if (product.isPresent()) {
             productRepository.delete(product.get());
+            eventPublisher.publishEvent(new ProductChangedEvent(id, null, null));
             return product.get();
         } else {
             return null;
@@ -185,17 +308,19 @@ public class ProductService implements IProduct {
     /**
      * Devuelve una lista de Categorias con todos categorias del sistema
      *
-     * @return
+     * @param cursor Cursor de la página anterior, nulo para la primera página
+     * @param size Tamaño de página, nulo para el tamaño por defecto
+     * @return Página ordenada por identificador
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
     @Override
     @Transactional(readOnly = true)
-    public List<Category> getListCategory() {
-        List<Category> category = null;
+    public KeysetPage<Category> getListCategory(String cursor, Integer size) {
+        KeysetPage<Category> category = null;
         try {
-            category = (List<Category>) categoryRepository.findAll();
+            category = keysetPagination.page(Category.class, CATEGORY_SORT, KeysetPagination.ID, Sort.Direction.ASC, cursor, size);
         } catch (Exception exc) {
             throw exc;
         }
@@ -250,19 +375,22 @@ public class ProductService implements IProduct {
      *
      * @param field campo por el cual ordenar
      * @param order método de ordenado ASC o DESC
-     * @return Lista de categorias
+     * @param cursor Cursor de la página anterior, nulo para la primera página
+     * @param size Tamaño de página, nulo para el tamaño por defecto
+     * @return Página ordenada
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
     @Override
     @Transactional(readOnly = true)
-    public List<Category> getCategoryOrdered(String field, Sort.Direction order) {
-        return categoryRepository.findAll(Sort.by(order, field));
+    public KeysetPage<Category> getCategoryOrdered(String field, Sort.Direction order, String cursor, Integer size) {
+        return keysetPagination.page(Category.class, CATEGORY_SORT, field, order, cursor, size);
     }
 
     /**
-     * Borra una categoria del sistema
+     * Borra una categoria del sistema junto con sus subcategorias y productos, y publica el borrado
+     * de cada producto para los índices en memoria
      *
      * @param id Identificación de la categoria a borrar
      * @return Objeto de la categoria borrado
@@ -275,7 +403,9 @@ public class ProductService implements IProduct {
     public Category deleteCategory(Integer id) {
         var category = categoryRepository.findById(id);
         if (category.isPresent()) {
+            List<Integer> products = productRepository.findIdsByCategoryId(id);
             categoryRepository.delete(category.get());
+            products.forEach(this::publishDeleted);
             return category.get();
         } else {
             return null;
@@ -286,17 +416,19 @@ public class ProductService implements IProduct {
     /**
      * Devuelve una lista de Subcategorias con todos subcategorias del sistema
      *
-     * @return
+     * @param cursor Cursor de la página anterior, nulo para la primera página
+     * @param size Tamaño de página, nulo para el tamaño por defecto
+     * @return Página ordenada por identificador
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
     @Override
     @Transactional(readOnly = true)
-    public List<Subcategory> getListSubcategory() {
-        List<Subcategory> subcategory = null;
+    public KeysetPage<Subcategory> getListSubcategory(String cursor, Integer size) {
+        KeysetPage<Subcategory> subcategory = null;
         try {
-            subcategory = (List<Subcategory>) subcategoryRepository.findAll();
+            subcategory = keysetPagination.page(Subcategory.class, SUBCATEGORY_SORT, KeysetPagination.ID, Sort.Direction.ASC, cursor, size);
         } catch (Exception exc) {
             throw exc;
         }
@@ -351,19 +483,22 @@ public class ProductService implements IProduct {
      *
      * @param field campo por el cual ordenar
      * @param order método de ordenado ASC o DESC
-     * @return Lista de subcategorias
+     * @param cursor Cursor de la página anterior, nulo para la primera página
+     * @param size Tamaño de página, nulo para el tamaño por defecto
+     * @return Página ordenada
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
     @Override
     @Transactional(readOnly = true)
-    public List<Subcategory> getSubcategoryOrdered(String field, Sort.Direction order) {
-        return subcategoryRepository.findAll(Sort.by(order, field));
+    public KeysetPage<Subcategory> getSubcategoryOrdered(String field, Sort.Direction order, String cursor, Integer size) {
+        return keysetPagination.page(Subcategory.class, SUBCATEGORY_SORT, field, order, cursor, size);
     }
 
     /**
-     * Borra una subcategoria del sistema
+     * Borra una subcategoria del sistema junto con sus productos, y publica el borrado de cada
+     * producto para los índices en memoria
      *
      * @param id Identificación de la subcategoria a borrar
      * @return Objeto de la subcategoria borrado
@@ -376,11 +511,25 @@ public class ProductService implements IProduct {
     public Subcategory deleteSubcategory(Integer id) {
         var subcategory = subcategoryRepository.findById(id);
         if (subcategory.isPresent()) {
+            List<Integer> products = productRepository.findIdsBySubcategoryId(id);
             subcategoryRepository.delete(subcategory.get());
+            products.forEach(this::publishDeleted);
             return subcategory.get();
         } else {
             return null;
         }
     }
 
+    /**
+     * Avisa a los índices en memoria que un producto borrado en cascada ya no existe
+     *
+     * @param productId Identificador del producto
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    private void publishDeleted(Integer productId) {
+        eventPublisher.publishEvent(new ProductChangedEvent(productId, null, null));
+    }
+
 }
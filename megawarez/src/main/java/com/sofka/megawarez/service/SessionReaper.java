@@ -0,0 +1,111 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.repository.SessionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Tarea programada que borra las sesiones vencidas
+ *
+ * Las sesiones se borran en bloques acotados, cada uno en su propia transacción y con una pausa
+ * entre bloques, para no mantener bloqueos largos sobre la tabla session
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+public class SessionReaper {
+
+    /**
+     * Repositorio de Session
+     */
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    /**
+     * Tiempo de vida de una session desde su creación
+     */
+    @Value("${megawarez.session.lifetime:PT24H}")
+    private Duration lifetime;
+
+    /**
+     * Número máximo de sesiones a borrar por bloque
+     */
+    @Value("${megawarez.session.reaper.chunk-size:1000}")
+    private int chunkSize;
+
+    /**
+     * Pausa entre bloques
+     */
+    @Value("${megawarez.session.reaper.pause:PT0.2S}")
+    private Duration pause;
+
+    /**
+     * Contador de sesiones borradas
+     */
+    private final Counter purged;
+
+    /**
+     * Duración de cada ejecución
+     */
+    private final Timer duration;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param meterRegistry Registro de métricas
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public SessionReaper(MeterRegistry meterRegistry) {
+        purged = meterRegistry.counter("megawarez.session.reaper.purged");
+        duration = meterRegistry.timer("megawarez.session.reaper.duration");
+    }
+
+    /**
+     * Borra las sesiones vencidas en bloques
+     *
+     * @return Número de sesiones borradas
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @Scheduled(
+            initialDelayString = "${megawarez.session.reaper.interval:PT10M}",
+            fixedDelayString = "${megawarez.session.reaper.interval:PT10M}")
+    public int purgeExpired() {
+        long start = System.nanoTime();
+        Instant limit = Instant.now().minus(lifetime);
+        int total = 0;
+        try {
+            int deleted;
+            do {
+                deleted = sessionRepository.deleteCreatedBefore(limit, chunkSize);
+                total += deleted;
+                if (deleted == chunkSize) {
+                    Thread.sleep(pause.toMillis());
+                }
+            } while (deleted == chunkSize);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            purged.increment(total);
+            duration.record(Duration.ofNanos(elapsed));
+            log.info("Sesiones vencidas borradas: {} en {} ms", total, Duration.ofNanos(elapsed).toMillis());
+        }
+        return total;
+    }
+}
@@ -0,0 +1,395 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.domain.Product;
+import com.sofka.megawarez.repository.ProductRepository;
+import com.sofka.megawarez.utility.CountMinSketch;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Productos más descargados en ventanas de tiempo recientes, calculados en memoria
+ *
+ * Cada ventana divide su duración en intervalos de igual tamaño guardados en un arreglo circular,
+ * cada intervalo con un count-min sketch de sus descargas, y un sketch total con la suma de todos.
+ * Cuando un intervalo sale de la ventana se resta del total y se reutiliza. Los candidatos a más
+ * descargados se guardan en un montículo de mínimos de tamaño fijo: un producto entra si su
+ * estimación supera la del candidato más bajo, que sale. La memoria depende solo de la
+ * configuración y no del número de productos, y las estimaciones pueden exceder un poco a las
+ * descargas reales. Al iniciar se cargan las descargas de la ventana más larga
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+public class TrendingProducts {
+
+    /**
+     * Número de productos por defecto en la respuesta
+     */
+    private static final int DEFAULT_LIMIT = 10;
+
+    /**
+     * Ventanas de tiempo por duración
+     */
+    private final Map<Duration, Window> windows = new HashMap<>();
+
+    /**
+     * Ventana usada cuando no se indica una
+     */
+    private final Duration defaultWindow;
+
+    /**
+     * Ventana más larga
+     */
+    private final Duration longestWindow;
+
+    /**
+     * Número máximo de candidatos por ventana
+     */
+    private final int candidates;
+
+    /**
+     * Verdadero si al iniciar se cargan las descargas recientes
+     */
+    private final boolean warmUp;
+
+    /**
+     * Repositorio de Product
+     */
+    private final ProductRepository productRepository;
+
+    /**
+     * Acceso JDBC para la carga inicial
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param windows Duraciones de las ventanas, la primera es la ventana por defecto
+     * @param buckets Número de intervalos de cada ventana
+     * @param depth Número de filas de cada count-min sketch
+     * @param width Ancho de las filas de cada count-min sketch
+     * @param candidates Número máximo de candidatos por ventana
+     * @param warmUp Verdadero si al iniciar se cargan las descargas recientes
+     * @param productRepository Repositorio de Product
+     * @param jdbcTemplate Acceso JDBC para la carga inicial
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public TrendingProducts(
+            @Value("${megawarez.trending.windows:PT1H,P1D}") Duration[] windows,
+            @Value("${megawarez.trending.buckets:60}") int buckets,
+            @Value("${megawarez.trending.sketch-depth:4}") int depth,
+            @Value("${megawarez.trending.sketch-width:1024}") int width,
+            @Value("${megawarez.trending.candidates:100}") int candidates,
+            @Value("${megawarez.trending.warm-up:true}") boolean warmUp,
+            ProductRepository productRepository,
+            JdbcTemplate jdbcTemplate) {
+        if (windows.length == 0) {
+            throw new IllegalArgumentException("Se necesita al menos una ventana de tendencia");
+        }
+        long now = System.currentTimeMillis();
+        for (Duration window : windows) {
+            this.windows.put(window, new Window(window, Math.max(1, buckets), depth, width, Math.max(1, candidates), now));
+        }
+        this.defaultWindow = windows[0];
+        this.longestWindow = Arrays.stream(windows).max(Comparator.naturalOrder()).orElseThrow();
+        this.candidates = Math.max(1, candidates);
+        this.warmUp = warmUp;
+        this.productRepository = productRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Carga las descargas de la ventana más larga
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @PostConstruct
+    public void load() {
+        if (!warmUp) {
+            return;
+        }
+        long[] loaded = {0};
+        jdbcTemplate.query(
+                "SELECT dwn_product_id, dwn_created_at FROM download WHERE dwn_created_at >= ?",
+                row -> {
+                    record(row.getInt(1), row.getTimestamp(2).toInstant());
+                    loaded[0]++;
+                },
+                Timestamp.from(Instant.now().minus(longestWindow)));
+        log.info("Tendencias cargadas con {} descargas recientes", loaded[0]);
+    }
+
+    /**
+     * Suma cada descarga escrita a todas las ventanas
+     *
+     * @param event Evento de la descarga
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @EventListener
+    public void onDownloadRecorded(DownloadRecordedEvent event) {
+        record(event.productId(), event.createdAt() == null ? Instant.now() : event.createdAt());
+    }
+
+    /**
+     * Devuelve los productos más descargados en una ventana
+     *
+     * @param window Duración de la ventana en formato ISO-8601, nula para la ventana por defecto
+     * @param limit Número de productos, nulo para el valor por defecto
+     * @return Productos de más a menos descargados
+     * @throws IllegalArgumentException si la ventana no está configurada
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public List<Trend> trending(String window, Integer limit) {
+        return trending(window, limit, Instant.now());
+    }
+
+    /**
+     * Devuelve los productos más descargados en una ventana que termina en un instante
+     *
+     * @param window Duración de la ventana en formato ISO-8601, nula para la ventana por defecto
+     * @param limit Número de productos, nulo para el valor por defecto
+     * @param now Final de la ventana
+     * @return Productos de más a menos descargados
+     * @throws IllegalArgumentException si la ventana no está configurada
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    List<Trend> trending(String window, Integer limit, Instant now) {
+        Window selected = windows.get(parse(window));
+        if (selected == null) {
+            throw new IllegalArgumentException("La ventana " + window + " no está configurada, use una de " + windows.keySet());
+        }
+        int size = limit == null ? DEFAULT_LIMIT : Math.max(1, Math.min(limit, candidates));
+        List<int[]> top = selected.top(size, now.toEpochMilli());
+        Map<Integer, Product> products = productRepository.findAllById(top.stream().map(entry -> entry[0]).toList())
+                .stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        List<Trend> trends = new ArrayList<>(top.size());
+        for (int[] entry : top) {
+            Product product = products.get(entry[0]);
+            if (product != null) {
+                trends.add(new Trend(product.getId(), product.getProduct(), entry[1]));
+            }
+        }
+        return trends;
+    }
+
+    /**
+     * Suma una descarga a todas las ventanas
+     *
+     * @param productId Identificador del producto
+     * @param at Fecha y hora de la descarga
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    private void record(int productId, Instant at) {
+        long millis = at.toEpochMilli();
+        for (Window window : windows.values()) {
+            window.record(productId, millis);
+        }
+    }
+
+    /**
+     * Convierte el parámetro de ventana en una duración
+     *
+     * @param window Duración en formato ISO-8601, nula para la ventana por defecto
+     * @return Duración
+     * @throws IllegalArgumentException si el formato no es válido
+     */
+    private Duration parse(String window) {
+        if (window == null || window.isBlank()) {
+            return defaultWindow;
+        }
+        try {
+            return Duration.parse(window);
+        } catch (DateTimeParseException exception) {
+            throw new IllegalArgumentException("La ventana " + window + " no es una duración ISO-8601 válida");
+        }
+    }
+
+    /**
+     * Producto con su número estimado de descargas en la ventana
+     *
+     * @param id Identificador del producto
+     * @param product Nombre del producto
+     * @param downloads Descargas estimadas
+     */
+    public record Trend(Integer id, String product, long downloads) {
+    }
+
+    /**
+     * Ventana deslizante de descargas con sus candidatos a más descargados
+     */
+    private static final class Window {
+
+        /**
+         * Duración de cada intervalo en milisegundos
+         */
+        private final long bucketMillis;
+
+        /**
+         * Descargas de cada intervalo, en un arreglo circular
+         */
+        private final CountMinSketch[] buckets;
+
+        /**
+         * Suma de las descargas de todos los intervalos vigentes
+         */
+        private final CountMinSketch total;
+
+        /**
+         * Número máximo de candidatos
+         */
+        private final int capacity;
+
+        /**
+         * Candidatos por identificador de producto
+         */
+        private final Map<Integer, Candidate> candidates = new HashMap<>();
+
+        /**
+         * Candidatos ordenados de menor a mayor estimación
+         */
+        private final PriorityQueue<Candidate> heap = new PriorityQueue<>(Comparator.comparingInt(Candidate::estimate));
+
+        /**
+         * Intervalo más reciente, contado desde la época
+         */
+        private long current;
+
+        Window(Duration length, int buckets, int depth, int width, int capacity, long now) {
+            this.bucketMillis = Math.max(1, length.toMillis() / buckets);
+            this.buckets = new CountMinSketch[buckets];
+            for (int i = 0; i < buckets; i++) {
+                this.buckets[i] = new CountMinSketch(depth, width);
+            }
+            this.total = new CountMinSketch(depth, width);
+            this.capacity = capacity;
+            this.current = now / bucketMillis;
+        }
+
+        /**
+         * Suma una descarga en su intervalo si todavía está dentro de la ventana
+         */
+        synchronized void record(int productId, long millis) {
+            long bucket = millis / bucketMillis;
+            advance(bucket);
+            if (bucket <= current - buckets.length) {
+                return;
+            }
+            buckets[(int) Math.floorMod(bucket, buckets.length)].add(productId, 1);
+            total.add(productId, 1);
+            offer(productId, total.estimate(productId));
+        }
+
+        /**
+         * Candidatos de más a menos descargados
+         *
+         * @return Pares de identificador y descargas estimadas
+         */
+        synchronized List<int[]> top(int limit, long millis) {
+            advance(millis / bucketMillis);
+            return candidates.values().stream()
+                    .sorted(Comparator.comparingInt(Candidate::estimate).reversed()
+                            .thenComparingInt(Candidate::productId))
+                    .limit(limit)
+                    .map(candidate -> new int[] {candidate.productId(), candidate.estimate()})
+                    .toList();
+        }
+
+        /**
+         * Agrega o actualiza un candidato; si no hay lugar reemplaza al de menor estimación cuando
+         * el nuevo lo supera
+         */
+        private void offer(int productId, int estimate) {
+            Candidate existing = candidates.remove(productId);
+            if (existing != null) {
+                heap.remove(existing);
+            } else if (candidates.size() == capacity) {
+                if (heap.peek().estimate() >= estimate) {
+                    return;
+                }
+                candidates.remove(heap.poll().productId());
+            }
+            Candidate candidate = new Candidate(productId, estimate);
+            candidates.put(productId, candidate);
+            heap.add(candidate);
+        }
+
+        /**
+         * Mueve la ventana hasta un intervalo, descontando del total los intervalos que salen, y
+         * recalcula las estimaciones de los candidatos
+         */
+        private void advance(long bucket) {
+            if (bucket <= current) {
+                return;
+            }
+            if (bucket - current >= buckets.length) {
+                for (CountMinSketch sketch : buckets) {
+                    sketch.clear();
+                }
+                total.clear();
+            } else {
+                for (long expired = current + 1; expired <= bucket; expired++) {
+                    CountMinSketch sketch = buckets[(int) Math.floorMod(expired, buckets.length)];
+                    total.subtract(sketch);
+                    sketch.clear();
+                }
+            }
+            current = bucket;
+            List<Candidate> refreshed = new ArrayList<>(candidates.size());
+            for (Candidate candidate : candidates.values()) {
+                int estimate = total.estimate(candidate.productId());
+                if (estimate > 0) {
+                    refreshed.add(new Candidate(candidate.productId(), estimate));
+                }
+            }
+            candidates.clear();
+            heap.clear();
+            for (Candidate candidate : refreshed) {
+                candidates.put(candidate.productId(), candidate);
+                heap.add(candidate);
+            }
+        }
+    }
+
+    /**
+     * Candidato a más descargado con su estimación al momento de actualizarlo
+     *
+     * @param productId Identificador del producto
+     * @param estimate Descargas estimadas
+     */
+    private record Candidate(int productId, int estimate) {
+    }
+}
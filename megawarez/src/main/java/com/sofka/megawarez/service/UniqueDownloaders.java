@@ -0,0 +1,293 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.domain.ProductDownloaders;
+import com.sofka.megawarez.repository.ProductDownloadersRepository;
+import com.sofka.megawarez.utility.HyperLogLog;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Usuarios distintos que descargaron cada producto, estimados con HyperLogLog
+ *
+ * Cada descarga escrita se agrega a un estimador en memoria con los usuarios nuevos del producto
+ * desde la última escritura. Una tarea programada une esos estimadores con los guardados en
+ * product_downloaders, bloqueando cada fila mientras tanto para que otros nodos puedan unir los
+ * suyos sin perder nada; como la unión toma el máximo de cada registro, repetir una unión no cambia
+ * el resultado. La consulta lee una sola fila y cuesta lo mismo sin importar cuántas descargas
+ * tenga el producto
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+public class UniqueDownloaders {
+
+    /**
+     * Número máximo de productos escritos en una misma transacción
+     */
+    private static final int CHUNK_SIZE = 100;
+
+    /**
+     * Usuarios nuevos por producto desde la última escritura
+     */
+    private final Map<Integer, HyperLogLog> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Verdadero si al iniciar con la tabla vacía se calculan los estimadores desde las descargas
+     */
+    private final boolean backfill;
+
+    /**
+     * Repositorio de ProductDownloaders
+     */
+    private final ProductDownloadersRepository productDownloadersRepository;
+
+    /**
+     * Acceso JDBC para el cálculo inicial
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Transacción de cada grupo de productos
+     */
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Duración de cada escritura
+     */
+    private final Timer flushes;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param backfill Verdadero si al iniciar con la tabla vacía se calculan los estimadores
+     * @param productDownloadersRepository Repositorio de ProductDownloaders
+     * @param jdbcTemplate Acceso JDBC para el cálculo inicial
+     * @param transactionManager Manejador de transacciones
+     * @param meterRegistry Registro de métricas
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public UniqueDownloaders(
+            @Value("${megawarez.product.downloaders.backfill:true}") boolean backfill,
+            ProductDownloadersRepository productDownloadersRepository,
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry) {
+        this.backfill = backfill;
+        this.productDownloadersRepository = productDownloadersRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.flushes = meterRegistry.timer("megawarez.products.downloaders.flush");
+        meterRegistry.gauge("megawarez.products.downloaders.pending", pending, Map::size);
+    }
+
+    /**
+     * Calcula los estimadores desde las descargas existentes la primera vez que se inicia con la
+     * tabla product_downloaders vacía
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @PostConstruct
+    public void load() {
+        if (!backfill || productDownloadersRepository.count() > 0) {
+            return;
+        }
+        jdbcTemplate.query("SELECT dwn_product_id, dwn_user_id FROM download",
+                row -> { add(row.getInt(1), row.getInt(2)); });
+        int products = flush();
+        if (products > 0) {
+            log.info("Usuarios distintos calculados para {} productos", products);
+        }
+    }
+
+    /**
+     * Agrega el usuario de cada descarga escrita
+     *
+     * @param event Evento de la descarga
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @EventListener
+    public void onDownloadRecorded(DownloadRecordedEvent event) {
+        add(event.productId(), event.userId());
+    }
+
+    /**
+     * Agrega un usuario al estimador en memoria de un producto. Si la escritura programada se llevó
+     * el estimador mientras tanto, se agrega al nuevo
+     *
+     * @param productId Identificador del producto
+     * @param userId Identificador del usuario
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public void add(Integer productId, Integer userId) {
+        while (true) {
+            HyperLogLog sketch = pending.computeIfAbsent(productId, id -> new HyperLogLog());
+            synchronized (sketch) {
+                if (pending.get(productId) == sketch) {
+                    sketch.add(userId);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Estima los usuarios distintos que descargaron un producto
+     *
+     * @param productId Identificador del producto
+     * @return Usuarios distintos estimados
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public Downloaders count(Integer productId) {
+        ProductDownloaders stored = productDownloadersRepository.findById(productId).orElse(null);
+        HyperLogLog delta = pending.get(productId);
+        if (delta == null) {
+            return new Downloaders(productId, stored == null ? 0 : stored.getEstimate());
+        }
+        HyperLogLog sketch = stored == null ? new HyperLogLog() : HyperLogLog.fromBytes(stored.getSketch());
+        synchronized (delta) {
+            sketch.merge(delta);
+        }
+        return new Downloaders(productId, sketch.estimate());
+    }
+
+    /**
+     * Une los estimadores en memoria con los guardados, en grupos de productos con una transacción
+     * por grupo. Si un grupo falla, sus estimadores vuelven a quedar pendientes
+     *
+     * @return Número de productos escritos
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @Scheduled(fixedDelayString = "${megawarez.product.downloaders.flush-interval:PT10S}")
+    @PreDestroy
+    public synchronized int flush() {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        int written = 0;
+        List<Map.Entry<Integer, HyperLogLog>> chunk = new ArrayList<>(CHUNK_SIZE);
+        try {
+            for (Integer productId : pending.keySet()) {
+                HyperLogLog delta = pending.remove(productId);
+                if (delta == null) {
+                    continue;
+                }
+                synchronized (delta) {
+                    chunk.add(Map.entry(productId, delta));
+                }
+                if (chunk.size() == CHUNK_SIZE) {
+                    written += write(chunk);
+                    chunk.clear();
+                }
+            }
+            written += write(chunk);
+        } finally {
+            flushes.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        return written;
+    }
+
+    /**
+     * Une y guarda un grupo de estimadores en una transacción
+     *
+     * @param chunk Estimadores por identificador de producto
+     * @return Número de productos escritos
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    private int write(List<Map.Entry<Integer, HyperLogLog>> chunk) {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Instant now = Instant.now();
+                for (Map.Entry<Integer, HyperLogLog> entry : chunk) {
+                    ProductDownloaders row = productDownloadersRepository.findForUpdate(entry.getKey()).orElse(null);
+                    HyperLogLog sketch;
+                    if (row == null) {
+                        row = new ProductDownloaders();
+                        row.setProductId(entry.getKey());
+                        sketch = new HyperLogLog();
+                    } else {
+                        sketch = HyperLogLog.fromBytes(row.getSketch());
+                    }
+                    sketch.merge(entry.getValue());
+                    row.setSketch(sketch.toBytes());
+                    row.setEstimate(sketch.estimate());
+                    row.setUpdatedAt(now);
+                    productDownloadersRepository.save(row);
+                }
+            });
+            return chunk.size();
+        } catch (RuntimeException exception) {
+            log.warn("No se pudieron escribir los usuarios distintos de {} productos: {}", chunk.size(), exception.getMessage());
+            for (Map.Entry<Integer, HyperLogLog> entry : chunk) {
+                restore(entry.getKey(), entry.getValue());
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Devuelve a pendientes un estimador que no se pudo escribir
+     *
+     * @param productId Identificador del producto
+     * @param delta Estimador no escrito
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    private void restore(Integer productId, HyperLogLog delta) {
+        while (true) {
+            HyperLogLog sketch = pending.computeIfAbsent(productId, id -> new HyperLogLog());
+            synchronized (sketch) {
+                if (pending.get(productId) == sketch) {
+                    sketch.merge(delta);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Usuarios distintos estimados de un producto
+     *
+     * @param productId Identificador del producto
+     * @param uniqueUsers Usuarios distintos estimados
+     */
+    public record Downloaders(Integer productId, long uniqueUsers) {
+    }
+}
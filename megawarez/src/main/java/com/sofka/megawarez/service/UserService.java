@@ -1,21 +1,38 @@
 package com.sofka.megawarez.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sofka.megawarez.domain.Download;
 import com.sofka.megawarez.domain.Session;
 import com.sofka.megawarez.domain.User;
 import com.sofka.megawarez.repository.DownloadRepository;
+import com.sofka.megawarez.repository.DownloadRow;
 import com.sofka.megawarez.repository.SessionRepository;
+import com.sofka.megawarez.repository.UserCredentials;
 import com.sofka.megawarez.repository.UserRepository;
+import com.sofka.megawarez.security.SessionTokenCache;
+import com.sofka.megawarez.security.SignedTokenService;
+import com.sofka.megawarez.security.TokenOwner;
 import com.sofka.megawarez.service.interfaces.IUser;
+import com.sofka.megawarez.utility.JsonStreamWriter;
+import com.sofka.megawarez.utility.KeysetPage;
 import com.sofka.megawarez.utility.LoginData;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * Clase tipo Servicio para el manejo de Usuarios
@@ -45,23 +62,74 @@ public class UserService implements IUser {
     @Autowired
     private SessionRepository sessionRepository;
 
+    /**
+     * Servicio para el cálculo de los hash de las contraseñas
+     */
+    @Autowired
+    private CredentialHashService credentialHashService;
+
+    /**
+     * Caché de tokens de session
+     */
+    @Autowired
+    private SessionTokenCache sessionTokenCache;
+
+    /**
+     * Servicio de tokens de session firmados
+     */
+    @Autowired
+    private SignedTokenService signedTokenService;
+
+    /**
+     * Serializador JSON para los listados completos
+     */
     @Autowired
-    private LoginData loginData;
+    private ObjectMapper objectMapper;
+
+    /**
+     * Paginación por cursor de los listados
+     */
+    @Autowired
+    private KeysetPagination keysetPagination;
+
+    /**
+     * Diario local de descargas para cuando la base de datos no responde
+     */
+    @Autowired
+    private DownloadJournal downloadJournal;
+
+    /**
+     * Publicador de los eventos de descargas escritas
+     */
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Campos por los que se permite ordenar los usuarios
+     */
+    private static final Set<String> USER_SORT = Set.of(KeysetPagination.ID, "username", "createdAt");
+
+    /**
+     * Campos por los que se permite ordenar las sessiones y las descargas
+     */
+    private static final Set<String> CREATED_SORT = Set.of(KeysetPagination.ID, "createdAt");
 
     /**
      * Devuelve una lista de Usuarios con todos usuarios del sistema
      *
-     * @return
+     * @param cursor Cursor de la página anterior, nulo para la primera página
+     * @param size Tamaño de página, nulo para el tamaño por defecto
+     * @return Página ordenada por identificador
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
     @Override
     @Transactional(readOnly = true)
-    public List<User> getListUser() {
-        List<User> users = null;
+    public KeysetPage<User> getListUser(String cursor, Integer size) {
+        KeysetPage<User> users = null;
         try {
-            users = userRepository.findAll();
+            users = keysetPagination.page(User.class, USER_SORT, KeysetPagination.ID, Sort.Direction.ASC, cursor, size);
         } catch (Exception exc) {
             throw exc;
         }
@@ -89,21 +157,58 @@ public class UserService implements IUser {
     }
 
     /**
-     * Busca un usuario por el nombre
-     * @param username
-     * @return
+     * Busca los datos de acceso de un usuario por el nombre
+     *
+     * @param username Nombre del usuario
+     * @return Optional con los datos de acceso
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
-    public User findByUsername(String username){
-        User users = null;
+    @Override
+    public Optional<UserCredentials> findCredentials(String username) {
+        Optional<UserCredentials> credentials = Optional.empty();
         try {
-            users = userRepository.findByUsername(username).orElse(new User());
+            credentials = userRepository.findCredentialsByUsername(username);
         } catch (Exception exc) {
             throw exc;
         }
-        return users;
+        return credentials;
+    }
+
+    /**
+     * Indica si un nombre de usuario ya está registrado
+     *
+     * @param username Nombre del usuario
+     * @return Verdadero si el nombre ya está registrado
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    public boolean existsUsername(String username) {
+        boolean exists = false;
+        try {
+            exists = userRepository.existsByUsername(username);
+        } catch (Exception exc) {
+            throw exc;
+        }
+        return exists;
+    }
+
+    /**
+     * Verifica la contraseña de inicio de session de un usuario
+     *
+     * @param loginData Datos de inicio de session
+     * @param credentials Datos de acceso del usuario registrado
+     * @return Verdadero si la contraseña corresponde a la del usuario
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    public boolean checkPassword(LoginData loginData, UserCredentials credentials) throws Exception {
+        return credentialHashService.matches(loginData.getPassword(), credentials.getPassword());
     }
 
     /**
@@ -116,12 +221,11 @@ public class UserService implements IUser {
      * @since 1.0.0
      */
     @Override
-    @Transactional
     public User createUser(User user) throws Exception {
         User users = null;
         try {
             user.setCreatedAt(Instant.now());
-            user.setPassword(loginData.setPassword(user.getPassword()));
+            user.setPassword(credentialHashService.hash(user.getPassword()));
             users = userRepository.save(user);
         } catch (Exception exc) {
             throw exc;
@@ -163,12 +267,11 @@ public class UserService implements IUser {
      * @since 1.0.0
      */
     @Override
-    @Transactional
     public User updatePassword(Integer id, User user) throws Exception {
         try {
             user.setId(id);
             user.setUpdatedAt(Instant.now());
-            user.setPassword(loginData.setPassword(user.getPassword()));
+            user.setPassword(credentialHashService.hash(user.getPassword()));
             userRepository.updatePassword(id, user.getPassword());
         } catch (Exception exc) {
             throw exc;
@@ -188,9 +291,12 @@ public class UserService implements IUser {
     @Override
     @Transactional
     public User deleteUser(Integer id) {
-        var user = userRepository.findById(id);
+        var user = userRepository.findWithSessionsById(id);
         if (user.isPresent()) {
+            List<String> tokens = user.get().getSessions().stream().map(Session::getToken).toList();
+            tokens.forEach(signedTokenService::revoke);
             userRepository.delete(user.get());
+            sessionTokenCache.invalidateAfterCommit(tokens);
             return user.get();
         } else {
             return null;
@@ -200,22 +306,72 @@ public class UserService implements IUser {
     /**
      * Devuelve una lista de Session del sistema
      *
-     * @return
+     * @param cursor Cursor de la página anterior, nulo para la primera página
+     * @param size Tamaño de página, nulo para el tamaño por defecto
+     * @return Página ordenada por identificador
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
     @Override
-    public List<Session> getListSession() {
-        List<Session> sessions = null;
+    @Transactional(readOnly = true)
+    public KeysetPage<Session> getListSession(String cursor, Integer size) {
+        KeysetPage<Session> sessions = null;
         try {
-            sessions = sessionRepository.findAll();
+            sessions = keysetPagination.page(Session.class, CREATED_SORT, KeysetPagination.ID, Sort.Direction.ASC, cursor, size);
         } catch (Exception exc) {
             throw exc;
         }
         return sessions;
     }
 
+    /**
+     * Busca el identificador del usuario dueño de un token de session vigente. Los tokens firmados
+     * se verifican sin consultar la base de datos, los demás se buscan primero en memoria y después
+     * en la base de datos
+     *
+     * @param token Token de la session
+     * @return Optional con el identificador del usuario
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    public Optional<Integer> findUserIdByToken(String token) {
+        Optional<Integer> userId = Optional.empty();
+        try {
+            if (signedTokenService.isSignedToken(token)) {
+                userId = signedTokenService.verify(token);
+            } else {
+                userId = sessionTokenCache.get(token, sessionRepository::findOwnerByToken);
+            }
+        } catch (Exception exc) {
+            throw exc;
+        }
+        return userId;
+    }
+
+    /**
+     * Busca una session del sistema por su token
+     *
+     * @param token Token de la session
+     * @return Optional con la session encontrada
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Session> findSessionByToken(String token) {
+        Optional<Session> session = Optional.empty();
+        try {
+            session = sessionRepository.findByToken(token);
+        } catch (Exception exc) {
+            throw exc;
+        }
+        return session;
+    }
+
     /**
      * Devuelve las sesiones de un usuario del sistema
      *
@@ -229,7 +385,7 @@ public class UserService implements IUser {
     public Set<Session> findUserSession(User user) {
         Optional<User> users = Optional.empty();
         try {
-            users = userRepository.findById(user.getId());
+            users = userRepository.findWithSessionsById(user.getId());
         } catch (Exception exc) {
             throw exc;
         }
@@ -239,6 +395,8 @@ public class UserService implements IUser {
     /**
      * Crea una session para un  usuario en el sistema
      *
+     * @param loginData Datos de inicio de session
+     * @param userId Identificador del usuario
      * @param session Objeto de la session a crear
      * @return Objeto de la session creado
      *
@@ -246,14 +404,21 @@ public class UserService implements IUser {
      * @since 1.0.0
      */
     @Override
-    public Session createSession(LoginData loginData, User user, Session session) throws Exception {
+    public Session createSession(LoginData loginData, Integer userId, Session session) throws Exception {
         Session sessions = null;
         try {
             session.setCreatedAt(Instant.now());
-            session.setToken(loginData.getToken());
-            User id = userRepository.getById(user.getId());
+            if (signedTokenService.isEnabled()) {
+                session.setToken(signedTokenService.issue(userId, session.getCreatedAt()));
+            } else {
+                session.setToken(loginData.getToken());
+            }
+            User id = userRepository.getById(userId);
             session.setSesUser(id);
             sessions = sessionRepository.save(session);
+            if (!signedTokenService.isEnabled()) {
+                sessionTokenCache.put(sessions.getToken(), new TokenOwner(userId, sessions.getCreatedAt()));
+            }
         } catch (Exception exc) {
             throw exc;
         }
@@ -270,10 +435,13 @@ public class UserService implements IUser {
      * @since 1.0.0
      */
     @Override
+    @Transactional
     public Session deleteSession(Integer id) {
         var session = sessionRepository.findById(id);
         if (session.isPresent()) {
             sessionRepository.delete(session.get());
+            signedTokenService.revoke(session.get().getToken());
+            sessionTokenCache.invalidateAfterCommit(List.of(session.get().getToken()));
             return session.get();
         } else {
             return null;
@@ -283,23 +451,44 @@ public class UserService implements IUser {
     /**
      * Devuelve una lista de Descargas del usuario
      *
-     * @return
+     * @param cursor Cursor de la página anterior, nulo para la primera página
+     * @param size Tamaño de página, nulo para el tamaño por defecto
+     * @return Página ordenada por identificador
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
     @Override
     @Transactional(readOnly = true)
-    public List<Download> getListDownload() {
-        List<Download> downloads = null;
+    public KeysetPage<Download> getListDownload(String cursor, Integer size) {
+        KeysetPage<Download> downloads = null;
         try {
-            downloads = downloadRepository.findAll();
+            downloads = keysetPagination.page(
+                    Download.class, CREATED_SORT, KeysetPagination.ID, Sort.Direction.ASC, cursor, size,
+                    "Download.productAndUser");
         } catch (Exception exc) {
             throw exc;
         }
         return downloads;
     }
 
+    /**
+     * Escribe todas las descargas en formato JSON a medida que se leen de la base de datos
+     *
+     * @param output Salida de la respuesta
+     * @throws IOException si falla la escritura
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void streamDownloads(OutputStream output) throws IOException {
+        try (Stream<DownloadRow> rows = downloadRepository.streamAll()) {
+            JsonStreamWriter.write(objectMapper, output, "Lista de descargas", rows);
+        }
+    }
+
     /**
      * Devuelve una descarga del usuario
      *
@@ -313,7 +502,7 @@ public class UserService implements IUser {
     public Optional<Download> findDownload(Download download) {
         Optional<Download> downloads = Optional.empty();
         try {
-            downloads = downloadRepository.findById(download.getId());
+            downloads = downloadRepository.findWithProductAndUserById(download.getId());
         } catch (Exception exc) {
             throw exc;
         }
@@ -323,19 +512,38 @@ public class UserService implements IUser {
     /**
      * Crea una descarga para el usuario en el sistema
      *
+     * Si la base de datos falla o la escritura supera el umbral de latencia, la descarga y las
+     * siguientes se agregan al diario local hasta que {@link DownloadJournalReplayer} lo vacíe. Cada
+     * guardado abre su propia transacción para que una conexión que no se obtiene llegue aquí como
+     * error y no antes de entrar al método
+     *
      * @param download Objeto de la descarga a crear
-     * @return Objeto de la descarga creado
+     * @return Objeto de la descarga creado, sin identificador si quedó en el diario
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
     @Override
-    @Transactional
     public Download createDownload(Download download) {
         Download downloads = null;
         try {
             download.setCreatedAt(Instant.now());
+            if (downloadJournal.isDegraded()) {
+                return downloadJournal.append(download);
+            }
+            long start = System.nanoTime();
             downloads = downloadRepository.save(download);
+            downloadJournal.observe(Duration.ofNanos(System.nanoTime() - start));
+            eventPublisher.publishEvent(
+                    new DownloadRecordedEvent(
+                            downloads.getDwnProduct().getId(), downloads.getDwnUser().getId(), downloads.getCreatedAt()));
+        } catch (DataAccessException | TransactionException exc) {
+            if (!downloadJournal.isEnabled() || exc instanceof DataIntegrityViolationException) {
+                throw exc;
+            }
+            downloadJournal.markDegraded(exc);
+            download.setId(null);
+            downloads = downloadJournal.append(download);
         } catch (Exception exc) {
             throw exc;
         }
@@ -3,7 +3,10 @@ package com.sofka.megawarez.service.interfaces;
 import com.sofka.megawarez.domain.Category;
 import com.sofka.megawarez.domain.Product;
 import com.sofka.megawarez.domain.Subcategory;
+import com.sofka.megawarez.utility.KeysetPage;
 import org.springframework.data.domain.Sort;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,12 +22,25 @@ public interface IProduct {
     /**
      * Devuelve una lista de productos del sistema
      *
-     * @return
+     * @param cursor Cursor de la página anterior, nulo para la primera página
+     * @param size Tamaño de página, nulo para el tamaño por defecto
+     * @return Página ordenada por identificador
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    KeysetPage<Product> getListProducts(String cursor, Integer size);
+
+    /**
+     * Escribe todos los productos en formato JSON a medida que se leen de la base de datos
+     *
+     * @param output Salida de la respuesta
+     * @throws IOException si falla la escritura
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
-    List<Product> getListProducts();
+    void streamProducts(OutputStream output) throws IOException;
 
     /**
      * Devuelve un producto del sistema
@@ -53,12 +69,26 @@ public interface IProduct {
      *
      * @param field campo por el cual ordenar
      * @param order método de ordenado ASC o DESC
-     * @return Lista de productos
+     * @param cursor Cursor de la página anterior, nulo para la primera página
+     * @param size Tamaño de página, nulo para el tamaño por defecto
+     * @return Página ordenada
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
-    List<Product> getProductOrdered(String field, Sort.Direction order);
+    KeysetPage<Product> getProductOrdered(String field, Sort.Direction order, String cursor, Integer size);
+
+    /**
+     * Devuelve los productos ordenados de más a menos descargados
+     *
+     * @param cursor Cursor de la página anterior, nulo para la primera página
+     * @param size Tamaño de página, nulo para el tamaño por defecto
+     * @return Página ordenada por número de descargas
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    KeysetPage<Product> getMostDownloaded(String cursor, Integer size);
 
     /**
      * Busca un dato dado entre el nombre de un producto
@@ -71,6 +101,18 @@ public interface IProduct {
      */
     List<Product> searchProduct(String dataToSearch);
 
+    /**
+     * Busca un dato dado entre el nombre de un producto, opcionalmente tolerando errores de escritura
+     *
+     * @param dataToSearch Dato a buscar
+     * @param fuzzy Verdadero para encontrar también palabras a una distancia de edición corta
+     * @return Lista de productos
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    List<Product> searchProduct(String dataToSearch, boolean fuzzy);
+
     /**
      * Actualiza el nombre de un producto basado en su identificador
      *
@@ -98,12 +140,14 @@ public interface IProduct {
     /**
      * Devuelve una lista de Categorias con todos las categorias del sistema
      *
-     * @return
+     * @param cursor Cursor de la página anterior, nulo para la primera página
+     * @param size Tamaño de página, nulo para el tamaño por defecto
+     * @return Página ordenada por identificador
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
-    List<Category> getListCategory();
+    KeysetPage<Category> getListCategory(String cursor, Integer size);
 
     /**
      * Devuelve una categoria del sistema
@@ -132,12 +176,14 @@ public interface IProduct {
      *
      * @param field campo por el cual ordenar
      * @param order método de ordenado ASC o DESC
-     * @return Lista de categorias
+     * @param cursor Cursor de la página anterior, nulo para la primera página
+     * @param size Tamaño de página, nulo para el tamaño por defecto
+     * @return Página ordenada
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
-    List<Category> getCategoryOrdered(String field, Sort.Direction order);
+    KeysetPage<Category> getCategoryOrdered(String field, Sort.Direction order, String cursor, Integer size);
 
     /**
      * Borra una categoria del sistema basado en su identificador
@@ -154,12 +200,14 @@ public interface IProduct {
     /**
      * Devuelve una lista de Subcategorias con todos las subcategorias del sistema
      *
-     * @return
+     * @param cursor Cursor de la página anterior, nulo para la primera página
+     * @param size Tamaño de página, nulo para el tamaño por defecto
+     * @return Página ordenada por identificador
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
-    List<Subcategory> getListSubcategory();
+    KeysetPage<Subcategory> getListSubcategory(String cursor, Integer size);
 
     /**
      * Devuelve una subcategoria del sistema
@@ -188,12 +236,14 @@ public interface IProduct {
      *
      * @param field campo por el cual ordenar
      * @param order método de ordenado ASC o DESC
-     * @return Lista de subcategorias
+     * @param cursor Cursor de la página anterior, nulo para la primera página
+     * @param size Tamaño de página, nulo para el tamaño por defecto
+     * @return Página ordenada
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
-    List<Subcategory> getSubcategoryOrdered(String field, Sort.Direction order);
+    KeysetPage<Subcategory> getSubcategoryOrdered(String field, Sort.Direction order, String cursor, Integer size);
 
     /**
      * Borra una subcategoria del sistema basado en su identificador
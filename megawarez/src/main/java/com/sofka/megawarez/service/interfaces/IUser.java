@@ -3,8 +3,12 @@ package com.sofka.megawarez.service.interfaces;
 import com.sofka.megawarez.domain.Download;
 import com.sofka.megawarez.domain.Session;
 import com.sofka.megawarez.domain.User;
+import com.sofka.megawarez.repository.UserCredentials;
+import com.sofka.megawarez.utility.KeysetPage;
 import com.sofka.megawarez.utility.LoginData;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -21,12 +25,14 @@ public interface IUser {
     /**
      * Devuelve una lista de Usuarios con todos los usuarios del sistema
      *
-     * @return
+     * @param cursor Cursor de la página anterior, nulo para la primera página
+     * @param size Tamaño de página, nulo para el tamaño por defecto
+     * @return Página ordenada por identificador
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
-    public List<User> getListUser();
+    public KeysetPage<User> getListUser(String cursor, Integer size);
 
     /**
      * Devuelve un usuario del sistema
@@ -38,6 +44,40 @@ public interface IUser {
      */
     public Optional<User> findUser(User user);
 
+    /**
+     * Busca los datos de acceso de un usuario por el nombre
+     *
+     * @param username Nombre del usuario
+     * @return Optional con los datos de acceso
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public Optional<UserCredentials> findCredentials(String username);
+
+    /**
+     * Indica si un nombre de usuario ya está registrado
+     *
+     * @param username Nombre del usuario
+     * @return Verdadero si el nombre ya está registrado
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public boolean existsUsername(String username);
+
+    /**
+     * Verifica la contraseña de inicio de session de un usuario
+     *
+     * @param loginData Datos de inicio de session
+     * @param credentials Datos de acceso del usuario registrado
+     * @return Verdadero si la contraseña corresponde a la del usuario
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public boolean checkPassword(LoginData loginData, UserCredentials credentials) throws Exception;
+
     /**
      * Crea un usuario en el sistema
      *
@@ -87,12 +127,36 @@ public interface IUser {
     /**
      * Devuelve una lista de Sesiones del sistema
      *
-     * @return
+     * @param cursor Cursor de la página anterior, nulo para la primera página
+     * @param size Tamaño de página, nulo para el tamaño por defecto
+     * @return Página ordenada por identificador
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
-    public List<Session> getListSession();
+    public KeysetPage<Session> getListSession(String cursor, Integer size);
+
+    /**
+     * Busca el identificador del usuario dueño de un token de session
+     *
+     * @param token Token de la session
+     * @return Optional con el identificador del usuario
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public Optional<Integer> findUserIdByToken(String token);
+
+    /**
+     * Busca una session del sistema por su token
+     *
+     * @param token Token de la session
+     * @return Optional con la session encontrada
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public Optional<Session> findSessionByToken(String token);
 
     /**
      * Devuelve las sesiones de un usuario del sistema
@@ -112,7 +176,7 @@ public interface IUser {
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
-    public Session createSession(LoginData loginData, User user, Session session) throws Exception;
+    public Session createSession(LoginData loginData, Integer userId, Session session) throws Exception;
 
     /**
      * Borra una session del sistema basado en su identificador
@@ -128,12 +192,25 @@ public interface IUser {
     /**
      * Devuelve una lista de Descargas del usuario
      *
-     * @return
+     * @param cursor Cursor de la página anterior, nulo para la primera página
+     * @param size Tamaño de página, nulo para el tamaño por defecto
+     * @return Página ordenada por identificador
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public KeysetPage<Download> getListDownload(String cursor, Integer size);
+
+    /**
+     * Escribe todas las descargas en formato JSON a medida que se leen de la base de datos
+     *
+     * @param output Salida de la respuesta
+     * @throws IOException si falla la escritura
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
-    public List<Download> getListDownload();
+    public void streamDownloads(OutputStream output) throws IOException;
 
     /**
      * Devuelve una descarga del sistema
@@ -0,0 +1,291 @@
+package com.sofka.megawarez.utility;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Árbol BK de palabras para encontrar las que están a una distancia de edición acotada de otra
+ *
+ * Cada nodo guarda una palabra y los identificadores que la usan, y cada hijo cuelga de la distancia
+ * de Levenshtein entre su palabra y la del padre. Por la desigualdad triangular, buscando a distancia
+ * k de una consulta que está a distancia d de un nodo solo hace falta bajar a los hijos entre d - k y
+ * d + k, así que la búsqueda visita una parte del diccionario y no todas las palabras. Una palabra que
+ * se queda sin identificadores permanece como nodo vacío para no romper la estructura, y el árbol se
+ * reconstruye con las palabras vigentes cuando los nodos vacíos superan a los demás
+ *
+ * No es seguro para hilos; quien lo comparta debe sincronizar el acceso
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+public class BkTree {
+
+    /**
+     * Operación sobre cada palabra encontrada
+     */
+    @FunctionalInterface
+    public interface MatchConsumer {
+
+        /**
+         * Recibe una palabra encontrada
+         *
+         * @param word Palabra
+         * @param distance Distancia de edición a la consulta
+         * @param ids Identificadores que usan la palabra, en orden creciente
+         */
+        void accept(String word, int distance, int[] ids);
+    }
+
+    /**
+     * Raíz del árbol, nula si está vacío
+     */
+    private Node root;
+
+    /**
+     * Número de nodos, incluidos los vacíos
+     */
+    private int nodes;
+
+    /**
+     * Número de palabras con algún identificador
+     */
+    private int words;
+
+    /**
+     * Asocia un identificador a una palabra
+     *
+     * @param word Palabra
+     * @param id Identificador
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public void add(String word, int id) {
+        if (root == null) {
+            root = new Node(word);
+            nodes++;
+        }
+        Node node = root;
+        while (true) {
+            int distance = distance(word, node.word);
+            if (distance == 0) {
+                if (node.size == 0) {
+                    words++;
+                }
+                node.add(id);
+                return;
+            }
+            Node child = node.child(distance);
+            if (child == null) {
+                child = new Node(word);
+                node.setChild(distance, child);
+                nodes++;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * Quita un identificador de una palabra
+     *
+     * @param word Palabra
+     * @param id Identificador
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public void remove(String word, int id) {
+        Node node = root;
+        while (node != null) {
+            int distance = distance(word, node.word);
+            if (distance == 0) {
+                if (node.remove(id) && node.size == 0) {
+                    words--;
+                    if (nodes - words > words) {
+                        compact();
+                    }
+                }
+                return;
+            }
+            node = node.child(distance);
+        }
+    }
+
+    /**
+     * Número de palabras con algún identificador
+     *
+     * @return Tamaño del diccionario
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public int size() {
+        return words;
+    }
+
+    /**
+     * Recorre las palabras a una distancia de edición acotada de una consulta
+     *
+     * @param query Palabra buscada
+     * @param maxDistance Distancia máxima
+     * @param consumer Operación sobre cada palabra encontrada
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public void search(String query, int maxDistance, MatchConsumer consumer) {
+        if (root == null) {
+            return;
+        }
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            int distance = distance(query, node.word);
+            if (distance <= maxDistance && node.size > 0) {
+                consumer.accept(node.word, distance, Arrays.copyOf(node.ids, node.size));
+            }
+            int to = Math.min(distance + maxDistance, node.children.length - 1);
+            for (int edge = Math.max(1, distance - maxDistance); edge <= to; edge++) {
+                if (node.children[edge] != null) {
+                    pending.push(node.children[edge]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Distancia de Levenshtein entre dos palabras
+     *
+     * @param first Primera palabra
+     * @param second Segunda palabra
+     * @return Número mínimo de inserciones, borrados y sustituciones de caracteres
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public static int distance(String first, String second) {
+        if (first.length() < second.length()) {
+            return distance(second, first);
+        }
+        int[] previous = new int[second.length() + 1];
+        int[] current = new int[second.length() + 1];
+        for (int j = 0; j <= second.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= first.length(); i++) {
+            current[0] = i;
+            char character = first.charAt(i - 1);
+            for (int j = 1; j <= second.length(); j++) {
+                int substitution = previous[j - 1] + (character == second.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[second.length()];
+    }
+
+    /**
+     * Reconstruye el árbol solo con las palabras que tienen identificadores
+     */
+    private void compact() {
+        List<Node> live = new ArrayList<>(words);
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            if (node.size > 0) {
+                live.add(node);
+            }
+            for (Node child : node.children) {
+                if (child != null) {
+                    pending.push(child);
+                }
+            }
+        }
+        root = null;
+        nodes = 0;
+        words = 0;
+        for (Node node : live) {
+            for (int i = 0; i < node.size; i++) {
+                add(node.word, node.ids[i]);
+            }
+        }
+    }
+
+    /**
+     * Nodo del árbol
+     */
+    private static final class Node {
+
+        /**
+         * Arreglo vacío para los nodos sin hijos
+         */
+        private static final Node[] LEAF = new Node[0];
+
+        /**
+         * Palabra del nodo
+         */
+        private final String word;
+
+        /**
+         * Identificadores que usan la palabra, en orden creciente
+         */
+        private int[] ids = new int[2];
+
+        /**
+         * Número de identificadores
+         */
+        private int size;
+
+        /**
+         * Hijos por distancia a la palabra del nodo
+         */
+        private Node[] children = LEAF;
+
+        Node(String word) {
+            this.word = word;
+        }
+
+        Node child(int distance) {
+            return distance < children.length ? children[distance] : null;
+        }
+
+        void setChild(int distance, Node child) {
+            if (distance >= children.length) {
+                children = Arrays.copyOf(children, distance + 1);
+            }
+            children[distance] = child;
+        }
+
+        void add(int id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0) {
+                return;
+            }
+            position = -position - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = id;
+            size++;
+        }
+
+        boolean remove(int id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+            size--;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.sofka.megawarez.utility;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Filtro de Bloom de llaves de 64 bits, seguro para hilos
+ *
+ * Cada llave enciende k bits elegidos con doble hash a partir de un hash de 64 bits. Si alguno de
+ * sus bits está apagado la llave no se agregó nunca; si todos están encendidos probablemente se
+ * agregó, con una probabilidad de falso positivo cercana a la configurada mientras no se supere el
+ * número de llaves esperado. Los bits se encienden con operaciones atómicas, sin bloqueos
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+public class BloomFilter {
+
+    /**
+     * Bits del filtro
+     */
+    private final AtomicLongArray words;
+
+    /**
+     * Número de bits del filtro
+     */
+    private final long bits;
+
+    /**
+     * Número de bits encendidos por llave
+     */
+    private final int hashes;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param expectedInsertions Número de llaves esperadas
+     * @param falsePositiveRate Probabilidad de falso positivo deseada, entre 0 y 1
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Parámetros del filtro de Bloom no válidos");
+        }
+        long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int length = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (optimalBits + 63) / 64));
+        this.words = new AtomicLongArray(length);
+        this.bits = (long) length * 64;
+        this.hashes = (int) Math.max(1, Math.round((double) bits / expectedInsertions * Math.log(2)));
+    }
+
+    /**
+     * Agrega una llave
+     *
+     * @param key Llave
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public void put(long key) {
+        long hash = mix(key);
+        int first = (int) hash;
+        int second = (int) (hash >>> 32);
+        for (int i = 1; i <= hashes; i++) {
+            long bit = Math.floorMod(first + (long) i * second, bits);
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            if ((words.get(index) & mask) == 0) {
+                words.getAndAccumulate(index, mask, (word, set) -> word | set);
+            }
+        }
+    }
+
+    /**
+     * Indica si una llave pudo haberse agregado
+     *
+     * @param key Llave
+     * @return Falso si la llave no se agregó nunca, verdadero si probablemente se agregó
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public boolean mightContain(long key) {
+        long hash = mix(key);
+        int first = (int) hash;
+        int second = (int) (hash >>> 32);
+        for (int i = 1; i <= hashes; i++) {
+            long bit = Math.floorMod(first + (long) i * second, bits);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Mezcla los bits de una llave para obtener un hash uniforme de 64 bits
+     *
+     * @param key Llave
+     * @return Hash
+     */
+    private static long mix(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+        hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
+}
@@ -0,0 +1,175 @@
+package com.sofka.megawarez.utility;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Trie radix inmutable para autocompletar, con las mejores terminaciones precalculadas en cada nodo
+ *
+ * Se construye de una vez a partir de llaves normalizadas con {@link TextFolding}, cada una asociada
+ * a un elemento con peso. Las aristas guardan cadenas completas en lugar de un carácter, así que el
+ * número de nodos no pasa del doble del número de llaves. Cada nodo guarda los índices de los N
+ * elementos de mayor peso entre todas las llaves que pasan por él, de modo que una consulta solo
+ * recorre el prefijo y devuelve un arreglo ya ordenado, sin importar cuántas llaves lo comparten.
+ * Un mismo elemento puede tener varias llaves, por ejemplo una por cada palabra de su nombre, y
+ * aparece una sola vez en las terminaciones de un nodo
+ *
+ * Es inmutable y seguro para hilos; para actualizarlo se construye uno nuevo y se reemplaza
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+public class CompletionTrie {
+
+    /**
+     * Raíz del trie
+     */
+    private final Node root;
+
+    /**
+     * Número de llaves
+     */
+    private final int keys;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param keys Llaves normalizadas
+     * @param items Índice del elemento de cada llave
+     * @param weights Peso de cada elemento, por índice de elemento
+     * @param completions Número de terminaciones guardadas por nodo
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public CompletionTrie(String[] keys, int[] items, long[] weights, int completions) {
+        if (keys.length != items.length) {
+            throw new IllegalArgumentException("Cada llave necesita un elemento");
+        }
+        Integer[] order = new Integer[keys.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing((Integer i) -> keys[i]));
+        String[] sortedKeys = new String[keys.length];
+        int[] sortedItems = new int[keys.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedKeys[i] = keys[order[i]];
+            sortedItems[i] = items[order[i]];
+        }
+        Comparator<Integer> byWeight = Comparator.comparingLong((Integer item) -> weights[item]).reversed()
+                .thenComparingInt(item -> item);
+        this.root = build(sortedKeys, sortedItems, 0, keys.length, 0, Math.max(1, completions), byWeight);
+        this.keys = keys.length;
+    }
+
+    /**
+     * Índices de los elementos de mayor peso con alguna llave que empieza con un prefijo
+     *
+     * @param prefix Prefijo normalizado
+     * @return Índices de los elementos ordenados de mayor a menor peso
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public int[] complete(String prefix) {
+        Node node = root;
+        int position = 0;
+        while (position < prefix.length()) {
+            int child = Arrays.binarySearch(node.firsts, prefix.charAt(position));
+            if (child < 0) {
+                return new int[0];
+            }
+            String label = node.labels[child];
+            int common = 0;
+            while (common < label.length() && position + common < prefix.length()) {
+                if (label.charAt(common) != prefix.charAt(position + common)) {
+                    return new int[0];
+                }
+                common++;
+            }
+            position += common;
+            node = node.children[child];
+        }
+        return node.top;
+    }
+
+    /**
+     * Número de llaves del trie
+     *
+     * @return Número de llaves
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public int size() {
+        return keys;
+    }
+
+    /**
+     * Construye el nodo de un rango de llaves ordenadas que comparten los primeros caracteres. Como
+     * las llaves están ordenadas, el prefijo común de cada rango hijo es el de su primera y su última
+     * llave
+     *
+     * @param keys Llaves ordenadas
+     * @param items Elemento de cada llave
+     * @param from Primera llave del rango
+     * @param to Posición siguiente a la última llave del rango
+     * @param depth Número de caracteres compartidos
+     * @param completions Número de terminaciones por nodo
+     * @param byWeight Orden de mayor a menor peso
+     * @return Nodo
+     */
+    private static Node build(String[] keys, int[] items, int from, int to, int depth,
+                              int completions, Comparator<Integer> byWeight) {
+        List<Integer> candidates = new ArrayList<>();
+        int start = from;
+        while (start < to && keys[start].length() == depth) {
+            candidates.add(items[start++]);
+        }
+        List<Character> firsts = new ArrayList<>();
+        List<String> labels = new ArrayList<>();
+        List<Node> children = new ArrayList<>();
+        while (start < to) {
+            char first = keys[start].charAt(depth);
+            int end = start + 1;
+            while (end < to && keys[end].charAt(depth) == first) {
+                end++;
+            }
+            String low = keys[start];
+            String high = keys[end - 1];
+            int shared = depth + 1;
+            while (shared < low.length() && shared < high.length() && low.charAt(shared) == high.charAt(shared)) {
+                shared++;
+            }
+            Node child = build(keys, items, start, end, shared, completions, byWeight);
+            firsts.add(first);
+            labels.add(low.substring(depth, shared));
+            children.add(child);
+            for (int item : child.top) {
+                candidates.add(item);
+            }
+            start = end;
+        }
+        int[] top = candidates.stream().distinct().sorted(byWeight).limit(completions).mapToInt(Integer::intValue).toArray();
+        char[] firstChars = new char[firsts.size()];
+        for (int i = 0; i < firstChars.length; i++) {
+            firstChars[i] = firsts.get(i);
+        }
+        return new Node(firstChars, labels.toArray(new String[0]), children.toArray(new Node[0]), top);
+    }
+
+    /**
+     * Nodo del trie
+     *
+     * @param firsts Primer carácter de cada arista, en orden
+     * @param labels Cadena de cada arista
+     * @param children Nodo al final de cada arista
+     * @param top Índices de los elementos de mayor peso bajo el nodo
+     */
+    private record Node(char[] firsts, String[] labels, Node[] children, int[] top) {
+    }
+}
@@ -0,0 +1,135 @@
+package com.sofka.megawarez.utility;
+
+import java.util.Arrays;
+
+/**
+ * Estimador de frecuencias en memoria fija (count-min sketch)
+ *
+ * Cada clave suma en una celda de cada fila, elegida con una función hash distinta por fila, y la
+ * frecuencia estimada es el mínimo de esas celdas. La estimación nunca es menor que la frecuencia
+ * real y el exceso depende del ancho de las filas, no del número de claves distintas. Como las
+ * celdas solo se suman, un estimador se puede restar de otro del mismo tamaño para descontar un
+ * intervalo de tiempo ya vencido
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+public class CountMinSketch {
+
+    /**
+     * Semillas de las funciones hash de cada fila
+     */
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L,
+            0xFF51AFD7ED558CCDL, 0xC4CEB9FE1A85EC53L, 0x94D049BB133111EBL, 0xBF58476D1CE4E5B9L
+    };
+
+    /**
+     * Número de filas
+     */
+    private final int depth;
+
+    /**
+     * Máscara del ancho de cada fila, que es una potencia de dos
+     */
+    private final int mask;
+
+    /**
+     * Celdas de todas las filas, una fila a continuación de otra
+     */
+    private final int[] cells;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param depth Número de filas, entre 1 y 8
+     * @param width Ancho de cada fila, se redondea a la siguiente potencia de dos
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public CountMinSketch(int depth, int width) {
+        if (depth < 1 || depth > SEEDS.length || width < 1) {
+            throw new IllegalArgumentException("Tamaño de count-min sketch no válido");
+        }
+        int size = Integer.highestOneBit(Math.max(1, width - 1)) << 1;
+        this.depth = depth;
+        this.mask = size - 1;
+        this.cells = new int[depth * size];
+    }
+
+    /**
+     * Suma a la frecuencia de una clave
+     *
+     * @param key Clave
+     * @param count Cantidad a sumar
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public void add(int key, int count) {
+        for (int row = 0; row < depth; row++) {
+            cells[index(row, key)] += count;
+        }
+    }
+
+    /**
+     * Estima la frecuencia de una clave
+     *
+     * @param key Clave
+     * @return Frecuencia estimada, mayor o igual a la real
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public int estimate(int key) {
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, cells[index(row, key)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Resta las celdas de otro estimador del mismo tamaño
+     *
+     * @param other Estimador a restar
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public void subtract(CountMinSketch other) {
+        if (other.cells.length != cells.length) {
+            throw new IllegalArgumentException("Los count-min sketch no tienen el mismo tamaño");
+        }
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] -= other.cells[i];
+        }
+    }
+
+    /**
+     * Pone todas las frecuencias en cero
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public void clear() {
+        Arrays.fill(cells, 0);
+    }
+
+    /**
+     * Posición de la celda de una clave en una fila
+     *
+     * @param row Fila
+     * @param key Clave
+     * @return Posición en el arreglo de celdas
+     */
+    private int index(int row, int key) {
+        long hash = (key + 1L) * SEEDS[row];
+        hash ^= hash >>> 31;
+        hash *= 0xBF58476D1CE4E5B9L;
+        hash ^= hash >>> 29;
+        return row * (mask + 1) + (int) (hash & mask);
+    }
+}
@@ -0,0 +1,257 @@
+package com.sofka.megawarez.utility;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Estimador de elementos distintos en memoria fija (HyperLogLog)
+ *
+ * Cada elemento se convierte en un hash de 64 bits: los primeros bits eligen un registro y el
+ * registro guarda la mayor posición del primer bit en uno del resto del hash. El número de
+ * elementos distintos se estima con la media armónica de los registros, y con conteo lineal cuando
+ * hay pocos elementos. Con 2^11 registros el error típico es cercano al 2.3%. Dos estimadores con
+ * la misma precisión se unen tomando el máximo de cada registro, así que se pueden combinar los de
+ * varios nodos o intervalos de tiempo sin contar dos veces un mismo elemento
+ *
+ * La forma binaria guarda solo los registros distintos de cero mientras eso ocupe menos que el
+ * arreglo completo
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+public class HyperLogLog {
+
+    /**
+     * Precisión por defecto, en bits del índice de registro
+     */
+    public static final int DEFAULT_PRECISION = 11;
+
+    /**
+     * Versión de la forma binaria
+     */
+    private static final byte VERSION = 1;
+
+    /**
+     * Forma binaria con todos los registros
+     */
+    private static final byte DENSE = 0;
+
+    /**
+     * Forma binaria con pares de índice y valor de los registros distintos de cero
+     */
+    private static final byte SPARSE = 1;
+
+    /**
+     * Bytes de la cabecera: versión, precisión y forma
+     */
+    private static final int HEADER = 3;
+
+    /**
+     * Precisión, en bits del índice de registro
+     */
+    private final int precision;
+
+    /**
+     * Registros
+     */
+    private final byte[] registers;
+
+    /**
+     * Constructor con la precisión por defecto
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * Constructor de la clase
+     *
+     * @param precision Bits del índice de registro, entre 4 y 16
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("Precisión de HyperLogLog no válida: " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * Agrega un identificador
+     *
+     * @param id Identificador
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public void add(int id) {
+        addHash(mix(id));
+    }
+
+    /**
+     * Agrega un elemento a partir de su hash de 64 bits
+     *
+     * @param hash Hash del elemento
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public void addHash(long hash) {
+        int index = (int) (hash >>> (Long.SIZE - precision));
+        byte rank = (byte) (Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1);
+        if (registers[index] < rank) {
+            registers[index] = rank;
+        }
+    }
+
+    /**
+     * Estima el número de elementos distintos agregados
+     *
+     * @return Estimación
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Une otro estimador a este, tomando el máximo de cada registro
+     *
+     * @param other Estimador con la misma precisión
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Los HyperLogLog no tienen la misma precisión");
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (registers[i] < other.registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * Indica si no se ha agregado ningún elemento
+     *
+     * @return Verdadero si todos los registros están en cero
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public boolean isEmpty() {
+        for (byte register : registers) {
+            if (register != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Convierte el estimador a su forma binaria
+     *
+     * @return Bytes del estimador
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public byte[] toBytes() {
+        int used = 0;
+        for (byte register : registers) {
+            if (register != 0) {
+                used++;
+            }
+        }
+        int sparseSize = HEADER + Short.BYTES + used * (Short.BYTES + 1);
+        if (sparseSize >= HEADER + registers.length) {
+            return ByteBuffer.allocate(HEADER + registers.length)
+                    .put(VERSION).put((byte) precision).put(DENSE)
+                    .put(registers)
+                    .array();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(sparseSize)
+                .put(VERSION).put((byte) precision).put(SPARSE)
+                .putShort((short) used);
+        for (int i = 0; i < registers.length; i++) {
+            if (registers[i] != 0) {
+                buffer.putShort((short) i).put(registers[i]);
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Reconstruye un estimador desde su forma binaria
+     *
+     * @param bytes Bytes del estimador
+     * @return Estimador
+     * @throws IllegalArgumentException si los bytes no corresponden a un estimador
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            if (buffer.get() != VERSION) {
+                throw new IllegalArgumentException("Versión de HyperLogLog no soportada");
+            }
+            HyperLogLog sketch = new HyperLogLog(buffer.get());
+            byte form = buffer.get();
+            if (form == DENSE) {
+                buffer.get(sketch.registers);
+            } else if (form == SPARSE) {
+                int used = Short.toUnsignedInt(buffer.getShort());
+                for (int i = 0; i < used; i++) {
+                    sketch.registers[Short.toUnsignedInt(buffer.getShort())] = buffer.get();
+                }
+            } else {
+                throw new IllegalArgumentException("Forma de HyperLogLog no soportada");
+            }
+            return sketch;
+        } catch (RuntimeException exception) {
+            if (exception instanceof IllegalArgumentException) {
+                throw exception;
+            }
+            throw new IllegalArgumentException("Los bytes no corresponden a un HyperLogLog", exception);
+        }
+    }
+
+    /**
+     * Mezcla los bits de un identificador para obtener un hash uniforme de 64 bits
+     *
+     * @param id Identificador
+     * @return Hash
+     */
+    private static long mix(int id) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+        hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
+}
@@ -0,0 +1,302 @@
+package com.sofka.megawarez.utility;
+
+import java.util.Arrays;
+
+/**
+ * Mapa de enteros a enteros sin objetos por entrada
+ *
+ * Guarda llaves y valores en dos arreglos de enteros con direccionamiento abierto y sondeo lineal,
+ * sin convertir a Integer. La llave cero marca las posiciones libres, así que no se admite como
+ * llave; los identificadores de las entidades empiezan en uno
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+public class IntIntHashMap {
+
+    /**
+     * Operación sobre cada entrada del mapa
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+
+        /**
+         * Recibe una entrada
+         *
+         * @param key Llave
+         * @param value Valor
+         */
+        void accept(int key, int value);
+    }
+
+    /**
+     * Proporción máxima de posiciones ocupadas antes de crecer
+     */
+    private static final float LOAD_FACTOR = 0.6f;
+
+    /**
+     * Llaves, cero en las posiciones libres
+     */
+    private int[] keys;
+
+    /**
+     * Valores de cada posición
+     */
+    private int[] values;
+
+    /**
+     * Número de entradas
+     */
+    private int size;
+
+    /**
+     * Número de entradas a partir del cual se crece
+     */
+    private int threshold;
+
+    /**
+     * Constructor con capacidad inicial pequeña
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public IntIntHashMap() {
+        this(8);
+    }
+
+    /**
+     * Constructor de la clase
+     *
+     * @param expected Número de entradas esperadas
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public IntIntHashMap(int expected) {
+        allocate(capacityFor(expected));
+    }
+
+    /**
+     * Devuelve el valor de una llave
+     *
+     * @param key Llave distinta de cero
+     * @return Valor, o cero si la llave no está
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public int get(int key) {
+        int slot = find(key);
+        return keys[slot] == key ? values[slot] : 0;
+    }
+
+    /**
+     * Suma al valor de una llave, agregándola con valor cero si no está
+     *
+     * @param key Llave distinta de cero
+     * @param delta Cantidad a sumar
+     * @return Valor resultante
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public int addTo(int key, int delta) {
+        if (key == 0) {
+            throw new IllegalArgumentException("La llave cero no se admite");
+        }
+        int slot = find(key);
+        if (keys[slot] == key) {
+            return values[slot] += delta;
+        }
+        keys[slot] = key;
+        values[slot] = delta;
+        if (++size > threshold) {
+            rehash(keys.length << 1);
+        }
+        return delta;
+    }
+
+    /**
+     * Asigna el valor de una llave
+     *
+     * @param key Llave distinta de cero
+     * @param value Valor
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public void put(int key, int value) {
+        addTo(key, value - get(key));
+    }
+
+    /**
+     * Elimina una llave, moviendo hacia atrás las entradas siguientes de la misma secuencia de sondeo
+     * como en {@link IntObjectHashMap#remove(int)}
+     *
+     * @param key Llave
+     * @return Valor eliminado, o cero si la llave no estaba
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public int remove(int key) {
+        int slot = find(key);
+        if (key == 0 || keys[slot] != key) {
+            return 0;
+        }
+        int removed = values[slot];
+        int mask = keys.length - 1;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != 0) {
+            int home = mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = 0;
+        values[gap] = 0;
+        size--;
+        return removed;
+    }
+
+    /**
+     * Número de entradas
+     *
+     * @return Tamaño del mapa
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Recorre todas las entradas en un orden sin especificar
+     *
+     * @param consumer Operación sobre cada entrada
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public void forEach(EntryConsumer consumer) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0) {
+                consumer.accept(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    /**
+     * Suma las entradas de otro mapa a este
+     *
+     * @param other Mapa a sumar
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public void addAll(IntIntHashMap other) {
+        other.forEach(this::addTo);
+    }
+
+    /**
+     * Llaves de las entradas con mayor valor, de mayor a menor valor y, en empate, de menor a mayor
+     * llave. Cada entrada se empaca en un long con el valor en los bits altos y la llave invertida en
+     * los bajos, así basta ordenar un solo arreglo
+     *
+     * @param limit Número máximo de llaves
+     * @return Pares llave y valor intercalados en un arreglo
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public int[] top(int limit) {
+        long[] packed = new long[size];
+        int index = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0) {
+                packed[index++] = ((long) values[slot] << 32) | (~keys[slot] & 0xFFFFFFFFL);
+            }
+        }
+        Arrays.sort(packed);
+        int count = Math.min(limit, size);
+        int[] top = new int[count * 2];
+        for (int i = 0; i < count; i++) {
+            long entry = packed[size - 1 - i];
+            top[i * 2] = ~(int) entry;
+            top[i * 2 + 1] = (int) (entry >> 32);
+        }
+        return top;
+    }
+
+    /**
+     * Posición de una llave, o la posición libre donde iría
+     *
+     * @param key Llave
+     * @return Posición
+     */
+    private int find(int key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Crece los arreglos y vuelve a ubicar las entradas
+     *
+     * @param capacity Nueva capacidad, potencia de dos
+     */
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != 0) {
+                int target = find(oldKeys[slot]);
+                keys[target] = oldKeys[slot];
+                values[target] = oldValues[slot];
+            }
+        }
+    }
+
+    /**
+     * Reserva arreglos vacíos
+     *
+     * @param capacity Capacidad, potencia de dos
+     */
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * Capacidad en potencia de dos para un número de entradas
+     *
+     * @param expected Número de entradas esperadas
+     * @return Capacidad
+     */
+    static int capacityFor(int expected) {
+        int needed = (int) Math.ceil(Math.max(4, expected) / LOAD_FACTOR);
+        return Integer.highestOneBit(needed - 1) << 1;
+    }
+
+    /**
+     * Mezcla los bits de una llave para repartir las posiciones
+     *
+     * @param key Llave
+     * @return Hash
+     */
+    static int mix(int key) {
+        int hash = key * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,282 @@
+package com.sofka.megawarez.utility;
+
+import java.util.function.IntFunction;
+
+/**
+ * Mapa de enteros a objetos sin convertir las llaves a Integer
+ *
+ * Usa direccionamiento abierto con sondeo lineal igual que {@link IntIntHashMap}. La llave cero
+ * marca las posiciones libres, así que no se admite como llave
+ *
+ * @param <V> Tipo de los valores
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+public class IntObjectHashMap<V> {
+
+    /**
+     * Operación sobre cada entrada del mapa
+     *
+     * @param <V> Tipo de los valores
+     */
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+
+        /**
+         * Recibe una entrada
+         *
+         * @param key Llave
+         * @param value Valor
+         */
+        void accept(int key, V value);
+    }
+
+    /**
+     * Proporción máxima de posiciones ocupadas antes de crecer
+     */
+    private static final float LOAD_FACTOR = 0.6f;
+
+    /**
+     * Llaves, cero en las posiciones libres
+     */
+    private int[] keys;
+
+    /**
+     * Valores de cada posición
+     */
+    private Object[] values;
+
+    /**
+     * Número de entradas
+     */
+    private int size;
+
+    /**
+     * Número de entradas a partir del cual se crece
+     */
+    private int threshold;
+
+    /**
+     * Constructor con capacidad inicial pequeña
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public IntObjectHashMap() {
+        this(8);
+    }
+
+    /**
+     * Constructor de la clase
+     *
+     * @param expected Número de entradas esperadas
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public IntObjectHashMap(int expected) {
+        allocate(IntIntHashMap.capacityFor(expected));
+    }
+
+    /**
+     * Devuelve el valor de una llave
+     *
+     * @param key Llave
+     * @return Valor, o null si la llave no está
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int slot = find(key);
+        return keys[slot] == key ? (V) values[slot] : null;
+    }
+
+    /**
+     * Devuelve el valor de una llave, creándolo si no está
+     *
+     * @param key Llave distinta de cero
+     * @param factory Creación del valor a partir de la llave
+     * @return Valor existente o creado
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @SuppressWarnings("unchecked")
+    public V computeIfAbsent(int key, IntFunction<V> factory) {
+        int slot = find(key);
+        if (keys[slot] == key) {
+            return (V) values[slot];
+        }
+        V value = factory.apply(key);
+        insert(slot, key, value);
+        return value;
+    }
+
+    /**
+     * Asigna el valor de una llave
+     *
+     * @param key Llave distinta de cero
+     * @param value Valor
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public void put(int key, V value) {
+        int slot = find(key);
+        if (keys[slot] == key) {
+            values[slot] = value;
+        } else {
+            insert(slot, key, value);
+        }
+    }
+
+    /**
+     * Elimina una llave, moviendo hacia atrás las entradas siguientes de la misma secuencia de sondeo
+     * para no dejar huecos que corten las búsquedas. Una entrada puede ocupar el hueco si su posición
+     * ideal no está entre el hueco y ella
+     *
+     * @param key Llave
+     * @return Valor eliminado, o null si la llave no estaba
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int slot = find(key);
+        if (key == 0 || keys[slot] != key) {
+            return null;
+        }
+        V removed = (V) values[slot];
+        int mask = keys.length - 1;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != 0) {
+            int home = IntIntHashMap.mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = 0;
+        values[gap] = null;
+        size--;
+        return removed;
+    }
+
+    /**
+     * Número de entradas
+     *
+     * @return Tamaño del mapa
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Llaves de todas las entradas en un orden sin especificar
+     *
+     * @return Arreglo con las llaves
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public int[] keys() {
+        int[] result = new int[size];
+        int index = 0;
+        for (int key : keys) {
+            if (key != 0) {
+                result[index++] = key;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Recorre todas las entradas en un orden sin especificar
+     *
+     * @param consumer Operación sobre cada entrada
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryConsumer<V> consumer) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0) {
+                consumer.accept(keys[slot], (V) values[slot]);
+            }
+        }
+    }
+
+    /**
+     * Agrega una entrada en una posición libre
+     *
+     * @param slot Posición libre
+     * @param key Llave
+     * @param value Valor
+     */
+    private void insert(int slot, int key, V value) {
+        if (key == 0) {
+            throw new IllegalArgumentException("La llave cero no se admite");
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > threshold) {
+            rehash(keys.length << 1);
+        }
+    }
+
+    /**
+     * Posición de una llave, o la posición libre donde iría
+     *
+     * @param key Llave
+     * @return Posición
+     */
+    private int find(int key) {
+        int mask = keys.length - 1;
+        int slot = IntIntHashMap.mix(key) & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Crece los arreglos y vuelve a ubicar las entradas
+     *
+     * @param capacity Nueva capacidad, potencia de dos
+     */
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != 0) {
+                int target = find(oldKeys[slot]);
+                keys[target] = oldKeys[slot];
+                values[target] = oldValues[slot];
+            }
+        }
+    }
+
+    /**
+     * Reserva arreglos vacíos
+     *
+     * @param capacity Capacidad, potencia de dos
+     */
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+}
@@ -0,0 +1,69 @@
+package com.sofka.megawarez.utility;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Escritura de listados en formato JSON fila por fila
+ *
+ * Escribe la misma estructura de {@link Response} pero con el arreglo data generado a medida que
+ * llegan las filas, de modo que la memoria usada no depende del número de filas y el cliente
+ * recibe los primeros bytes antes de que termine la consulta
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+public final class JsonStreamWriter {
+
+    /**
+     * Número de filas escritas entre cada envío al cliente
+     */
+    private static final int FLUSH_EVERY = 256;
+
+    /**
+     * Constructor privado, la clase solo tiene métodos estáticos
+     */
+    private JsonStreamWriter() {
+    }
+
+    /**
+     * Escribe una respuesta con las filas de un Stream como arreglo data
+     *
+     * @param objectMapper Serializador JSON
+     * @param output Salida de la respuesta
+     * @param message Mensaje de la respuesta
+     * @param rows Filas a escribir
+     * @throws IOException si falla la escritura
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public static void write(ObjectMapper objectMapper, OutputStream output, String message, Stream<?> rows)
+            throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output, JsonEncoding.UTF8)) {
+            generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+            generator.writeStartObject();
+            generator.writeBooleanField("error", false);
+            generator.writeStringField("message", message);
+            generator.writeArrayFieldStart("data");
+            generator.flush();
+            int written = 0;
+            Iterator<?> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                generator.writeObject(iterator.next());
+                if (++written % FLUSH_EVERY == 0) {
+                    generator.flush();
+                }
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+}
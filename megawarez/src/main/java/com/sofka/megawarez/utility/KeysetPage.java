@@ -0,0 +1,30 @@
+package com.sofka.megawarez.utility;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Página de un listado paginado por cursor
+ *
+ * @param items Elementos de la página
+ * @param nextCursor Cursor opaco de la página siguiente, nulo si es la última
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+public record KeysetPage<T>(List<T> items, String nextCursor) {
+
+    /**
+     * Convierte los elementos de la página conservando el cursor
+     *
+     * @param mapper Conversión de cada elemento
+     * @return Página con los elementos convertidos
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public <R> KeysetPage<R> map(Function<T, R> mapper) {
+        return new KeysetPage<>(items.stream().map(mapper).toList(), nextCursor);
+    }
+}
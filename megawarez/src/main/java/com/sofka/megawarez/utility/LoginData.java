@@ -21,9 +21,8 @@ public class LoginData {
     private String username;
     private String password;
 
-    public String setPassword(String password) throws Exception {
-        this.password = createMD5(password);
-        return this.password;
+    public void setPassword(String password) {
+        this.password = password;
     }
 
     public String getUsername() {
@@ -38,7 +37,7 @@ public class LoginData {
         return createMD5(getUsername() + Instant.now());
     }
 
-    private String createMD5(String password) throws Exception {
+    public static String createMD5(String password) throws Exception {
         try {
             MessageDigest m = MessageDigest.getInstance("MD5");
             m.reset();
@@ -4,49 +4,71 @@ package com.sofka.megawarez.utility;
 /**
  * Clase para el manejo de las respuestas de las API
  *
+ * Cada petición construye su propia respuesta y esta no cambia después de creada, por lo que los
+ * controladores pueden atender peticiones concurrentes sin compartir estado
+ *
  * @version 1.0.0 2022-03-31
  * @author Ricardo Ortega <tattortega.28@gmail.com>
  * @since 1.0.0
  */
-public class Response {
+public final class Response {
 
     /**
      * Indica de si existe un error o no en la respuesta del API
      */
-    public Boolean error;
+    public final Boolean error;
 
     /**
      * Mensaje del API cuando es utilizada
      */
-    public String message;
+    public final String message;
 
     /**
      * Información del API cuando es necesario
      */
-    public Object data;
+    public final Object data;
 
     /**
      * Constructor de la clase
      *
+     * @param error Indica si existe un error en la respuesta
+     * @param message Mensaje de la respuesta
+     * @param data Información de la respuesta
+     *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
-    public Response() {
-        error = false;
-        message = "";
-        data = null;
+    public Response(Boolean error, String message, Object data) {
+        this.error = error;
+        this.message = message == null ? "" : message;
+        this.data = data;
     }
 
     /**
-     * Restaura a ceros la respuesta del API
+     * Crea una respuesta exitosa
+     *
+     * @param message Mensaje de la respuesta
+     * @param data Información de la respuesta
+     * @return Respuesta sin error
      *
      * @author Ricardo Ortega <tattortega.28@gmail.com>
      * @since 1.0.0
      */
-    public void restart() {
-        error = false;
-        message = "";
-        data = null;
+    public static Response ok(String message, Object data) {
+        return new Response(false, message, data);
     }
-}
 
+    /**
+     * Crea una respuesta de error
+     *
+     * @param message Mensaje de la respuesta
+     * @param data Información de la respuesta
+     * @return Respuesta con error
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public static Response error(String message, Object data) {
+        return new Response(true, message, data);
+    }
+}
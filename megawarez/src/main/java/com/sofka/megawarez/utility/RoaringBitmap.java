@@ -0,0 +1,199 @@
+package com.sofka.megawarez.utility;
+
+import java.util.Arrays;
+
+/**
+ * Conjunto comprimido de enteros no negativos al estilo Roaring
+ *
+ * Los enteros se agrupan por sus 16 bits altos. Cada grupo guarda sus 16 bits bajos en un arreglo
+ * ordenado mientras tenga hasta 4096 elementos, y en un mapa de 65536 bits cuando tiene más, que en
+ * ese punto ocupa lo mismo (8 KB). Así un usuario con pocas descargas ocupa unos pocos bytes y uno
+ * con muchas descargas de identificadores cercanos ocupa un bit por producto. La pertenencia cuesta
+ * una búsqueda binaria entre los grupos y otra, o un acceso directo, dentro del grupo
+ *
+ * No es seguro para hilos; quien lo comparta debe sincronizar el acceso
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+public class RoaringBitmap {
+
+    /**
+     * Número máximo de elementos de un grupo guardado como arreglo
+     */
+    private static final int ARRAY_MAX = 4096;
+
+    /**
+     * Palabras de 64 bits de un grupo guardado como mapa de bits
+     */
+    private static final int BITMAP_WORDS = 1 << 10;
+
+    /**
+     * 16 bits altos de cada grupo, ordenados
+     */
+    private char[] keys = new char[0];
+
+    /**
+     * Elementos de cada grupo: char[] ordenado o long[] de mapa de bits
+     */
+    private Object[] containers = new Object[0];
+
+    /**
+     * Número de elementos de cada grupo
+     */
+    private int[] cardinalities = new int[0];
+
+    /**
+     * Número de grupos
+     */
+    private int size;
+
+    /**
+     * Agrega un entero
+     *
+     * @param value Entero no negativo
+     * @return Verdadero si no estaba
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public boolean add(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Solo se admiten enteros no negativos");
+        }
+        char high = (char) (value >>> 16);
+        char low = (char) value;
+        int index = Arrays.binarySearch(keys, 0, size, high);
+        if (index < 0) {
+            index = insertContainer(-index - 1, high);
+        }
+        Object container = containers[index];
+        if (container instanceof long[] words) {
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) != 0) {
+                return false;
+            }
+            words[low >>> 6] |= bit;
+            cardinalities[index]++;
+            return true;
+        }
+        char[] values = (char[]) container;
+        int cardinality = cardinalities[index];
+        int position = Arrays.binarySearch(values, 0, cardinality, low);
+        if (position >= 0) {
+            return false;
+        }
+        position = -position - 1;
+        if (cardinality == ARRAY_MAX) {
+            long[] words = toBitmap(values, cardinality);
+            words[low >>> 6] |= 1L << low;
+            containers[index] = words;
+        } else {
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, Math.max(4, cardinality * 2)));
+                containers[index] = values;
+            }
+            System.arraycopy(values, position, values, position + 1, cardinality - position);
+            values[position] = low;
+        }
+        cardinalities[index]++;
+        return true;
+    }
+
+    /**
+     * Indica si un entero pertenece al conjunto
+     *
+     * @param value Entero
+     * @return Verdadero si pertenece
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public boolean contains(int value) {
+        if (value < 0) {
+            return false;
+        }
+        int index = Arrays.binarySearch(keys, 0, size, (char) (value >>> 16));
+        if (index < 0) {
+            return false;
+        }
+        char low = (char) value;
+        Object container = containers[index];
+        if (container instanceof long[] words) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch((char[]) container, 0, cardinalities[index], low) >= 0;
+    }
+
+    /**
+     * Número de enteros del conjunto
+     *
+     * @return Cardinalidad
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public long cardinality() {
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total += cardinalities[i];
+        }
+        return total;
+    }
+
+    /**
+     * Memoria aproximada que ocupan los grupos, para limitar el tamaño de las cachés
+     *
+     * @return Bytes aproximados
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public int sizeInBytes() {
+        int bytes = keys.length * Character.BYTES + cardinalities.length * Integer.BYTES;
+        for (int i = 0; i < size; i++) {
+            bytes += containers[i] instanceof long[] words ? words.length * Long.BYTES : ((char[]) containers[i]).length * Character.BYTES;
+        }
+        return bytes;
+    }
+
+    /**
+     * Abre espacio para un grupo nuevo vacío
+     *
+     * @param index Posición del grupo en el orden de los bits altos
+     * @param high 16 bits altos del grupo
+     * @return Posición del grupo
+     */
+    private int insertContainer(int index, char high) {
+        if (size == keys.length) {
+            int capacity = Math.max(2, size * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+            cardinalities = Arrays.copyOf(cardinalities, capacity);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        System.arraycopy(cardinalities, index, cardinalities, index + 1, size - index);
+        keys[index] = high;
+        containers[index] = new char[4];
+        cardinalities[index] = 0;
+        size++;
+        return index;
+    }
+
+    /**
+     * Convierte un grupo de arreglo a mapa de bits
+     *
+     * @param values 16 bits bajos ordenados
+     * @param cardinality Número de elementos
+     * @return Mapa de bits
+     */
+    private static long[] toBitmap(char[] values, int cardinality) {
+        long[] words = new long[BITMAP_WORDS];
+        for (int i = 0; i < cardinality; i++) {
+            words[values[i] >>> 6] |= 1L << values[i];
+        }
+        return words;
+    }
+}
@@ -0,0 +1,43 @@
+package com.sofka.megawarez.utility;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Normalización de textos para búsquedas sin distinguir mayúsculas ni acentos
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+public final class TextFolding {
+
+    /**
+     * Marcas diacríticas que quedan separadas al descomponer el texto
+     */
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    /**
+     * Constructor privado, la clase solo tiene métodos estáticos
+     */
+    private TextFolding() {
+    }
+
+    /**
+     * Convierte un texto a minúsculas y sin acentos, por ejemplo "Canción Ñandú" a "cancion nandu"
+     *
+     * @param text Texto
+     * @return Texto normalizado, vacío si el texto es nulo
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public static String fold(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+}
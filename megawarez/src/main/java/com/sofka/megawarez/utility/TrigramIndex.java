@@ -0,0 +1,231 @@
+package com.sofka.megawarez.utility;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Índice invertido de trigramas para buscar subcadenas sin recorrer todos los textos
+ *
+ * Cada texto se guarda normalizado con {@link TextFolding} y cada secuencia de tres caracteres
+ * consecutivos apunta a la lista ordenada de identificadores que la contienen. Una búsqueda de tres
+ * o más caracteres intersecta las listas de sus trigramas, empezando por la más corta, y confirma
+ * cada candidato con el texto guardado; las de uno o dos caracteres no tienen trigramas y recorren
+ * los textos en memoria. Agregar identificadores en orden creciente solo agrega al final de las
+ * listas, por eso la carga inicial debe hacerse en ese orden
+ *
+ * No es seguro para hilos; quien lo comparta debe sincronizar el acceso
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+public class TrigramIndex {
+
+    /**
+     * Textos normalizados por identificador
+     */
+    private final IntObjectHashMap<String> texts = new IntObjectHashMap<>();
+
+    /**
+     * Identificadores por trigrama, con los tres caracteres empaquetados en un long
+     */
+    private final Map<Long, Postings> postings = new HashMap<>();
+
+    /**
+     * Agrega o reemplaza el texto de un identificador
+     *
+     * @param id Identificador distinto de cero
+     * @param text Texto sin normalizar
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public void put(int id, String text) {
+        remove(id);
+        String folded = TextFolding.fold(text);
+        texts.put(id, folded);
+        for (long trigram : trigrams(folded)) {
+            postings.computeIfAbsent(trigram, key -> new Postings()).add(id);
+        }
+    }
+
+    /**
+     * Elimina el texto de un identificador
+     *
+     * @param id Identificador
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public void remove(int id) {
+        String folded = texts.remove(id);
+        if (folded == null) {
+            return;
+        }
+        for (long trigram : trigrams(folded)) {
+            Postings list = postings.get(trigram);
+            if (list != null && list.remove(id) && list.size == 0) {
+                postings.remove(trigram);
+            }
+        }
+    }
+
+    /**
+     * Texto normalizado de un identificador
+     *
+     * @param id Identificador
+     * @return Texto normalizado, o null si no está
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public String text(int id) {
+        return texts.get(id);
+    }
+
+    /**
+     * Número de textos del índice
+     *
+     * @return Tamaño del índice
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public int size() {
+        return texts.size();
+    }
+
+    /**
+     * Identificadores cuyo texto contiene una cadena, sin distinguir mayúsculas ni acentos
+     *
+     * @param query Cadena sin normalizar
+     * @return Identificadores en orden creciente
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public int[] containing(String query) {
+        String folded = TextFolding.fold(query);
+        if (folded.isEmpty()) {
+            return new int[0];
+        }
+        long[] grams = trigrams(folded);
+        if (grams.length == 0) {
+            List<Integer> found = new ArrayList<>();
+            texts.forEach((id, text) -> {
+                if (text.contains(folded)) {
+                    found.add(id);
+                }
+            });
+            return found.stream().mapToInt(Integer::intValue).sorted().toArray();
+        }
+        Postings[] lists = new Postings[grams.length];
+        for (int i = 0; i < grams.length; i++) {
+            lists[i] = postings.get(grams[i]);
+            if (lists[i] == null) {
+                return new int[0];
+            }
+        }
+        Arrays.sort(lists, (first, second) -> Integer.compare(first.size, second.size));
+        int[] candidates = Arrays.copyOf(lists[0].ids, lists[0].size);
+        int count = candidates.length;
+        for (int i = 1; i < lists.length && count > 0; i++) {
+            count = intersect(candidates, count, lists[i]);
+        }
+        int matches = 0;
+        for (int i = 0; i < count; i++) {
+            if (texts.get(candidates[i]).contains(folded)) {
+                candidates[matches++] = candidates[i];
+            }
+        }
+        return Arrays.copyOf(candidates, matches);
+    }
+
+    /**
+     * Deja en los candidatos solo los que también están en una lista. Cada candidato se busca con
+     * búsqueda binaria desde la última posición encontrada, porque la lista suele ser mucho más larga
+     *
+     * @param candidates Candidatos ordenados, se modifica
+     * @param count Número de candidatos
+     * @param list Lista ordenada
+     * @return Número de candidatos que quedan
+     */
+    private static int intersect(int[] candidates, int count, Postings list) {
+        int kept = 0;
+        int position = 0;
+        for (int i = 0; i < count && position < list.size; i++) {
+            int found = Arrays.binarySearch(list.ids, position, list.size, candidates[i]);
+            if (found >= 0) {
+                candidates[kept++] = candidates[i];
+                position = found + 1;
+            } else {
+                position = -found - 1;
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Trigramas distintos de un texto normalizado
+     *
+     * @param folded Texto normalizado
+     * @return Trigramas empaquetados
+     */
+    private static long[] trigrams(String folded) {
+        if (folded.length() < 3) {
+            return new long[0];
+        }
+        long[] grams = new long[folded.length() - 2];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = ((long) folded.charAt(i) << 32) | ((long) folded.charAt(i + 1) << 16) | folded.charAt(i + 2);
+        }
+        return Arrays.stream(grams).distinct().toArray();
+    }
+
+    /**
+     * Lista ordenada de identificadores de un trigrama
+     */
+    private static final class Postings {
+
+        /**
+         * Identificadores en orden creciente
+         */
+        private int[] ids = new int[4];
+
+        /**
+         * Número de identificadores
+         */
+        private int size;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            if (size == 0 || id > ids[size - 1]) {
+                ids[size++] = id;
+                return;
+            }
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0) {
+                return;
+            }
+            position = -position - 1;
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = id;
+            size++;
+        }
+
+        boolean remove(int id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+            size--;
+            return true;
+        }
+    }
+}
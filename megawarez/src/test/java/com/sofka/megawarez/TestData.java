@@ -0,0 +1,185 @@
+package com.sofka.megawarez;
+
+import com.sofka.megawarez.domain.Category;
+import com.sofka.megawarez.domain.Download;
+import com.sofka.megawarez.domain.Product;
+import com.sofka.megawarez.domain.Subcategory;
+import com.sofka.megawarez.domain.User;
+import com.sofka.megawarez.repository.CategoryRepository;
+import com.sofka.megawarez.repository.ProductRepository;
+import com.sofka.megawarez.repository.SubcategoryRepository;
+import com.sofka.megawarez.repository.UserRepository;
+import org.springframework.boot.test.context.TestComponent;
+
+import java.time.Instant;
+
+/**
+ * Datos de prueba compartidos: categorías, subcategorías, productos, usuarios y descargas
+ *
+ * Se agrega a cada prueba con @Import(TestData.class). Los productos se guardan directo en el
+ * repositorio, sin publicar eventos; las pruebas de los índices en memoria los crean con
+ * ProductService
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@TestComponent
+public class TestData {
+
+    /**
+     * Repositorio de Category
+     */
+    private final CategoryRepository categoryRepository;
+
+    /**
+     * Repositorio de Subcategory
+     */
+    private final SubcategoryRepository subcategoryRepository;
+
+    /**
+     * Repositorio de Product
+     */
+    private final ProductRepository productRepository;
+
+    /**
+     * Repositorio de User
+     */
+    private final UserRepository userRepository;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param categoryRepository Repositorio de Category
+     * @param subcategoryRepository Repositorio de Subcategory
+     * @param productRepository Repositorio de Product
+     * @param userRepository Repositorio de User
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public TestData(
+            CategoryRepository categoryRepository,
+            SubcategoryRepository subcategoryRepository,
+            ProductRepository productRepository,
+            UserRepository userRepository) {
+        this.categoryRepository = categoryRepository;
+        this.subcategoryRepository = subcategoryRepository;
+        this.productRepository = productRepository;
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * Guarda una categoría
+     *
+     * @param name Nombre de la categoría
+     * @return Categoría guardada
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public Category category(String name) {
+        Category category = new Category();
+        category.setCategory(name);
+        category.setCreatedAt(Instant.now());
+        return categoryRepository.save(category);
+    }
+
+    /**
+     * Guarda una subcategoría en una categoría nueva
+     *
+     * @return Subcategoría guardada
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public Subcategory subcategory() {
+        return subcategory(category("categoria"), "subcategoria");
+    }
+
+    /**
+     * Guarda una subcategoría
+     *
+     * @param category Categoría de la subcategoría
+     * @param name Nombre de la subcategoría
+     * @return Subcategoría guardada
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public Subcategory subcategory(Category category, String name) {
+        Subcategory subcategory = new Subcategory();
+        subcategory.setScatCategory(category);
+        subcategory.setSubcategory(name);
+        subcategory.setCreatedAt(Instant.now());
+        return subcategoryRepository.save(subcategory);
+    }
+
+    /**
+     * Guarda un producto en una subcategoría nueva
+     *
+     * @return Producto guardado
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public Product product() {
+        return product(subcategory(), "producto");
+    }
+
+    /**
+     * Guarda un producto
+     *
+     * @param subcategory Subcategoría del producto
+     * @param name Nombre del producto
+     * @return Producto guardado
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public Product product(Subcategory subcategory, String name) {
+        Product product = new Product();
+        product.setPrdSubcategory(subcategory);
+        product.setProduct(name);
+        product.setCreatedAt(Instant.now());
+        return productRepository.save(product);
+    }
+
+    /**
+     * Guarda un usuario con un nombre único
+     *
+     * @return Usuario guardado
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public User user() {
+        User user = new User();
+        user.setUsername("usuario-" + System.nanoTime());
+        user.setPassword("secreto");
+        user.setCreatedAt(Instant.now());
+        return userRepository.save(user);
+    }
+
+    /**
+     * Descarga sin guardar que solo referencia al producto y al usuario por identificador, como la
+     * que llega en el cuerpo de la petición
+     *
+     * @param productId Identificador del producto
+     * @param userId Identificador del usuario
+     * @return Descarga
+     *
+     * @author Ricardo Ortega <tattortega.28@gmail.com>
+     * @since 1.0.0
+     */
+    public static Download download(Integer productId, Integer userId) {
+        Product product = new Product();
+        product.setId(productId);
+        User user = new User();
+        user.setId(userId);
+        Download download = new Download();
+        download.setDwnProduct(product);
+        download.setDwnUser(user);
+        return download;
+    }
+}
@@ -0,0 +1,151 @@
+package com.sofka.megawarez.benchmark;
+
+import com.sofka.megawarez.MegawarezApplication;
+import com.sofka.megawarez.domain.Category;
+import com.sofka.megawarez.domain.Download;
+import com.sofka.megawarez.domain.Product;
+import com.sofka.megawarez.domain.Subcategory;
+import com.sofka.megawarez.domain.User;
+import com.sofka.megawarez.repository.CategoryRepository;
+import com.sofka.megawarez.repository.DownloadRepository;
+import com.sofka.megawarez.repository.ProductRepository;
+import com.sofka.megawarez.repository.SubcategoryRepository;
+import com.sofka.megawarez.repository.UserRepository;
+import org.h2.tools.Server;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara el rendimiento de inserción de descargas con identificadores IDENTITY y por bloques
+ *
+ * Inserta lotes de descargas en una sola transacción contra H2 en modo servidor TCP, de modo que
+ * cada sentencia paga un viaje de red. El modo identity vuelve a mapear el identificador de
+ * Download con IDENTITY mediante benchmark/identity-orm.xml, lo que obliga a un INSERT por fila.
+ * Se ejecuta con el método main desde el IDE o con
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.sofka.megawarez.benchmark.BatchInsertBenchmark
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@OperationsPerInvocation(BatchInsertBenchmark.ROWS)
+public class BatchInsertBenchmark {
+
+    static final int ROWS = 500;
+
+    @Param({"identity", "pooled"})
+    public String strategy;
+
+    private Server server;
+
+    private ConfigurableApplicationContext context;
+
+    private DownloadRepository downloadRepository;
+
+    private TransactionTemplate transactionTemplate;
+
+    private Product product;
+
+    private User user;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        server = Server.createTcpServer("-tcpPort", "0", "-ifNotExists").start();
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=warn",
+                "--logging.level.org.hibernate.SQL=warn",
+                "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=warn",
+                "--spring.datasource.url=jdbc:h2:tcp://localhost:" + server.getPort() + "/mem:insert;MODE=MySQL;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.hibernate.ddl-auto=create-drop"));
+        if ("identity".equals(strategy)) {
+            args.add("--spring.jpa.mapping-resources=benchmark/identity-orm.xml");
+        }
+        context = new SpringApplicationBuilder(MegawarezApplication.class).run(args.toArray(String[]::new));
+        downloadRepository = context.getBean(DownloadRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        Category category = new Category();
+        category.setCategory("categoria");
+        category.setCreatedAt(Instant.now());
+        context.getBean(CategoryRepository.class).save(category);
+        Subcategory subcategory = new Subcategory();
+        subcategory.setScatCategory(category);
+        subcategory.setSubcategory("subcategoria");
+        subcategory.setCreatedAt(Instant.now());
+        context.getBean(SubcategoryRepository.class).save(subcategory);
+        product = new Product();
+        product.setPrdSubcategory(subcategory);
+        product.setProduct("producto");
+        product.setCreatedAt(Instant.now());
+        product = context.getBean(ProductRepository.class).save(product);
+        user = new User();
+        user.setUsername("usuario");
+        user.setPassword("secreto");
+        user.setCreatedAt(Instant.now());
+        user = context.getBean(UserRepository.class).save(user);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+        server.stop();
+    }
+
+    @Benchmark
+    public int insertDownloads() {
+        return transactionTemplate.execute(status -> {
+            List<Download> downloads = new ArrayList<>(ROWS);
+            for (int i = 0; i < ROWS; i++) {
+                Download download = new Download();
+                download.setDwnProduct(product);
+                download.setDwnUser(user);
+                download.setCreatedAt(Instant.now());
+                downloads.add(download);
+            }
+            return downloadRepository.saveAll(downloads).size();
+        });
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(BatchInsertBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
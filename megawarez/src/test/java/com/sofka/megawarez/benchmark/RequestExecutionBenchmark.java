@@ -0,0 +1,127 @@
+package com.sofka.megawarez.benchmark;
+
+import com.sofka.megawarez.config.RequestExecutionConfig;
+import com.sofka.megawarez.utility.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara el rendimiento y la latencia p99 de los modos de ejecución blocking, async y virtual
+ *
+ * Levanta Tomcat con pocos hilos y un controlador que simula una consulta lenta a la base de
+ * datos, y lo consulta desde muchos clientes concurrentes. En una JVM sin hilos virtuales el modo
+ * virtual se ejecuta como async. Se ejecuta con el método main desde el IDE o con
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.sofka.megawarez.benchmark.RequestExecutionBenchmark
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(128)
+@Fork(1)
+public class RequestExecutionBenchmark {
+
+    @Param({"blocking", "async", "virtual"})
+    public String mode;
+
+    @Param({"50"})
+    public long databaseLatencyMillis;
+
+    private ConfigurableApplicationContext context;
+
+    private HttpClient client;
+
+    private HttpRequest request;
+
+    @Setup(Level.Trial)
+    public void start() {
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        context = new SpringApplicationBuilder(SlowDatabaseApplication.class).run(
+                "--server.port=0",
+                "--server.tomcat.threads.max=16",
+                "--server.tomcat.threads.min-spare=16",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=warn",
+                "--megawarez.execution.mode=" + mode,
+                "--megawarez.execution.threads=64",
+                "--megawarez.benchmark.database-latency=" + databaseLatencyMillis);
+        int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+        client = HttpClient.newHttpClient();
+        request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/v1/slow")).GET().build();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public int slowQuery() throws Exception {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Respuesta inesperada: " + response.statusCode());
+        }
+        return response.body().length();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(RequestExecutionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+    @EnableAutoConfiguration(exclude = DataSourceAutoConfiguration.class)
+    @Import({RequestExecutionConfig.class, SlowDatabaseController.class})
+    static class SlowDatabaseApplication {
+    }
+
+    @RequestMapping
+    static class SlowDatabaseController {
+
+        @Value("${megawarez.benchmark.database-latency}")
+        private long databaseLatency;
+
+        @GetMapping(path = "/api/v1/slow")
+        public ResponseEntity<Response> slow() throws InterruptedException {
+            Thread.sleep(databaseLatency);
+            return new ResponseEntity<>(Response.ok("Consulta lenta", databaseLatency), HttpStatus.OK);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.sofka.megawarez.benchmark;
+
+import com.sofka.megawarez.domain.Product;
+import com.sofka.megawarez.repository.ProductRepository;
+import com.sofka.megawarez.service.ProductSearchIndex;
+import com.sofka.megawarez.service.ProductService;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Mide cómo crece con el número de resultados la unión de los productos de una búsqueda
+ *
+ * searchProduct recibe del índice los identificadores en el orden de los resultados y del
+ * repositorio las entidades en otro orden, y las une en un solo recorrido por identificador; el
+ * benchmark entitySet mide además un HashSet de entidades, que con el hashCode constante anterior
+ * crecía de forma cuadrática. El repositorio y el índice se reemplazan por datos en memoria para
+ * medir solo la unión. Si el costo es lineal, el tiempo por operación crece en la misma proporción
+ * que el parámetro results. Se ejecuta con el método main desde el IDE o con
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.sofka.megawarez.benchmark.SearchMergeBenchmark
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchMergeBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int results;
+
+    private ProductService productService;
+
+    private List<Product> products;
+
+    @Setup(Level.Trial)
+    public void prepare() {
+        Random random = new Random(42);
+        List<Integer> ids = new ArrayList<>(results);
+        products = new ArrayList<>(results);
+        for (int i = 1; i <= results; i++) {
+            ids.add(i);
+            Product product = new Product();
+            product.setId(i);
+            product.setProduct("producto " + i);
+            products.add(product);
+        }
+        Collections.shuffle(ids, random);
+        List<Integer> ranked = List.copyOf(ids);
+
+        ProductRepository productRepository = Mockito.mock(ProductRepository.class, Mockito.withSettings().stubOnly());
+        when(productRepository.findAllById(any())).thenReturn(products);
+        ProductSearchIndex productSearchIndex = new ProductSearchIndex(2, null) {
+            @Override
+            public List<Integer> search(String query) {
+                return ranked;
+            }
+        };
+        productService = new ProductService();
+        ReflectionTestUtils.setField(productService, "productRepository", productRepository);
+        ReflectionTestUtils.setField(productService, "productSearchIndex", productSearchIndex);
+    }
+
+    @Benchmark
+    public int searchProduct() {
+        return productService.searchProduct("producto").size();
+    }
+
+    @Benchmark
+    public int entitySet() {
+        return new HashSet<>(products).size();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(SearchMergeBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
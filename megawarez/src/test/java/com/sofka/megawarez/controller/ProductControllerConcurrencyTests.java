@@ -0,0 +1,185 @@
+package com.sofka.megawarez.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sofka.megawarez.config.ResponseStreams;
+import com.sofka.megawarez.domain.Product;
+import com.sofka.megawarez.service.DownloadedProducts;
+import com.sofka.megawarez.service.ProductAutocomplete;
+import com.sofka.megawarez.service.ProductFacets;
+import com.sofka.megawarez.service.ProductRecommendations;
+import com.sofka.megawarez.service.ProductService;
+import com.sofka.megawarez.service.TrendingProducts;
+import com.sofka.megawarez.service.UniqueDownloaders;
+import com.sofka.megawarez.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+
+/**
+ * Pruebas de concurrencia del controlador de Producto
+ *
+ * Lanza miles de peticiones mezcladas en paralelo y verifica que cada respuesta corresponde a
+ * su propia petición
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@WebMvcTest(ProductController.class)
+@Import(ResponseStreams.class)
+class ProductControllerConcurrencyTests {
+
+    private static final int REQUESTS = 4000;
+
+    private static final int THREADS = 64;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @MockBean
+    private ProductService productService;
+
+    @MockBean
+    private UserService userService;
+
+    @MockBean
+    private TrendingProducts trendingProducts;
+
+    @MockBean
+    private UniqueDownloaders uniqueDownloaders;
+
+    @MockBean
+    private ProductRecommendations productRecommendations;
+
+    @MockBean
+    private DownloadedProducts downloadedProducts;
+
+    @MockBean
+    private ProductAutocomplete productAutocomplete;
+
+    @MockBean
+    private ProductFacets productFacets;
+
+    @BeforeEach
+    void setUp() {
+        when(userService.findUserIdByToken(anyString())).thenAnswer(invocation -> {
+            String token = invocation.getArgument(0);
+            return token.startsWith("valid-") ? Optional.of(1) : Optional.empty();
+        });
+        when(productService.updateProduct(anyInt(), any(Product.class))).thenAnswer(invocation -> {
+            Product product = invocation.getArgument(1);
+            product.setId(invocation.getArgument(0));
+            return product;
+        });
+        when(productService.deleteProduct(anyInt())).thenAnswer(invocation -> {
+            Integer id = invocation.getArgument(0);
+            if (id % 2 == 0) {
+                return null;
+            }
+            Product product = new Product();
+            product.setId(id);
+            product.setProduct("deleted-" + id);
+            return product;
+        });
+    }
+
+    @Test
+    void parallelRequestsDoNotShareResponses() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < REQUESTS; i++) {
+                final int n = i;
+                Callable<Void> call = () -> {
+                    start.await();
+                    switch (n % 3) {
+                        case 0 -> updateProduct(n);
+                        case 1 -> deleteProduct(n);
+                        default -> unauthorized(n);
+                    }
+                    return null;
+                };
+                results.add(executor.submit(call));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void updateProduct(int n) throws Exception {
+        MvcResult result = mockMvc.perform(patch("/api/v1/product/{id}/product", n)
+                        .header(HttpHeaders.AUTHORIZATION, "valid-" + n)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"product\":\"product-" + n + "\"}"))
+                .andReturn();
+        JsonNode body = body(result);
+        assertThat(result.getResponse().getStatus()).isEqualTo(200);
+        assertThat(body.get("error").asBoolean()).isFalse();
+        assertThat(body.get("message").asText()).isEqualTo("Producto actualizado");
+        assertThat(body.get("data").get("id").asInt()).isEqualTo(n);
+        assertThat(body.get("data").get("product").asText()).isEqualTo("product-" + n);
+    }
+
+    private void deleteProduct(int n) throws Exception {
+        MvcResult result = mockMvc.perform(delete("/api/v1/product/{id}", n)
+                        .header(HttpHeaders.AUTHORIZATION, "valid-" + n))
+                .andReturn();
+        JsonNode body = body(result);
+        if (n % 2 == 0) {
+            assertThat(result.getResponse().getStatus()).isEqualTo(404);
+            assertThat(body.get("message").asText()).isEqualTo("El producto no existe");
+            assertThat(body.get("data").isNull()).isTrue();
+        } else {
+            assertThat(result.getResponse().getStatus()).isEqualTo(200);
+            assertThat(body.get("message").asText()).isEqualTo("Producto eliminado");
+            assertThat(body.get("data").get("product").asText()).isEqualTo("deleted-" + n);
+        }
+    }
+
+    private void unauthorized(int n) throws Exception {
+        MvcResult result = mockMvc.perform(delete("/api/v1/product/{id}", n)
+                        .header(HttpHeaders.AUTHORIZATION, "expired-" + n))
+                .andReturn();
+        JsonNode body = body(result);
+        assertThat(result.getResponse().getStatus()).isEqualTo(401);
+        assertThat(body.get("error").asBoolean()).isTrue();
+        assertThat(body.get("message").asText()).isEqualTo("No existe token activo");
+    }
+
+    private JsonNode body(MvcResult result) throws Exception {
+        return objectMapper.readTree(result.getResponse().getContentAsByteArray());
+    }
+}
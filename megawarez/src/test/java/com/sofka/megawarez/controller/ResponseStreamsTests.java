@@ -0,0 +1,76 @@
+package com.sofka.megawarez.controller;
+
+import com.sofka.megawarez.service.ProductService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Pruebas de los límites de los listados completos
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@SpringBootTest(properties = {
+        "megawarez.stream.max-concurrent=1",
+        "megawarez.stream.timeout=PT2M"
+})
+@ActiveProfiles("h2")
+@AutoConfigureMockMvc
+@DirtiesContext
+class ResponseStreamsTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ProductService productService;
+
+    @Test
+    void streamsHaveTheirOwnTimeoutAndAreCappedUntilTheyComplete() throws Exception {
+        CountDownLatch reading = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            reading.await();
+            invocation.<OutputStream>getArgument(0).write("{\"error\":false}".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(productService).streamProducts(any());
+
+        MvcResult first = mockMvc.perform(get("/api/v1/products/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertThat(first.getRequest().getAsyncContext().getTimeout()).isEqualTo(120_000L);
+
+        MvcResult rejected = mockMvc.perform(get("/api/v1/products/stream"))
+                .andExpect(status().isServiceUnavailable())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(rejected)).andExpect(jsonPath("$.error").value(true));
+
+        reading.countDown();
+        mockMvc.perform(asyncDispatch(first))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.error").value(false));
+        mockMvc.perform(get("/api/v1/products/stream"))
+                .andExpect(status().isOk())
+                .andExpect(request().asyncStarted());
+    }
+}
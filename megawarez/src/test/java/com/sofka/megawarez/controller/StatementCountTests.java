@@ -0,0 +1,180 @@
+package com.sofka.megawarez.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sofka.megawarez.domain.Category;
+import com.sofka.megawarez.domain.Download;
+import com.sofka.megawarez.domain.Product;
+import com.sofka.megawarez.domain.Subcategory;
+import com.sofka.megawarez.domain.User;
+import com.sofka.megawarez.repository.CategoryRepository;
+import com.sofka.megawarez.repository.DownloadRepository;
+import com.sofka.megawarez.repository.ProductRepository;
+import com.sofka.megawarez.repository.SubcategoryRepository;
+import com.sofka.megawarez.service.UserService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Pruebas del número de sentencias SQL que emite cada listado
+ *
+ * Cuenta las sentencias de cada endpoint con pocas descargas y de nuevo tras multiplicar las
+ * descargas, de modo que un listado que vuelva a cargar colecciones hijas falla la prueba
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+@AutoConfigureMockMvc
+class StatementCountTests {
+
+    private static final String PASSWORD = "secreto";
+
+    private static final List<String> ENDPOINTS = List.of(
+            "/api/v1/category",
+            "/api/v1/subcategory",
+            "/api/v1/products",
+            "/api/v1/users",
+            "/api/v1/downloads");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private SubcategoryRepository subcategoryRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private DownloadRepository downloadRepository;
+
+    @Autowired
+    private UserService userService;
+
+    private final List<Product> products = new ArrayList<>();
+
+    private final List<User> users = new ArrayList<>();
+
+    private Statistics statistics;
+
+    private String token;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        downloadRepository.deleteAll();
+        productRepository.deleteAll();
+        subcategoryRepository.deleteAll();
+        categoryRepository.deleteAll();
+        products.clear();
+        users.clear();
+        for (int c = 0; c < 3; c++) {
+            Category category = new Category();
+            category.setCategory("categoria-" + c);
+            category.setCreatedAt(Instant.now());
+            categoryRepository.save(category);
+            for (int s = 0; s < 3; s++) {
+                Subcategory subcategory = new Subcategory();
+                subcategory.setScatCategory(category);
+                subcategory.setSubcategory("subcategoria-" + c + "-" + s);
+                subcategory.setCreatedAt(Instant.now());
+                subcategoryRepository.save(subcategory);
+                for (int p = 0; p < 3; p++) {
+                    Product product = new Product();
+                    product.setPrdSubcategory(subcategory);
+                    product.setProduct("producto-" + c + "-" + s + "-" + p);
+                    product.setCreatedAt(Instant.now());
+                    products.add(productRepository.save(product));
+                }
+            }
+        }
+        for (int u = 0; u < 3; u++) {
+            User user = new User();
+            user.setUsername("usuario-" + System.nanoTime() + "-" + u);
+            user.setPassword(PASSWORD);
+            String username = user.getUsername();
+            users.add(userService.createUser(user));
+            if (u == 0) {
+                token = login(username);
+            }
+        }
+    }
+
+    @Test
+    void listingStatementsDoNotGrowWithDownloads() throws Exception {
+        addDownloads(10);
+        Map<String, Long> few = countStatements();
+        addDownloads(300);
+        Map<String, Long> many = countStatements();
+
+        assertThat(many).isEqualTo(few);
+        assertThat(few.get("/api/v1/category")).isLessThanOrEqualTo(2);
+        assertThat(few.get("/api/v1/subcategory")).isLessThanOrEqualTo(2);
+        assertThat(few.get("/api/v1/products")).isLessThanOrEqualTo(2);
+    }
+
+    private Map<String, Long> countStatements() throws Exception {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (String endpoint : ENDPOINTS) {
+            statistics.clear();
+            mockMvc.perform(get(endpoint).header(HttpHeaders.AUTHORIZATION, token))
+                    .andExpect(status().isOk());
+            counts.put(endpoint, statistics.getPrepareStatementCount());
+        }
+        return counts;
+    }
+
+    private void addDownloads(int count) {
+        List<Download> downloads = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Download download = new Download();
+            download.setDwnProduct(products.get(i % products.size()));
+            download.setDwnUser(users.get(i % users.size()));
+            download.setCreatedAt(Instant.now());
+            downloads.add(download);
+        }
+        downloadRepository.saveAll(downloads);
+    }
+
+    private String login(String username) throws Exception {
+        Map<String, String> credentials = Map.of("username", username, "password", PASSWORD);
+        String body = mockMvc.perform(post("/api/v1/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(credentials)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body).path("data").path("token").asText();
+    }
+}
@@ -0,0 +1,227 @@
+package com.sofka.megawarez.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sofka.megawarez.config.ResponseStreams;
+import com.sofka.megawarez.domain.Download;
+import com.sofka.megawarez.domain.Product;
+import com.sofka.megawarez.domain.Session;
+import com.sofka.megawarez.domain.User;
+import com.sofka.megawarez.repository.UserCredentials;
+import com.sofka.megawarez.service.DownloadRecorder;
+import com.sofka.megawarez.service.DuplicateDownloads;
+import com.sofka.megawarez.service.UserService;
+import com.sofka.megawarez.utility.KeysetPage;
+import com.sofka.megawarez.utility.LoginData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Pruebas de concurrencia del controlador de Usuario
+ *
+ * Lanza miles de peticiones mezcladas en paralelo y verifica que cada respuesta corresponde a
+ * su propia petición. Los endpoints que reciben un usuario en la ruta lo resuelven con los
+ * repositorios de Spring Data, que no existen en esta prueba, así que se cubren los que reciben
+ * el token, las credenciales o el cursor: token, inicio de sesión y listado de descargas
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@WebMvcTest(UserController.class)
+@Import(ResponseStreams.class)
+class UserControllerConcurrencyTests {
+
+    private static final int REQUESTS = 4000;
+
+    private static final int THREADS = 64;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @MockBean
+    private UserService userService;
+
+    @MockBean
+    private DownloadRecorder downloadRecorder;
+
+    @MockBean
+    private DuplicateDownloads duplicateDownloads;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(userService.findUserIdByToken(anyString())).thenAnswer(invocation -> {
+            String token = invocation.getArgument(0);
+            return token.startsWith("valid-") ? Optional.of(1) : Optional.empty();
+        });
+        when(userService.findCredentials(anyString())).thenAnswer(invocation -> {
+            String username = invocation.getArgument(0);
+            int n = Integer.parseInt(username.substring("user-".length()));
+            return n % 3 == 0 ? Optional.empty() : Optional.of(credentials(n, username));
+        });
+        when(userService.checkPassword(any(LoginData.class), any(UserCredentials.class))).thenAnswer(invocation -> {
+            LoginData loginData = invocation.getArgument(0);
+            UserCredentials credentials = invocation.getArgument(1);
+            return loginData.getPassword().equals("secret-" + credentials.getId());
+        });
+        when(userService.createSession(any(LoginData.class), anyInt(), any(Session.class))).thenAnswer(invocation -> {
+            Session session = new Session();
+            session.setToken("token-" + invocation.getArgument(1));
+            return session;
+        });
+        when(userService.getListDownload(anyString(), any())).thenAnswer(invocation -> {
+            String cursor = invocation.getArgument(0);
+            int n = Integer.parseInt(cursor.substring("cursor-".length()));
+            return new KeysetPage<>(List.of(download(n)), "cursor-" + (n + 1));
+        });
+    }
+
+    @Test
+    void parallelRequestsDoNotShareResponses() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < REQUESTS; i++) {
+                final int n = i;
+                Callable<Void> call = () -> {
+                    start.await();
+                    switch (n % 4) {
+                        case 0 -> token(n);
+                        case 1 -> login(n);
+                        case 2 -> downloads(n);
+                        default -> unauthorized(n);
+                    }
+                    return null;
+                };
+                results.add(executor.submit(call));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void token(int n) throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/v1/token")
+                        .header(HttpHeaders.AUTHORIZATION, "valid-" + n))
+                .andReturn();
+        JsonNode body = body(result);
+        assertThat(result.getResponse().getStatus()).isEqualTo(200);
+        assertThat(body.get("message").asText()).isEqualTo("Todo OK - TOKEN");
+        assertThat(body.get("data").asText()).isEqualTo("valid-" + n);
+    }
+
+    private void login(int n) throws Exception {
+        String password = n % 5 == 0 ? "wrong" : "secret-" + n;
+        MvcResult result = mockMvc.perform(post("/api/v1/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"user-" + n + "\",\"password\":\"" + password + "\"}"))
+                .andReturn();
+        JsonNode body = body(result);
+        if (n % 3 == 0) {
+            assertThat(result.getResponse().getStatus()).isEqualTo(404);
+            assertThat(body.get("message").asText()).isEqualTo("El usuario no se encuentra registrado");
+        } else if (n % 5 == 0) {
+            assertThat(result.getResponse().getStatus()).isEqualTo(401);
+            assertThat(body.get("message").asText()).isEqualTo("Credenciales inválidas");
+        } else {
+            assertThat(result.getResponse().getStatus()).isEqualTo(200);
+            assertThat(body.get("data").get("username").asText()).isEqualTo("user-" + n);
+            assertThat(body.get("data").get("token").asText()).isEqualTo("token-" + n);
+        }
+    }
+
+    private void downloads(int n) throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/v1/downloads")
+                        .param("cursor", "cursor-" + n)
+                        .header(HttpHeaders.AUTHORIZATION, "valid-" + n))
+                .andReturn();
+        JsonNode body = body(result);
+        assertThat(result.getResponse().getStatus()).isEqualTo(200);
+        JsonNode item = body.get("data").get("items").get(0);
+        assertThat(item.get("id").asText()).isEqualTo(String.valueOf(n));
+        assertThat(item.get("product").asText()).isEqualTo("product-" + n);
+        assertThat(item.get("user").asText()).isEqualTo("user-" + n);
+        assertThat(body.get("data").get("nextCursor").asText()).isEqualTo("cursor-" + (n + 1));
+    }
+
+    private void unauthorized(int n) throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/v1/downloads")
+                        .param("cursor", "cursor-" + n)
+                        .header(HttpHeaders.AUTHORIZATION, "expired-" + n))
+                .andReturn();
+        JsonNode body = body(result);
+        assertThat(result.getResponse().getStatus()).isEqualTo(401);
+        assertThat(body.get("error").asBoolean()).isTrue();
+        assertThat(body.get("message").asText()).isEqualTo("No existe token activo");
+    }
+
+    private JsonNode body(MvcResult result) throws Exception {
+        return objectMapper.readTree(result.getResponse().getContentAsByteArray());
+    }
+
+    private static UserCredentials credentials(int id, String username) {
+        return new UserCredentials() {
+            @Override
+            public Integer getId() {
+                return id;
+            }
+
+            @Override
+            public String getUsername() {
+                return username;
+            }
+
+            @Override
+            public String getPassword() {
+                return "hash-" + id;
+            }
+        };
+    }
+
+    private static Download download(int n) {
+        Product product = new Product();
+        product.setProduct("product-" + n);
+        User user = new User();
+        user.setUsername("user-" + n);
+        Download download = new Download();
+        download.setId(n);
+        download.setDwnProduct(product);
+        download.setDwnUser(user);
+        download.setCreatedAt(Instant.now());
+        return download;
+    }
+}
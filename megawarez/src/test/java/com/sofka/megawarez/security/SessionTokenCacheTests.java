@@ -0,0 +1,45 @@
+package com.sofka.megawarez.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Pruebas de la caché de tokens de session
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+class SessionTokenCacheTests {
+
+    @Test
+    void tokensAreInvalidatedOnlyAfterCommit() {
+        SessionTokenCache cache = new SessionTokenCache(100, Duration.ofMinutes(15), Duration.ofHours(24),
+                new SimpleMeterRegistry());
+        cache.put("a", new TokenOwner(1, Instant.now()));
+        cache.put("b", new TokenOwner(1, Instant.now()));
+        cache.put("c", new TokenOwner(2, Instant.now()));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.invalidateAfterCommit(List.of("a", "b"));
+            assertThat(cache.get("a", token -> Optional.empty())).contains(1);
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(cache.get("a", token -> Optional.empty())).isEmpty();
+        assertThat(cache.get("b", token -> Optional.empty())).isEmpty();
+        assertThat(cache.get("c", token -> Optional.empty())).contains(2);
+    }
+}
@@ -0,0 +1,60 @@
+package com.sofka.megawarez.security;
+
+import com.sofka.megawarez.repository.RevokedTokenRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Pruebas de la revocación de tokens firmados compartida entre nodos
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@SpringBootTest(properties = {
+        "megawarez.session.token-mode=signed",
+        "megawarez.session.signing-key=" + SignedTokenServiceTests.KEY
+})
+@ActiveProfiles("h2")
+@DirtiesContext
+class SignedTokenServiceTests {
+
+    static final String KEY = "llave-de-pruebas-de-al-menos-32-caracteres";
+
+    @Autowired
+    private SignedTokenService signedTokenService;
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Test
+    void revocationReachesOtherNodesAndSurvivesARestart() throws Exception {
+        SignedTokenService otherNode = node();
+        String token = signedTokenService.issue(7, Instant.now());
+        String other = signedTokenService.issue(7, Instant.now());
+        assertThat(otherNode.verify(token)).contains(7);
+
+        signedTokenService.revoke(token);
+        assertThat(signedTokenService.verify(token)).isEmpty();
+        otherNode.refreshRevoked();
+        assertThat(otherNode.verify(token)).isEmpty();
+        assertThat(otherNode.verify(other)).contains(7);
+
+        SignedTokenService restarted = node();
+        restarted.loadRevoked();
+        assertThat(restarted.verify(token)).isEmpty();
+        assertThat(restarted.verify(other)).contains(7);
+    }
+
+    private SignedTokenService node() {
+        return new SignedTokenService("signed", KEY, Duration.ofHours(24), revokedTokenRepository);
+    }
+}
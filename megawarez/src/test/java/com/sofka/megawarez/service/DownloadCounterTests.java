@@ -0,0 +1,115 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.TestData;
+import com.sofka.megawarez.domain.Download;
+import com.sofka.megawarez.domain.Product;
+import com.sofka.megawarez.domain.Subcategory;
+import com.sofka.megawarez.domain.User;
+import com.sofka.megawarez.repository.DownloadRepository;
+import com.sofka.megawarez.repository.ProductRepository;
+import com.sofka.megawarez.utility.KeysetPage;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.sofka.megawarez.TestData.download;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Pruebas de los contadores de descargas por producto
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@SpringBootTest(properties = "megawarez.product.download-count.flush-interval=PT1H")
+@Import(TestData.class)
+@ActiveProfiles("h2")
+@DirtiesContext
+class DownloadCounterTests {
+
+    private static final int THREADS = 8;
+
+    private static final int PER_THREAD = 200;
+
+    @Autowired
+    private DownloadCounter downloadCounter;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private DownloadRepository downloadRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private TestData testData;
+
+    @Test
+    void concurrentDownloadsAreCountedAndFlushedInOneBatch() throws Exception {
+        Subcategory subcategory = testData.subcategory();
+        Product hot = testData.product(subcategory, "caliente");
+        Product warm = testData.product(subcategory, "tibio");
+        User user = testData.user();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                for (int j = 0; j < PER_THREAD; j++) {
+                    userService.createDownload(download(hot.getId(), user.getId()));
+                }
+            }));
+        }
+        for (int i = 0; i < 100; i++) {
+            userService.createDownload(download(warm.getId(), user.getId()));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertThat(downloadCounter.pending()).isEqualTo(THREADS * PER_THREAD + 100L);
+        assertThat(downloadCounter.flush()).isEqualTo(2);
+        assertThat(downloadCounter.pending()).isZero();
+        assertThat(productRepository.findById(hot.getId()).orElseThrow().getDownloadCount())
+                .isEqualTo(THREADS * PER_THREAD);
+        assertThat(productRepository.findById(warm.getId()).orElseThrow().getDownloadCount()).isEqualTo(100);
+
+        KeysetPage<Product> page = productService.getMostDownloaded(null, 1);
+        assertThat(page.items()).extracting(Product::getId).containsExactly(hot.getId());
+        assertThat(productService.getMostDownloaded(page.nextCursor(), 1).items())
+                .extracting(Product::getId).containsExactly(warm.getId());
+    }
+
+    @Test
+    void backfillCountsDownloadsRecordedBeforeTheColumn() {
+        Product product = testData.product(testData.subcategory(), "anterior");
+        User user = testData.user();
+        for (int i = 0; i < 5; i++) {
+            Download download = new Download();
+            download.setDwnProduct(product);
+            download.setDwnUser(user);
+            download.setCreatedAt(Instant.now());
+            downloadRepository.save(download);
+        }
+
+        downloadCounter.backfill();
+
+        assertThat(productRepository.findById(product.getId()).orElseThrow().getDownloadCount()).isEqualTo(5);
+    }
+}
@@ -0,0 +1,271 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.TestData;
+import com.sofka.megawarez.domain.Download;
+import com.sofka.megawarez.domain.Product;
+import com.sofka.megawarez.domain.User;
+import com.sofka.megawarez.repository.DownloadRepository;
+import com.sofka.megawarez.repository.ProductRepository;
+import com.sofka.megawarez.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static com.sofka.megawarez.TestData.download;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Pruebas del diario local de descargas y de su paso a la base de datos
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@SpringBootTest(properties = {
+        "megawarez.download.journal.enabled=true",
+        "megawarez.download.journal.replay-interval=PT1H"
+})
+@Import(TestData.class)
+@ActiveProfiles("h2")
+@DirtiesContext
+class DownloadJournalTests {
+
+    private static final int DOWNLOADS = 20;
+
+    @TempDir
+    static Path journalDirectory;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private DownloadJournal downloadJournal;
+
+    @Autowired
+    private DownloadJournalReplayer downloadJournalReplayer;
+
+    @Autowired
+    private DownloadRepository downloadRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private TestData testData;
+
+    @DynamicPropertySource
+    static void journalProperties(DynamicPropertyRegistry registry) {
+        registry.add("megawarez.download.journal.directory", () -> journalDirectory.resolve("context").toString());
+    }
+
+    @Test
+    void degradedDownloadsAreReplayedExactlyOnce(@TempDir Path backup) throws Exception {
+        Product product = testData.product();
+        User user = testData.user();
+        long before = downloadRepository.count();
+        downloadJournal.markDegraded(new IllegalStateException("base de datos caída"));
+        for (int i = 0; i < DOWNLOADS; i++) {
+            Download download = userService.createDownload(download(product.getId(), user.getId()));
+            assertThat(download.getId()).isNull();
+            assertThat(download.getJournalSeq()).isNotNull();
+        }
+        assertThat(downloadRepository.count()).isEqualTo(before);
+
+        downloadJournal.roll();
+        List<Path> segments = downloadJournal.sealedSegments();
+        for (Path segment : segments) {
+            Files.copy(segment, backup.resolve(segment.getFileName()));
+        }
+        assertThat(downloadJournalReplayer.replay()).isEqualTo(DOWNLOADS);
+        assertThat(downloadRepository.count()).isEqualTo(before + DOWNLOADS);
+        assertThat(downloadJournal.isDegraded()).isFalse();
+        assertThat(downloadJournal.hasPending()).isFalse();
+
+        Path restarted = journalDirectory.resolve("restarted");
+        Files.createDirectories(restarted);
+        for (Path segment : segments) {
+            Files.copy(backup.resolve(segment.getFileName()), restarted.resolve(segment.getFileName()),
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+        DownloadJournal recovered = journal(restarted, DataSize.ofMegabytes(1));
+        DownloadJournalReplayer replayer = new DownloadJournalReplayer(recovered, 500, downloadRepository,
+                userRepository, productRepository, eventPublisher, jdbcTemplate, transactionManager,
+                new SimpleMeterRegistry());
+        assertThat(replayer.replay()).isZero();
+        assertThat(downloadRepository.count()).isEqualTo(before + DOWNLOADS);
+        assertThat(recovered.hasPending()).isFalse();
+        recovered.close();
+    }
+
+    @Test
+    void restartStartsANewEpochAndTornRecordIsDiscarded() throws Exception {
+        Path directory = journalDirectory.resolve("torn");
+        DownloadJournal journal = journal(directory, DataSize.ofBytes(4L * DownloadJournal.RECORD_SIZE));
+        String epoch = null;
+        for (int i = 0; i < 10; i++) {
+            Download download = journal.append(download(1, 1));
+            assertThat(download.getJournalSeq()).isEqualTo(i + 1L);
+            epoch = download.getJournalNode();
+        }
+        journal.close();
+        Path last = journal.sealedSegments().get(journal.sealedSegments().size() - 1);
+        corrupt(last, DownloadJournal.RECORD_SIZE + 20);
+
+        DownloadJournal recovered = journal(directory, DataSize.ofBytes(4L * DownloadJournal.RECORD_SIZE));
+        List<Long> sequences = new ArrayList<>();
+        for (Path segment : recovered.sealedSegments()) {
+            for (DownloadJournal.Entry entry : DownloadJournal.read(segment)) {
+                assertThat(entry.journal()).isEqualTo(epoch);
+                sequences.add(entry.sequence());
+            }
+        }
+        assertThat(recovered.sealedSegments()).hasSize(3);
+        assertThat(sequences).containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L);
+        Download next = recovered.append(download(1, 1));
+        assertThat(next.getJournalSeq()).isEqualTo(1L);
+        assertThat(next.getJournalNode()).isNotEqualTo(epoch);
+        recovered.close();
+    }
+
+    @Test
+    void downloadsJournaledAfterADrainedRestartAreReplayed() throws Exception {
+        Product product = testData.product();
+        User user = testData.user();
+        Path directory = journalDirectory.resolve("drained");
+        long before = downloadRepository.count();
+        for (int restart = 0; restart < 2; restart++) {
+            DownloadJournal journal = journal(directory, DataSize.ofMegabytes(1));
+            DownloadJournalReplayer replayer = new DownloadJournalReplayer(journal, 500, downloadRepository,
+                    userRepository, productRepository, eventPublisher, jdbcTemplate, transactionManager,
+                    new SimpleMeterRegistry());
+            journal.markDegraded(new IllegalStateException("base de datos caída"));
+            for (int i = 0; i < 3; i++) {
+                journal.append(download(product.getId(), user.getId()));
+            }
+            assertThat(replayer.replay()).isEqualTo(3);
+            assertThat(journal.hasPending()).isFalse();
+            journal.close();
+            try (Stream<Path> files = Files.list(directory)) {
+                assertThat(files).isEmpty();
+            }
+        }
+        assertThat(downloadRepository.count()).isEqualTo(before + 6);
+    }
+
+    @Test
+    void failedOrSlowSyncRejectsTheWaitingAppendAndKeepsTheJournalUsable() throws Exception {
+        CountDownLatch slow = new CountDownLatch(1);
+        AtomicInteger syncs = new AtomicInteger();
+        DownloadJournal journal = new DownloadJournal(true, journalDirectory.resolve("failing"), DataSize.ofMegabytes(1),
+                Duration.ofMillis(500), Duration.ofMillis(200), new SimpleMeterRegistry()) {
+            @Override
+            void force(MappedByteBuffer buffer) {
+                int sync = syncs.incrementAndGet();
+                if (sync == 1) {
+                    throw new UncheckedIOException(new IOException("disco lleno"));
+                }
+                if (sync == 3) {
+                    awaitQuietly(slow);
+                }
+                super.force(buffer);
+            }
+        };
+        assertThatThrownBy(() -> journal.append(download(1, 1)))
+                .isInstanceOf(RejectedExecutionException.class)
+                .hasRootCauseMessage("disco lleno");
+        assertThat(journal.append(download(1, 1)).getJournalSeq()).isEqualTo(2L);
+        assertThatThrownBy(() -> journal.append(download(1, 1)))
+                .isInstanceOf(RejectedExecutionException.class)
+                .hasMessageContaining("a tiempo");
+        slow.countDown();
+        assertThat(journal.append(download(1, 1)).getJournalSeq()).isEqualTo(4L);
+        journal.close();
+    }
+
+    @Test
+    void batchIsWrittenWithASingleSync() throws Exception {
+        AtomicInteger syncs = new AtomicInteger();
+        DownloadJournal journal = new DownloadJournal(true, journalDirectory.resolve("batch"), DataSize.ofMegabytes(1),
+                Duration.ofMillis(500), Duration.ofSeconds(5), new SimpleMeterRegistry()) {
+            @Override
+            void force(MappedByteBuffer buffer) {
+                syncs.incrementAndGet();
+                super.force(buffer);
+            }
+        };
+        List<Download> batch = new ArrayList<>();
+        for (int i = 0; i < DOWNLOADS; i++) {
+            batch.add(download(1, i + 1));
+        }
+
+        assertThat(journal.appendAll(batch)).extracting(Download::getJournalSeq)
+                .containsExactlyElementsOf(LongStream.rangeClosed(1, DOWNLOADS).boxed().toList());
+        assertThat(syncs.get()).isEqualTo(1);
+        journal.close();
+        assertThat(journal.sealedSegments()).hasSize(1);
+        assertThat(DownloadJournal.read(journal.sealedSegments().get(0))).extracting(DownloadJournal.Entry::userId)
+                .containsExactlyElementsOf(IntStream.rangeClosed(1, DOWNLOADS).boxed().toList());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private DownloadJournal journal(Path directory, DataSize segmentSize) throws IOException {
+        return new DownloadJournal(true, directory, segmentSize, Duration.ofMillis(500), Duration.ofSeconds(5),
+                new SimpleMeterRegistry());
+    }
+
+    private void corrupt(Path segment, long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0x7F}), position);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.TestData;
+import com.sofka.megawarez.domain.Download;
+import com.sofka.megawarez.domain.Product;
+import com.sofka.megawarez.domain.User;
+import com.sofka.megawarez.repository.DownloadRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import static com.sofka.megawarez.TestData.download;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Pruebas del registro de descargas con escritura diferida por lotes
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@SpringBootTest(properties = {
+        "megawarez.download.recording.mode=write-behind",
+        "megawarez.download.recording.batch-size=100",
+        "megawarez.download.recording.flush-interval=PT0.05S"
+})
+@Import(TestData.class)
+@ActiveProfiles("h2")
+@DirtiesContext
+class DownloadRecorderTests {
+
+    private static final int DOWNLOADS = 2000;
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private DownloadRecorder downloadRecorder;
+
+    @Autowired
+    private DownloadRepository downloadRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private TestData testData;
+
+    @Test
+    void burstIsWrittenInBatchesAndFlushedOnStop() throws Exception {
+        Product product = testData.product();
+        User user = testData.user();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<Download>> futures = new ArrayList<>();
+        for (int i = 0; i < DOWNLOADS; i++) {
+            futures.add(executor.submit(() -> {
+                Download download = download(product.getId(), user.getId());
+                assertThat(downloadRecorder.record(download)).isSameAs(download);
+                return download;
+            }));
+        }
+        for (Future<Download> future : futures) {
+            future.get();
+        }
+        List<Future<Boolean>> racing = new ArrayList<>();
+        for (int i = 0; i < DOWNLOADS; i++) {
+            racing.add(executor.submit(() -> {
+                try {
+                    downloadRecorder.record(download(product.getId(), user.getId()));
+                    return true;
+                } catch (RejectedExecutionException exception) {
+                    return false;
+                }
+            }));
+        }
+
+        downloadRecorder.stop();
+
+        long accepted = DOWNLOADS;
+        for (Future<Boolean> future : racing) {
+            accepted += future.get() ? 1 : 0;
+        }
+        executor.shutdown();
+        assertThat(downloadRepository.count()).isEqualTo(accepted);
+        for (Future<Download> future : futures) {
+            assertThat(future.get().getId()).isNull();
+            assertThat(future.get().getDwnUser()).isExactlyInstanceOf(User.class);
+        }
+        DistributionSummary batches = meterRegistry.get("megawarez.downloads.batch.size").summary();
+        assertThat(batches.totalAmount()).isEqualTo(accepted);
+        assertThat(batches.max()).isLessThanOrEqualTo(100);
+        assertThat(batches.count()).isLessThan(accepted);
+        assertThatThrownBy(() -> downloadRecorder.record(download(product.getId(), user.getId())))
+                .isInstanceOf(RejectedExecutionException.class);
+    }
+
+    @Test
+    void unknownProductIsRejectedBeforeQueueing() {
+        assertThatThrownBy(() -> downloadRecorder.record(download(Integer.MAX_VALUE, 1)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
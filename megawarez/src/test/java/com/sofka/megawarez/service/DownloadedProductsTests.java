@@ -0,0 +1,83 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.TestData;
+import com.sofka.megawarez.domain.Download;
+import com.sofka.megawarez.domain.Product;
+import com.sofka.megawarez.domain.Subcategory;
+import com.sofka.megawarez.domain.User;
+import com.sofka.megawarez.repository.DownloadRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Pruebas de los productos descargados por usuario
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@SpringBootTest
+@Import(TestData.class)
+@ActiveProfiles("h2")
+@DirtiesContext
+class DownloadedProductsTests {
+
+    @Autowired
+    private DownloadedProducts downloadedProducts;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private DownloadRepository downloadRepository;
+
+    @Autowired
+    private TestData testData;
+
+    @Test
+    void listingsAreMarkedFromTheLoadedBitmapAndKeptUpToDate() {
+        Subcategory subcategory = testData.subcategory();
+        Product first = testData.product(subcategory, "primero");
+        Product second = testData.product(subcategory, "segundo");
+        User user = testData.user();
+        User other = testData.user();
+        Download previous = new Download();
+        previous.setDwnProduct(first);
+        previous.setDwnUser(user);
+        previous.setCreatedAt(Instant.now());
+        downloadRepository.save(previous);
+
+        List<Product> products = List.of(copy(first), copy(second));
+        downloadedProducts.mark(user.getId(), products);
+        assertThat(products).extracting(Product::getDownloaded).containsExactly(true, false);
+
+        Download download = new Download();
+        download.setDwnProduct(copy(second));
+        download.setDwnUser(user);
+        userService.createDownload(download);
+
+        downloadedProducts.mark(user.getId(), products);
+        assertThat(products).extracting(Product::getDownloaded).containsExactly(true, true);
+        assertThat(downloadedProducts.contains(other.getId(), first.getId())).isFalse();
+
+        List<Product> anonymous = List.of(copy(first));
+        downloadedProducts.mark(null, anonymous);
+        assertThat(anonymous.get(0).getDownloaded()).isNull();
+    }
+
+    private Product copy(Product product) {
+        Product copy = new Product();
+        copy.setId(product.getId());
+        copy.setProduct(product.getProduct());
+        return copy;
+    }
+}
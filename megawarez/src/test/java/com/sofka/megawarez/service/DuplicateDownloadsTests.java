@@ -0,0 +1,102 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.TestData;
+import com.sofka.megawarez.domain.Download;
+import com.sofka.megawarez.domain.Product;
+import com.sofka.megawarez.domain.Subcategory;
+import com.sofka.megawarez.domain.User;
+import com.sofka.megawarez.repository.DownloadRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static com.sofka.megawarez.TestData.download;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Pruebas de la detección de descargas repetidas
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@SpringBootTest(properties = "megawarez.download.dedup.window=PT1M")
+@Import(TestData.class)
+@ActiveProfiles("h2")
+@DirtiesContext
+class DuplicateDownloadsTests {
+
+    @Autowired
+    private DuplicateDownloads duplicateDownloads;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private DownloadRepository downloadRepository;
+
+    @Autowired
+    private TestData testData;
+
+    @Test
+    void retriesWithinTheWindowAreFoundAndOthersSkipTheDatabase() {
+        Subcategory subcategory = testData.subcategory();
+        Product first = testData.product(subcategory, "primero");
+        Product second = testData.product(subcategory, "segundo");
+        User user = testData.user();
+        assertThat(duplicateDownloads.findRecent(download(first.getId(), user.getId()))).isEmpty();
+        Download created = userService.createDownload(download(first.getId(), user.getId()));
+
+        assertThat(duplicateDownloads.findRecent(download(first.getId(), user.getId())))
+                .get().extracting(Download::getId).isEqualTo(created.getId());
+        assertThat(duplicateDownloads.findRecent(download(second.getId(), user.getId()))).isEmpty();
+        assertThat(duplicateDownloads.findRecent(download(first.getId(), testData.user().getId()))).isEmpty();
+        assertThat(meterRegistry.counter("megawarez.downloads.duplicates").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("megawarez.downloads.duplicates.false-positives").count()).isZero();
+
+        Instant later = Instant.now().plus(Duration.ofSeconds(90));
+        assertThat(duplicateDownloads.findRecent(download(first.getId(), user.getId()), later)).isEmpty();
+        assertThat(meterRegistry.counter("megawarez.downloads.duplicates.false-positives").count()).isEqualTo(1);
+        assertThat(duplicateDownloads.findRecent(download(first.getId(), user.getId()), later.plus(Duration.ofMinutes(2)))).isEmpty();
+        assertThat(meterRegistry.counter("megawarez.downloads.duplicates.false-positives").count()).isEqualTo(1);
+    }
+
+    @Test
+    void acceptedDownloadsAreFoundBeforeTheyAreWritten() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        DuplicateDownloads duplicates = new DuplicateDownloads(
+                true, Duration.ofMinutes(1), 1_000, 0.01, downloadRepository, registry);
+        Product product = testData.product(testData.subcategory(), "pendiente");
+        User user = testData.user();
+        Download accepted = download(product.getId(), user.getId());
+        accepted.setCreatedAt(Instant.now());
+        duplicates.onDownloadAccepted(accepted);
+
+        assertThat(duplicates.findRecent(download(product.getId(), user.getId()))).get().satisfies(recent -> {
+            assertThat(recent.getId()).isNull();
+            assertThat(recent.getCreatedAt()).isEqualTo(accepted.getCreatedAt());
+        });
+        assertThat(registry.counter("megawarez.downloads.duplicates").count()).isEqualTo(1);
+        assertThat(duplicates.findRecent(download(product.getId(), user.getId()), Instant.now().plus(Duration.ofSeconds(90)))).isEmpty();
+        assertThat(registry.counter("megawarez.downloads.duplicates.false-positives").count()).isEqualTo(1);
+
+        accepted.setDwnProduct(product);
+        accepted.setDwnUser(user);
+        Download written = downloadRepository.save(accepted);
+        duplicates.onDownloadRecorded(new DownloadRecordedEvent(product.getId(), user.getId(), accepted.getCreatedAt()));
+        assertThat(duplicates.findRecent(download(product.getId(), user.getId())))
+                .get().extracting(Download::getId).isEqualTo(written.getId());
+        assertThat(registry.counter("megawarez.downloads.duplicates").count()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,74 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.TestData;
+import com.sofka.megawarez.domain.Product;
+import com.sofka.megawarez.domain.Subcategory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Pruebas del autocompletado de nombres de productos
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@SpringBootTest(properties = "megawarez.autocomplete.rebuild-delay=PT1H")
+@Import(TestData.class)
+@ActiveProfiles("h2")
+@DirtiesContext
+class ProductAutocompleteTests {
+
+    @Autowired
+    private ProductAutocomplete productAutocomplete;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TestData testData;
+
+    @Test
+    void completesAnyWordOrderedByDownloads() {
+        Subcategory subcategory = testData.subcategory();
+        Product marino = product(subcategory, "Azul marino", 3);
+        Product profundo = product(subcategory, "Mar azul profundo", 10);
+        Product cancion = product(subcategory, "Canción Azul", 7);
+        product(subcategory, "Verde", 100);
+        productAutocomplete.rebuild();
+
+        assertThat(productAutocomplete.complete("AZU", null)).extracting(ProductAutocomplete.Completion::productId)
+                .containsExactly(profundo.getId(), cancion.getId(), marino.getId());
+        assertThat(productAutocomplete.complete("azu", 2)).hasSize(2);
+        assertThat(productAutocomplete.complete("mar a", null)).extracting(ProductAutocomplete.Completion::product)
+                .containsExactly("Mar azul profundo");
+        assertThat(productAutocomplete.complete("cancion", null)).extracting(ProductAutocomplete.Completion::downloads)
+                .containsExactly(7L);
+        assertThat(productAutocomplete.complete("amarillo", null)).isEmpty();
+
+        productService.deleteProduct(profundo.getId());
+        productAutocomplete.refresh();
+
+        assertThat(productAutocomplete.complete("azu", null)).extracting(ProductAutocomplete.Completion::productId)
+                .containsExactly(cancion.getId(), marino.getId());
+    }
+
+    private Product product(Subcategory subcategory, String name, long downloads) {
+        Product product = new Product();
+        product.setPrdSubcategory(subcategory);
+        product.setProduct(name);
+        productService.createProduct(product);
+        jdbcTemplate.update("UPDATE product SET prd_download_count = ? WHERE prd_id = ?", downloads, product.getId());
+        return product;
+    }
+}
@@ -0,0 +1,91 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.TestData;
+import com.sofka.megawarez.domain.Category;
+import com.sofka.megawarez.domain.Product;
+import com.sofka.megawarez.domain.Subcategory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Pruebas de los conteos por categoría y subcategoría de los resultados de búsqueda
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@SpringBootTest
+@Import(TestData.class)
+@ActiveProfiles("h2")
+@DirtiesContext
+class ProductFacetsTests {
+
+    @Autowired
+    private ProductFacets productFacets;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private TestData testData;
+
+    @Test
+    void countsSearchResultsByCategoryAndSubcategory() {
+        Category music = testData.category("Música");
+        Category games = testData.category("Juegos");
+        Subcategory rock = testData.subcategory(music, "Rock");
+        Subcategory jazz = testData.subcategory(music, "Jazz");
+        Subcategory puzzle = testData.subcategory(games, "Puzzle");
+        product(rock, "Lluvia violeta");
+        product(rock, "Violeta eléctrico");
+        product(jazz, "Noche violeta");
+        Product deleted = product(puzzle, "Violeta cubo");
+        product(puzzle, "Cubo rojo");
+        productService.deleteProduct(deleted.getId());
+
+        List<ProductFacets.CategoryFacet> facets = productFacets.count(productService.searchProduct("violeta"));
+
+        assertThat(facets).extracting(ProductFacets.CategoryFacet::category).containsExactly("Música");
+        assertThat(facets.get(0).count()).isEqualTo(3);
+        assertThat(facets.get(0).subcategories()).containsExactly(
+                new ProductFacets.SubcategoryFacet(rock.getId(), "Rock", 2),
+                new ProductFacets.SubcategoryFacet(jazz.getId(), "Jazz", 1));
+        assertThat(productFacets.count(productService.searchProduct("cubo"))).containsExactly(
+                new ProductFacets.CategoryFacet(games.getId(), "Juegos", 1,
+                        List.of(new ProductFacets.SubcategoryFacet(puzzle.getId(), "Puzzle", 1))));
+        assertThat(productFacets.count(List.of(deleted))).isEmpty();
+    }
+
+    @Test
+    void productsDeletedWithTheirCategoryOrSubcategoryLeaveTheFacets() {
+        Category books = testData.category("Libros");
+        Category movies = testData.category("Películas");
+        Subcategory novel = testData.subcategory(books, "Novela");
+        Subcategory drama = testData.subcategory(movies, "Drama");
+        Product book = product(novel, "Ámbar");
+        Product movie = product(drama, "Ámbar oscuro");
+
+        productService.deleteSubcategory(novel.getId());
+        assertThat(productFacets.count(List.of(book))).isEmpty();
+        assertThat(productService.searchProduct("ambar")).extracting(Product::getId).containsExactly(movie.getId());
+
+        productService.deleteCategory(movies.getId());
+        assertThat(productFacets.count(List.of(movie))).isEmpty();
+        assertThat(productService.searchProduct("ambar")).isEmpty();
+    }
+
+    private Product product(Subcategory subcategory, String name) {
+        Product product = new Product();
+        product.setPrdSubcategory(subcategory);
+        product.setProduct(name);
+        return productService.createProduct(product);
+    }
+}
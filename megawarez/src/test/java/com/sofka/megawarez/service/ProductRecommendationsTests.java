@@ -0,0 +1,141 @@
+package com.sofka.megawarez.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pruebas de las recomendaciones por co-ocurrencia de descargas
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+class ProductRecommendationsTests {
+
+    @Test
+    void incrementalUpdatesMatchTheParallelRebuild() throws Exception {
+        List<int[]> downloads = new ArrayList<>();
+        for (int user = 1; user <= 3_000; user++) {
+            downloads.add(new int[] {user, user % 10 + 1});
+            downloads.add(new int[] {user, user % 10 + 2});
+            if (user % 3 == 0) {
+                downloads.add(new int[] {user, 100});
+            }
+            downloads.add(new int[] {user, user % 10 + 1});
+        }
+
+        ProductRecommendations incremental = new ProductRecommendations(5, 100, 1, false, null, new SimpleMeterRegistry());
+        for (int[] download : downloads) {
+            incremental.onDownloadRecorded(new DownloadRecordedEvent(download[1], download[0], Instant.now()));
+        }
+        assertThat(incremental.recommendations(100, 10)).isEmpty();
+        incremental.prune();
+
+        ProductRecommendations rebuilt = new ProductRecommendations(5, 100, 4, false, jdbcWith(downloads), new SimpleMeterRegistry());
+        assertThat(rebuilt.rebuild()).isEqualTo(12);
+
+        for (int product = 1; product <= 11; product++) {
+            assertThat(rebuilt.recommendations(product, 10)).isEqualTo(incremental.recommendations(product, 10));
+        }
+        assertThat(rebuilt.recommendations(100, 10)).isEqualTo(incremental.recommendations(100, 10));
+        assertThat(incremental.recommendations(1, null)).containsExactly(
+                new ProductRecommendations.Recommendation(2, 300),
+                new ProductRecommendations.Recommendation(100, 100));
+        assertThat(incremental.recommendations(100, 3)).containsExactly(
+                new ProductRecommendations.Recommendation(2, 200),
+                new ProductRecommendations.Recommendation(3, 200),
+                new ProductRecommendations.Recommendation(4, 200));
+        assertThat(incremental.recommendations(999, 10)).isEmpty();
+    }
+
+    @Test
+    void rowsArePrunedToTheMostFrequentNeighbors() {
+        ProductRecommendations recommendations = new ProductRecommendations(2, 100, 1, false, null, new SimpleMeterRegistry());
+        int user = 1;
+        for (int neighbor = 2; neighbor <= 50; neighbor++) {
+            for (int i = 0; i < neighbor; i++, user++) {
+                recommendations.onDownloadRecorded(new DownloadRecordedEvent(1, user, Instant.now()));
+                recommendations.onDownloadRecorded(new DownloadRecordedEvent(neighbor, user, Instant.now()));
+            }
+        }
+        recommendations.prune();
+
+        assertThat(recommendations.recommendations(1, 10)).containsExactly(
+                new ProductRecommendations.Recommendation(50, 50),
+                new ProductRecommendations.Recommendation(49, 49));
+    }
+
+    @Test
+    void rebuiltRowsAreCappedAndKeepTheMostFrequentNeighbors() throws Exception {
+        List<int[]> downloads = new ArrayList<>();
+        int user = 1;
+        for (int neighbor = 2; neighbor <= 50; neighbor++) {
+            for (int i = 0; i < neighbor; i++, user++) {
+                downloads.add(new int[] {user, 1});
+                downloads.add(new int[] {user, neighbor});
+            }
+        }
+        ProductRecommendations recommendations = new ProductRecommendations(2, 100, 4, false, jdbcWith(downloads), new SimpleMeterRegistry());
+        recommendations.rebuild();
+
+        assertThat(recommendations.recommendations(1, 10)).containsExactly(
+                new ProductRecommendations.Recommendation(50, 50),
+                new ProductRecommendations.Recommendation(49, 49));
+    }
+
+    @Test
+    void deletedProductsAreNotRecommended() {
+        ProductRecommendations recommendations = new ProductRecommendations(5, 100, 1, false, null, new SimpleMeterRegistry());
+        for (int user = 1; user <= 10; user++) {
+            for (int product = 1; product <= 3; product++) {
+                recommendations.onDownloadRecorded(new DownloadRecordedEvent(product, user, Instant.now()));
+            }
+        }
+        recommendations.prune();
+        assertThat(recommendations.recommendations(1, 10)).extracting(ProductRecommendations.Recommendation::productId)
+                .containsExactlyInAnyOrder(2, 3);
+
+        recommendations.onProductChanged(new ProductChangedEvent(2, null, null));
+        assertThat(recommendations.recommendations(1, 10)).extracting(ProductRecommendations.Recommendation::productId)
+                .containsExactly(3);
+        assertThat(recommendations.recommendations(2, 10)).isEmpty();
+
+        recommendations.onDownloadRecorded(new DownloadRecordedEvent(4, 1, Instant.now()));
+        recommendations.prune();
+        assertThat(recommendations.recommendations(4, 10)).extracting(ProductRecommendations.Recommendation::productId)
+                .containsExactlyInAnyOrder(1, 3);
+        assertThat(recommendations.recommendations(2, 10)).isEmpty();
+    }
+
+    private JdbcTemplate jdbcWith(List<int[]> downloads) throws Exception {
+        int[] current = new int[2];
+        ResultSet row = mock(ResultSet.class);
+        when(row.getInt(anyInt())).thenAnswer(invocation -> current[invocation.<Integer>getArgument(0) - 1]);
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (int[] download : downloads) {
+                current[0] = download[0];
+                current[1] = download[1];
+                handler.processRow(row);
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+        return jdbcTemplate;
+    }
+}
@@ -0,0 +1,83 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.TestData;
+import com.sofka.megawarez.domain.Product;
+import com.sofka.megawarez.domain.Subcategory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Pruebas de la búsqueda de productos con el índice de trigramas
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@SpringBootTest
+@Import(TestData.class)
+@ActiveProfiles("h2")
+@DirtiesContext
+class ProductSearchIndexTests {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private TestData testData;
+
+    @Test
+    void resultsAreRankedAndFollowProductWrites() {
+        Subcategory subcategory = testData.subcategory();
+        Product prefix = product(subcategory, "Azul marino");
+        Product contains = product(subcategory, "Mar azul profundo");
+        Product suffix = product(subcategory, "Canción Azul");
+        Product renamed = product(subcategory, "Verde");
+
+        assertThat(productService.searchProduct("AZUL")).extracting(Product::getProduct)
+                .containsExactly("Azul marino", "Mar azul profundo", "Canción Azul");
+        assertThat(productService.searchProduct("cancion")).extracting(Product::getId).containsExactly(suffix.getId());
+        assertThat(productService.searchProduct("zu")).hasSize(3);
+
+        Product update = new Product();
+        update.setProduct("Verde azulado");
+        productService.updateProduct(renamed.getId(), update);
+        productService.deleteProduct(prefix.getId());
+
+        assertThat(productService.searchProduct("azul")).extracting(Product::getId)
+                .containsExactly(contains.getId(), renamed.getId(), suffix.getId());
+        assertThat(productService.searchProduct("marino")).isEmpty();
+        assertThat(productService.searchProduct("verde azulado")).extracting(Product::getId).containsExactly(renamed.getId());
+    }
+
+    @Test
+    void fuzzySearchToleratesTyposInEachWord() {
+        Subcategory subcategory = testData.subcategory();
+        Product oceano = product(subcategory, "Océano turquesa profundo");
+        Product sinfonia = product(subcategory, "Sinfonía Turquesa");
+        product(subcategory, "Rojo");
+
+        assertThat(productService.searchProduct("sinfonoa", false)).isEmpty();
+        assertThat(productService.searchProduct("sinfonoa", true)).extracting(Product::getId).containsExactly(sinfonia.getId());
+        assertThat(productService.searchProduct("turqesa prfundo", true)).extracting(Product::getId).containsExactly(oceano.getId());
+        assertThat(productService.searchProduct("turquesa", true)).extracting(Product::getId)
+                .containsExactly(oceano.getId(), sinfonia.getId());
+        assertThat(productService.searchProduct("rj", true)).isEmpty();
+
+        productService.deleteProduct(sinfonia.getId());
+
+        assertThat(productService.searchProduct("sinfonoa", true)).isEmpty();
+    }
+
+    private Product product(Subcategory subcategory, String name) {
+        Product product = new Product();
+        product.setPrdSubcategory(subcategory);
+        product.setProduct(name);
+        return productService.createProduct(product);
+    }
+}
@@ -0,0 +1,97 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.domain.Product;
+import com.sofka.megawarez.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pruebas de los productos en tendencia por ventanas de tiempo
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+class TrendingProductsTests {
+
+    private final Instant start = Instant.now();
+
+    private TrendingProducts trendingProducts;
+
+    @BeforeEach
+    void setUp() {
+        ProductRepository productRepository = mock(ProductRepository.class);
+        when(productRepository.findAllById(any())).thenAnswer(invocation -> {
+            List<Product> products = new ArrayList<>();
+            for (Integer id : invocation.<Iterable<Integer>>getArgument(0)) {
+                Product product = new Product();
+                product.setId(id);
+                product.setProduct("producto-" + id);
+                products.add(product);
+            }
+            return products;
+        });
+        trendingProducts = new TrendingProducts(
+                new Duration[] {Duration.ofHours(1), Duration.ofDays(1)},
+                60, 4, 1024, 20, false, productRepository, null);
+    }
+
+    @Test
+    void heavyHittersStandOutOfALongTail() {
+        for (int id = 1000; id < 6000; id++) {
+            download(id, start);
+        }
+        for (int id = 1; id <= 5; id++) {
+            for (int i = 0; i < 100 * (6 - id); i++) {
+                download(id, start.plusSeconds(i % 60));
+            }
+        }
+
+        List<TrendingProducts.Trend> trends = trendingProducts.trending("PT1H", 5, start.plusSeconds(60));
+
+        assertThat(trends).extracting(TrendingProducts.Trend::id).containsExactly(1, 2, 3, 4, 5);
+        assertThat(trends.get(0).downloads()).isGreaterThanOrEqualTo(500);
+        assertThat(trends.get(0).product()).isEqualTo("producto-1");
+    }
+
+    @Test
+    void expiredBucketsLeaveTheWindow() {
+        for (int i = 0; i < 100; i++) {
+            download(1, start);
+        }
+        for (int i = 0; i < 10; i++) {
+            download(2, start.plus(Duration.ofMinutes(50)));
+        }
+
+        assertThat(trendingProducts.trending("PT1H", 10, start.plus(Duration.ofMinutes(55))))
+                .extracting(TrendingProducts.Trend::id).containsExactly(1, 2);
+        assertThat(trendingProducts.trending("PT1H", 10, start.plus(Duration.ofMinutes(75))))
+                .extracting(TrendingProducts.Trend::id).containsExactly(2);
+        assertThat(trendingProducts.trending("P1D", 10, start.plus(Duration.ofMinutes(75))))
+                .extracting(TrendingProducts.Trend::id).containsExactly(1, 2);
+        assertThat(trendingProducts.trending(null, 10, start.plus(Duration.ofHours(3)))).isEmpty();
+    }
+
+    @Test
+    void unknownWindowIsRejected() {
+        assertThatThrownBy(() -> trendingProducts.trending("PT5M", 10))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> trendingProducts.trending("una hora", 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private void download(int productId, Instant at) {
+        trendingProducts.onDownloadRecorded(new DownloadRecordedEvent(productId, 1, at));
+    }
+}
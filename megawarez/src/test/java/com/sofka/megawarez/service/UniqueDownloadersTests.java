@@ -0,0 +1,61 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.domain.ProductDownloaders;
+import com.sofka.megawarez.repository.ProductDownloadersRepository;
+import com.sofka.megawarez.utility.HyperLogLog;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Pruebas de los usuarios distintos por producto
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+@SpringBootTest(properties = "megawarez.product.downloaders.flush-interval=PT1H")
+@ActiveProfiles("h2")
+@DirtiesContext
+class UniqueDownloadersTests {
+
+    @Autowired
+    private UniqueDownloaders uniqueDownloaders;
+
+    @Autowired
+    private ProductDownloadersRepository productDownloadersRepository;
+
+    @Test
+    void pendingUsersAreMergedWithTheStoredSketch() {
+        HyperLogLog otherNode = new HyperLogLog();
+        for (int user = 5_000; user < 15_000; user++) {
+            otherNode.add(user);
+        }
+        ProductDownloaders stored = new ProductDownloaders();
+        stored.setProductId(7);
+        stored.setSketch(otherNode.toBytes());
+        stored.setEstimate(otherNode.estimate());
+        stored.setUpdatedAt(Instant.now());
+        productDownloadersRepository.save(stored);
+
+        for (int user = 0; user < 10_000; user++) {
+            uniqueDownloaders.onDownloadRecorded(new DownloadRecordedEvent(7, user, Instant.now()));
+            uniqueDownloaders.onDownloadRecorded(new DownloadRecordedEvent(7, user, Instant.now()));
+        }
+        long beforeFlush = uniqueDownloaders.count(7).uniqueUsers();
+        assertThat(uniqueDownloaders.flush()).isEqualTo(1);
+        assertThat(uniqueDownloaders.flush()).isZero();
+
+        assertThat((double) beforeFlush).isCloseTo(15_000, within(750.0));
+        assertThat(uniqueDownloaders.count(7).uniqueUsers()).isEqualTo(beforeFlush);
+        assertThat(productDownloadersRepository.findById(7).orElseThrow().getEstimate()).isEqualTo(beforeFlush);
+        assertThat(uniqueDownloaders.count(8).uniqueUsers()).isZero();
+    }
+}
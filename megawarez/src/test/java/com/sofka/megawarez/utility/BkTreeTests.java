@@ -0,0 +1,75 @@
+package com.sofka.megawarez.utility;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Pruebas del árbol BK de palabras
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+class BkTreeTests {
+
+    @Test
+    void distanceCountsInsertionsDeletionsAndSubstitutions() {
+        assertThat(BkTree.distance("cancion", "cancion")).isZero();
+        assertThat(BkTree.distance("cancion", "cansion")).isEqualTo(1);
+        assertThat(BkTree.distance("cancion", "cancin")).isEqualTo(1);
+        assertThat(BkTree.distance("azul", "azzul")).isEqualTo(1);
+        assertThat(BkTree.distance("kitten", "sitting")).isEqualTo(3);
+        assertThat(BkTree.distance("", "abc")).isEqualTo(3);
+    }
+
+    @Test
+    void searchMatchesAScanAfterAddsAndRemoves() {
+        Random random = new Random(5);
+        BkTree tree = new BkTree();
+        Map<String, Integer> dictionary = new HashMap<>();
+        for (int i = 0; i < 2_000; i++) {
+            String word = word(random);
+            if (dictionary.putIfAbsent(word, i + 1) == null) {
+                tree.add(word, i + 1);
+            }
+        }
+        for (String word : dictionary.keySet().stream().limit(1_000).toList()) {
+            tree.remove(word, dictionary.remove(word));
+        }
+        assertThat(tree.size()).isEqualTo(dictionary.size());
+
+        for (int i = 0; i < 50; i++) {
+            String query = word(random);
+            for (int maxDistance = 0; maxDistance <= 2; maxDistance++) {
+                int bound = maxDistance;
+                Map<String, Integer> found = new HashMap<>();
+                tree.search(query, maxDistance, (word, distance, ids) -> {
+                    assertThat(ids).containsExactly(dictionary.get(word));
+                    found.put(word, distance);
+                });
+                Map<String, Integer> expected = new HashMap<>();
+                dictionary.keySet().forEach(word -> {
+                    int distance = BkTree.distance(query, word);
+                    if (distance <= bound) {
+                        expected.put(word, distance);
+                    }
+                });
+                assertThat(found).isEqualTo(expected);
+            }
+        }
+    }
+
+    private static String word(Random random) {
+        StringBuilder word = new StringBuilder();
+        int length = 3 + random.nextInt(5);
+        for (int i = 0; i < length; i++) {
+            word.append((char) ('a' + random.nextInt(5)));
+        }
+        return word.toString();
+    }
+}
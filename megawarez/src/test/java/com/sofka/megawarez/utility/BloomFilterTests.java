@@ -0,0 +1,33 @@
+package com.sofka.megawarez.utility;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Pruebas del filtro de Bloom
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+class BloomFilterTests {
+
+    @Test
+    void noFalseNegativesAndFalsePositivesNearTheConfiguredRate() {
+        BloomFilter filter = new BloomFilter(100_000, 0.01);
+        for (long key = 0; key < 100_000; key++) {
+            filter.put(key << 32 | key);
+        }
+        for (long key = 0; key < 100_000; key++) {
+            assertThat(filter.mightContain(key << 32 | key)).isTrue();
+        }
+        int falsePositives = 0;
+        for (long key = 100_000; key < 200_000; key++) {
+            if (filter.mightContain(key << 32 | key)) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives).isLessThan(2_000);
+    }
+}
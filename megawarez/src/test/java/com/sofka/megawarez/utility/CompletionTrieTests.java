@@ -0,0 +1,66 @@
+package com.sofka.megawarez.utility;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Pruebas del trie radix de autocompletado
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+class CompletionTrieTests {
+
+    @Test
+    void completionsMatchAScanOfTheKeys() {
+        Random random = new Random(11);
+        String[] keys = new String[3_000];
+        int[] items = new int[keys.length];
+        long[] weights = new long[1_000];
+        for (int i = 0; i < keys.length; i++) {
+            StringBuilder key = new StringBuilder();
+            int length = 1 + random.nextInt(8);
+            for (int c = 0; c < length; c++) {
+                key.append((char) ('a' + random.nextInt(4)));
+            }
+            keys[i] = key.toString();
+            items[i] = random.nextInt(weights.length);
+        }
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = random.nextInt(50);
+        }
+        CompletionTrie trie = new CompletionTrie(keys, items, weights, 5);
+
+        for (String prefix : new String[] {"", "a", "ab", "abc", "dcba", "abcdabcd", "abcdabcda", "e"}) {
+            int[] expected = IntStream.range(0, keys.length)
+                    .filter(i -> keys[i].startsWith(prefix))
+                    .map(i -> items[i])
+                    .distinct()
+                    .boxed()
+                    .sorted(Comparator.comparingLong((Integer item) -> weights[item]).reversed()
+                            .thenComparingInt(item -> item))
+                    .limit(5)
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            assertThat(trie.complete(prefix)).as(prefix).containsExactly(expected);
+        }
+        assertThat(trie.size()).isEqualTo(keys.length);
+    }
+
+    @Test
+    void prefixEndingInsideAnEdgeUsesTheNodeBelow() {
+        CompletionTrie trie = new CompletionTrie(
+                new String[] {"azul marino", "azulado", "rojo"}, new int[] {0, 1, 2}, new long[] {5, 9, 1}, 10);
+
+        assertThat(trie.complete("az")).containsExactly(1, 0);
+        assertThat(trie.complete("azul m")).containsExactly(0);
+        assertThat(trie.complete("azur")).isEmpty();
+        assertThat(trie.complete("")).containsExactly(1, 0, 2);
+    }
+}
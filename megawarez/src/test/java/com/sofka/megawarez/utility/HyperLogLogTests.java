@@ -0,0 +1,74 @@
+package com.sofka.megawarez.utility;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Pruebas del estimador HyperLogLog
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+class HyperLogLogTests {
+
+    @Test
+    void estimatesAreWithinTheExpectedError() {
+        for (int distinct : new int[] {10, 1_000, 100_000, 1_000_000}) {
+            HyperLogLog sketch = new HyperLogLog();
+            for (int id = 0; id < distinct; id++) {
+                sketch.add(id);
+                sketch.add(id);
+            }
+            assertThat((double) sketch.estimate()).isCloseTo(distinct, within(distinct * 0.05 + 1));
+        }
+    }
+
+    @Test
+    void mergeIsTheUnionAndIsIdempotent() {
+        HyperLogLog first = new HyperLogLog();
+        HyperLogLog second = new HyperLogLog();
+        HyperLogLog union = new HyperLogLog();
+        for (int id = 0; id < 60_000; id++) {
+            (id < 40_000 ? first : second).add(id);
+            if (id >= 20_000 && id < 40_000) {
+                second.add(id);
+            }
+            union.add(id);
+        }
+
+        first.merge(second);
+        long merged = first.estimate();
+        first.merge(second);
+
+        assertThat(merged).isEqualTo(union.estimate());
+        assertThat(first.estimate()).isEqualTo(merged);
+        assertThatThrownBy(() -> first.merge(new HyperLogLog(12))).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void binaryFormIsSparseForFewUsersAndRoundTrips() {
+        HyperLogLog few = new HyperLogLog();
+        for (int id = 0; id < 50; id++) {
+            few.add(id);
+        }
+        HyperLogLog many = new HyperLogLog();
+        for (int id = 0; id < 50_000; id++) {
+            many.add(id);
+        }
+
+        byte[] sparse = few.toBytes();
+        byte[] dense = many.toBytes();
+
+        assertThat(sparse.length).isLessThan(200);
+        assertThat(dense.length).isEqualTo(3 + (1 << HyperLogLog.DEFAULT_PRECISION));
+        assertThat(HyperLogLog.fromBytes(sparse).estimate()).isEqualTo(few.estimate());
+        assertThat(HyperLogLog.fromBytes(dense).estimate()).isEqualTo(many.estimate());
+        assertThat(new HyperLogLog().isEmpty()).isTrue();
+        assertThat(HyperLogLog.fromBytes(new HyperLogLog().toBytes()).isEmpty()).isTrue();
+        assertThatThrownBy(() -> HyperLogLog.fromBytes(new byte[] {9})).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,47 @@
+package com.sofka.megawarez.utility;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Pruebas del conjunto comprimido de enteros
+ *
+ * @version 1.0.0 2022-03-31
+ * @author Ricardo Ortega <tattortega.28@gmail.com>
+ * @since 1.0.0
+ */
+class RoaringBitmapTests {
+
+    @Test
+    void membershipMatchesABitSetAcrossContainerKinds() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        BitSet expected = new BitSet();
+        Random random = new Random(7);
+        for (int i = 0; i < 10_000; i++) {
+            int dense = random.nextInt(20_000);
+            int sparse = 1 << 20 | random.nextInt(1 << 16);
+            assertThat(bitmap.add(dense)).isEqualTo(!expected.get(dense));
+            expected.set(dense);
+            bitmap.add(sparse);
+            expected.set(sparse);
+        }
+
+        assertThat(bitmap.cardinality()).isEqualTo(expected.cardinality());
+        for (int value = 0; value < (1 << 20) + (1 << 16); value++) {
+            assertThat(bitmap.contains(value)).isEqualTo(expected.get(value));
+        }
+        assertThat(bitmap.contains(Integer.MAX_VALUE)).isFalse();
+        assertThat(bitmap.contains(-1)).isFalse();
+        assertThat(bitmap.sizeInBytes()).isLessThan(expected.size() / Byte.SIZE);
+    }
+
+    @Test
+    void negativeValuesAreRejected() {
+        assertThatThrownBy(() -> new RoaringBitmap().add(-5)).isInstanceOf(IllegalArgumentException.class);
+    }
+}